@@ -0,0 +1,114 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load: each of {@code concurrency} workers sends a request, waits for the
+ * answer and sends the next, cycling through the given paths. Latencies from the warm-up are
+ * discarded; the rest are reported as throughput and percentiles on one line.
+ *
+ * Runs as a single source file on JDK 11+:
+ *   java LoadCompare.java http://localhost:8080 200 60 15 /api/rides/available /api/rides/1
+ */
+public class LoadCompare {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("usage: LoadCompare <baseUrl> <concurrency> <seconds> <warmupSeconds> <path>...");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int concurrency = Integer.parseInt(args[1]);
+        long seconds = Long.parseLong(args[2]);
+        long warmupSeconds = Long.parseLong(args[3]);
+        List<URI> uris = new ArrayList<>();
+        for (String path : Arrays.copyOfRange(args, 4, args.length)) {
+            uris.add(URI.create(baseUrl + path));
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(warmupSeconds).toNanos();
+        long end = warmupEnd + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[concurrency][];
+        int[] counts = new int[concurrency];
+        CountDownLatch done = new CountDownLatch(concurrency);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+
+        for (int w = 0; w < concurrency; w++) {
+            int worker = w;
+            workers.submit(() -> {
+                long[] mine = new long[1024];
+                int n = 0;
+                int next = worker;
+                try {
+                    while (true) {
+                        long start = System.nanoTime();
+                        if (start >= end) {
+                            break;
+                        }
+                        HttpRequest request = HttpRequest.newBuilder(uris.get(next++ % uris.size()))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build();
+                        boolean ok;
+                        try {
+                            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 500;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long finished = System.nanoTime();
+                        if (start < warmupEnd) {
+                            continue;
+                        }
+                        if (!ok) {
+                            errors.incrementAndGet();
+                        }
+                        if (n == mine.length) {
+                            mine = Arrays.copyOf(mine, n * 2);
+                        }
+                        mine[n++] = finished - start;
+                    }
+                } finally {
+                    latencies[worker] = mine;
+                    counts[worker] = n;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int w = 0; w < concurrency; w++) {
+            System.arraycopy(latencies[w], 0, all, offset, counts[w]);
+            offset += counts[w];
+        }
+        Arrays.sort(all);
+        System.out.printf("requests=%d errors=%d throughput=%.1f/s p50=%.1fms p99=%.1fms max=%.1fms%n",
+                total, errors.get(), total / (double) seconds,
+                percentile(all, 0.50), percentile(all, 0.99), total > 0 ? all[total - 1] / 1e6 : 0.0);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+# Compare request throughput and p99 latency with platform threads and with virtual threads.
+#
+# Builds the app once, then starts it in each mode against the database configured in
+# application.properties (override with SPRING_DATASOURCE_URL / _USERNAME / _PASSWORD) and
+# drives the same closed-loop load at it with LoadCompare.java. Needs JDK 21 on the PATH.
+# Without a MySQL server, an in-memory H2 database works (JDBC calls then block far less):
+#
+#   SPRING_DATASOURCE_URL='jdbc:h2:mem:load;MODE=MySQL;DB_CLOSE_DELAY=-1' \
+#   SPRING_DATASOURCE_DRIVER_CLASS_NAME=org.h2.Driver SPRING_DATASOURCE_USERNAME=sa \
+#   SPRING_DATASOURCE_PASSWORD= SPRING_JPA_PROPERTIES_HIBERNATE_DIALECT=org.hibernate.dialect.H2Dialect \
+#   scripts/load/compare-thread-modes.sh
+#
+#   scripts/load/compare-thread-modes.sh [concurrency] [seconds] [path...]
+#
+# Defaults: 200 concurrent clients for 60 s (after 15 s of warm-up) on /api/rides/available
+# and /api/rides/1. Pick paths that reach the database; the point is blocking JDBC calls.
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+
+CONCURRENCY=${1:-200}
+SECONDS_PER_MODE=${2:-60}
+shift $(( $# > 2 ? 2 : $# ))
+PATHS=("$@")
+if [ ${#PATHS[@]} -eq 0 ]; then
+    PATHS=(/api/rides/available /api/rides/1)
+fi
+WARMUP_SECONDS=${WARMUP_SECONDS:-15}
+PORT=${PORT:-18080}
+BASE_URL="http://localhost:${PORT}"
+
+JAVA_MAJOR=$(java -XshowSettings:properties -version 2>&1 | awk -F'= ' '/java.specification.version/ {print $2}')
+if [ "${JAVA_MAJOR%%.*}" -lt 21 ]; then
+    echo "Virtual threads need JDK 21 or later, found ${JAVA_MAJOR}" >&2
+    exit 1
+fi
+
+./mvnw -q -B -DskipTests package
+JAR=$(ls target/*.jar | grep -v original | head -n 1)
+
+run_mode() {
+    local mode=$1 virtual=$2 log="target/load-${1}.log"
+    VIRTUAL_THREADS=$virtual java -jar "$JAR" \
+        --server.port="$PORT" \
+        --payment.gateway.mode=fake \
+        --logging.level.com.example.demo=WARN >"$log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null || true' EXIT
+
+    for _ in $(seq 1 120); do
+        if curl -fs -o /dev/null "${BASE_URL}/api/payments/config"; then
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            echo "App failed to start in ${mode} mode, see ${log}" >&2
+            exit 1
+        fi
+        sleep 1
+    done
+
+    printf '%-9s ' "$mode"
+    java scripts/load/LoadCompare.java "$BASE_URL" "$CONCURRENCY" "$SECONDS_PER_MODE" "$WARMUP_SECONDS" "${PATHS[@]}"
+    curl -fs "${BASE_URL}/api/admin/metrics/jdbc-admission" >"target/load-${mode}-jdbc-admission.json" || true
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    trap - EXIT
+}
+
+echo "Load: ${CONCURRENCY} clients, ${SECONDS_PER_MODE}s per mode after ${WARMUP_SECONDS}s warm-up, paths: ${PATHS[*]}"
+run_mode platform false
+run_mode virtual true
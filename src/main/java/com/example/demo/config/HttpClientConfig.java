@@ -0,0 +1,40 @@
+package com.example.demo.config;
+
+import com.example.demo.service.OutboundHttpLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * One HTTP client for every outbound API call (distance lookups). The JDK client keeps
+ * connections alive and reuses them per host, and speaks HTTP/2 to servers that offer it.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public HttpClient outboundHttpClient(@Value("${http.client.connect-timeout-ms:3000}") long connectTimeoutMs) {
+        // How long idle connections are kept is JVM-wide (jdk.httpclient.keepalive.timeout),
+        // so it is set on the command line, not here; see application.properties
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate outboundRestTemplate(HttpClient outboundHttpClient, OutboundHttpLimiter outboundHttpLimiter,
+                                             @Value("${http.client.read-timeout-ms:5000}") long readTimeoutMs) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(outboundHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(outboundHttpLimiter);
+        return restTemplate;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.config;
+
+import com.example.demo.service.JdbcAdmissionLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class JdbcAdmissionConfig {
+
+    // Static so the post-processor doesn't pull this configuration in early; the limiter is
+    // looked up only once the data source exists
+    @Bean
+    public static BeanPostProcessor jdbcAdmissionPostProcessor(ObjectProvider<JdbcAdmissionLimiter> limiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    JdbcAdmissionLimiter admission = limiter.getObject();
+                    if (admission.isEnabled()) {
+                        return admission.wrap(dataSource);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
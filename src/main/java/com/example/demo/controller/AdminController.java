@@ -4,8 +4,28 @@ import com.example.demo.dto.ApiResponse;
 import com.example.demo.entity.*;
 import com.example.demo.enums.Role;
 import com.example.demo.repository.*;
+import com.example.demo.security.JwtTokenVerifier;
+import com.example.demo.security.RateLimitFilter;
+import com.example.demo.service.FareQuoteCache;
+import com.example.demo.service.JdbcAdmissionLimiter;
+import com.example.demo.service.NotificationRetentionService;
+import com.example.demo.service.OutboundHttpLimiter;
+import com.example.demo.service.PasswordHashingService;
+import com.example.demo.service.PaymentGatewayClient;
+import com.example.demo.service.PaymentIdempotencyService;
+import com.example.demo.service.PendingPaymentReaper;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.service.RideChangedEvent;
+import com.example.demo.service.RideIndex;
+import com.example.demo.service.RideSearchCache;
+import com.example.demo.service.SurgePricingService;
 import com.example.demo.service.UserService;
+import com.example.demo.service.WalletCreditBatcher;
+import com.example.demo.service.WalletReconciliationService;
+import com.example.demo.service.WebSocketDispatchService;
+import com.example.demo.util.PricingTable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
@@ -44,6 +64,60 @@ public class AdminController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private WebSocketDispatchService webSocketDispatchService;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private PaymentIdempotencyService paymentIdempotencyService;
+
+    @Autowired
+    private PaymentGatewayClient paymentGatewayClient;
+
+    @Autowired
+    private PendingPaymentReaper pendingPaymentReaper;
+
+    @Autowired
+    private WalletReconciliationService walletReconciliationService;
+
+    @Autowired
+    private WalletCreditBatcher walletCreditBatcher;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private FareQuoteCache fareQuoteCache;
+
+    @Autowired
+    private SurgePricingService surgePricingService;
+
+    @Autowired
+    private RideSearchCache rideSearchCache;
+
+    @Autowired
+    private RideIndex rideIndex;
+
+    @Autowired
+    private JdbcAdmissionLimiter jdbcAdmissionLimiter;
+
+    @Autowired
+    private OutboundHttpLimiter outboundHttpLimiter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Dashboard Statistics
     @GetMapping("/dashboard/stats")
     public ResponseEntity<ApiResponse> getDashboardStats() {
@@ -238,6 +312,7 @@ public class AdminController {
             Ride ride = rideOpt.get();
             ride.setStatus("CANCELLED");
             rideRepository.save(ride);
+            eventPublisher.publishEvent(new RideChangedEvent(ride, RideChangedEvent.Change.CANCELLED));
             
             return ResponseEntity.ok(new ApiResponse(true, "Ride cancelled successfully", null));
         } catch (Exception e) {
@@ -322,8 +397,9 @@ public class AdminController {
     public ResponseEntity<ApiResponse> getSystemSettings() {
         try {
             Map<String, Object> settings = new HashMap<>();
-            settings.put("baseFare", 50.0);
-            settings.put("commissionRate", 10.0);
+            PricingTable pricing = pricingEngine.current();
+            settings.put("baseFare", pricing.getBaseFare());
+            settings.put("commissionRate", pricing.getCommissionRate() * 100);
             settings.put("maxSeatsPerRide", 8);
             settings.put("appName", "RideConnect");
             
@@ -333,4 +409,172 @@ public class AdminController {
                 .body(new ApiResponse(false, "Failed to get settings: " + e.getMessage(), null));
         }
     }
+
+    // Runtime Metrics
+    @GetMapping("/metrics/websocket")
+    public ResponseEntity<ApiResponse> getWebSocketMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "WebSocket dispatch metrics retrieved",
+            webSocketDispatchService.getStats()));
+    }
+
+    @GetMapping("/metrics/notification-retention")
+    public ResponseEntity<ApiResponse> getNotificationRetentionMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Notification retention metrics retrieved",
+            notificationRetentionService.getLastResult()));
+    }
+
+    @GetMapping("/metrics/auth")
+    public ResponseEntity<ApiResponse> getAuthMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Auth metrics retrieved", jwtTokenVerifier.getStats()));
+    }
+
+    @GetMapping("/metrics/rate-limit")
+    public ResponseEntity<ApiResponse> getRateLimitMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Rate limit metrics retrieved", rateLimitFilter.getStats()));
+    }
+
+    @GetMapping("/metrics/password-hashing")
+    public ResponseEntity<ApiResponse> getPasswordHashingMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Password hashing metrics retrieved",
+            passwordHashingService.getStats()));
+    }
+
+    @GetMapping("/metrics/payment-idempotency")
+    public ResponseEntity<ApiResponse> getPaymentIdempotencyMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Payment idempotency metrics retrieved",
+            paymentIdempotencyService.getStats()));
+    }
+
+    @GetMapping("/metrics/payment-gateway")
+    public ResponseEntity<ApiResponse> getPaymentGatewayMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Payment gateway metrics retrieved",
+            paymentGatewayClient.getStats()));
+    }
+
+    @GetMapping("/metrics/payment-reaper")
+    public ResponseEntity<ApiResponse> getPaymentReaperMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Payment reaper metrics retrieved",
+            pendingPaymentReaper.getStats()));
+    }
+
+    @GetMapping("/metrics/wallet-group-commit")
+    public ResponseEntity<ApiResponse> getWalletGroupCommitMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Wallet group commit metrics retrieved",
+            walletCreditBatcher.getStats()));
+    }
+
+    @GetMapping("/metrics/fare-quote-cache")
+    public ResponseEntity<ApiResponse> getFareQuoteCacheMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Fare quote cache metrics retrieved",
+            fareQuoteCache.getStats()));
+    }
+
+    @GetMapping("/metrics/ride-search-cache")
+    public ResponseEntity<ApiResponse> getRideSearchCacheMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Ride search cache metrics retrieved",
+            rideSearchCache.getStats()));
+    }
+
+    @GetMapping("/metrics/ride-index")
+    public ResponseEntity<ApiResponse> getRideIndexMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Ride index metrics retrieved",
+            rideIndex.getStats()));
+    }
+
+    @GetMapping("/metrics/jdbc-admission")
+    public ResponseEntity<ApiResponse> getJdbcAdmissionMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "JDBC admission metrics retrieved",
+            jdbcAdmissionLimiter.getStats()));
+    }
+
+    @GetMapping("/metrics/outbound-http")
+    public ResponseEntity<ApiResponse> getOutboundHttpMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Outbound HTTP metrics retrieved",
+            outboundHttpLimiter.getStats()));
+    }
+
+    @GetMapping("/metrics/surge")
+    public ResponseEntity<ApiResponse> getSurgeMetrics() {
+        return ResponseEntity.ok(new ApiResponse(true, "Surge pricing metrics retrieved",
+            surgePricingService.getStats()));
+    }
+
+    // Pricing
+    @GetMapping("/fare/pricing")
+    public ResponseEntity<ApiResponse> getFarePricing() {
+        return ResponseEntity.ok(new ApiResponse(true, "Fare pricing retrieved", pricingEngine.describe()));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/fare/pricing")
+    public ResponseEntity<ApiResponse> updateFarePricing(@RequestParam(required = false) Double baseFare,
+                                                         @RequestParam(required = false) Double pricePerKm) {
+        try {
+            pricingEngine.update(baseFare, pricePerKm);
+            return ResponseEntity.ok(new ApiResponse(true, "Fare pricing updated", requoteAfterPricingChange()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, "Failed to update fare pricing: " + e.getMessage(), null));
+        }
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/fare/pricing/reload")
+    public ResponseEntity<ApiResponse> reloadFarePricing() {
+        try {
+            pricingEngine.reload();
+            return ResponseEntity.ok(new ApiResponse(true, "Fare pricing reloaded", requoteAfterPricingChange()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, "Failed to reload fare pricing: " + e.getMessage(), null));
+        }
+    }
+
+    // Cached quotes are stale now; re-quote the common routes at the new prices
+    private Map<String, Object> requoteAfterPricingChange() {
+        fareQuoteCache.clear();
+        int warmed = fareQuoteCache.warm();
+        Map<String, Object> pricing = pricingEngine.describe();
+        pricing.put("routesRequoted", warmed);
+        return pricing;
+    }
+
+    // Maintenance
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/maintenance/notifications/purge")
+    public ResponseEntity<ApiResponse> purgeOldNotifications() {
+        try {
+            NotificationRetentionService.RetentionResult result = notificationRetentionService.purgeReadNotifications();
+            return ResponseEntity.ok(new ApiResponse(true, "Purged " + result.getDeleted() + " notifications", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, "Failed to purge notifications: " + e.getMessage(), null));
+        }
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/maintenance/payments/expire")
+    public ResponseEntity<ApiResponse> expireStalePayments() {
+        try {
+            PendingPaymentReaper.ReapResult result = pendingPaymentReaper.reap();
+            return ResponseEntity.ok(new ApiResponse(true, "Expired " + result.getExpired() + " pending payments", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, "Failed to expire pending payments: " + e.getMessage(), null));
+        }
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/maintenance/wallets/reconcile")
+    public ResponseEntity<ApiResponse> reconcileWallets() {
+        try {
+            int recovered = walletReconciliationService.recoverDriverCredits();
+            WalletReconciliationService.ReconcileResult result = walletReconciliationService.reconcileAll();
+            return ResponseEntity.ok(new ApiResponse(true, "Reconciled " + result.getChecked() + " wallets, "
+                + result.getDrifted() + " out of balance, " + recovered + " missing driver credits applied", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                .body(new ApiResponse(false, "Failed to reconcile wallets: " + e.getMessage(), null));
+        }
+    }
 }
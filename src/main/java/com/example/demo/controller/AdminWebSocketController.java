@@ -8,11 +8,11 @@ import com.example.demo.entity.PaymentStatus;
 import com.example.demo.repository.RideRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.PaymentRepository;
+import com.example.demo.service.WebSocketDispatchService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 
@@ -23,9 +23,6 @@ import java.util.Map;
 @Controller
 public class AdminWebSocketController {
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-
     @Autowired
     private UserRepository userRepository;
 
@@ -38,6 +35,9 @@ public class AdminWebSocketController {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private WebSocketDispatchService dispatchService;
+
     // Send real-time updates every 30 seconds
     @Scheduled(fixedRate = 30000)
     public void sendAdminUpdates() {
@@ -58,7 +58,7 @@ public class AdminWebSocketController {
             updates.put("timestamp", LocalDateTime.now());
             
             // Send to admin dashboard
-            messagingTemplate.convertAndSend("/topic/admin/stats", updates);
+            dispatchService.sendToTopic("/topic/admin/stats", updates);
             
         } catch (Exception e) {
             System.err.println("Error sending admin updates: " + e.getMessage());
@@ -79,7 +79,7 @@ public class AdminWebSocketController {
             ));
             notification.put("timestamp", LocalDateTime.now());
             
-            messagingTemplate.convertAndSend("/topic/admin/notifications", notification);
+            dispatchService.sendToTopic("/topic/admin/notifications", notification);
         } catch (Exception e) {
             System.err.println("Error sending new user notification: " + e.getMessage());
         }
@@ -102,7 +102,7 @@ public class AdminWebSocketController {
             ));
             notification.put("timestamp", LocalDateTime.now());
             
-            messagingTemplate.convertAndSend("/topic/admin/notifications", notification);
+            dispatchService.sendToTopic("/topic/admin/notifications", notification);
         } catch (Exception e) {
             System.err.println("Error sending new ride notification: " + e.getMessage());
         }
@@ -122,7 +122,7 @@ public class AdminWebSocketController {
             ));
             notification.put("timestamp", LocalDateTime.now());
             
-            messagingTemplate.convertAndSend("/topic/admin/notifications", notification);
+            dispatchService.sendToTopic("/topic/admin/notifications", notification);
         } catch (Exception e) {
             System.err.println("Error sending payment notification: " + e.getMessage());
         }
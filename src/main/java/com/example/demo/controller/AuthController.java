@@ -5,17 +5,19 @@ import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.RegisterRequest;
 import com.example.demo.dto.ApiResponse;
 import com.example.demo.service.AuthService;
+import com.example.demo.service.PasswordHashingService;
+import com.example.demo.service.UserIdentityResolver;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.enums.Role;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import jakarta.validation.Valid;
@@ -29,12 +31,21 @@ public class AuthController {
     private static final Logger log = LoggerFactory.getLogger(AuthController.class);
     private final AuthService authService;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final UserIdentityResolver identityResolver;
 
-    public AuthController(AuthService authService, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthController(AuthService authService, UserRepository userRepository,
+                          PasswordHashingService passwordHashingService, UserIdentityResolver identityResolver) {
         this.authService = authService;
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.identityResolver = identityResolver;
+    }
+
+    private ResponseEntity<ApiResponse> busyResponse(PasswordHashingService.HashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiResponse(false, e.getMessage(), null));
     }
 
     // ==================== TEST USER CREATION ====================
@@ -75,6 +86,9 @@ public class AuthController {
             log.info("Registration successful - username: {}", request.getUsername());
             return ResponseEntity.ok(new ApiResponse(true, "Registration successful", response));
 
+        } catch (PasswordHashingService.HashingBusyException e) {
+            log.warn("Registration refused, password hashing pool saturated - username: {}", request.getUsername());
+            return busyResponse(e);
         } catch (Exception e) {
             log.error("Registration failed - username: {}, error: {}",
                     request.getUsername(), e.getMessage());
@@ -123,6 +137,9 @@ public class AuthController {
                     user != null ? user.getRole() : "UNKNOWN");
             return ResponseEntity.ok(new ApiResponse(true, "Login successful", response));
 
+        } catch (PasswordHashingService.HashingBusyException e) {
+            log.warn("Login refused, password hashing pool saturated - identifier: {}", request.getUsername());
+            return busyResponse(e);
         } catch (Exception e) {
             log.error("Login failed - identifier: {}, error: {}",
                     request.getUsername(), e.getMessage());
@@ -251,6 +268,9 @@ public class AuthController {
         try {
             AuthResponse authResponse = authService.registerWithOtp(request.toRegisterRequest(), request.getOtp());
             return ResponseEntity.ok(new ApiResponse(true, "Registration successful", authResponse));
+        } catch (PasswordHashingService.HashingBusyException e) {
+            log.warn("Registration with OTP refused, password hashing pool saturated - email: {}", request.getEmail());
+            return busyResponse(e);
         } catch (Exception e) {
             log.error("Error registering with OTP", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -435,6 +455,7 @@ public class AuthController {
             user.setPhone(phone);
             user.setRole(Role.valueOf(role.toUpperCase()));
             userRepository.save(user);
+            identityResolver.invalidate(user.getId());
             
             log.info("Profile updated for user: {}", userEmail);
             return ResponseEntity.ok(new ApiResponse(true, "Profile updated successfully", null));
@@ -471,6 +492,7 @@ public class AuthController {
             user.setVehiclePlate(vehiclePlate);
             user.setVehicleCapacity(vehicleCapacity);
             userRepository.save(user);
+            identityResolver.invalidate(user.getId());
             
             log.info("Vehicle info updated for user: {}", userEmail);
             return ResponseEntity.ok(new ApiResponse(true, "Vehicle information updated successfully", null));
@@ -507,18 +529,21 @@ public class AuthController {
                             .orElseThrow(() -> new RuntimeException("User not found")));
             
             // Verify current password
-            if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            if (!passwordHashingService.matches(currentPassword, user.getPassword())) {
                 return ResponseEntity.badRequest()
                         .body(new ApiResponse(false, "Current password is incorrect", null));
             }
             
             // Update password
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHashingService.encode(newPassword));
             userRepository.save(user);
             
             log.info("Password changed for user: {}", userEmail);
             return ResponseEntity.ok(new ApiResponse(true, "Password changed successfully", null));
             
+        } catch (PasswordHashingService.HashingBusyException e) {
+            log.warn("Password change refused, password hashing pool saturated - user: {}", authentication.getName());
+            return busyResponse(e);
         } catch (Exception e) {
             log.error("Error changing password: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
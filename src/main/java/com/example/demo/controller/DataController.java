@@ -6,8 +6,10 @@ import com.example.demo.entity.User;
 import com.example.demo.enums.Role;
 import com.example.demo.repository.RideRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.RideChangedEvent;
 import com.example.demo.service.WalletService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -33,6 +35,9 @@ public class DataController {
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @PostMapping("/setup")
     public ResponseEntity<ApiResponse> setupTestData() {
         try {
@@ -164,7 +169,7 @@ public class DataController {
             ride1.setStatus("ACTIVE");
             ride1.setVehicleModel(driver.getVehicleModel());
             ride1.setVehiclePlate(driver.getVehiclePlate());
-            rideRepository.save(ride1);
+            eventPublisher.publishEvent(new RideChangedEvent(rideRepository.save(ride1), RideChangedEvent.Change.POSTED));
 
             // Ride 2: Tomorrow
             Ride ride2 = new Ride();
@@ -180,7 +185,7 @@ public class DataController {
             ride2.setStatus("ACTIVE");
             ride2.setVehicleModel(driver.getVehicleModel());
             ride2.setVehiclePlate(driver.getVehiclePlate());
-            rideRepository.save(ride2);
+            eventPublisher.publishEvent(new RideChangedEvent(rideRepository.save(ride2), RideChangedEvent.Change.POSTED));
 
             // Ride 3: Tomorrow evening
             Ride ride3 = new Ride();
@@ -196,7 +201,7 @@ public class DataController {
             ride3.setStatus("ACTIVE");
             ride3.setVehicleModel(driver.getVehicleModel());
             ride3.setVehiclePlate(driver.getVehiclePlate());
-            rideRepository.save(ride3);
+            eventPublisher.publishEvent(new RideChangedEvent(rideRepository.save(ride3), RideChangedEvent.Change.POSTED));
         }
     }
 }
\ No newline at end of file
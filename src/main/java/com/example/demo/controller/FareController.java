@@ -3,16 +3,28 @@ package com.example.demo.controller;
 import com.example.demo.dto.FareRequest;
 import com.example.demo.dto.FareResponse;
 import com.example.demo.service.FareCalculationService;
+import com.example.demo.service.FareQuoteCache;
+import com.example.demo.service.PooledFareService;
 import com.example.demo.service.RideService;
+import com.example.demo.service.UserIdentityResolver;
 import com.example.demo.entity.Ride;
+import com.example.demo.security.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,9 +37,21 @@ public class FareController {
     @Autowired
     private FareCalculationService fareCalculationService;
 
+    @Autowired
+    private FareQuoteCache fareQuoteCache;
+
     @Autowired
     private RideService rideService;
 
+    @Autowired
+    private UserIdentityResolver identityResolver;
+
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Value("${fare.batch.max-size:100}")
+    private int maxBatchSize = 100;
+
     /**
      * Calculate fare for a new ride
      * POST /api/fare/calculate
@@ -115,6 +139,78 @@ public class FareController {
         }
     }
 
+    /**
+     * Fare for joining a ride between two of its stops, priced by the part of the route ridden
+     * GET /api/fare/estimate/{rideId}/pooled
+     */
+    @GetMapping("/estimate/{rideId}/pooled")
+    public ResponseEntity<Map<String, Object>> getPooledFareEstimate(@PathVariable Long rideId,
+                                                                    @RequestParam(required = false) String pickup,
+                                                                    @RequestParam(required = false) String drop,
+                                                                    @RequestParam(defaultValue = "1") int seats) {
+        try {
+            if (seats < 1) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "At least 1 seat is required");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+
+            PooledFareService.Share share = rideService.quotePooledFare(rideId, pickup, drop, seats);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Pooled fare calculated successfully");
+            response.put("data", share);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Error getting pooled fare estimate: {}", e.getMessage(), e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to get pooled fare estimate: " + e.getMessage());
+
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    /**
+     * Every booking's share of a ride and the seats taken on each leg of its route, for the
+     * ride's driver or an admin; a passenger gets only their own share
+     * GET /api/fare/split/{rideId}
+     */
+    @GetMapping("/split/{rideId}")
+    public ResponseEntity<Map<String, Object>> getFareSplit(@PathVariable Long rideId, Authentication authentication) {
+        try {
+            boolean admin = authentication.getAuthorities().stream()
+                    .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+            PooledFareService.RideSplit split = rideService.getPooledFareSplit(rideId,
+                    identityResolver.resolveUserId(authentication), admin);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Fare split calculated successfully");
+            response.put("data", split);
+            return ResponseEntity.ok(response);
+
+        } catch (AccessDeniedException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+
+        } catch (Exception e) {
+            logger.error("Error splitting fare for ride {}: {}", rideId, e.getMessage(), e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to split fare: " + e.getMessage());
+
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
     /**
      * Get quick fare estimate for route planning
      * GET /api/fare/quick-estimate
@@ -124,7 +220,7 @@ public class FareController {
                                                                @RequestParam String destination,
                                                                @RequestParam(defaultValue = "1") int passengers) {
         try {
-            logger.info("Quick fare estimate request: {} -> {} for {} passengers", source, destination, passengers);
+            logger.debug("Quick fare estimate request: {} -> {} for {} passengers", source, destination, passengers);
 
             if (!fareCalculationService.validateFareParameters(source, destination, passengers)) {
                 Map<String, Object> errorResponse = new HashMap<>();
@@ -133,8 +229,7 @@ public class FareController {
                 return ResponseEntity.badRequest().body(errorResponse);
             }
 
-            FareRequest fareRequest = new FareRequest(source, destination, passengers);
-            FareResponse fareResponse = fareCalculationService.calculateFare(fareRequest);
+            FareResponse fareResponse = fareQuoteCache.getQuickEstimate(source, destination, passengers);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", fareResponse.isSuccess());
@@ -157,6 +252,71 @@ public class FareController {
         }
     }
 
+    /**
+     * Quote many routes in one request (e.g. every ride card on a search results page)
+     * POST /api/fare/batch-estimate
+     * Body: [{"source": ..., "destination": ..., "passengers": 1, "pricePerKm": 12.0}, ...]
+     */
+    @PostMapping("/batch-estimate")
+    public ResponseEntity<Map<String, Object>> getBatchEstimate(@RequestBody List<FareRequest> fareRequests,
+                                                                HttpServletRequest httpRequest) {
+        try {
+            if (fareRequests == null || fareRequests.isEmpty()) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "At least one fare request is required");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+            if (fareRequests.size() > maxBatchSize) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "At most " + maxBatchSize + " fare requests are allowed per batch");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+
+            // Each fare in the batch counts against the fare rate limit like a single estimate
+            long waitNanos = rateLimitFilter.tryAcquire("fare", httpRequest, fareRequests.size());
+            if (waitNanos > 0) {
+                long retryAfterSeconds = RateLimitFilter.retryAfterSeconds(waitNanos);
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "Too many requests, please retry in " + retryAfterSeconds + " seconds");
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                        .body(errorResponse);
+            }
+
+            List<FareResponse> fareResponses = fareCalculationService.calculateFares(fareRequests);
+
+            // One entry per request, in request order; a failed entry doesn't fail the batch
+            List<Map<String, Object>> quotes = new ArrayList<>(fareResponses.size());
+            for (FareResponse fareResponse : fareResponses) {
+                Map<String, Object> quote = new HashMap<>();
+                quote.put("success", fareResponse.isSuccess());
+                quote.put("message", fareResponse.getMessage());
+                if (fareResponse.isSuccess()) {
+                    quote.put("data", fareResponse.getFareDetails());
+                }
+                quotes.add(quote);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Calculated " + quotes.size() + " fares");
+            response.put("data", quotes);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            logger.error("Error getting batch fare estimate: {}", e.getMessage(), e);
+
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to get batch estimate: " + e.getMessage());
+
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
     /**
      * Get fare calculation constants for frontend display
      * GET /api/fare/constants
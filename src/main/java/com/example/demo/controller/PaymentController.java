@@ -1,11 +1,16 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.UserSnapshot;
 import com.example.demo.entity.*;
+import com.example.demo.service.PaymentGatewayClient;
+import com.example.demo.service.PaymentIdempotencyService;
 import com.example.demo.service.PaymentService;
 import com.example.demo.service.RazorpayService;
 import com.example.demo.service.BookingService;
-import com.example.demo.service.UserService;
+import com.example.demo.service.UserIdentityResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -34,7 +39,7 @@ public class PaymentController {
     private BookingService bookingService;
 
     @Autowired
-    private UserService userService;
+    private UserIdentityResolver identityResolver;
 
     /**
      * Create payment order for a booking
@@ -44,12 +49,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> createPayment(@RequestBody Map<String, Object> request,
                                                             Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             Long bookingId = Long.valueOf(request.get("bookingId").toString());
             Optional<Booking> bookingOpt = bookingService.getBookingById(bookingId);
@@ -85,15 +90,18 @@ public class PaymentController {
             paymentData.put("amount", payment.getAmount());
             paymentData.put("currency", payment.getCurrency());
             paymentData.put("bookingId", booking.getId());
-            paymentData.put("userEmail", user.getEmail());
-            paymentData.put("userPhone", user.getPhone());
-            paymentData.put("userName", user.getUsername());
+            UserSnapshot profile = identityResolver.getSnapshot(userId);
+            paymentData.put("userEmail", profile.getEmail());
+            paymentData.put("userPhone", profile.getPhone());
+            paymentData.put("userName", profile.getUsername());
             
             response.put("data", paymentData);
 
             logger.info("Payment order created for booking {}: {}", bookingId, payment.getId());
             return ResponseEntity.ok(response);
 
+        } catch (PaymentGatewayClient.GatewayUnavailableException e) {
+            return gatewayUnavailableResponse(e);
         } catch (Exception e) {
             logger.error("Error creating payment: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().body(createErrorResponse("Failed to create payment: " + e.getMessage()));
@@ -108,12 +116,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> verifyPayment(@RequestBody Map<String, Object> request,
                                                            Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             String razorpayPaymentId = request.get("razorpay_payment_id").toString();
             String razorpayOrderId = request.get("razorpay_order_id").toString();
@@ -158,12 +166,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> handlePaymentFailure(@RequestBody Map<String, Object> request,
                                                                    Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             String razorpayOrderId = request.get("razorpay_order_id").toString();
             String failureReason = request.getOrDefault("error_description", "Payment failed").toString();
@@ -203,12 +211,12 @@ public class PaymentController {
     @GetMapping("/history")
     public ResponseEntity<Map<String, Object>> getPaymentHistory(Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             List<Payment> payments = paymentService.getPaymentsByUser(user);
 
@@ -233,12 +241,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> getPaymentDetails(@PathVariable Long paymentId,
                                                                Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             Optional<Payment> paymentOpt = paymentService.getPaymentById(paymentId);
             if (paymentOpt.isEmpty()) {
@@ -271,7 +279,8 @@ public class PaymentController {
      */
     @PostMapping("/webhook")
     public ResponseEntity<String> handleWebhook(@RequestBody String payload,
-                                              @RequestHeader("X-Razorpay-Signature") String signature) {
+                                              @RequestHeader("X-Razorpay-Signature") String signature,
+                                              @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
         try {
             logger.info("Received Razorpay webhook");
 
@@ -281,11 +290,11 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body("Invalid signature");
             }
 
-            // Process webhook payload
-            // This is a basic implementation - you can extend based on your needs
-            logger.info("Webhook signature verified successfully");
-            
-            return ResponseEntity.ok("Webhook processed successfully");
+            // Gateway retries carry the same event ID, so each event is applied once
+            String eventKey = PaymentIdempotencyService.webhookKey(eventId, payload);
+            String outcome = paymentService.handleWebhookEvent(eventKey, payload);
+
+            return ResponseEntity.ok("Webhook processed successfully: " + outcome);
 
         } catch (Exception e) {
             logger.error("Error processing webhook: {}", e.getMessage(), e);
@@ -321,12 +330,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> createWalletTopup(@RequestBody Map<String, Object> request,
                                                                 Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             Double amount = Double.valueOf(request.get("amount").toString());
             
@@ -348,9 +357,10 @@ public class PaymentController {
             orderData.put("razorpayKeyId", razorpayService.getRazorpayKeyId());
             orderData.put("amount", amount);
             orderData.put("currency", "INR");
-            orderData.put("userEmail", user.getEmail());
-            orderData.put("userPhone", user.getPhone());
-            orderData.put("userName", user.getUsername());
+            UserSnapshot profile = identityResolver.getSnapshot(userId);
+            orderData.put("userEmail", profile.getEmail());
+            orderData.put("userPhone", profile.getPhone());
+            orderData.put("userName", profile.getUsername());
             orderData.put("receipt", receipt);
             
             response.put("data", orderData);
@@ -358,6 +368,8 @@ public class PaymentController {
             logger.info("Wallet top-up order created for user {}: ₹{}", user.getId(), amount);
             return ResponseEntity.ok(response);
 
+        } catch (PaymentGatewayClient.GatewayUnavailableException e) {
+            return gatewayUnavailableResponse(e);
         } catch (Exception e) {
             logger.error("Error creating wallet top-up order: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().body(createErrorResponse("Failed to create wallet top-up order: " + e.getMessage()));
@@ -372,12 +384,12 @@ public class PaymentController {
     public ResponseEntity<Map<String, Object>> verifyWalletTopup(@RequestBody Map<String, Object> request,
                                                                 Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             String razorpayPaymentId = request.get("razorpay_payment_id").toString();
             String razorpayOrderId = request.get("razorpay_order_id").toString();
@@ -422,6 +434,13 @@ public class PaymentController {
         return response;
     }
 
+    private ResponseEntity<Map<String, Object>> gatewayUnavailableResponse(PaymentGatewayClient.GatewayUnavailableException e) {
+        logger.warn("Payment gateway unavailable: {}", e.getReason());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(createErrorResponse(e.getMessage()));
+    }
+
     private Map<String, Object> mapPaymentToResponse(Payment payment) {
         Map<String, Object> paymentData = new HashMap<>();
         paymentData.put("id", payment.getId());
@@ -3,13 +3,15 @@ package com.example.demo.controller;
 import com.example.demo.dto.RideRequest;
 import com.example.demo.dto.BookingRequest;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.UserSnapshot;
 import com.example.demo.entity.Ride;
 import com.example.demo.entity.Booking;
-import com.example.demo.entity.User;
+import com.example.demo.service.RideChangedEvent;
 import com.example.demo.service.RideService;
 import com.example.demo.service.RideStatusService;
-import com.example.demo.repository.UserRepository;
+import com.example.demo.service.UserIdentityResolver;
 import com.example.demo.repository.RideRepository;
+import com.example.demo.security.ClientAddressResolver;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -18,6 +20,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +28,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.time.LocalDate;
 import java.util.List;
@@ -42,11 +46,17 @@ public class RideController {
     private RideService rideService;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserIdentityResolver identityResolver;
+
+    @Autowired
+    private ClientAddressResolver clientAddressResolver;
 
     @Autowired
     private RideRepository rideRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     // Simple in-memory notification system for real-time updates
     private static final Map<String, String> userNotifications = new ConcurrentHashMap<>();
 
@@ -63,16 +73,14 @@ public class RideController {
 
         try {
             String identifier = authentication.getName();
-            Optional<User> optionalDriver = userRepository.findByEmail(identifier);
-            if (optionalDriver.isEmpty()) optionalDriver = userRepository.findByUsername(identifier);
+            UserSnapshot driver = identityResolver.getSnapshot(identityResolver.resolveUserId(authentication));
 
-            if (optionalDriver.isEmpty() || (!optionalDriver.get().getRole().name().equals("DRIVER") &&
-                                              !optionalDriver.get().getRole().name().equals("BOTH"))) {
+            if (driver == null || !driver.isDriver()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(new ApiResponse(false, "Driver not found", null));
             }
 
-            Ride ride = rideService.postRide(request, optionalDriver.get().getEmail());
+            Ride ride = rideService.postRide(request, identifier);
             log.info("Ride posted successfully by {}", identifier);
             return ResponseEntity.ok(new ApiResponse(true, "Ride posted successfully", ride));
         } catch (Exception e) {
@@ -88,10 +96,13 @@ public class RideController {
             @RequestParam(required = false) String source,
             @RequestParam(required = false) String destination,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
-            @RequestParam(required = false) Integer seats) {
+            @RequestParam(required = false) Integer seats,
+            Authentication authentication,
+            HttpServletRequest httpRequest) {
 
         try {
-            List<Ride> rides = rideService.searchRides(source, destination, date, seats);
+            List<Ride> rides = rideService.searchRides(source, destination, date, seats,
+                    searcherKey(authentication, httpRequest));
             return ResponseEntity.ok(new ApiResponse(true, "Rides retrieved successfully", rides));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -101,7 +112,9 @@ public class RideController {
 
     // ==================== SEARCH RIDES (POST) ====================
     @PostMapping("/search")
-    public ResponseEntity<ApiResponse> searchRidesPost(@RequestBody Map<String, Object> searchRequest) {
+    public ResponseEntity<ApiResponse> searchRidesPost(@RequestBody Map<String, Object> searchRequest,
+                                                   Authentication authentication,
+                                                   HttpServletRequest httpRequest) {
         try {
             String source = (String) searchRequest.get("source");
             String destination = (String) searchRequest.get("destination");
@@ -114,7 +127,8 @@ public class RideController {
                 date = LocalDate.parse(dateStr);
             }
             
-            List<Ride> rides = rideService.searchRides(source, destination, date, seats);
+            List<Ride> rides = rideService.searchRides(source, destination, date, seats,
+                    searcherKey(authentication, httpRequest));
             return ResponseEntity.ok(new ApiResponse(true, "Rides retrieved successfully", rides));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -128,10 +142,13 @@ public class RideController {
             @RequestParam(required = false) String source,
             @RequestParam(required = false) String destination,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
-            @RequestParam(required = false) Integer seats) {
+            @RequestParam(required = false) Integer seats,
+            Authentication authentication,
+            HttpServletRequest httpRequest) {
 
         try {
-            List<Map<String, Object>> ridesWithMatches = rideService.searchRidesWithMatchDetails(source, destination, date, seats);
+            List<Map<String, Object>> ridesWithMatches = rideService.searchRidesWithMatchDetails(source, destination, date, seats,
+                    searcherKey(authentication, httpRequest));
             
             Map<String, Object> response = new HashMap<>();
             response.put("rides", ridesWithMatches);
@@ -155,7 +172,9 @@ public class RideController {
     }
 
     @PostMapping("/search/enhanced")
-    public ResponseEntity<ApiResponse> searchRidesEnhancedPost(@RequestBody Map<String, Object> searchRequest) {
+    public ResponseEntity<ApiResponse> searchRidesEnhancedPost(@RequestBody Map<String, Object> searchRequest,
+                                                   Authentication authentication,
+                                                   HttpServletRequest httpRequest) {
         try {
             String source = (String) searchRequest.get("source");
             String destination = (String) searchRequest.get("destination");
@@ -168,7 +187,8 @@ public class RideController {
                 date = LocalDate.parse(dateStr);
             }
             
-            List<Map<String, Object>> ridesWithMatches = rideService.searchRidesWithMatchDetails(source, destination, date, seats);
+            List<Map<String, Object>> ridesWithMatches = rideService.searchRidesWithMatchDetails(source, destination, date, seats,
+                    searcherKey(authentication, httpRequest));
             
             Map<String, Object> response = new HashMap<>();
             response.put("rides", ridesWithMatches);
@@ -187,6 +207,12 @@ public class RideController {
         }
     }
 
+    // Who is searching, for surge demand: the user when signed in, otherwise the client address
+    private String searcherKey(Authentication authentication, HttpServletRequest httpRequest) {
+        Long userId = identityResolver.resolveUserId(authentication);
+        return userId != null ? "u:" + userId : "ip:" + clientAddressResolver.resolve(httpRequest);
+    }
+
     // ==================== BOOK A RIDE ====================
     @PostMapping("/{id}/book")
     public ResponseEntity<ApiResponse> bookRide(@PathVariable Long id,
@@ -329,15 +355,13 @@ public class RideController {
     public ResponseEntity<ApiResponse> getMyRides(Authentication authentication) {
         try {
             String identifier = authentication.getName();
-            Optional<User> optionalDriver = userRepository.findByEmail(identifier);
-            if (optionalDriver.isEmpty()) optionalDriver = userRepository.findByUsername(identifier);
 
-            if (optionalDriver.isEmpty()) {
+            if (identityResolver.resolveUserId(authentication) == null) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(new ApiResponse(false, "Driver not found", null));
             }
 
-            List<Ride> rides = rideService.getDriverRides(optionalDriver.get().getEmail());
+            List<Ride> rides = rideService.getDriverRides(identifier);
             return ResponseEntity.ok(new ApiResponse(true, "Your rides retrieved", rides));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -434,6 +458,8 @@ public class RideController {
             
             // Save updated ride
             Ride updatedRide = rideRepository.save(ride);
+            eventPublisher.publishEvent(new RideChangedEvent(updatedRide, "CANCELLED".equals(updatedRide.getStatus())
+                    ? RideChangedEvent.Change.CANCELLED : RideChangedEvent.Change.UPDATED));
             
             log.info("Ride {} updated successfully by {}", rideId, driverEmail);
             return ResponseEntity.ok(new ApiResponse(true, "Ride updated successfully", updatedRide));
@@ -477,18 +503,15 @@ public class RideController {
     public ResponseEntity<ApiResponse> getDriverBookings(Authentication authentication) {
         try {
             String driverEmail = authentication.getName();
-            Optional<User> driverOpt = userRepository.findByEmail(driverEmail);
-            if (driverOpt.isEmpty()) driverOpt = userRepository.findByUsername(driverEmail);
+            Long driverId = identityResolver.resolveUserId(authentication);
 
-            if (driverOpt.isEmpty()) {
+            if (driverId == null) {
                 return ResponseEntity.badRequest()
                         .body(new ApiResponse(false, "Driver not found", null));
             }
-
-            User driver = driverOpt.get();
             
             // Get all bookings for this driver's rides
-            List<Booking> driverBookings = rideService.getDriverBookings(driver.getId());
+            List<Booking> driverBookings = rideService.getDriverBookings(driverId);
             
             log.info("Found {} bookings for driver: {}", driverBookings.size(), driverEmail);
             return ResponseEntity.ok(new ApiResponse(true, "Driver bookings retrieved successfully", driverBookings));
@@ -4,7 +4,7 @@ import com.example.demo.entity.User;
 import com.example.demo.entity.Wallet;
 import com.example.demo.entity.WalletTransaction;
 import com.example.demo.service.WalletService;
-import com.example.demo.service.UserService;
+import com.example.demo.service.UserIdentityResolver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -28,7 +28,7 @@ public class WalletController {
     private WalletService walletService;
 
     @Autowired
-    private UserService userService;
+    private UserIdentityResolver identityResolver;
 
     /**
      * Get wallet balance and details
@@ -37,12 +37,12 @@ public class WalletController {
     @GetMapping("/balance")
     public ResponseEntity<Map<String, Object>> getWalletBalance(Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             Optional<Wallet> walletOpt = walletService.getWalletByUser(user);
             
@@ -92,12 +92,12 @@ public class WalletController {
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getWalletStats(Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             WalletService.WalletStats stats = walletService.getWalletStats(user);
 
@@ -131,12 +131,12 @@ public class WalletController {
             @RequestParam(defaultValue = "50") int limit,
             Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             List<WalletTransaction> transactions;
             if (limit > 0 && limit <= 100) {
@@ -167,11 +167,12 @@ public class WalletController {
                                                                 Authentication authentication) {
         try {
             String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             Double amount = Double.valueOf(request.get("amount").toString());
             String description = request.getOrDefault("description", "Withdrawal request").toString();
@@ -203,12 +204,12 @@ public class WalletController {
     @GetMapping("/earnings")
     public ResponseEntity<Map<String, Object>> getEarningsSummary(Authentication authentication) {
         try {
-            String username = authentication.getName();
-            User user = userService.findByUsername(username);
+            Long userId = identityResolver.resolveUserId(authentication);
             
-            if (user == null) {
+            if (userId == null) {
                 return ResponseEntity.badRequest().body(createErrorResponse("User not found"));
             }
+            User user = identityResolver.getReference(userId);
 
             List<WalletTransaction> earnings = walletService.getTransactionHistoryByType(user, 
                 com.example.demo.entity.TransactionType.CREDIT);
@@ -4,6 +4,7 @@ import com.example.demo.dto.NotificationResponse;
 import com.example.demo.entity.User;
 import com.example.demo.service.NotificationService;
 import com.example.demo.service.UserService;
+import com.example.demo.service.WebSocketDispatchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -28,6 +29,9 @@ public class WebSocketNotificationController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private WebSocketDispatchService dispatchService;
+
     // Handle user connection and send initial notifications
     @MessageMapping("/notifications.connect")
     public void connectUser(@Payload String username, Principal principal) {
@@ -62,7 +66,7 @@ public class WebSocketNotificationController {
 
     // Send notification to specific user
     public void sendNotificationToUser(String username, NotificationResponse notification) {
-        messagingTemplate.convertAndSendToUser(
+        dispatchService.sendToUser(
             username,
             "/queue/notifications",
             notification
@@ -71,7 +75,8 @@ public class WebSocketNotificationController {
 
     // Send unread count update to specific user
     public void sendUnreadCountToUser(String username, Long unreadCount) {
-        messagingTemplate.convertAndSendToUser(
+        // Coalesced: only the latest count is delivered if several are queued
+        dispatchService.sendToUser(
             username,
             "/queue/unread-count",
             unreadCount
@@ -80,15 +85,17 @@ public class WebSocketNotificationController {
 
     // Broadcast notification to all users (for system-wide announcements)
     public void broadcastNotification(NotificationResponse notification) {
-        messagingTemplate.convertAndSend("/topic/notifications", notification);
+        dispatchService.sendToTopic("/topic/notifications", notification);
     }
 
     // Send ride status update to specific users (driver and passengers)
     public void sendRideStatusUpdate(String username, Map<String, Object> rideStatusUpdate) {
-        messagingTemplate.convertAndSendToUser(
+        // Coalesced per ride so a burst of transitions delivers only the latest status
+        dispatchService.sendToUser(
             username,
             "/queue/ride-status-updates",
-            rideStatusUpdate
+            rideStatusUpdate,
+            "/queue/ride-status-updates:" + rideStatusUpdate.get("rideId")
         );
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Min;
 
+import java.time.LocalTime;
+
 public class FareRequest {
 
     @NotBlank(message = "Source location is required")
@@ -21,6 +23,8 @@ public class FareRequest {
 
     private Double pricePerKm; // Optional - if not provided, use default rate
 
+    private LocalTime departureTime; // Optional - time of travel for time-of-day pricing, now if not provided
+
     // Default constructor
     public FareRequest() {}
 
@@ -81,6 +85,14 @@ public class FareRequest {
         this.pricePerKm = pricePerKm;
     }
 
+    public LocalTime getDepartureTime() {
+        return departureTime;
+    }
+
+    public void setDepartureTime(LocalTime departureTime) {
+        this.departureTime = departureTime;
+    }
+
     @Override
     public String toString() {
         return "FareRequest{" +
@@ -89,6 +101,7 @@ public class FareRequest {
                 ", passengers=" + passengers +
                 ", distance=" + distance +
                 ", pricePerKm=" + pricePerKm +
+                ", departureTime=" + departureTime +
                 '}';
     }
 }
\ No newline at end of file
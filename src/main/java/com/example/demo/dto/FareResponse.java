@@ -66,10 +66,12 @@ public class FareResponse {
         private Double baseFare;
         private Double pricePerKm;
         private Double distanceFare; // pricePerKm * distance
-        private Double totalFare; // baseFare + distanceFare
+        private Double totalFare; // (baseFare + distanceFare) * fareMultiplier * surgeMultiplier
         private Double farePerPassenger; // totalFare / passengers
         private Integer estimatedTravelTime; // in minutes
         private String calculationMethod; // "GOOGLE_MAPS" or "FALLBACK"
+        private Double fareMultiplier = 1.0; // time-of-day pricing applied to the fare
+        private Double surgeMultiplier = 1.0; // demand surge at the pickup applied to the fare
 
         // Default constructor
         public FareDetails() {}
@@ -180,6 +182,22 @@ public class FareResponse {
             this.calculationMethod = calculationMethod;
         }
 
+        public Double getFareMultiplier() {
+            return fareMultiplier;
+        }
+
+        public void setFareMultiplier(Double fareMultiplier) {
+            this.fareMultiplier = fareMultiplier;
+        }
+
+        public Double getSurgeMultiplier() {
+            return surgeMultiplier;
+        }
+
+        public void setSurgeMultiplier(Double surgeMultiplier) {
+            this.surgeMultiplier = surgeMultiplier;
+        }
+
         @Override
         public String toString() {
             return "FareDetails{" +
@@ -194,6 +212,8 @@ public class FareResponse {
                     ", farePerPassenger=" + farePerPassenger +
                     ", estimatedTravelTime=" + estimatedTravelTime +
                     ", calculationMethod='" + calculationMethod + '\'' +
+                    ", fareMultiplier=" + fareMultiplier +
+                    ", surgeMultiplier=" + surgeMultiplier +
                     '}';
         }
     }
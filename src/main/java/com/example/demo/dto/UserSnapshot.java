@@ -0,0 +1,58 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.User;
+import com.example.demo.enums.Role;
+
+/**
+ * Immutable copy of the user fields request handlers read (identity, role, contact and
+ * vehicle details), so they can be cached without holding on to a JPA entity.
+ */
+public class UserSnapshot {
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String name;
+    private final String phone;
+    private final Role role;
+    private final String vehicleModel;
+    private final String vehiclePlate;
+    private final Integer vehicleCapacity;
+    private final boolean active;
+
+    public UserSnapshot(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.name = user.getName();
+        this.phone = user.getPhone();
+        this.role = user.getRole();
+        this.vehicleModel = user.getVehicleModel();
+        this.vehiclePlate = user.getVehiclePlate();
+        this.vehicleCapacity = user.getVehicleCapacity();
+        this.active = !Boolean.FALSE.equals(user.getEnabled())
+                && !Boolean.FALSE.equals(user.getAccountNonLocked())
+                && !Boolean.TRUE.equals(user.getBlocked());
+    }
+
+    public boolean isDriver() {
+        return role == Role.DRIVER || role == Role.BOTH;
+    }
+
+    /**
+     * Enabled, not locked and not blocked
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public String getName() { return name; }
+    public String getPhone() { return phone; }
+    public Role getRole() { return role; }
+    public String getVehicleModel() { return vehicleModel; }
+    public String getVehiclePlate() { return vehiclePlate; }
+    public Integer getVehicleCapacity() { return vehicleCapacity; }
+}
@@ -7,5 +7,12 @@ public enum TransactionType {
     REFUND,         // Refund to passenger (if needed)
     COMMISSION,     // Platform commission deduction
     BONUS,          // Bonus or incentive added
-    PENALTY         // Penalty deduction
+    PENALTY;        // Penalty deduction
+
+    /**
+     * Whether an entry of this type adds to the wallet balance (the rest take from it)
+     */
+    public boolean isCredit() {
+        return this == CREDIT || this == BONUS;
+    }
 }
\ No newline at end of file
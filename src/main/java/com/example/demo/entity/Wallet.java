@@ -15,6 +15,20 @@ public class Wallet {
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
+    // Authoritative amounts, in paise. Only changed by the atomic UPDATEs in WalletRepository.
+    @Column(name = "balance_paise", nullable = false)
+    private Long balancePaise = 0L;
+
+    @Column(name = "total_earnings_paise", nullable = false)
+    private Long totalEarningsPaise = 0L;
+
+    @Column(name = "total_withdrawn_paise", nullable = false)
+    private Long totalWithdrawnPaise = 0L;
+
+    @Column(name = "pending_paise", nullable = false)
+    private Long pendingPaise = 0L;
+
+    // Rupee mirrors of the paise columns, written by the same statements, for reports and older clients
     @Column(name = "balance", nullable = false)
     private Double balance = 0.0;
 
@@ -61,40 +75,36 @@ public class Wallet {
         this.user = user;
     }
 
-    public Double getBalance() {
-        return balance;
+    public Long getBalancePaise() {
+        return balancePaise;
     }
 
-    public void setBalance(Double balance) {
-        this.balance = balance;
-        this.updatedAt = LocalDateTime.now();
+    public Long getTotalEarningsPaise() {
+        return totalEarningsPaise;
     }
 
-    public Double getTotalEarnings() {
-        return totalEarnings;
+    public Long getTotalWithdrawnPaise() {
+        return totalWithdrawnPaise;
     }
 
-    public void setTotalEarnings(Double totalEarnings) {
-        this.totalEarnings = totalEarnings;
-        this.updatedAt = LocalDateTime.now();
+    public Long getPendingPaise() {
+        return pendingPaise;
     }
 
-    public Double getTotalWithdrawn() {
-        return totalWithdrawn;
+    public Double getBalance() {
+        return balance;
     }
 
-    public void setTotalWithdrawn(Double totalWithdrawn) {
-        this.totalWithdrawn = totalWithdrawn;
-        this.updatedAt = LocalDateTime.now();
+    public Double getTotalEarnings() {
+        return totalEarnings;
     }
 
-    public Double getPendingAmount() {
-        return pendingAmount;
+    public Double getTotalWithdrawn() {
+        return totalWithdrawn;
     }
 
-    public void setPendingAmount(Double pendingAmount) {
-        this.pendingAmount = pendingAmount;
-        this.updatedAt = LocalDateTime.now();
+    public Double getPendingAmount() {
+        return pendingAmount;
     }
 
     public LocalDateTime getCreatedAt() {
@@ -114,20 +124,8 @@ public class Wallet {
     }
 
     // Helper methods
-    public void addEarnings(Double amount) {
-        this.balance += amount;
-        this.totalEarnings += amount;
-        this.updatedAt = LocalDateTime.now();
-    }
-
-    public void deductAmount(Double amount) {
-        this.balance -= amount;
-        this.totalWithdrawn += amount;
-        this.updatedAt = LocalDateTime.now();
-    }
-
     public Double getAvailableBalance() {
-        return this.balance - this.pendingAmount;
+        return (this.balancePaise - this.pendingPaise) / 100.0;
     }
 
     @Override
@@ -135,7 +133,7 @@ public class Wallet {
         return "Wallet{" +
                 "id=" + id +
                 ", userId=" + (user != null ? user.getId() : null) +
-                ", balance=" + balance +
+                ", balancePaise=" + balancePaise +
                 ", totalEarnings=" + totalEarnings +
                 ", totalWithdrawn=" + totalWithdrawn +
                 ", pendingAmount=" + pendingAmount +
@@ -0,0 +1,49 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of a wallet's balance at a point in its ledger. The balance now must equal the
+ * latest snapshot plus the ledger entries after {@code lastTransactionId}, so reconciliation
+ * only has to sum entries since the previous snapshot.
+ */
+@Entity
+@Table(name = "wallet_snapshots",
+       indexes = @Index(name = "idx_wallet_snapshots_wallet", columnList = "wallet_id, id"))
+public class WalletSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "wallet_id", nullable = false)
+    private Long walletId;
+
+    // Highest wallet_transactions.id included in the balance (0 = none)
+    @Column(name = "last_transaction_id", nullable = false)
+    private Long lastTransactionId;
+
+    @Column(name = "balance_paise", nullable = false)
+    private Long balancePaise;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public WalletSnapshot() {}
+
+    public WalletSnapshot(Long walletId, Long lastTransactionId, Long balancePaise) {
+        this.walletId = walletId;
+        this.lastTransactionId = lastTransactionId;
+        this.balancePaise = balancePaise;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getWalletId() { return walletId; }
+    public Long getLastTransactionId() { return lastTransactionId; }
+    public Long getBalancePaise() { return balancePaise; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -3,8 +3,11 @@ package com.example.demo.entity;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
+// Append-only ledger entry; amounts are positive and the type gives the direction
 @Entity
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions", indexes = {
+    @Index(name = "idx_wallet_transactions_reference", columnList = "reference_id")
+})
 public class WalletTransaction {
 
     @Id
@@ -19,6 +22,16 @@ public class WalletTransaction {
     @Column(name = "transaction_type", nullable = false)
     private TransactionType transactionType;
 
+    @Column(name = "amount_paise", nullable = false)
+    private Long amountPaise = 0L;
+
+    @Column(name = "balance_before_paise", nullable = false)
+    private Long balanceBeforePaise = 0L;
+
+    @Column(name = "balance_after_paise", nullable = false)
+    private Long balanceAfterPaise = 0L;
+
+    // Rupee mirrors of the paise columns
     @Column(name = "amount", nullable = false)
     private Double amount;
 
@@ -49,16 +62,19 @@ public class WalletTransaction {
         this.createdAt = LocalDateTime.now();
     }
 
-    public WalletTransaction(Wallet wallet, TransactionType transactionType, Double amount, 
-                           String description, String referenceId, Double balanceBefore, Double balanceAfter) {
+    public WalletTransaction(Wallet wallet, TransactionType transactionType, long amountPaise,
+                           String description, String referenceId, long balanceBeforePaise, long balanceAfterPaise) {
         this();
         this.wallet = wallet;
         this.transactionType = transactionType;
-        this.amount = amount;
+        this.amountPaise = amountPaise;
+        this.amount = amountPaise / 100.0;
         this.description = description;
         this.referenceId = referenceId;
-        this.balanceBefore = balanceBefore;
-        this.balanceAfter = balanceAfter;
+        this.balanceBeforePaise = balanceBeforePaise;
+        this.balanceBefore = balanceBeforePaise / 100.0;
+        this.balanceAfterPaise = balanceAfterPaise;
+        this.balanceAfter = balanceAfterPaise / 100.0;
         this.processedAt = LocalDateTime.now();
     }
 
@@ -87,6 +103,18 @@ public class WalletTransaction {
         this.transactionType = transactionType;
     }
 
+    public Long getAmountPaise() {
+        return amountPaise;
+    }
+
+    public Long getBalanceBeforePaise() {
+        return balanceBeforePaise;
+    }
+
+    public Long getBalanceAfterPaise() {
+        return balanceAfterPaise;
+    }
+
     public Double getAmount() {
         return amount;
     }
@@ -1,9 +1,17 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Booking;
+import com.example.demo.entity.PaymentStatus;
+import com.example.demo.enums.BookingStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -37,6 +45,12 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     // Find bookings for a ride ordered by booking date (newest first)
     List<Booking> findByRideIdOrderByBookedAtDesc(Long rideId);
 
+    // Ride id and passenger username for every booking of the given rides in a status
+    @Query("SELECT b.ride.id, p.username FROM Booking b JOIN b.passenger p " +
+           "WHERE b.ride.id IN :rideIds AND b.status = :status")
+    List<Object[]> findPassengerUsernamesByRideIds(@Param("rideIds") List<Long> rideIds,
+                                                  @Param("status") com.example.demo.enums.BookingStatus status);
+
     // ---------------- EXISTENCE CHECK ----------------
 
     // Check if passenger already has an active booking for a ride
@@ -44,4 +58,20 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     // Find bookings by ride and passenger (for review system)
     List<Booking> findByRideAndPassenger(com.example.demo.entity.Ride ride, com.example.demo.entity.User passenger);
+
+    // ---------------- PAYMENT EXPIRY ----------------
+
+    // Cancel the pending bookings behind a batch of expired payments, unless the booking
+    // still has another live (pending or successful) payment
+    @Modifying
+    @Transactional
+    @Query("UPDATE Booking b SET b.status = :cancelled, b.cancelledAt = :now " +
+           "WHERE b.status = :pending " +
+           "AND b.id IN (SELECT p.booking.id FROM Payment p WHERE p.id IN :paymentIds) " +
+           "AND NOT EXISTS (SELECT p2.id FROM Payment p2 WHERE p2.booking = b AND p2.status IN :liveStatuses)")
+    int releasePendingBookingsForPayments(@Param("paymentIds") List<Long> paymentIds,
+                                          @Param("pending") BookingStatus pending,
+                                          @Param("cancelled") BookingStatus cancelled,
+                                          @Param("liveStatuses") Collection<PaymentStatus> liveStatuses,
+                                          @Param("now") LocalDateTime now);
 }
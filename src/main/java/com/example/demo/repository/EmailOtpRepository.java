@@ -7,8 +7,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -28,10 +30,16 @@ public interface EmailOtpRepository extends JpaRepository<EmailOtp, Long> {
      */
     Optional<EmailOtp> findByEmailAndOtpAndTypeAndVerifiedFalse(String email, String otp, OtpType type);
 
+    /**
+     * Find all unused, unexpired OTPs (restored into the in-memory store on startup)
+     */
+    List<EmailOtp> findByVerifiedFalseAndExpiresAtAfterOrderByCreatedAtAsc(LocalDateTime now);
+
     /**
      * Delete expired OTPs (cleanup)
      */
     @Modifying
+    @Transactional
     @Query("DELETE FROM EmailOtp e WHERE e.expiresAt < :now")
     void deleteExpiredOtps(@Param("now") LocalDateTime now);
 
@@ -2,11 +2,15 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Notification;
 import com.example.demo.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -24,4 +28,19 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findByUserAndIsReadFalseOrderByCreatedAtDesc(User user);
     
     List<Notification> findTop10ByUserOrderByCreatedAtDesc(User user);
-}
\ No newline at end of file
+
+    // ---------------- RETENTION ----------------
+
+    @Query("SELECT n.id FROM Notification n WHERE n.isRead = true AND n.createdAt < :cutoff ORDER BY n.id")
+    List<Long> findReadNotificationIdsOlderThan(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // Flat rows for archiving: id, user id, title, message, type, created at, ride id, booking id
+    @Query("SELECT n.id, n.user.id, n.title, n.message, n.type, n.createdAt, n.rideId, n.bookingId " +
+           "FROM Notification n WHERE n.id IN :ids ORDER BY n.id")
+    List<Object[]> findArchiveRowsByIds(@Param("ids") List<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,14 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.PaymentEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
+
+    /**
+     * Check whether an event with this idempotency key has already been applied
+     */
+    boolean existsByIdempotencyKey(String idempotencyKey);
+}
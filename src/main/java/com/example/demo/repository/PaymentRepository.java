@@ -1,13 +1,17 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Payment;
+import com.example.demo.entity.PaymentMethod;
 import com.example.demo.entity.PaymentStatus;
 import com.example.demo.entity.User;
 import com.example.demo.entity.Booking;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -58,11 +62,37 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     );
 
     /**
-     * Find pending payments older than specified time (for cleanup)
+     * IDs of pending payments older than specified time, one page at a time (for cleanup)
      */
-    @Query("SELECT p FROM Payment p WHERE p.status IN ('CREATED', 'PENDING') " +
+    @Query("SELECT p.id FROM Payment p WHERE p.status IN ('CREATED', 'PENDING') " +
            "AND p.createdAt < :cutoffTime")
-    List<Payment> findPendingPaymentsOlderThan(@Param("cutoffTime") LocalDateTime cutoffTime);
+    List<Long> findStalePendingPaymentIds(@Param("cutoffTime") LocalDateTime cutoffTime, Pageable pageable);
+
+    /**
+     * Fail a batch of payments that are still pending; ones settled meanwhile are left alone
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Payment p SET p.status = :failed, p.failureReason = :reason, p.updatedAt = :now " +
+           "WHERE p.id IN :ids AND p.status IN ('CREATED', 'PENDING')")
+    int expirePendingPayments(@Param("ids") List<Long> ids,
+                              @Param("failed") PaymentStatus failed,
+                              @Param("reason") String reason,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * Successful payments whose driver credit never reached the wallet ledger, with their ride
+     * and driver, one page at a time in ID order
+     */
+    @Query("SELECT p FROM Payment p JOIN FETCH p.booking b JOIN FETCH b.ride r JOIN FETCH r.driver " +
+           "WHERE p.status = 'SUCCESS' AND p.id > :afterId AND p.createdAt >= :since " +
+           "AND p.paidAt < :settledBefore AND p.razorpayPaymentId IS NOT NULL " +
+           "AND NOT EXISTS (SELECT wt.id FROM WalletTransaction wt WHERE wt.referenceId = p.razorpayPaymentId) " +
+           "ORDER BY p.id")
+    List<Payment> findPaymentsMissingDriverCredit(@Param("afterId") Long afterId,
+                                                  @Param("since") LocalDateTime since,
+                                                  @Param("settledBefore") LocalDateTime settledBefore,
+                                                  Pageable pageable);
 
     /**
      * Get total amount paid by user
@@ -99,4 +129,12 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     @Query("SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.status = :status AND p.createdAt >= :date")
     Double sumByStatusAndCreatedAtAfter(@Param("status") PaymentStatus status, @Param("date") LocalDateTime date);
+
+    /**
+     * Fill in the payment method once the gateway reports it (no entity load/merge)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Payment p SET p.paymentMethod = :method WHERE p.id = :id")
+    int updatePaymentMethod(@Param("id") Long id, @Param("method") PaymentMethod method);
 }
@@ -1,12 +1,16 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Ride;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -57,6 +61,14 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     @Query("SELECT r FROM Ride r WHERE r.date = :date AND r.availableSeats >= :seats AND r.status = 'ACTIVE' ORDER BY r.date, r.time")
     List<Ride> findByDateAndAvailableSeatsGreaterThanEqual(@Param("date") LocalDate date, @Param("seats") Integer seats);
 
+    // ---------------- RIDE INDEX ----------------
+    // Every bookable ride in a date window, with drivers, for the in-memory index
+    @Query("SELECT r FROM Ride r JOIN FETCH r.driver WHERE r.status = 'ACTIVE' AND r.date BETWEEN :from AND :to ORDER BY r.date, r.time")
+    List<Ride> findActiveRidesBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT COUNT(r) FROM Ride r WHERE r.status = 'ACTIVE' AND r.availableSeats > 0 AND r.date > :date")
+    long countAvailableRidesAfter(@Param("date") LocalDate date);
+
     // ---------------- STATUS MANAGEMENT ----------------
     List<Ride> findByStatus(String status);
     
@@ -65,6 +77,22 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     @Query("SELECT r FROM Ride r WHERE r.status = 'ACTIVE' AND (r.date < :currentDate OR (r.date = :currentDate AND r.time < :currentTime))")
     List<Ride> findPastActiveRides(@Param("currentDate") LocalDate currentDate, @Param("currentTime") java.time.LocalTime currentTime);
 
+    // IDs only, one chunk at a time, for the set-based completion sweep
+    @Query("SELECT r.id FROM Ride r WHERE r.status = 'ACTIVE' AND (r.date < :cutoffDate OR (r.date = :cutoffDate AND r.time < :cutoffTime)) ORDER BY r.id")
+    List<Long> findPastActiveRideIds(@Param("cutoffDate") LocalDate cutoffDate,
+                                     @Param("cutoffTime") java.time.LocalTime cutoffTime,
+                                     Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Ride r SET r.status = 'COMPLETED', r.updatedAt = :now WHERE r.id IN :ids AND r.status = 'ACTIVE'")
+    int completeActiveRides(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    // Ride id, source, destination, driver name, driver username for status broadcasts
+    @Query("SELECT r.id, r.source, r.destination, d.name, d.username FROM Ride r JOIN r.driver d " +
+           "WHERE r.id IN :ids AND r.status = :status")
+    List<Object[]> findBroadcastDetails(@Param("ids") List<Long> ids, @Param("status") String status);
+
     // ---------------- DASHBOARD QUERIES ----------------
     @Query("SELECT r FROM Ride r WHERE r.status = 'ACTIVE' AND r.availableSeats > 0 AND r.date >= :currentDate ORDER BY r.date ASC, r.time ASC")
     List<Ride> findAllAvailableRides(@Param("currentDate") LocalDate currentDate);
@@ -80,4 +108,10 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
     
     @Query("SELECT r FROM Ride r ORDER BY r.createdAt DESC")
     List<Ride> findTop5ByOrderByCreatedAtDesc();
+
+    /**
+     * Most offered routes as [source, destination] pairs, most rides first
+     */
+    @Query("SELECT r.source, r.destination FROM Ride r GROUP BY r.source, r.destination ORDER BY COUNT(r) DESC")
+    List<Object[]> findMostCommonRoutes(Pageable pageable);
 }
@@ -2,11 +2,17 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Wallet;
 import com.example.demo.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -63,4 +69,68 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
      */
     @Query("SELECT COUNT(w), COALESCE(SUM(w.balance), 0), COALESCE(SUM(w.totalEarnings), 0), COALESCE(SUM(w.totalWithdrawn), 0) FROM Wallet w")
     Object[] getWalletStatistics();
-}
\ No newline at end of file
+
+    // ---------------- LEDGER BALANCE UPDATES ----------------
+    // Balances only change through these single-statement updates, so concurrent credits and
+    // debits serialize on the row lock instead of overwriting each other. The rupee mirrors
+    // are assigned before their paise columns: MySQL applies SET clauses left to right, other
+    // databases all at once, and this order reads the old paise value on both.
+
+    /**
+     * Add earnings to a wallet
+     * @return 1 if the wallet exists
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Wallet w SET w.balance = (w.balancePaise + :amount) / 100.0, " +
+           "w.totalEarnings = (w.totalEarningsPaise + :amount) / 100.0, " +
+           "w.balancePaise = w.balancePaise + :amount, " +
+           "w.totalEarningsPaise = w.totalEarningsPaise + :amount, " +
+           "w.updatedAt = :now WHERE w.id = :id")
+    int credit(@Param("id") Long id, @Param("amount") long amountPaise, @Param("now") LocalDateTime now);
+
+    /**
+     * Withdraw from a wallet if the available balance covers it
+     * @return 1 if applied, 0 if the balance is insufficient (or the wallet doesn't exist)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Wallet w SET w.balance = (w.balancePaise - :amount) / 100.0, " +
+           "w.totalWithdrawn = (w.totalWithdrawnPaise + :amount) / 100.0, " +
+           "w.balancePaise = w.balancePaise - :amount, " +
+           "w.totalWithdrawnPaise = w.totalWithdrawnPaise + :amount, " +
+           "w.updatedAt = :now WHERE w.id = :id AND w.balancePaise - w.pendingPaise >= :amount")
+    int debit(@Param("id") Long id, @Param("amount") long amountPaise, @Param("now") LocalDateTime now);
+
+    /**
+     * Current balance in paise; inside the updating transaction this is the value just written
+     */
+    @Query("SELECT w.balancePaise FROM Wallet w WHERE w.id = :id")
+    Long findBalancePaise(@Param("id") Long id);
+
+    @Query("SELECT w.id FROM Wallet w WHERE w.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+
+    /**
+     * Lock a wallet row so no ledger entry can be added while it is being snapshotted
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.id = :id")
+    Optional<Wallet> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT w.id FROM Wallet w WHERE w.id > :afterId ORDER BY w.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Fill the paise columns of wallets written before they existed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Wallet w SET w.balancePaise = CAST(ROUND(w.balance * 100, 0) AS Long), " +
+           "w.totalEarningsPaise = CAST(ROUND(w.totalEarnings * 100, 0) AS Long), " +
+           "w.totalWithdrawnPaise = CAST(ROUND(w.totalWithdrawn * 100, 0) AS Long), " +
+           "w.pendingPaise = CAST(ROUND(w.pendingAmount * 100, 0) AS Long) " +
+           "WHERE w.balancePaise = 0 AND w.totalEarningsPaise = 0 AND w.totalWithdrawnPaise = 0 AND w.pendingPaise = 0 " +
+           "AND (w.balance <> 0 OR w.totalEarnings <> 0 OR w.totalWithdrawn <> 0 OR w.pendingAmount <> 0)")
+    int backfillPaise();
+}
@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.WalletSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface WalletSnapshotRepository extends JpaRepository<WalletSnapshot, Long> {
+
+    /**
+     * Latest snapshot of a wallet
+     */
+    Optional<WalletSnapshot> findFirstByWalletIdOrderByIdDesc(Long walletId);
+}
@@ -5,11 +5,14 @@ import com.example.demo.entity.Wallet;
 import com.example.demo.entity.TransactionType;
 import com.example.demo.entity.TransactionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -77,4 +80,35 @@ public interface WalletTransactionRepository extends JpaRepository<WalletTransac
      * Check if transaction exists for reference ID
      */
     boolean existsByReferenceId(String referenceId);
-}
\ No newline at end of file
+
+    /**
+     * Those of the given reference IDs that already have a ledger entry
+     */
+    @Query("SELECT wt.referenceId FROM WalletTransaction wt WHERE wt.referenceId IN :referenceIds")
+    List<String> findExistingReferenceIds(@Param("referenceIds") Collection<String> referenceIds);
+
+    long countByWallet(Wallet wallet);
+
+    /**
+     * Net effect on the balance, in paise, of a wallet's completed entries after a given entry ID
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN wt.transactionType IN :creditTypes THEN wt.amountPaise ELSE -wt.amountPaise END), 0) " +
+           "FROM WalletTransaction wt WHERE wt.wallet.id = :walletId AND wt.id > :afterId AND wt.status = 'COMPLETED'")
+    Long sumLedgerPaise(@Param("walletId") Long walletId,
+                        @Param("afterId") Long afterId,
+                        @Param("creditTypes") Collection<TransactionType> creditTypes);
+
+    @Query("SELECT COALESCE(MAX(wt.id), 0) FROM WalletTransaction wt WHERE wt.wallet.id = :walletId")
+    Long findLastTransactionId(@Param("walletId") Long walletId);
+
+    /**
+     * Fill the paise columns of entries written before they existed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WalletTransaction wt SET wt.amountPaise = CAST(ROUND(wt.amount * 100, 0) AS Long), " +
+           "wt.balanceBeforePaise = CAST(ROUND(wt.balanceBefore * 100, 0) AS Long), " +
+           "wt.balanceAfterPaise = CAST(ROUND(wt.balanceAfter * 100, 0) AS Long) " +
+           "WHERE wt.amountPaise = 0 AND wt.amount <> 0")
+    int backfillPaise();
+}
@@ -0,0 +1,28 @@
+package com.example.demo.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The address of the client behind a request. Behind a reverse proxy every request comes
+ * from the proxy, so when {@code rate-limit.trust-forwarded-for} is set the first address in
+ * X-Forwarded-For is used instead; only set it when the proxy overwrites that header.
+ */
+@Component
+public class ClientAddressResolver {
+
+    @Value("${rate-limit.trust-forwarded-for:false}")
+    private boolean trustForwardedFor = false;
+
+    public String resolve(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -1,29 +1,29 @@
 package com.example.demo.security;
 
 import com.example.demo.entity.User;
-import com.example.demo.enums.Role;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
+    private final JwtTokenVerifier tokenVerifier;
+    private final RoutePermissionTable routeTable;
+    private final WebAuthenticationDetailsSource detailsSource = new WebAuthenticationDetailsSource();
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
-        this.jwtUtil = jwtUtil;
+    public JwtAuthenticationFilter(JwtTokenVerifier tokenVerifier, RoutePermissionTable routeTable) {
+        this.tokenVerifier = tokenVerifier;
+        this.routeTable = routeTable;
     }
 
     @Override
@@ -32,24 +32,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     @NonNull FilterChain filterChain)
             throws ServletException, IOException {
 
-        String path = request.getRequestURI();
-
-        // ✅ Skip JWT validation ONLY for public auth endpoints
-        // These endpoints do NOT need authentication:
-        if (path.equals("/api/auth/register") ||
-            path.equals("/api/auth/login") ||
-            path.equals("/api/auth/create-test-user") ||
-            path.equals("/api/auth/test") ||
-            path.equals("/api/auth/test-email") ||
-            path.equals("/api/auth/email-config-status") ||
-            path.equals("/api/auth/send-registration-otp") ||
-            path.equals("/api/auth/send-login-otp") ||
-            path.equals("/api/auth/register-with-otp") ||
-            path.equals("/api/auth/login-with-otp") ||
-            path.equals("/") ||
-            path.startsWith("/h2-console/") ||
-            path.contains("swagger") ||
-            path.contains("api-docs")) {
+        // ✅ Skip JWT validation ONLY for public routes (auth endpoints, pages, static files)
+        // One trie lookup against the shared route table in SecurityConfig
+        if (routeTable.lookup(request) == RoutePermissionTable.Access.PUBLIC) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -66,29 +51,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String token = authHeader.substring(7);
         try {
-            if (!jwtUtil.isTokenValid(token)) {
+            // ✅ One parse + signature check per token, then served from the verified-token cache
+            JwtPrincipal principal = tokenVerifier.verify(token);
+            if (principal == null) {
                 throw new RuntimeException("Invalid or expired JWT");
             }
 
-            String username = jwtUtil.extractUsername(token);
-            Long userId = jwtUtil.extractUserId(token);
-            Role role = Role.valueOf(jwtUtil.extractRole(token));
-
             if (SecurityContextHolder.getContext().getAuthentication() == null) {
                 // 🔧 Create a User object with all necessary fields
                 User user = new User();
-                user.setId(userId);
-                user.setUsername(username);
-                user.setEmail(username); // ✅ Also set email (username could be email)
-                user.setRole(role);
+                user.setId(principal.getUserId());
+                user.setUsername(principal.getUsername());
+                user.setEmail(principal.getUsername()); // ✅ Also set email (username could be email)
+                user.setRole(principal.getRole());
 
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
                                 user, // ✅ User object is now the principal
                                 null,
-                                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role.name()))
+                                principal.getAuthorities()
                         );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                authToken.setDetails(detailsSource.buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
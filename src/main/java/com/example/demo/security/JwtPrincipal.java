@@ -0,0 +1,39 @@
+package com.example.demo.security;
+
+import com.example.demo.enums.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of verifying a JWT: the identity claims plus the expiry instant.
+ * Built once per token and shared by every request that presents it.
+ */
+public final class JwtPrincipal {
+
+    private final String username;
+    private final Long userId;
+    private final Role role;
+    private final long expiresAtMillis;
+    private final List<GrantedAuthority> authorities;
+
+    public JwtPrincipal(String username, Long userId, Role role, long expiresAtMillis) {
+        this.username = username;
+        this.userId = userId;
+        this.role = role;
+        this.expiresAtMillis = expiresAtMillis;
+        this.authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public String getUsername() { return username; }
+    public Long getUserId() { return userId; }
+    public Role getRole() { return role; }
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+    public List<GrantedAuthority> getAuthorities() { return authorities; }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies bearer tokens and caches the verified principal.
+ *
+ * A token is parsed and its signature checked once; later requests with the same token
+ * are served from a bounded cache keyed by the token's SHA-256 digest (raw tokens are
+ * never kept). Entries are dropped once the token expires or the cache TTL passes,
+ * whichever comes first.
+ */
+@Component
+public class JwtTokenVerifier {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtUtil jwtUtil;
+    private final Map<String, CachedPrincipal> cache = new ConcurrentHashMap<>();
+
+    @Value("${jwt.cache.enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    @Value("${jwt.cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public JwtTokenVerifier(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
+    /**
+     * @return the verified principal, or null if the token is invalid or expired
+     */
+    public JwtPrincipal verify(String token) {
+        if (!cacheEnabled) {
+            return parse(token);
+        }
+
+        long now = System.currentTimeMillis();
+        String key = digest(token);
+        CachedPrincipal cached = cache.get(key);
+        if (cached != null) {
+            if (now < cached.validUntilMillis) {
+                hits.incrementAndGet();
+                return cached.principal;
+            }
+            cache.remove(key, cached);
+        }
+
+        misses.incrementAndGet();
+        JwtPrincipal principal = parse(token);
+        if (principal != null) {
+            if (cache.size() >= maxEntries) {
+                evict(now);
+            }
+            long validUntil = Math.min(principal.getExpiresAtMillis(), now + ttlSeconds * 1000L);
+            cache.put(key, new CachedPrincipal(principal, validUntil));
+        }
+        return principal;
+    }
+
+    private JwtPrincipal parse(String token) {
+        JwtPrincipal principal = jwtUtil.parsePrincipal(token);
+        if (principal == null) {
+            rejected.incrementAndGet();
+        }
+        return principal;
+    }
+
+    /**
+     * Drop expired entries; if the cache is still full, drop entries until it is at 3/4
+     */
+    private void evict(long now) {
+        cache.values().removeIf(entry -> now >= entry.validUntilMillis);
+        int target = maxEntries * 3 / 4;
+        Iterator<String> it = cache.keySet().iterator();
+        while (cache.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String digest(String token) {
+        MessageDigest sha = SHA256.get();
+        sha.reset();
+        return Base64.getEncoder().encodeToString(sha.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cacheEnabled", cacheEnabled);
+        stats.put("cacheSize", cache.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private static class CachedPrincipal {
+        private final JwtPrincipal principal;
+        private final long validUntilMillis;
+
+        private CachedPrincipal(JwtPrincipal principal, long validUntilMillis) {
+            this.principal = principal;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.demo.security;
 
+import com.example.demo.enums.Role;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.stereotype.Component;
@@ -14,6 +16,8 @@ import java.util.Map;
 public class JwtUtil {
 
     private final Key SECRET_KEY;
+    // Immutable and thread-safe, built once instead of per parse
+    private final JwtParser parser;
     private static final long JWT_TOKEN_VALIDITY = 24 * 60 * 60 * 1000; // 24 hours
 
     public JwtUtil() {
@@ -24,6 +28,9 @@ public class JwtUtil {
         }
         // ✅ Use raw bytes, no extra Base64 encoding
         SECRET_KEY = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(SECRET_KEY)
+                .build();
     }
 
     public String generateToken(String username, Long userId, String role) {
@@ -62,11 +69,31 @@ public class JwtUtil {
         return claims != null ? (String) claims.get("role") : null;
     }
 
+    /**
+     * Verify the signature and expiry once and return every claim the app needs
+     * @return the principal, or null if the token is invalid or expired
+     */
+    public JwtPrincipal parsePrincipal(String token) {
+        Claims claims = extractAllClaims(token);
+        if (claims == null || claims.getSubject() == null || claims.getExpiration() == null) {
+            return null;
+        }
+        long expiresAt = claims.getExpiration().getTime();
+        if (expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        Object id = claims.get("userId");
+        Long userId = id instanceof Number ? ((Number) id).longValue() : null;
+        String role = (String) claims.get("role");
+        if (role == null) {
+            return null;
+        }
+        return new JwtPrincipal(claims.getSubject(), userId, Role.valueOf(role), expiresAt);
+    }
+
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(SECRET_KEY)
-                    .build()
+            return parser
                     .parseClaimsJws(token)
                     .getBody();
         } catch (Exception e) {
@@ -0,0 +1,270 @@
+package com.example.demo.security;
+
+import com.example.demo.entity.User;
+import com.example.demo.util.PathPatternTrie;
+import com.example.demo.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-route request throttling, applied right after {@link JwtAuthenticationFilter}.
+ *
+ * Each policy owns a set of route patterns and a lock-free {@link TokenBucket} per client.
+ * Authenticated callers are keyed by user ID, anonymous ones (and the OTP/login policies,
+ * which are abused before anyone is logged in) by client IP. A request over the limit gets
+ * 429 with a Retry-After header. Buckets that have refilled completely carry no state and
+ * are swept periodically.
+ *
+ * Routes whose cost is only known once the body is read are left out of the route table and
+ * charged by their handler through {@link #tryAcquire(String, HttpServletRequest, int)}; a
+ * fare batch costs one token per fare in it.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    public enum KeyType {
+        USER_OR_IP,
+        IP
+    }
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${rate-limit.search.requests-per-minute:60}")
+    private int searchPerMinute = 60;
+
+    @Value("${rate-limit.fare.requests-per-minute:30}")
+    private int farePerMinute = 30;
+
+    @Value("${rate-limit.otp.requests-per-minute:5}")
+    private int otpPerMinute = 5;
+
+    @Value("${rate-limit.login.requests-per-minute:20}")
+    private int loginPerMinute = 20;
+
+    @Value("${rate-limit.max-tracked-clients:100000}")
+    private int maxTrackedClients = 100000;
+
+    @Autowired
+    private ClientAddressResolver clientAddressResolver;
+
+    private final PathPatternTrie<Policy> routes = new PathPatternTrie<>();
+    private final Map<String, Policy> policies = new LinkedHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    private final AtomicLong untracked = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        register(new Policy("search", searchPerMinute, Duration.ofMinutes(1), KeyType.USER_OR_IP),
+            "/api/rides/search",
+            "/api/rides/search/enhanced");
+        register(new Policy("fare", farePerMinute, Duration.ofMinutes(1), KeyType.USER_OR_IP),
+            "/api/fare/calculate",
+            "/api/fare/quick-estimate",
+            "/api/fare/estimate/*",
+            "/api/fare/estimate/*/pooled",
+            "/api/fare/split/*",
+            "/api/rides/*/calculate-fare");
+        register(new Policy("otp", otpPerMinute, Duration.ofMinutes(1), KeyType.IP),
+            "/api/auth/send-registration-otp",
+            "/api/auth/send-login-otp",
+            "/api/auth/register-with-otp",
+            "/api/auth/login-with-otp");
+        register(new Policy("login", loginPerMinute, Duration.ofMinutes(1), KeyType.IP),
+            "/api/auth/login",
+            "/api/auth/register");
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void register(Policy policy, String... patterns) {
+        policies.put(policy.name, policy);
+        for (String pattern : patterns) {
+            routes.add(pattern, policy);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request,
+                                    @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain)
+            throws ServletException, IOException {
+
+        Policy policy = enabled && !"OPTIONS".equals(request.getMethod())
+                ? routes.match(RoutePermissionTable.requestPath(request))
+                : null;
+        if (policy == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = policy.tryAcquire(clientKey(request, policy.keyType));
+        if (waitNanos == 0L) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfterSeconds = retryAfterSeconds(waitNanos);
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"success\":false,\"message\":\"Too many requests, please retry in "
+                + retryAfterSeconds + " seconds\"}");
+    }
+
+    /**
+     * Charge a request against a policy by hand, for routes that cost more than one token
+     * @return 0 if the request may proceed, otherwise nanoseconds until it may
+     */
+    public long tryAcquire(String policyName, HttpServletRequest request, int tokens) {
+        Policy policy = policies.get(policyName);
+        if (!enabled || policy == null) {
+            return 0L;
+        }
+        return policy.tryAcquire(clientKey(request, policy.keyType), tokens);
+    }
+
+    /**
+     * Whole seconds for a Retry-After header, at least 1
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    private String clientKey(HttpServletRequest request, KeyType keyType) {
+        if (keyType == KeyType.USER_OR_IP) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.getPrincipal() instanceof User user && user.getId() != null) {
+                return "u:" + user.getId();
+            }
+        }
+        return "ip:" + clientAddressResolver.resolve(request);
+    }
+
+    /**
+     * Drop buckets that have refilled completely; a fresh bucket is equivalent
+     */
+    void sweep() {
+        for (Policy policy : policies.values()) {
+            policy.buckets.values().removeIf(TokenBucket::isFull);
+        }
+    }
+
+    private int trackedClients() {
+        int total = 0;
+        for (Policy policy : policies.values()) {
+            total += policy.buckets.size();
+        }
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedClients", trackedClients());
+        stats.put("untracked", untracked.get());
+        Map<String, Object> perPolicy = new LinkedHashMap<>();
+        for (Policy policy : policies.values()) {
+            Map<String, Object> p = new HashMap<>();
+            p.put("capacity", policy.capacity);
+            p.put("periodSeconds", policy.period.getSeconds());
+            p.put("keyType", policy.keyType);
+            p.put("clients", policy.buckets.size());
+            p.put("allowed", policy.allowed.get());
+            p.put("rejected", policy.rejected.get());
+            perPolicy.put(policy.name, p);
+        }
+        stats.put("policies", perPolicy);
+        return stats;
+    }
+
+    // A named limit shared by a group of routes, with one bucket per client
+    private class Policy {
+        private final String name;
+        private final int capacity;
+        private final Duration period;
+        private final KeyType keyType;
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong allowed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Policy(String name, int capacity, Duration period, KeyType keyType) {
+            this.name = name;
+            this.capacity = capacity;
+            this.period = period;
+            this.keyType = keyType;
+        }
+
+        /**
+         * @return 0 if the request may proceed, otherwise nanoseconds until the next token
+         */
+        private long tryAcquire(String key) {
+            return tryAcquire(key, 1);
+        }
+
+        private long tryAcquire(String key, int tokens) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (trackedClients() >= maxTrackedClients) {
+                    sweep();
+                    if (trackedClients() >= maxTrackedClients) {
+                        // Fail open rather than grow without bound; counted so it shows up in metrics
+                        untracked.incrementAndGet();
+                        log.debug("Rate limiter tracking {} clients, letting {} through unthrottled", maxTrackedClients, key);
+                        allowed.incrementAndGet();
+                        return 0L;
+                    }
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, period));
+            }
+
+            long waitNanos = bucket.tryAcquire(tokens);
+            if (waitNanos == 0L) {
+                allowed.incrementAndGet();
+            } else {
+                rejected.incrementAndGet();
+            }
+            return waitNanos;
+        }
+    }
+}
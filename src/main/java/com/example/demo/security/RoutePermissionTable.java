@@ -0,0 +1,82 @@
+package com.example.demo.security;
+
+import com.example.demo.util.PathPatternTrie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * Route access table compiled once into a path-segment trie.
+ *
+ * Patterns use the same syntax as Spring Security request matchers (see {@link PathPatternTrie}),
+ * so classifying a request is a single walk down the trie. The JWT filter and the Spring
+ * Security chain both read this table, so a route is declared public in exactly one place.
+ */
+public final class RoutePermissionTable {
+
+    public enum Access {
+        // No authentication and the JWT filter is skipped entirely
+        PUBLIC,
+        // Permitted without authentication, but a bearer token is still verified if sent
+        OPTIONAL,
+        // Everything not in the table
+        AUTHENTICATED
+    }
+
+    private final PathPatternTrie<Access> routes;
+
+    private RoutePermissionTable(PathPatternTrie<Access> routes) {
+        this.routes = routes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Classify a request path (without context path or query string)
+     */
+    public Access lookup(String path) {
+        Access access = routes.match(path);
+        return access != null ? access : Access.AUTHENTICATED;
+    }
+
+    public Access lookup(HttpServletRequest request) {
+        return lookup(requestPath(request));
+    }
+
+    /**
+     * Matcher for Spring Security: PUBLIC and OPTIONAL routes are permitted without authentication
+     */
+    public RequestMatcher permitAllMatcher() {
+        return request -> lookup(request) != Access.AUTHENTICATED;
+    }
+
+    /**
+     * Request URI without the context path, as matched against route patterns
+     */
+    public static String requestPath(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (contextPath != null && !contextPath.isEmpty() && uri.startsWith(contextPath)) {
+            uri = uri.substring(contextPath.length());
+        }
+        return uri;
+    }
+
+    public static final class Builder {
+        private final PathPatternTrie<Access> routes = new PathPatternTrie<>();
+
+        private Builder() {}
+
+        public Builder add(Access access, String... patterns) {
+            for (String pattern : patterns) {
+                routes.add(pattern, access);
+            }
+            return this;
+        }
+
+        public RoutePermissionTable build() {
+            return new RoutePermissionTable(routes);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demo.security;
 
 import com.example.demo.service.CustomUserDetailsService;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -27,19 +28,61 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final CustomUserDetailsService userDetailsService;
 
     public SecurityConfig(JwtAuthenticationFilter jwtAuthFilter,
+                          RateLimitFilter rateLimitFilter,
                           CustomUserDetailsService userDetailsService) {
         this.jwtAuthFilter = jwtAuthFilter;
+        this.rateLimitFilter = rateLimitFilter;
         this.userDetailsService = userDetailsService;
     }
 
+    // ==================== ROUTE PERMISSIONS ====================
+    // Single source of truth for unauthenticated routes, shared with JwtAuthenticationFilter.
+    // PUBLIC routes skip the JWT filter; OPTIONAL routes are open but still pick up a bearer token if sent.
+    // Static so the filter can depend on it without instantiating this configuration first.
+    @Bean
+    public static RoutePermissionTable routePermissionTable() {
+        return RoutePermissionTable.builder()
+            .add(RoutePermissionTable.Access.PUBLIC,
+                "/api/auth/register",
+                "/api/auth/login",
+                "/api/auth/create-test-user",
+                "/api/auth/test",
+                "/api/auth/test-email",
+                "/api/auth/email-config-status",
+                "/api/auth/send-registration-otp",
+                "/api/auth/send-login-otp",
+                "/api/auth/register-with-otp",
+                "/api/auth/login-with-otp",
+                "/", "/index.html", "/driver-dashboard.html", "/passenger-dashboard.html", "/admin-dashboard.html", "/admin-access.html",
+                "/static/**", "/uploads/**", "/h2-console/**",
+                "/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**", "/swagger-resources/**")
+            .add(RoutePermissionTable.Access.OPTIONAL,
+                "/api/rides/search",
+                "/api/rides/search/enhanced",
+                "/api/rides/*/calculate-fare",
+                "/api/rides/*",
+                "/api/fare/calculate",
+                "/api/payments/config",
+                "/api/payments/webhook",
+                "/api/data/**",
+                // Admin endpoints - temporarily allow without auth for testing
+                "/api/admin/**",
+                "/ws/**")
+            .build();
+    }
+
     // ==================== PASSWORD ENCODER ====================
+    @Value("${auth.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        // ✅ Use BCrypt to match your $2a$ hashes
-        return new BCryptPasswordEncoder();
+        // ✅ Use BCrypt to match your $2a$ hashes; older hashes with a lower cost are upgraded on login
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     // ==================== DAO AUTH PROVIDER ====================
@@ -75,7 +118,8 @@ public class SecurityConfig {
 
     // ==================== SECURITY FILTER CHAIN ====================
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   RoutePermissionTable routePermissionTable) throws Exception {
         http
             // ✅ Enable CORS and disable CSRF for REST API
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -83,31 +127,8 @@ public class SecurityConfig {
 
             // ✅ Authorization configuration
             .authorizeHttpRequests(auth -> auth
-                // Public endpoints
-                .requestMatchers(
-                    "/api/auth/register",
-                    "/api/auth/login",
-                    "/api/auth/create-test-user",
-                    "/api/auth/test",
-                    "/api/auth/test-email",
-                    "/api/auth/email-config-status",
-                    "/api/auth/send-registration-otp",
-                    "/api/auth/send-login-otp",
-                    "/api/auth/register-with-otp",
-                    "/api/auth/login-with-otp",
-                    "/api/rides/search",
-                    "/api/rides/search/enhanced",
-                    "/api/rides/*/calculate-fare",
-                    "/api/rides/*",
-                    "/api/fare/calculate",
-                    "/api/payments/config",
-                    "/api/payments/webhook",
-                    "/api/data/**",
-                    "/api/admin/**",
-                    "/ws/**",
-                    "/", "/index.html", "/driver-dashboard.html", "/passenger-dashboard.html", "/admin-dashboard.html", "/admin-access.html", "/static/**", "/h2-console/**", "/uploads/**"
-                ).permitAll()
-                // Admin endpoints - temporarily allow without auth for testing
+                // Public endpoints (see routePermissionTable)
+                .requestMatchers(routePermissionTable.permitAllMatcher()).permitAll()
                 // .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 // Everything else needs authentication
                 .anyRequest().authenticated()
@@ -133,6 +154,9 @@ public class SecurityConfig {
             // ✅ Add JWT filter *after* username/password authentication
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
 
+            // ✅ Throttle expensive routes once the caller (user ID or IP) is known
+            .addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class)
+
             // ✅ Allow H2 console frames
             .headers(headers -> headers.frameOptions(frameOptions -> frameOptions.disable()));
 
@@ -36,6 +36,12 @@ public class AdminService {
     @Autowired
     private NotificationRepository notificationRepository;
 
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private UserIdentityResolver identityResolver;
+
     // ====================== DASHBOARD STATISTICS ======================
 
     public Map<String, Object> getDashboardStats() {
@@ -123,6 +129,7 @@ public class AdminService {
             .orElseThrow(() -> new RuntimeException("User not found"));
         user.setAccountNonLocked(false);
         userRepository.save(user);
+        identityResolver.invalidate(userId);
     }
 
     public void unblockUser(Long userId) {
@@ -130,6 +137,7 @@ public class AdminService {
             .orElseThrow(() -> new RuntimeException("User not found"));
         user.setAccountNonLocked(true);
         userRepository.save(user);
+        identityResolver.invalidate(userId);
     }
 
     public void verifyDriver(Long userId) {
@@ -140,6 +148,7 @@ public class AdminService {
         }
         user.setEnabled(true);
         userRepository.save(user);
+        identityResolver.invalidate(userId);
     }
 
     // ====================== RIDE MONITORING ======================
@@ -266,7 +275,7 @@ public class AdminService {
             .mapToDouble(Payment::getAmount)
             .sum();
         
-        Double platformCommission = totalRevenue * 0.1; // Assuming 10% commission
+        Double platformCommission = pricingEngine.current().commission(totalRevenue);
         Double driverEarnings = totalRevenue - platformCommission;
         
         report.put("period", period);
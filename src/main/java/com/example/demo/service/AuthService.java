@@ -7,29 +7,33 @@ import com.example.demo.entity.User;
 import com.example.demo.enums.Role;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.JwtUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class AuthService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
     private final OtpService otpService;
     private final EmailService emailService;
 
     public AuthService(UserRepository userRepository,
-                       PasswordEncoder passwordEncoder,
+                       PasswordHashingService passwordHashingService,
                        JwtUtil jwtUtil,
                        AuthenticationManager authenticationManager,
                        OtpService otpService,
                        EmailService emailService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
         this.jwtUtil = jwtUtil;
         this.authenticationManager = authenticationManager;
         this.otpService = otpService;
@@ -37,7 +41,8 @@ public class AuthService {
     }
 
     // ==================== REGISTER ====================
-    @Transactional
+    // Not @Transactional: no DB connection is held while the password is hashed. The checks
+    // below give the usual errors early; saveNewUser() settles races between them and the insert.
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username already taken");
@@ -51,7 +56,7 @@ public class AuthService {
         user.setName(request.getUsername());
         user.setEmail(request.getEmail());
         user.setPhone(request.getPhone());
-        user.setPassword(passwordEncoder.encode(request.getPassword())); // ✅ BCrypt encode
+        user.setPassword(passwordHashingService.encode(request.getPassword())); // ✅ BCrypt encode (hashing pool)
         user.setRole(determineUserRole(request.getRole()));
         user.setProfilePicture(request.getProfilePicture());
         
@@ -65,7 +70,7 @@ public class AuthService {
         user.setEnabled(true);
         user.setAccountNonLocked(true);
 
-        User savedUser = userRepository.save(user);
+        User savedUser = saveNewUser(user);
 
         String token = jwtUtil.generateToken(
                 savedUser.getUsername(),
@@ -88,17 +93,22 @@ public class AuthService {
     }
 
     // ==================== LOGIN ====================
-    @Transactional(readOnly = true)
+    // Not @Transactional: the BCrypt check runs on the hashing pool without holding a DB connection
     public AuthResponse login(LoginRequest request) {
         User user = userRepository
                 .findByUsernameOrEmail(request.getUsername(), request.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         // ✅ FIXED: Proper BCrypt password check
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new RuntimeException("Invalid password");
         }
 
+        // Transparently upgrade hashes made with a lower cost than the configured one
+        if (passwordHashingService.needsRehash(user.getPassword())) {
+            rehashPassword(user, request.getPassword());
+        }
+
         String token = jwtUtil.generateToken(
                 user.getUsername(),
                 user.getId(),
@@ -119,6 +129,17 @@ public class AuthService {
         );
     }
 
+    private void rehashPassword(User user, String rawPassword) {
+        try {
+            String upgraded = passwordHashingService.encode(rawPassword);
+            userRepository.updatePassword(user.getId(), upgraded);
+            passwordHashingService.recordRehash();
+        } catch (Exception e) {
+            // The login already succeeded; the hash is upgraded on a later login instead
+            log.warn("Password rehash skipped for user {}: {}", user.getId(), e.getMessage());
+        }
+    }
+
     private Role determineUserRole(String roleString) {
         if (roleString == null || roleString.trim().isEmpty()) {
             return Role.PASSENGER;
@@ -130,6 +151,25 @@ public class AuthService {
         }
     }
 
+    /**
+     * Insert a new user. The unique email and username columns are the real guard: two
+     * registrations can both pass the exists checks, and the loser gets the same error the
+     * check would have given it.
+     */
+    private User saveNewUser(User user) {
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            if (userRepository.existsByEmail(user.getEmail())) {
+                throw new RuntimeException("Email already registered");
+            }
+            if (userRepository.existsByUsername(user.getUsername())) {
+                throw new RuntimeException("Username already taken");
+            }
+            throw e;
+        }
+    }
+
     // ==================== OTP AUTHENTICATION ====================
     
     /**
@@ -155,7 +195,6 @@ public class AuthService {
     /**
      * Register with OTP verification
      */
-    @Transactional
     public AuthResponse registerWithOtp(RegisterRequest request, String otp) {
         // Verify OTP first
         if (!otpService.verifyOtp(request.getEmail(), otp, com.example.demo.entity.OtpType.REGISTRATION)) {
@@ -177,11 +216,11 @@ public class AuthService {
         user.setName(request.getUsername());
         user.setEmail(request.getEmail());
         user.setPhone(request.getPhone());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(request.getPassword()));
         user.setRole(determineUserRole(request.getRole()));
         user.setProfilePicture(request.getProfilePicture());
 
-        User savedUser = userRepository.save(user);
+        User savedUser = saveNewUser(user);
 
         // Send welcome email
         emailService.sendWelcomeEmail(savedUser.getEmail(), savedUser.getName());
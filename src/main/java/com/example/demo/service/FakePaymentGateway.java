@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the payment gateway, enabled with payment.gateway.mode=fake.
+ *
+ * Answers every call after a configurable latency and fails a configurable fraction of them,
+ * so tests and load runs can exercise timeouts, the bulkhead and the circuit breaker without
+ * reaching Razorpay. Latency is spent blocking the calling thread, as the real SDK does.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway.mode", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway {
+
+    @Value("${payment.gateway.fake.latency-ms:50}")
+    private volatile long latencyMs = 50;
+
+    // Extra random latency added on top, 0..jitter
+    @Value("${payment.gateway.fake.jitter-ms:0}")
+    private volatile long jitterMs;
+
+    @Value("${payment.gateway.fake.failure-rate:0.0}")
+    private volatile double failureRate;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong refundsMade = new AtomicLong();
+    private final Map<String, String> refunds = new ConcurrentHashMap<>();
+
+    @Override
+    public String createOrder(long amountPaise, String currency, String receipt) throws IOException, InterruptedException {
+        if (amountPaise <= 0) {
+            throw new IllegalArgumentException("Order amount must be positive");
+        }
+        respond();
+        return "order_fake_" + sequence.incrementAndGet();
+    }
+
+    @Override
+    public String fetchPaymentMethod(String paymentId) throws IOException, InterruptedException {
+        respond();
+        return "upi";
+    }
+
+    @Override
+    public String createRefund(String paymentId, long amountPaise, String reason, String receipt)
+            throws IOException, InterruptedException {
+        respond();
+        String refundId = "rfnd_fake_" + sequence.incrementAndGet();
+        refunds.put(paymentId + "/" + receipt, refundId);
+        refundsMade.incrementAndGet();
+        return refundId;
+    }
+
+    @Override
+    public String findRefund(String paymentId, String receipt) throws IOException, InterruptedException {
+        respond();
+        return refunds.get(paymentId + "/" + receipt);
+    }
+
+    private void respond() throws IOException, InterruptedException {
+        calls.incrementAndGet();
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new IOException("Simulated gateway failure");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "fake";
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void setJitterMs(long jitterMs) {
+        this.jitterMs = jitterMs;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getRefundsMade() {
+        return refundsMade.get();
+    }
+}
@@ -2,24 +2,33 @@ package com.example.demo.service;
 
 import com.example.demo.dto.FareRequest;
 import com.example.demo.dto.FareResponse;
+import com.example.demo.util.PricingTable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.time.LocalTime;
+
 @Service
 public class FareCalculationService {
 
     private static final Logger logger = LoggerFactory.getLogger(FareCalculationService.class);
 
-    // Fare calculation constants
-    private static final double DEFAULT_BASE_FARE = 50.0; // Base fare in rupees
-    private static final double DEFAULT_PRICE_PER_KM = 12.0; // Price per kilometer in rupees
-    private static final double PLATFORM_COMMISSION = 0.10; // 10% platform commission
-
     @Autowired
     private GoogleMapsService googleMapsService;
 
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private SurgePricingService surgePricingService;
+
     /**
      * Calculate fare for a ride based on distance and passengers
      * @param fareRequest Request containing source, destination, and passenger count
@@ -30,78 +39,23 @@ public class FareCalculationService {
             logger.info("Calculating fare for: {}", fareRequest);
 
             // Validate input
-            if (fareRequest.getSource() == null || fareRequest.getSource().trim().isEmpty()) {
-                return FareResponse.error("Source location is required");
+            FareResponse invalid = validate(fareRequest);
+            if (invalid != null) {
+                return invalid;
             }
-            if (fareRequest.getDestination() == null || fareRequest.getDestination().trim().isEmpty()) {
-                return FareResponse.error("Destination location is required");
-            }
-            if (fareRequest.getPassengers() == null || fareRequest.getPassengers() < 1) {
-                return FareResponse.error("At least 1 passenger is required");
-            }
-
-            // Get distance - prefer free OpenRouteService-like fallback (no paid keys),
-            // then fall back to Google if explicitly configured.
-            double distance;
-            String calculationMethod;
 
+            DistanceEstimate estimate;
             if (fareRequest.getDistance() != null && fareRequest.getDistance() > 0) {
-                distance = fareRequest.getDistance();
-                calculationMethod = "PROVIDED";
-                logger.info("Using provided distance: {} km", distance);
+                estimate = new DistanceEstimate(fareRequest.getDistance(), "PROVIDED");
+                logger.info("Using provided distance: {} km", estimate.distance);
             } else {
-                // First try our internal free method (same strategy as RideService: haversine + road multiplier)
-                try {
-                    distance = freeDistanceEstimate(
-                        fareRequest.getSource().trim(), 
-                        fareRequest.getDestination().trim()
-                    );
-                    calculationMethod = "FREE_OSM_FALLBACK";
-                    logger.info("Calculated distance using {}: {} km", calculationMethod, distance);
-                } catch (Exception ex) {
-                    logger.warn("Free distance estimate failed: {}. Falling back to Google if configured.", ex.getMessage());
-                    distance = googleMapsService.calculateDistance(
-                        fareRequest.getSource().trim(), 
-                        fareRequest.getDestination().trim()
-                    );
-                    calculationMethod = googleMapsService.isApiConfigured() ? "GOOGLE_MAPS" : "FALLBACK";
-                    logger.info("Calculated distance using {}: {} km", calculationMethod, distance);
-                }
+                estimate = resolveDistance(fareRequest.getSource().trim(), fareRequest.getDestination().trim());
             }
 
-            // Get price per km - use provided rate or default
-            double pricePerKm = fareRequest.getPricePerKm() != null && fareRequest.getPricePerKm() > 0 
-                ? fareRequest.getPricePerKm() 
-                : DEFAULT_PRICE_PER_KM;
-
-            // Calculate fare components
-            double baseFare = DEFAULT_BASE_FARE;
-            double distanceFare = pricePerKm * distance;
-            double totalFare = baseFare + distanceFare;
-            double farePerPassenger = totalFare / fareRequest.getPassengers();
-
-            // Get estimated travel time
-            int estimatedTravelTime = (int)Math.ceil((distance / 40.0) * 60.0); // assume 40 km/h average
-
-            // Create fare details
-            FareResponse.FareDetails fareDetails = new FareResponse.FareDetails(
-                fareRequest.getSource().trim(),
-                fareRequest.getDestination().trim(),
-                Math.round(distance * 100.0) / 100.0, // Round to 2 decimal places
-                fareRequest.getPassengers(),
-                baseFare,
-                pricePerKm,
-                Math.round(distanceFare * 100.0) / 100.0,
-                Math.round(totalFare * 100.0) / 100.0,
-                Math.round(farePerPassenger * 100.0) / 100.0,
-                estimatedTravelTime,
-                calculationMethod
-            );
-
-            logger.info("Fare calculated successfully: Total=₹{}, Per Passenger=₹{}", 
-                totalFare, farePerPassenger);
-
-            return FareResponse.success(fareDetails);
+            FareResponse response = buildFare(fareRequest, estimate);
+            logger.info("Fare calculated successfully: Total=₹{}, Per Passenger=₹{}",
+                response.getFareDetails().getTotalFare(), response.getFareDetails().getFarePerPassenger());
+            return response;
 
         } catch (Exception e) {
             logger.error("Error calculating fare: {}", e.getMessage(), e);
@@ -109,6 +63,144 @@ public class FareCalculationService {
         }
     }
 
+    /**
+     * Calculate fares for many requests at once. Each distinct route is resolved only once
+     * however many requests share it, and a bad request only fails its own entry.
+     * @param fareRequests Requests to quote
+     * @return One FareResponse per request, in the same order
+     */
+    public List<FareResponse> calculateFares(List<FareRequest> fareRequests) {
+        Map<String, DistanceEstimate> distances = new HashMap<>();
+        List<FareResponse> responses = new ArrayList<>(fareRequests.size());
+
+        for (FareRequest fareRequest : fareRequests) {
+            try {
+                FareResponse invalid = validate(fareRequest);
+                if (invalid != null) {
+                    responses.add(invalid);
+                    continue;
+                }
+
+                DistanceEstimate estimate;
+                if (fareRequest.getDistance() != null && fareRequest.getDistance() > 0) {
+                    estimate = new DistanceEstimate(fareRequest.getDistance(), "PROVIDED");
+                } else {
+                    String source = fareRequest.getSource().trim();
+                    String destination = fareRequest.getDestination().trim();
+                    estimate = distances.computeIfAbsent(
+                        normalizeLocation(source) + '\n' + normalizeLocation(destination),
+                        route -> resolveDistance(source, destination));
+                }
+                responses.add(buildFare(fareRequest, estimate));
+
+            } catch (Exception e) {
+                logger.error("Error calculating fare for {}: {}", fareRequest, e.getMessage());
+                responses.add(FareResponse.error("Failed to calculate fare: " + e.getMessage()));
+            }
+        }
+
+        logger.info("Calculated {} fares with {} distance lookups", responses.size(), distances.size());
+        return responses;
+    }
+
+    private static FareResponse validate(FareRequest fareRequest) {
+        if (fareRequest == null) {
+            return FareResponse.error("Fare request is required");
+        }
+        if (fareRequest.getSource() == null || fareRequest.getSource().trim().isEmpty()) {
+            return FareResponse.error("Source location is required");
+        }
+        if (fareRequest.getDestination() == null || fareRequest.getDestination().trim().isEmpty()) {
+            return FareResponse.error("Destination location is required");
+        }
+        if (fareRequest.getPassengers() == null || fareRequest.getPassengers() < 1) {
+            return FareResponse.error("At least 1 passenger is required");
+        }
+        return null;
+    }
+
+    /**
+     * Road distance between two places - prefer the free OpenRouteService-like fallback (no paid
+     * keys), then fall back to Google if explicitly configured
+     */
+    private DistanceEstimate resolveDistance(String source, String destination) {
+        double distance;
+        String calculationMethod;
+
+        // First try our internal free method (same strategy as RideService: haversine + road multiplier)
+        try {
+            distance = freeDistanceEstimate(source, destination);
+            calculationMethod = "FREE_OSM_FALLBACK";
+            logger.info("Calculated distance using {}: {} km", calculationMethod, distance);
+        } catch (Exception ex) {
+            logger.warn("Free distance estimate failed: {}. Falling back to Google if configured.", ex.getMessage());
+            distance = googleMapsService.calculateDistance(source, destination);
+            calculationMethod = googleMapsService.isApiConfigured() ? "GOOGLE_MAPS" : "FALLBACK";
+            logger.info("Calculated distance using {}: {} km", calculationMethod, distance);
+        }
+        return new DistanceEstimate(distance, calculationMethod);
+    }
+
+    private FareResponse buildFare(FareRequest fareRequest, DistanceEstimate estimate) {
+        double distance = estimate.distance;
+        PricingTable pricing = pricingEngine.current();
+
+        // Get price per km - use provided rate or default
+        double pricePerKm = fareRequest.getPricePerKm() != null && fareRequest.getPricePerKm() > 0 
+            ? fareRequest.getPricePerKm() 
+            : pricing.getDefaultPricePerKm();
+
+        // Calculate fare components; time-of-day rules apply at the departure time (now if not given)
+        LocalTime departureTime = fareRequest.getDepartureTime() != null ? fareRequest.getDepartureTime() : LocalTime.now();
+        int minuteOfDay = PricingTable.minuteOfDay(departureTime);
+        double baseFare = pricing.getBaseFare();
+        double distanceFare = pricing.distanceFare(distance, pricePerKm);
+        // Demand surge at the pickup is a precomputed lookup, no DB access
+        double surgeMultiplier = surgePricingService.getMultiplier(fareRequest.getSource());
+        double totalFare = pricing.totalFare(distance, pricePerKm, minuteOfDay) * surgeMultiplier;
+        double farePerPassenger = totalFare / fareRequest.getPassengers();
+
+        // Get estimated travel time
+        int estimatedTravelTime = (int)Math.ceil((distance / 40.0) * 60.0); // assume 40 km/h average
+
+        // Create fare details
+        FareResponse.FareDetails fareDetails = new FareResponse.FareDetails(
+            fareRequest.getSource().trim(),
+            fareRequest.getDestination().trim(),
+            Math.round(distance * 100.0) / 100.0, // Round to 2 decimal places
+            fareRequest.getPassengers(),
+            baseFare,
+            pricePerKm,
+            Math.round(distanceFare * 100.0) / 100.0,
+            Math.round(totalFare * 100.0) / 100.0,
+            Math.round(farePerPassenger * 100.0) / 100.0,
+            estimatedTravelTime,
+            estimate.calculationMethod
+        );
+        fareDetails.setFareMultiplier(pricing.timeMultiplier(minuteOfDay));
+        fareDetails.setSurgeMultiplier(surgeMultiplier);
+
+        return FareResponse.success(fareDetails);
+    }
+
+    /**
+     * Location as used for matching: trimmed, single-spaced, lower case
+     */
+    public static String normalizeLocation(String location) {
+        return location == null ? "" : location.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Distance between two places and how it was obtained
+    private static final class DistanceEstimate {
+        private final double distance;
+        private final String calculationMethod;
+
+        private DistanceEstimate(double distance, String calculationMethod) {
+            this.distance = distance;
+            this.calculationMethod = calculationMethod;
+        }
+    }
+
     // ===== Free distance estimation using Haversine with curated city coordinates (no paid API) =====
     private double freeDistanceEstimate(String origin, String destination) {
         double[] o = geocodeCity(origin);
@@ -217,7 +309,7 @@ public class FareCalculationService {
             return 0.0;
         }
         
-        double commission = totalFare * PLATFORM_COMMISSION;
+        double commission = pricingEngine.current().commission(totalFare);
         double driverEarnings = totalFare - commission;
         
         logger.info("Driver earnings: ₹{} (Total: ₹{}, Commission: ₹{})", 
@@ -236,7 +328,7 @@ public class FareCalculationService {
             return 0.0;
         }
         
-        double commission = totalFare * PLATFORM_COMMISSION;
+        double commission = pricingEngine.current().commission(totalFare);
         return Math.round(commission * 100.0) / 100.0;
     }
 
@@ -271,14 +363,14 @@ public class FareCalculationService {
 
     // Getters for constants (useful for frontend display)
     public double getDefaultBaseFare() {
-        return DEFAULT_BASE_FARE;
+        return pricingEngine.current().getBaseFare();
     }
 
     public double getDefaultPricePerKm() {
-        return DEFAULT_PRICE_PER_KM;
+        return pricingEngine.current().getDefaultPricePerKm();
     }
 
     public double getPlatformCommissionRate() {
-        return PLATFORM_COMMISSION;
+        return pricingEngine.current().getCommissionRate();
     }
 }
\ No newline at end of file
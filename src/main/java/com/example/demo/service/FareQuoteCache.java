@@ -0,0 +1,197 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FareRequest;
+import com.example.demo.dto.FareResponse;
+import com.example.demo.repository.RideRepository;
+import com.example.demo.util.PricingTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of quick fare estimates.
+ *
+ * A quote only depends on the route, the passenger count and the pricing in effect, so it is
+ * kept per (normalized source, normalized destination, passengers, price per km, time-of-day
+ * multiplier, surge multiplier). Each entry remembers the pricing version it was computed under
+ * and is ignored once the pricing rules change.
+ * The most offered routes are quoted at startup so the common estimates are hits from the start.
+ */
+@Service
+public class FareQuoteCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FareQuoteCache.class);
+
+    @Autowired
+    private FareCalculationService fareCalculationService;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private SurgePricingService surgePricingService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Value("${fare.quote-cache.capacity:10000}")
+    private int capacity = 10000;
+
+    @Value("${fare.quote-cache.warm-routes:50}")
+    private int warmRoutes = 50;
+
+    private final Map<QuoteKey, CachedQuote> quotes = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<QuoteKey, CachedQuote> eldest) {
+                    return size() > capacity;
+                }
+            });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Quick fare estimate, from the cache when the pricing hasn't changed since it was computed
+     */
+    public FareResponse getQuickEstimate(String source, String destination, int passengers) {
+        PricingTable pricing = pricingEngine.current();
+        LocalTime now = LocalTime.now();
+        QuoteKey key = new QuoteKey(FareCalculationService.normalizeLocation(source),
+                FareCalculationService.normalizeLocation(destination), passengers,
+                pricing.getDefaultPricePerKm(), pricing.timeMultiplier(PricingTable.minuteOfDay(now)),
+                surgePricingService.getMultiplier(source));
+
+        CachedQuote cached = quotes.get(key);
+        if (cached != null && cached.pricingVersion == pricing.getVersion()) {
+            hits.incrementAndGet();
+            return cached.response;
+        }
+
+        misses.incrementAndGet();
+        FareRequest request = new FareRequest(source, destination, passengers);
+        request.setDepartureTime(now);
+        FareResponse response = fareCalculationService.calculateFare(request);
+        // A surge refresh between the key and the calculation would file the quote under a stale key
+        if (isCacheable(response) && key.surgeMultiplier == response.getFareDetails().getSurgeMultiplier()) {
+            quotes.put(key, new CachedQuote(pricing.getVersion(), response));
+        }
+        return response;
+    }
+
+    // Only quotes from a real distance estimate; a degraded fallback is worth retrying
+    private static boolean isCacheable(FareResponse response) {
+        return response.isSuccess() && response.getFareDetails() != null
+                && !"FALLBACK".equals(response.getFareDetails().getCalculationMethod());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        warm();
+    }
+
+    /**
+     * Quote the most offered routes so their estimates are served from memory
+     * @return number of routes quoted
+     */
+    public int warm() {
+        if (warmRoutes <= 0) {
+            return 0;
+        }
+        try {
+            List<Object[]> routes = rideRepository.findMostCommonRoutes(PageRequest.of(0, warmRoutes));
+            int warmed = 0;
+            for (Object[] route : routes) {
+                if (route[0] != null && route[1] != null) {
+                    getQuickEstimate((String) route[0], (String) route[1], 1);
+                    warmed++;
+                }
+            }
+            logger.info("Fare quote cache warmed with {} routes", warmed);
+            return warmed;
+        } catch (Exception e) {
+            logger.warn("Could not warm fare quote cache: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Drop every cached quote
+     */
+    public void clear() {
+        quotes.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", quotes.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("pricingVersion", pricingEngine.getVersion());
+        return stats;
+    }
+
+    private static final class QuoteKey {
+        private final String source;
+        private final String destination;
+        private final int passengers;
+        private final double pricePerKm;
+        private final double fareMultiplier;
+        private final double surgeMultiplier;
+
+        private QuoteKey(String source, String destination, int passengers, double pricePerKm,
+                         double fareMultiplier, double surgeMultiplier) {
+            this.source = source;
+            this.destination = destination;
+            this.passengers = passengers;
+            this.pricePerKm = pricePerKm;
+            this.fareMultiplier = fareMultiplier;
+            this.surgeMultiplier = surgeMultiplier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof QuoteKey other)) return false;
+            return passengers == other.passengers
+                    && Double.compare(pricePerKm, other.pricePerKm) == 0
+                    && Double.compare(fareMultiplier, other.fareMultiplier) == 0
+                    && Double.compare(surgeMultiplier, other.surgeMultiplier) == 0
+                    && source.equals(other.source)
+                    && destination.equals(other.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, destination, passengers, pricePerKm, fareMultiplier, surgeMultiplier);
+        }
+    }
+
+    private static final class CachedQuote {
+        private final long pricingVersion;
+        private final FareResponse response;
+
+        private CachedQuote(long pricingVersion, FareResponse response) {
+            this.pricingVersion = pricingVersion;
+            this.response = response;
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.example.demo.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
-import org.json.JSONObject;
-import org.json.JSONArray;
+import com.example.demo.util.DistanceResponseParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,8 +23,9 @@ public class GoogleMapsService {
 
     private final RestTemplate restTemplate;
 
-    public GoogleMapsService() {
-        this.restTemplate = new RestTemplate();
+    @Autowired
+    public GoogleMapsService(RestTemplate outboundRestTemplate) {
+        this.restTemplate = outboundRestTemplate;
     }
 
     /**
@@ -43,48 +45,32 @@ public class GoogleMapsService {
 
             logger.info("Calling Google Maps API for distance calculation: {} -> {}", origin, destination);
 
-            // Make API call
-            String response = restTemplate.getForObject(url, String.class);
-            
+            // Make API call, reading only the fields we need straight off the response stream
+            DistanceResponseParser.Result response = restTemplate.execute(url, HttpMethod.GET, null,
+                    clientResponse -> DistanceResponseParser.parseDistanceMatrix(clientResponse.getBody()));
+
             if (response == null) {
                 logger.warn("Google Maps API returned null response");
                 return getFallbackDistance(origin, destination);
             }
 
-            // Parse JSON response
-            JSONObject jsonResponse = new JSONObject(response);
-            String status = jsonResponse.getString("status");
-
-            if (!"OK".equals(status)) {
-                logger.warn("Google Maps API returned status: {}", status);
-                return getFallbackDistance(origin, destination);
-            }
-
-            // Extract distance from response
-            JSONArray rows = jsonResponse.getJSONArray("rows");
-            if (rows.length() == 0) {
-                logger.warn("No rows in Google Maps API response");
+            if (!"OK".equals(response.getStatus())) {
+                logger.warn("Google Maps API returned status: {}", response.getStatus());
                 return getFallbackDistance(origin, destination);
             }
 
-            JSONArray elements = rows.getJSONObject(0).getJSONArray("elements");
-            if (elements.length() == 0) {
-                logger.warn("No elements in Google Maps API response");
+            if (!"OK".equals(response.getRouteStatus())) {
+                logger.warn("Google Maps API element status: {}", response.getRouteStatus());
                 return getFallbackDistance(origin, destination);
             }
 
-            JSONObject element = elements.getJSONObject(0);
-            String elementStatus = element.getString("status");
-
-            if (!"OK".equals(elementStatus)) {
-                logger.warn("Google Maps API element status: {}", elementStatus);
+            if (!response.hasDistance()) {
+                logger.warn("No distance in Google Maps API response");
                 return getFallbackDistance(origin, destination);
             }
 
-            // Get distance in meters and convert to kilometers
-            JSONObject distance = element.getJSONObject("distance");
-            double distanceMeters = distance.getDouble("value");
-            double distanceKm = distanceMeters / 1000.0;
+            // Convert meters to kilometers
+            double distanceKm = response.getDistanceMeters() / 1000.0;
 
             logger.info("Distance calculated: {} km", distanceKm);
             return distanceKm;
@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control in front of the JDBC connection pool.
+ *
+ * With virtual threads the servlet container no longer caps how many requests run at once, so
+ * a burst can put thousands of threads in line for a pool of a few connections, each holding its
+ * request until the pool's connection timeout. This limiter hands out at most
+ * {@code max-concurrent} connections in arrival order, lets at most {@code max-waiting} threads
+ * queue for one, and fails the rest straight away, so overload turns into quick errors instead
+ * of a pile of stalled requests.
+ */
+@Service
+public class JdbcAdmissionLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcAdmissionLimiter.class);
+
+    @Value("${jdbc.admission.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${jdbc.admission.max-concurrent:10}")
+    private int maxConcurrent = 10;
+
+    @Value("${jdbc.admission.max-waiting:200}")
+    private int maxWaiting = 200;
+
+    @Value("${jdbc.admission.acquire-timeout-ms:5000}")
+    private long acquireTimeoutMs = 5000;
+
+    private volatile Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The data source with connections admitted through this limiter
+     */
+    public DataSource wrap(DataSource dataSource) {
+        logger.info("JDBC admission control on: {} connections, {} waiting, {} ms timeout",
+                maxConcurrent, maxWaiting, acquireTimeoutMs);
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                acquire();
+                return admit(() -> obtainTargetDataSource().getConnection());
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                acquire();
+                return admit(() -> obtainTargetDataSource().getConnection(username, password));
+            }
+        };
+    }
+
+    void acquire() throws SQLException {
+        Semaphore gate = permits();
+        if (gate.tryAcquire()) {
+            admitted.incrementAndGet();
+            return;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new SQLTransientConnectionException("Too many requests waiting for a database connection");
+        }
+        long startedAt = System.nanoTime();
+        try {
+            if (!gate.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timedOut.incrementAndGet();
+                throw new SQLTransientConnectionException(
+                        "No database connection available within " + acquireTimeoutMs + " ms");
+            }
+            admitted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitNanos.addAndGet(System.nanoTime() - startedAt);
+        }
+    }
+
+    void release() {
+        permits().release();
+    }
+
+    // Get a connection for an admitted caller; its permit goes back when the connection closes
+    private Connection admit(ConnectionSource source) throws SQLException {
+        Connection connection;
+        try {
+            connection = source.get();
+        } catch (SQLException | RuntimeException e) {
+            release();
+            throw e;
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "close":
+                            try {
+                                connection.close();
+                            } finally {
+                                if (closed.compareAndSet(false, true)) {
+                                    release();
+                                }
+                            }
+                            return null;
+                        default:
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    private Semaphore permits() {
+        Semaphore gate = permits;
+        if (gate == null) {
+            synchronized (this) {
+                if (permits == null) {
+                    permits = new Semaphore(Math.max(1, maxConcurrent), true);
+                }
+                gate = permits;
+            }
+        }
+        return gate;
+    }
+
+    public Map<String, Object> getStats() {
+        long admittedCount = admitted.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxWaiting", maxWaiting);
+        stats.put("inUse", enabled ? maxConcurrent - permits().availablePermits() : 0);
+        stats.put("waiting", waiting.get());
+        stats.put("admitted", admittedCount);
+        stats.put("rejected", rejected.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("avgWaitMs", admittedCount > 0 ? waitNanos.get() / 1_000_000.0 / admittedCount : 0.0);
+        return stats;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
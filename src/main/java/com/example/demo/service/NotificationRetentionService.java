@@ -0,0 +1,237 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Purges read notifications older than the retention age.
+ *
+ * Works in small chunks (select a page of IDs, optionally archive those rows, delete them
+ * by ID) with a pause between chunks so a large backlog never holds long locks on the
+ * notifications table. Archived rows are written as gzipped JSON lines, one file per run;
+ * each chunk is flushed through the compressor and synced to disk before its rows are
+ * deleted, so a failure can only duplicate archived rows, never lose them.
+ */
+@Service
+public class NotificationRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRetentionService.class);
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${notification.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notification.retention.max-age-days:30}")
+    private int maxAgeDays;
+
+    @Value("${notification.retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notification.retention.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    @Value("${notification.retention.max-batches-per-run:1000}")
+    private int maxBatchesPerRun;
+
+    @Value("${notification.retention.archive.enabled:false}")
+    private boolean archiveEnabled;
+
+    @Value("${notification.retention.archive.directory:archive/notifications}")
+    private String archiveDirectory;
+
+    private volatile RetentionResult lastResult;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    /**
+     * Run one retention pass
+     * @return how many notifications were archived and deleted
+     */
+    public RetentionResult purgeReadNotifications() {
+        runLock.lock();
+        try {
+            return purge();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private RetentionResult purge() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(maxAgeDays);
+
+        if (!enabled) {
+            return new RetentionResult(cutoff, 0, 0, 0, 0, null);
+        }
+
+        long deleted = 0;
+        long archived = 0;
+        int batches = 0;
+        Path archiveFile = null;
+        FileChannel archiveChannel = null;
+        Writer archiveWriter = null;
+
+        try {
+            while (batches < maxBatchesPerRun) {
+                List<Long> ids = notificationRepository.findReadNotificationIdsOlderThan(cutoff, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                if (archiveEnabled) {
+                    if (archiveWriter == null) {
+                        archiveFile = newArchiveFile();
+                        archiveChannel = FileChannel.open(archiveFile, StandardOpenOption.WRITE);
+                        // syncFlush: flush() pushes everything through the deflater, not just the writer
+                        archiveWriter = new BufferedWriter(new OutputStreamWriter(
+                                new GZIPOutputStream(Channels.newOutputStream(archiveChannel), true), StandardCharsets.UTF_8));
+                    }
+                    archived += archiveRows(ids, archiveWriter);
+                    // The batch must be on disk before its rows are deleted
+                    archiveWriter.flush();
+                    archiveChannel.force(false);
+                }
+
+                deleted += notificationRepository.deleteByIdIn(ids);
+                batches++;
+
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                if (batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Notification retention interrupted after {} batches", batches);
+        } catch (IOException e) {
+            logger.error("Notification archive write failed, stopping before deleting unarchived rows: {}", e.getMessage(), e);
+        } finally {
+            if (archiveWriter != null) {
+                try {
+                    archiveWriter.close();
+                } catch (IOException e) {
+                    logger.error("Failed to close notification archive {}: {}", archiveFile, e.getMessage());
+                }
+            } else if (archiveChannel != null) {
+                try {
+                    archiveChannel.close();
+                } catch (IOException e) {
+                    logger.error("Failed to close notification archive {}: {}", archiveFile, e.getMessage());
+                }
+            }
+        }
+
+        RetentionResult result = new RetentionResult(cutoff, deleted, archived, batches,
+                System.currentTimeMillis() - startedAt, archiveFile != null ? archiveFile.toString() : null);
+        lastResult = result;
+
+        if (deleted > 0) {
+            logger.info("CLEANUP: Purged {} read notifications older than {} ({} archived, {} batches, {} ms)",
+                    deleted, cutoff, archived, batches, result.getDurationMs());
+        }
+        return result;
+    }
+
+    public RetentionResult getLastResult() {
+        return lastResult;
+    }
+
+    // Created here and never overwritten: a second run in the same second gets its own file
+    private Path newArchiveFile() throws IOException {
+        Path dir = Paths.get(archiveDirectory);
+        Files.createDirectories(dir);
+        String name = "notifications-" + LocalDateTime.now().format(FILE_TIMESTAMP);
+        for (int attempt = 0; ; attempt++) {
+            Path file = dir.resolve(name + (attempt == 0 ? "" : "-" + attempt) + ".jsonl.gz");
+            try {
+                return Files.createFile(file);
+            } catch (FileAlreadyExistsException e) {
+                if (attempt >= 100) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int archiveRows(List<Long> ids, Writer writer) throws IOException {
+        int count = 0;
+        for (Object[] row : notificationRepository.findArchiveRowsByIds(ids)) {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("id", row[0]);
+            record.put("userId", row[1]);
+            record.put("title", row[2]);
+            record.put("message", row[3]);
+            record.put("type", row[4]);
+            record.put("createdAt", row[5]);
+            record.put("rideId", row[6]);
+            record.put("bookingId", row[7]);
+            writer.write(objectMapper.writeValueAsString(record));
+            writer.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    // Result of a retention pass
+    public static class RetentionResult {
+        private final LocalDateTime cutoff;
+        private final long deleted;
+        private final long archived;
+        private final int batches;
+        private final long durationMs;
+        private final String archiveFile;
+        private final LocalDateTime completedAt = LocalDateTime.now();
+
+        public RetentionResult(LocalDateTime cutoff, long deleted, long archived, int batches,
+                               long durationMs, String archiveFile) {
+            this.cutoff = cutoff;
+            this.deleted = deleted;
+            this.archived = archived;
+            this.batches = batches;
+            this.durationMs = durationMs;
+            this.archiveFile = archiveFile;
+        }
+
+        // Getters
+        public LocalDateTime getCutoff() { return cutoff; }
+        public long getDeleted() { return deleted; }
+        public long getArchived() { return archived; }
+        public int getBatches() { return batches; }
+        public long getDurationMs() { return durationMs; }
+        public String getArchiveFile() { return archiveFile; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+    }
+}
@@ -3,18 +3,37 @@ package com.example.demo.service;
 import com.example.demo.entity.EmailOtp;
 import com.example.demo.entity.OtpType;
 import com.example.demo.repository.EmailOtpRepository;
+import com.example.demo.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Optional;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * OTP generation and verification backed by an in-memory store.
+ *
+ * Each email/type pair holds at most one live OTP. Entries expire through a timer
+ * scheduled when they are issued, and requests are throttled with a per email/type
+ * token bucket, so neither path needs a database query. When otp.store.persist is
+ * enabled every live OTP is also written to email_otps so it survives a restart; the
+ * row is deleted when the OTP is used, replaced or expires.
+ */
 @Service
 public class OtpService {
 
@@ -34,32 +53,71 @@ public class OtpService {
     @Value("${otp.length:6}")
     private int otpLength;
 
+    @Value("${otp.store.persist:false}")
+    private boolean persist;
+
+    private final Map<String, OtpEntry> otps = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> rateLimits = new ConcurrentHashMap<>();
+    private ScheduledExecutorService expiryTimer;
+
+    @PostConstruct
+    public void start() {
+        expiryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "otp-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        if (persist) {
+            restorePersistedOtps();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (expiryTimer != null) {
+            expiryTimer.shutdownNow();
+        }
+    }
+
     /**
      * Generate and send OTP
      */
-    @Transactional
     public void generateAndSendOtp(String email, OtpType type) {
+        String key = key(email, type);
+
         // Rate limiting check
-        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-        long otpCount = otpRepository.countOtpsInLastHour(email, type, oneHourAgo);
-        
-        if (otpCount >= MAX_OTPS_PER_HOUR) {
+        TokenBucket bucket = rateLimits.computeIfAbsent(key, k -> {
+            TokenBucket created = new TokenBucket(MAX_OTPS_PER_HOUR, Duration.ofHours(1));
+            scheduleRateLimitEviction(k, created);
+            return created;
+        });
+        if (!bucket.tryConsume()) {
             throw new RuntimeException("Too many OTP requests. Please try again after an hour.");
         }
 
-        // Invalidate all previous OTPs for this email and type
-        otpRepository.invalidateAllOtpsForEmailAndType(email, type);
-
-        // Generate new OTP
+        // Generate new OTP, replacing (invalidating) any previous one for this email and type
         String otp = generateOtp();
-        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(otpExpiryMinutes);
-
-        // Save OTP to database
-        EmailOtp emailOtp = new EmailOtp(email, otp, expiresAt, type);
-        otpRepository.save(emailOtp);
+        long ttlMillis = TimeUnit.MINUTES.toMillis(otpExpiryMinutes);
+        OtpEntry entry = new OtpEntry(otp, System.currentTimeMillis() + ttlMillis);
+        if (persist) {
+            entry.persistedId = persistOtp(email, otp, type, entry.expiresAtMillis);
+        }
+        OtpEntry previous = otps.put(key, entry);
+        if (previous != null) {
+            removePersisted(previous);
+        }
+        scheduleExpiry(key, entry, ttlMillis);
 
         // Send OTP email
-        emailService.sendOtpEmail(email, otp, type.getDescription());
+        try {
+            emailService.sendOtpEmail(email, otp, type.getDescription());
+        } catch (RuntimeException e) {
+            // Don't leave an OTP behind that the user never received
+            if (otps.remove(key, entry)) {
+                removePersisted(entry);
+            }
+            throw e;
+        }
 
         logger.info("OTP generated and sent for email: {} type: {}", email, type);
     }
@@ -67,25 +125,26 @@ public class OtpService {
     /**
      * Verify OTP
      */
-    @Transactional
     public boolean verifyOtp(String email, String otp, OtpType type) {
-        Optional<EmailOtp> otpRecord = otpRepository.findByEmailAndOtpAndTypeAndVerifiedFalse(email, otp, type);
+        String key = key(email, type);
+        OtpEntry entry = otps.get(key);
 
-        if (otpRecord.isEmpty()) {
+        if (entry == null || otp == null || !entry.matches(otp)) {
             logger.warn("Invalid OTP attempt for email: {} type: {}", email, type);
             return false;
         }
 
-        EmailOtp emailOtp = otpRecord.get();
-
-        if (emailOtp.isExpired()) {
+        if (entry.isExpired()) {
             logger.warn("Expired OTP attempt for email: {} type: {}", email, type);
             return false;
         }
 
-        // Mark OTP as verified
-        emailOtp.setVerified(true);
-        otpRepository.save(emailOtp);
+        // Single use: only the caller that removes the entry succeeds
+        if (!otps.remove(key, entry)) {
+            logger.warn("OTP already used for email: {} type: {}", email, type);
+            return false;
+        }
+        removePersisted(entry);
 
         logger.info("OTP verified successfully for email: {} type: {}", email, type);
         return true;
@@ -95,8 +154,8 @@ public class OtpService {
      * Check if there's a valid OTP for email and type
      */
     public boolean hasValidOtp(String email, OtpType type) {
-        Optional<EmailOtp> otpRecord = otpRepository.findLatestValidOtp(email, type, LocalDateTime.now());
-        return otpRecord.isPresent();
+        OtpEntry entry = otps.get(key(email, type));
+        return entry != null && !entry.isExpired();
     }
 
     /**
@@ -110,17 +169,93 @@ public class OtpService {
         return otp.toString();
     }
 
+    private static String key(String email, OtpType type) {
+        return type.name() + ":" + (email == null ? "" : email.trim().toLowerCase());
+    }
+
+    private void scheduleExpiry(String key, OtpEntry entry, long delayMillis) {
+        expiryTimer.schedule(() -> {
+            if (otps.remove(key, entry)) {
+                removePersisted(entry);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
-     * Cleanup expired OTPs (runs every 12 hours with 20 minute initial delay)
+     * Drop the bucket once it has fully refilled, it carries no state worth keeping
      */
-    @Scheduled(fixedRate = 43200000, initialDelay = 1200000) // 12 hours, 20 min delay
-    @Transactional
-    public void cleanupExpiredOtps() {
+    private void scheduleRateLimitEviction(String key, TokenBucket bucket) {
+        expiryTimer.schedule(() -> {
+            if (bucket.isFull()) {
+                rateLimits.remove(key, bucket);
+            } else {
+                scheduleRateLimitEviction(key, bucket);
+            }
+        }, 1, TimeUnit.HOURS);
+    }
+
+    // ---------------- OPTIONAL PERSISTENCE ----------------
+
+    private Long persistOtp(String email, String otp, OtpType type, long expiresAtMillis) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault());
+        return otpRepository.save(new EmailOtp(email, otp, expiresAt, type)).getId();
+    }
+
+    private void removePersisted(OtpEntry entry) {
+        if (entry.persistedId == null) {
+            return;
+        }
         try {
-            otpRepository.deleteExpiredOtps(LocalDateTime.now());
-            logger.info("Expired OTPs cleaned up successfully");
+            otpRepository.deleteById(entry.persistedId);
         } catch (Exception e) {
-            logger.error("Error cleaning up expired OTPs", e);
+            logger.warn("Failed to delete persisted OTP {}: {}", entry.persistedId, e.getMessage());
+        }
+    }
+
+    /**
+     * Reload OTPs that were still live when the application stopped
+     */
+    private void restorePersistedOtps() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            otpRepository.deleteExpiredOtps(now);
+            int restored = 0;
+            for (EmailOtp saved : otpRepository.findByVerifiedFalseAndExpiresAtAfterOrderByCreatedAtAsc(now)) {
+                long expiresAtMillis = saved.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                OtpEntry entry = new OtpEntry(saved.getOtp(), expiresAtMillis);
+                entry.persistedId = saved.getId();
+                String key = key(saved.getEmail(), saved.getType());
+                OtpEntry previous = otps.put(key, entry);
+                if (previous != null) {
+                    removePersisted(previous);
+                }
+                scheduleExpiry(key, entry, Math.max(0L, expiresAtMillis - System.currentTimeMillis()));
+                restored++;
+            }
+            logger.info("Restored {} persisted OTPs", restored);
+        } catch (Exception e) {
+            logger.error("Error restoring persisted OTPs", e);
+        }
+    }
+
+    private static class OtpEntry {
+        private final byte[] otp;
+        private final long expiresAtMillis;
+        private Long persistedId;
+
+        private OtpEntry(String otp, long expiresAtMillis) {
+            this.otp = otp.getBytes(StandardCharsets.UTF_8);
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        // Constant-time comparison so response timing doesn't leak matching digits
+        private boolean matches(String candidate) {
+            return MessageDigest.isEqual(otp, candidate.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAtMillis;
         }
     }
-}
\ No newline at end of file
+}
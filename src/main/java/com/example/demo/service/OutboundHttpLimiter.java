@@ -0,0 +1,154 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host limits and metrics for the shared outbound HTTP client.
+ *
+ * The JDK client pools keep-alive connections but opens as many as there are concurrent calls,
+ * so each host gets a semaphore of {@code http.client.max-per-host} permits: a caller waits up
+ * to {@code acquire-timeout-ms} for one and otherwise fails, the same way a timed-out call does.
+ * A call holds its permit until its response is closed. Calls, failures, rejections and
+ * latency are counted per host.
+ */
+@Service
+public class OutboundHttpLimiter implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundHttpLimiter.class);
+
+    @Value("${http.client.max-per-host:20}")
+    private int maxPerHost = 20;
+
+    @Value("${http.client.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs = 2000;
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String host = request.getURI().getHost() != null ? request.getURI().getHost() : "unknown";
+        HostStats stats = hosts.computeIfAbsent(host, key -> new HostStats(maxPerHost));
+        try {
+            if (!stats.permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                stats.rejected.incrementAndGet();
+                logger.warn("Outbound call to {} rejected: {} calls already in flight", host, maxPerHost);
+                throw new IOException("Too many concurrent calls to " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting to call " + host, e);
+        }
+
+        long startedAt = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+            if (response.getStatusCode().isError()) {
+                stats.failures.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            stats.failures.incrementAndGet();
+            stats.finish(startedAt);
+            throw e;
+        }
+        // The connection stays busy until the body has been read and the response closed
+        return new HostResponse(response, stats, startedAt);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> byHost = new TreeMap<>();
+        hosts.forEach((host, stats) -> {
+            long calls = stats.calls.get();
+            Map<String, Object> hostStats = new HashMap<>();
+            hostStats.put("calls", calls);
+            hostStats.put("failures", stats.failures.get());
+            hostStats.put("rejected", stats.rejected.get());
+            hostStats.put("inFlight", maxPerHost - stats.permits.availablePermits());
+            hostStats.put("avgMs", calls > 0 ? stats.totalNanos.get() / 1_000_000.0 / calls : 0.0);
+            hostStats.put("maxMs", stats.maxNanos.get() / 1_000_000.0);
+            byHost.put(host, hostStats);
+        });
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxPerHost", maxPerHost);
+        stats.put("hosts", byHost);
+        return stats;
+    }
+
+    private static final class HostStats {
+        private final Semaphore permits;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private HostStats(int permits) {
+            this.permits = new Semaphore(Math.max(1, permits));
+        }
+
+        private void finish(long startedAt) {
+            permits.release();
+            long elapsed = System.nanoTime() - startedAt;
+            calls.incrementAndGet();
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private static final class HostResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final HostStats stats;
+        private final long startedAt;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private HostResponse(ClientHttpResponse response, HostStats stats, long startedAt) {
+            this.response = response;
+            this.stats = stats;
+            this.startedAt = startedAt;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException { return response.getStatusCode(); }
+
+        @Override
+        public String getStatusText() throws IOException { return response.getStatusText(); }
+
+        @Override
+        public HttpHeaders getHeaders() { return response.getHeaders(); }
+
+        @Override
+        public InputStream getBody() throws IOException { return response.getBody(); }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    stats.finish(startedAt);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs BCrypt hashing and verification on a small dedicated pool instead of request threads.
+ *
+ * A login burst can then only occupy the hashing threads and a bounded queue; once both
+ * are full further requests are refused immediately with {@link HashingBusyException}
+ * (mapped to 503) rather than tying up the servlet pool that search and booking share.
+ * Per-operation latency, queue wait and rejection counts are exposed through {@link #getStats()}.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${auth.hashing.pool-enabled:true}")
+    private boolean poolEnabled;
+
+    // 0 = half the available processors
+    @Value("${auth.hashing.threads:0}")
+    private int threads;
+
+    @Value("${auth.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.hashing.timeout-ms:10000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    // Metrics
+    private final OperationStats encodeStats = new OperationStats();
+    private final OperationStats matchStats = new OperationStats();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rehashed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (!poolEnabled) {
+            return;
+        }
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Password hashing pool started: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hash a raw password with the configured BCrypt cost
+     */
+    public String encode(CharSequence rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword), encodeStats);
+    }
+
+    /**
+     * Check a raw password against a stored hash
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword), matchStats);
+    }
+
+    /**
+     * Whether a stored hash was made with a lower cost than the one configured now
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Record a hash that was upgraded to the current cost after a successful login
+     */
+    public void recordRehash() {
+        rehashed.incrementAndGet();
+    }
+
+    private <T> T run(Callable<T> task, OperationStats stats) {
+        if (executor == null) {
+            return timed(task, stats);
+        }
+
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWaitNanos.addAndGet(System.nanoTime() - submittedAt);
+                return timed(task, stats);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new HashingBusyException();
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw new HashingBusyException();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new HashingBusyException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private <T> T timed(Callable<T> task, OperationStats stats) {
+        long start = System.nanoTime();
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            stats.record(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("poolEnabled", executor != null);
+        stats.put("encode", encodeStats.toMap());
+        stats.put("match", matchStats.toMap());
+        long completed = encodeStats.count.get() + matchStats.count.get();
+        stats.put("avgQueueWaitMs", completed > 0 && executor != null ? queueWaitNanos.get() / completed / 1_000_000.0 : 0.0);
+        stats.put("rejected", rejected.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("rehashed", rehashed.get());
+        if (executor != null) {
+            stats.put("threads", executor.getMaximumPoolSize());
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+            stats.put("queueCapacity", queueCapacity);
+        }
+        return stats;
+    }
+
+    // Latency counters for one kind of hashing operation
+    private static class OperationStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private Map<String, Object> toMap() {
+            long n = count.get();
+            Map<String, Object> map = new HashMap<>();
+            map.put("count", n);
+            map.put("avgMs", n > 0 ? totalNanos.get() / n / 1_000_000.0 : 0.0);
+            map.put("maxMs", maxNanos.get() / 1_000_000.0);
+            return map;
+        }
+    }
+
+    /**
+     * Thrown when the hashing pool is saturated; callers should answer 503 and let the client retry
+     */
+    public static class HashingBusyException extends RuntimeException {
+        public HashingBusyException() {
+            super("Authentication service is busy, please retry shortly");
+        }
+    }
+}
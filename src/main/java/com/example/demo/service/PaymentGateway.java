@@ -0,0 +1,34 @@
+package com.example.demo.service;
+
+/**
+ * Blocking calls to a payment gateway, made only from {@link PaymentGatewayClient}'s bulkhead
+ * threads. Amounts are in paise; returned IDs and method names are the gateway's own.
+ */
+public interface PaymentGateway {
+
+    /**
+     * @return the gateway order ID
+     */
+    String createOrder(long amountPaise, String currency, String receipt) throws Exception;
+
+    /**
+     * @return the gateway's method name for a payment ("card", "upi", ...)
+     */
+    String fetchPaymentMethod(String paymentId) throws Exception;
+
+    /**
+     * @param receipt the caller's key for this refund, recorded with it so it can be found again
+     * @return the gateway refund ID
+     */
+    String createRefund(String paymentId, long amountPaise, String reason, String receipt) throws Exception;
+
+    /**
+     * @return ID of the payment's refund made with this receipt, or null if there is none
+     */
+    String findRefund(String paymentId, String receipt) throws Exception;
+
+    /**
+     * Short name for logs and metrics
+     */
+    String name();
+}
@@ -0,0 +1,360 @@
+package com.example.demo.service;
+
+import com.example.demo.util.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking front for the {@link PaymentGateway}.
+ *
+ * Gateway calls run on a small dedicated pool with a bounded queue (the bulkhead), so a slow
+ * gateway can only occupy those threads and never the servlet pool. Each operation has its
+ * own timeout, a circuit breaker fails calls fast while the gateway keeps failing, and reads
+ * are retried within a retry budget (a fraction of recent traffic) so retries can't pile
+ * extra load onto a struggling gateway. Refusals surface as {@link GatewayUnavailableException}.
+ */
+@Service
+public class PaymentGatewayClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayClient.class);
+
+    @Autowired
+    private PaymentGateway gateway;
+
+    @Value("${payment.gateway.threads:8}")
+    private int threads = 8;
+
+    @Value("${payment.gateway.queue-capacity:32}")
+    private int queueCapacity = 32;
+
+    @Value("${payment.gateway.timeout.create-order-ms:5000}")
+    private long createOrderTimeoutMs = 5000;
+
+    @Value("${payment.gateway.timeout.fetch-ms:3000}")
+    private long fetchTimeoutMs = 3000;
+
+    @Value("${payment.gateway.timeout.refund-ms:10000}")
+    private long refundTimeoutMs = 10000;
+
+    @Value("${payment.gateway.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold = 5;
+
+    @Value("${payment.gateway.breaker.open-seconds:30}")
+    private long breakerOpenSeconds = 30;
+
+    // Retries allowed per call made, and the most that can be saved up while traffic is quiet
+    @Value("${payment.gateway.retry.budget-ratio:0.1}")
+    private double retryBudgetRatio = 0.1;
+
+    @Value("${payment.gateway.retry.max-saved:10}")
+    private int retryBudgetMax = 10;
+
+    private ThreadPoolExecutor executor;
+    private CircuitBreaker breaker;
+    private RetryBudget retryBudget;
+
+    private final OperationStats createOrderStats = new OperationStats();
+    private final OperationStats fetchStats = new OperationStats();
+    private final OperationStats refundStats = new OperationStats();
+    private final AtomicLong bulkheadRejected = new AtomicLong();
+    private final AtomicLong refundsFound = new AtomicLong();
+
+    // Refunds for one receipt take turns, so a retry sees the refund an earlier attempt made
+    private final ReentrantLock[] refundLocks = new ReentrantLock[16];
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < refundLocks.length; i++) {
+            refundLocks[i] = new ReentrantLock();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "payment-gateway-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        breaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenSeconds, TimeUnit.SECONDS);
+        retryBudget = new RetryBudget(retryBudgetRatio, retryBudgetMax);
+        logger.info("Payment gateway client started for '{}': {} threads, queue capacity {}",
+                gateway.name(), threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public CompletableFuture<String> createOrder(long amountPaise, String currency, String receipt) {
+        // Not retried: a second create would make a second order
+        return call(createOrderStats, createOrderTimeoutMs, false,
+                () -> gateway.createOrder(amountPaise, currency, receipt));
+    }
+
+    public CompletableFuture<String> fetchPaymentMethod(String paymentId) {
+        return call(fetchStats, fetchTimeoutMs, true, () -> gateway.fetchPaymentMethod(paymentId));
+    }
+
+    /**
+     * Refund a payment at most once per receipt: a refund already made with this receipt is
+     * returned instead of refunding again, and refunds for one receipt never run side by side.
+     * A timeout leaves the outcome unknown (the gateway may still make the refund), so it fails
+     * with OUTCOME_UNKNOWN; calling again with the same receipt then finds that refund.
+     * @param receipt the caller's key for this refund, the same on every retry
+     */
+    public CompletableFuture<String> createRefund(String paymentId, long amountPaise, String reason, String receipt) {
+        Objects.requireNonNull(receipt, "receipt");
+        return call(refundStats, refundTimeoutMs, false, () -> {
+            ReentrantLock lock = refundLocks[Math.floorMod(receipt.hashCode(), refundLocks.length)];
+            lock.lock();
+            try {
+                String existing = gateway.findRefund(paymentId, receipt);
+                if (existing != null) {
+                    logger.warn("Refund {} for payment {} already made as {}", receipt, paymentId, existing);
+                    refundsFound.incrementAndGet();
+                    return existing;
+                }
+                return gateway.createRefund(paymentId, amountPaise, reason, receipt);
+            } finally {
+                lock.unlock();
+            }
+        }).exceptionallyCompose(e -> {
+            Throwable cause = unwrap(e);
+            if (cause instanceof GatewayUnavailableException unavailable
+                    && unavailable.getReason() == GatewayUnavailableException.Reason.TIMEOUT) {
+                cause = new GatewayUnavailableException(GatewayUnavailableException.Reason.OUTCOME_UNKNOWN);
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    /**
+     * Wait for a gateway result on the calling thread, unwrapping the failure
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> call(OperationStats stats, long timeoutMs, boolean idempotent, Callable<T> task) {
+        stats.calls.incrementAndGet();
+        retryBudget.deposit();
+        CompletableFuture<T> first = attempt(stats, timeoutMs, task);
+        if (!idempotent) {
+            return first;
+        }
+        return first.exceptionallyCompose(e -> {
+            Throwable cause = unwrap(e);
+            if (isRetryable(cause) && retryBudget.tryWithdraw()) {
+                stats.retries.incrementAndGet();
+                return attempt(stats, timeoutMs, task);
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private <T> CompletableFuture<T> attempt(OperationStats stats, long timeoutMs, Callable<T> task) {
+        long permit = breaker.tryAcquirePermission();
+        if (permit == CircuitBreaker.NO_PERMIT) {
+            return CompletableFuture.failedFuture(
+                    new GatewayUnavailableException(GatewayUnavailableException.Reason.CIRCUIT_OPEN));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            breaker.releasePermission(permit);
+            bulkheadRejected.incrementAndGet();
+            return CompletableFuture.failedFuture(
+                    new GatewayUnavailableException(GatewayUnavailableException.Reason.BULKHEAD_FULL));
+        }
+
+        // The timeout frees the caller; the pool thread is only released when the SDK call returns
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((result, e) -> {
+                    stats.record(System.nanoTime() - start);
+                    if (e == null) {
+                        breaker.onSuccess(permit);
+                        return result;
+                    }
+                    breaker.onFailure(permit);
+                    Throwable cause = unwrap(e);
+                    if (cause instanceof TimeoutException) {
+                        stats.timeouts.incrementAndGet();
+                        throw new CompletionException(
+                                new GatewayUnavailableException(GatewayUnavailableException.Reason.TIMEOUT));
+                    }
+                    stats.failures.incrementAndGet();
+                    throw new CompletionException(cause);
+                });
+    }
+
+    // Refusals made locally would only fail again; timeouts and gateway errors may not
+    private static boolean isRetryable(Throwable cause) {
+        return !(cause instanceof GatewayUnavailableException unavailable)
+                || unavailable.getReason() == GatewayUnavailableException.Reason.TIMEOUT;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    public String getGatewayName() {
+        return gateway.name();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("gateway", gateway.name());
+        stats.put("createOrder", createOrderStats.toMap());
+        stats.put("fetchPaymentMethod", fetchStats.toMap());
+        stats.put("createRefund", refundStats.toMap());
+        stats.put("refundsAlreadyMade", refundsFound.get());
+        stats.put("circuitState", breaker.getState());
+        stats.put("circuitRejected", breaker.getRejected());
+        stats.put("circuitOpened", breaker.getTimesOpened());
+        stats.put("bulkheadRejected", bulkheadRejected.get());
+        stats.put("retryBudgetAvailable", retryBudget.available());
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        return stats;
+    }
+
+    // Latency and outcome counters for one gateway operation
+    private static class OperationStats {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            attempts.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private Map<String, Object> toMap() {
+            long n = attempts.get();
+            Map<String, Object> map = new HashMap<>();
+            map.put("calls", calls.get());
+            map.put("attempts", n);
+            map.put("retries", retries.get());
+            map.put("failures", failures.get());
+            map.put("timeouts", timeouts.get());
+            map.put("avgMs", n > 0 ? totalNanos.get() / n / 1_000_000.0 : 0.0);
+            map.put("maxMs", maxNanos.get() / 1_000_000.0);
+            return map;
+        }
+    }
+
+    // Each call earns a fraction of a retry; a retry spends a whole one. Counted in thousandths.
+    private static class RetryBudget {
+        private final long depositPerCall;
+        private final long max;
+        private final AtomicLong balance;
+
+        private RetryBudget(double ratio, int maxSaved) {
+            this.depositPerCall = Math.round(ratio * 1000);
+            this.max = maxSaved * 1000L;
+            this.balance = new AtomicLong(max);
+        }
+
+        private void deposit() {
+            balance.accumulateAndGet(depositPerCall, (current, add) -> Math.min(max, current + add));
+        }
+
+        private boolean tryWithdraw() {
+            long current;
+            do {
+                current = balance.get();
+                if (current < 1000) {
+                    return false;
+                }
+            } while (!balance.compareAndSet(current, current - 1000));
+            return true;
+        }
+
+        private double available() {
+            return balance.get() / 1000.0;
+        }
+    }
+
+    /**
+     * The gateway call was not made or not completed in time; callers should answer 503 and let the client retry.
+     * OUTCOME_UNKNOWN means a refund may have gone through: a retry must use the same receipt.
+     */
+    public static class GatewayUnavailableException extends RuntimeException {
+
+        public enum Reason {
+            CIRCUIT_OPEN,
+            BULKHEAD_FULL,
+            TIMEOUT,
+            OUTCOME_UNKNOWN
+        }
+
+        private final Reason reason;
+
+        public GatewayUnavailableException(Reason reason) {
+            super(switch (reason) {
+                case CIRCUIT_OPEN -> "Payment gateway is temporarily unavailable, please retry shortly";
+                case BULKHEAD_FULL -> "Payment gateway is busy, please retry shortly";
+                case TIMEOUT -> "Payment gateway did not respond in time, please retry";
+                case OUTCOME_UNKNOWN -> "Payment gateway did not confirm the refund in time; it will not be repeated, please check its status shortly";
+            });
+            this.reason = reason;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.PaymentEvent;
+import com.example.demo.repository.PaymentEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes payment events (checkout verification, gateway webhooks) apply at most once.
+ *
+ * Applied events are recorded in payment_events under a unique idempotency key, written in
+ * the same transaction as the payment update so a duplicate can never commit. A small LRU
+ * of recently applied keys answers repeat deliveries without a query, and an in-flight set
+ * stops two requests for the same key on this node from racing each other.
+ */
+@Service
+public class PaymentIdempotencyService {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Value("${payment.idempotency.recent-keys:10000}")
+    private int recentKeyCapacity = 10000;
+
+    private final Map<String, Boolean> recentKeys = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > recentKeyCapacity;
+                }
+            });
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong recentHits = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong concurrentRejects = new AtomicLong();
+
+    /**
+     * Idempotency key for settling a Razorpay order (one successful settlement per order)
+     */
+    public static String orderKey(String razorpayOrderId) {
+        return "order:" + razorpayOrderId;
+    }
+
+    /**
+     * Idempotency key for a webhook delivery: the gateway's event ID when sent, else a payload digest
+     */
+    public static String webhookKey(String eventId, String payload) {
+        if (eventId != null && !eventId.isBlank()) {
+            return "event:" + eventId;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return "webhook:" + new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if an event with this key has already been applied
+     */
+    public boolean isProcessed(String key) {
+        if (recentKeys.containsKey(key)) {
+            recentHits.incrementAndGet();
+            return true;
+        }
+        if (paymentEventRepository.existsByIdempotencyKey(key)) {
+            storeHits.incrementAndGet();
+            recentKeys.put(key, Boolean.TRUE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Claim a key for processing on this node
+     * @return false if another request is already processing it
+     */
+    public boolean tryBegin(String key) {
+        if (inFlight.add(key)) {
+            return true;
+        }
+        concurrentRejects.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Release a claimed key; inside a transaction this waits for commit or rollback, so a
+     * retry can't slip in between the release and the commit
+     */
+    public void release(String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    inFlight.remove(key);
+                }
+            });
+        } else {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Record an event as applied. Must run in the transaction that applies it; a duplicate key
+     * fails here with a DataIntegrityViolationException and rolls the whole transaction back.
+     */
+    public void record(String key, String eventType, String razorpayOrderId, String razorpayPaymentId) {
+        paymentEventRepository.saveAndFlush(new PaymentEvent(key, eventType, razorpayOrderId, razorpayPaymentId));
+        recorded.incrementAndGet();
+
+        // Only remember the key once it is durable, or a rolled-back attempt would block retries
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentKeys.put(key, Boolean.TRUE);
+                }
+            });
+        } else {
+            recentKeys.put(key, Boolean.TRUE);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recentKeys", recentKeys.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("recentHits", recentHits.get());
+        stats.put("storeHits", storeHits.get());
+        stats.put("recorded", recorded.get());
+        stats.put("concurrentRejects", concurrentRejects.get());
+        return stats;
+    }
+}
@@ -4,13 +4,16 @@ import com.example.demo.controller.AdminWebSocketController;
 import com.example.demo.entity.*;
 import com.example.demo.repository.PaymentRepository;
 
+import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,9 +41,17 @@ public class PaymentService {
     @Autowired
     private AdminWebSocketController adminWebSocketController;
 
+    @Autowired
+    private PaymentIdempotencyService idempotencyService;
+
+    @Autowired
+    private PendingPaymentReaper pendingPaymentReaper;
+
     /**
-     * Create a new payment for a booking
+     * Create a new payment for a booking. Runs outside a transaction so no database connection
+     * is held while waiting on the gateway; the save commits on its own.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Payment createPayment(Booking booking, User user, Double amount) {
         try {
             logger.info("Creating payment for booking {} with amount ₹{}", booking.getId(), amount);
@@ -57,6 +68,8 @@ public class PaymentService {
 
             return savedPayment;
 
+        } catch (PaymentGatewayClient.GatewayUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error creating payment for booking {}: {}", booking.getId(), e.getMessage(), e);
             throw new RuntimeException("Failed to create payment: " + e.getMessage());
@@ -64,89 +77,255 @@ public class PaymentService {
     }
 
     /**
-     * Process payment verification after successful payment
+     * Process payment verification after successful payment.
+     *
+     * Settling an order is idempotent: once its "order:" key is recorded, repeat calls (client
+     * retries, a webhook that got there first) return the settled payment without updating it,
+     * so the booking is confirmed and the driver credited exactly once.
      */
     public Payment processPayment(String razorpayPaymentId, String razorpayOrderId, String razorpaySignature) {
+        String orderKey = PaymentIdempotencyService.orderKey(razorpayOrderId);
         try {
             logger.info("Processing payment verification for order: {}", razorpayOrderId);
 
-            // Find payment by order ID
-            Optional<Payment> paymentOpt = paymentRepository.findByRazorpayOrderId(razorpayOrderId);
-            if (paymentOpt.isEmpty()) {
-                throw new RuntimeException("Payment not found for order ID: " + razorpayOrderId);
+            // Fast path: already settled, only the signature needs checking
+            if (idempotencyService.isProcessed(orderKey)) {
+                if (!razorpayService.verifyPaymentSignature(razorpayPaymentId, razorpayOrderId, razorpaySignature)) {
+                    throw new RuntimeException("Payment signature verification failed");
+                }
+                logger.info("Order {} already settled, skipping reprocessing", razorpayOrderId);
+                return findByOrderId(razorpayOrderId);
             }
 
-            Payment payment = paymentOpt.get();
+            if (!idempotencyService.tryBegin(orderKey)) {
+                throw new RuntimeException("Payment for order " + razorpayOrderId + " is already being processed");
+            }
+            try {
+                Payment payment = findByOrderId(razorpayOrderId);
 
-            // Verify payment signature with Razorpay
-            boolean isValidSignature = razorpayService.verifyPaymentSignature(
-                razorpayPaymentId, razorpayOrderId, razorpaySignature
-            );
+                // Verify payment signature with Razorpay
+                boolean isValidSignature = razorpayService.verifyPaymentSignature(
+                    razorpayPaymentId, razorpayOrderId, razorpaySignature
+                );
 
-            if (!isValidSignature) {
-                payment.setStatus(PaymentStatus.FAILED);
-                payment.setFailureReason("Invalid payment signature");
-                paymentRepository.save(payment);
-                throw new RuntimeException("Payment signature verification failed");
+                if (!isValidSignature) {
+                    if (payment.getStatus() != PaymentStatus.SUCCESS) {
+                        payment.setStatus(PaymentStatus.FAILED);
+                        payment.setFailureReason("Invalid payment signature");
+                        paymentRepository.save(payment);
+                    }
+                    throw new RuntimeException("Payment signature verification failed");
+                }
+
+                // Settled before idempotency keys were recorded
+                if (payment.getStatus() == PaymentStatus.SUCCESS) {
+                    return payment;
+                }
+
+                idempotencyService.record(orderKey, "payment.verified", razorpayOrderId, razorpayPaymentId);
+                return completePayment(payment, razorpayPaymentId, razorpaySignature);
+            } finally {
+                idempotencyService.release(orderKey);
             }
 
-            // Update payment details
-            payment.setRazorpayPaymentId(razorpayPaymentId);
-            payment.setRazorpaySignature(razorpaySignature);
-            payment.setStatus(PaymentStatus.SUCCESS);
+        } catch (Exception e) {
+            logger.error("Error processing payment: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to process payment: " + e.getMessage());
+        }
+    }
 
-            // Get payment method from Razorpay
-            try {
-                PaymentMethod paymentMethod = razorpayService.getPaymentMethod(razorpayPaymentId);
-                payment.setPaymentMethod(paymentMethod);
-            } catch (Exception e) {
-                logger.warn("Could not fetch payment method for payment {}: {}", razorpayPaymentId, e.getMessage());
+    /**
+     * Apply a signature-verified Razorpay webhook event at most once.
+     *
+     * payment.captured and order.paid settle the order if checkout verification hasn't already;
+     * payment.failed marks a still-unsettled payment as failed. Other events are only recorded.
+     * @return a short description of what was done, for the webhook response and logs
+     */
+    public String handleWebhookEvent(String eventKey, String payload) {
+        if (idempotencyService.isProcessed(eventKey)) {
+            logger.info("Duplicate webhook delivery {}, ignoring", eventKey);
+            return "duplicate";
+        }
+
+        JSONObject event = new JSONObject(payload);
+        String eventType = event.optString("event", "unknown");
+        JSONObject entity = Optional.ofNullable(event.optJSONObject("payload"))
+                .map(p -> p.optJSONObject("payment"))
+                .map(p -> p.optJSONObject("entity"))
+                .orElse(null);
+        String razorpayOrderId = entity != null ? entity.optString("order_id", null) : null;
+        String razorpayPaymentId = entity != null ? entity.optString("id", null) : null;
+
+        String outcome = "ignored";
+        if (razorpayOrderId != null) {
+            String orderKey = PaymentIdempotencyService.orderKey(razorpayOrderId);
+            switch (eventType) {
+                case "payment.captured", "order.paid" -> {
+                    if (idempotencyService.isProcessed(orderKey)) {
+                        outcome = "already-settled";
+                        break;
+                    }
+                    if (!idempotencyService.tryBegin(orderKey)) {
+                        // Not recorded, so the gateway's retry gets another chance
+                        throw new RuntimeException("Payment for order " + razorpayOrderId + " is already being processed");
+                    }
+                    try {
+                        Optional<Payment> paymentOpt = paymentRepository.findByRazorpayOrderId(razorpayOrderId);
+                        if (paymentOpt.isEmpty()) {
+                            outcome = "unknown-order";
+                        } else if (paymentOpt.get().getStatus() == PaymentStatus.SUCCESS) {
+                            outcome = "already-settled";
+                        } else {
+                            idempotencyService.record(orderKey, eventType, razorpayOrderId, razorpayPaymentId);
+                            completePayment(paymentOpt.get(), razorpayPaymentId, null);
+                            outcome = "settled";
+                        }
+                    } finally {
+                        idempotencyService.release(orderKey);
+                    }
+                }
+                case "payment.failed" -> {
+                    Optional<Payment> paymentOpt = paymentRepository.findByRazorpayOrderId(razorpayOrderId);
+                    if (paymentOpt.isPresent() && paymentOpt.get().getStatus() != PaymentStatus.SUCCESS
+                            && !idempotencyService.isProcessed(orderKey)) {
+                        String reason = entity.optString("error_description", "Payment failed at gateway");
+                        handlePaymentFailure(razorpayOrderId, reason);
+                        outcome = "failed";
+                    }
+                }
+                default -> {
+                }
             }
+        }
 
-            Payment savedPayment = paymentRepository.save(payment);
+        idempotencyService.record(eventKey, eventType, razorpayOrderId, razorpayPaymentId);
+        logger.info("Webhook {} ({}) for order {}: {}", eventKey, eventType, razorpayOrderId, outcome);
+        return outcome;
+    }
 
-            // Notify admin of successful payment
-            try {
-                adminWebSocketController.notifyPayment(savedPayment);
-            } catch (Exception e) {
-                logger.warn("Failed to send admin notification for payment: " + e.getMessage());
-            }
+    private Payment findByOrderId(String razorpayOrderId) {
+        return paymentRepository.findByRazorpayOrderId(razorpayOrderId)
+                .orElseThrow(() -> new RuntimeException("Payment not found for order ID: " + razorpayOrderId));
+    }
 
-            // Update booking status to confirmed
-            Booking booking = bookingService.confirmBookingAfterPayment(payment.getBooking().getId());
+    /**
+     * Mark a verified payment successful and run the one-time side effects: admin notification,
+     * booking confirmation, rider/driver notifications and the driver wallet credit
+     */
+    private Payment completePayment(Payment payment, String razorpayPaymentId, String razorpaySignature) {
+        // Update payment details
+        payment.setRazorpayPaymentId(razorpayPaymentId);
+        if (razorpaySignature != null) {
+            payment.setRazorpaySignature(razorpaySignature);
+        }
+        payment.setStatus(PaymentStatus.SUCCESS);
 
-            // Send booking confirmation notifications
-            try {
-                notificationService.sendBookingConfirmationNotification(booking);
-            } catch (Exception e) {
-                logger.error("Error sending booking confirmation notifications: {}", e.getMessage(), e);
-                // Don't fail the payment process if notifications fail
-            }
+        Payment savedPayment = paymentRepository.save(payment);
 
-            // Automatically distribute payment to driver's wallet
-            try {
-                User driver = booking.getRide().getDriver();
-                String rideDescription = booking.getRide().getSource() + " → " + booking.getRide().getDestination();
-                
+        // Payment method is informational, so it is fetched from Razorpay off the request path
+        fetchPaymentMethodAfterCommit(savedPayment.getId(), razorpayPaymentId);
+
+        // Notify admin of successful payment
+        try {
+            adminWebSocketController.notifyPayment(savedPayment);
+        } catch (Exception e) {
+            logger.warn("Failed to send admin notification for payment: " + e.getMessage());
+        }
+
+        // Update booking status to confirmed
+        Booking booking = bookingService.confirmBookingAfterPayment(payment.getBooking().getId());
+
+        // Send booking confirmation notifications
+        try {
+            notificationService.sendBookingConfirmationNotification(booking);
+        } catch (Exception e) {
+            logger.error("Error sending booking confirmation notifications: {}", e.getMessage(), e);
+            // Don't fail the payment process if notifications fail
+        }
+
+        // Automatically distribute payment to driver's wallet
+        try {
+            User driver = booking.getRide().getDriver();
+            String rideDescription = booking.getRide().getSource() + " → " + booking.getRide().getDestination();
+
+            if (walletService.isGroupCommitEnabled()) {
+                creditDriverAfterCommit(savedPayment.getId(), driver, payment.getAmount(), rideDescription,
+                    payment.getRazorpayPaymentId());
+            } else {
                 walletService.processDriverPayment(
-                    driver, 
-                    payment.getAmount(), 
-                    rideDescription, 
+                    driver,
+                    payment.getAmount(),
+                    rideDescription,
                     payment.getRazorpayPaymentId()
                 );
-                
+
                 logger.info("Driver payment processed successfully for payment: {}", savedPayment.getId());
-            } catch (Exception e) {
-                logger.error("Error processing driver payment for payment {}: {}", savedPayment.getId(), e.getMessage(), e);
-                // Don't fail the main payment process if driver payment fails
             }
+        } catch (Exception e) {
+            logger.error("Error processing driver payment for payment {}: {}", savedPayment.getId(), e.getMessage(), e);
+            // Don't fail the main payment process if driver payment fails
+        }
 
-            logger.info("Payment processed successfully: {}", savedPayment.getId());
-            return savedPayment;
+        logger.info("Payment processed successfully: {}", savedPayment.getId());
+        return savedPayment;
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing payment: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to process payment: " + e.getMessage());
+    /**
+     * Credit the driver through wallet group commit once the payment is committed, so queued
+     * credits never wait on (or outlive) this transaction. A credit lost after the commit (a
+     * crash, a full queue, a failed flush) is applied later by wallet reconciliation, which
+     * looks for successful payments with no ledger entry.
+     */
+    private void creditDriverAfterCommit(Long paymentId, User driver, Double amount, String rideDescription,
+                                         String razorpayPaymentId) {
+        Runnable credit = () -> {
+            try {
+                walletService.processDriverPaymentAsync(driver, amount, rideDescription, razorpayPaymentId)
+                    .whenComplete((transaction, e) -> {
+                        if (e != null) {
+                            logger.error("Error processing driver payment for payment {}: {}", paymentId, e.getMessage());
+                        } else {
+                            logger.info("Driver payment processed successfully for payment: {}", paymentId);
+                        }
+                    });
+            } catch (Exception e) {
+                logger.error("Error processing driver payment for payment {}: {}", paymentId, e.getMessage(), e);
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    credit.run();
+                }
+            });
+        } else {
+            credit.run();
+        }
+    }
+
+    private void fetchPaymentMethodAfterCommit(Long paymentId, String razorpayPaymentId) {
+        Runnable fetch = () -> razorpayService.getPaymentMethodAsync(razorpayPaymentId)
+                .thenAccept(method -> {
+                    if (method != null) {
+                        paymentRepository.updatePaymentMethod(paymentId, method);
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.warn("Could not fetch payment method for payment {}: {}", razorpayPaymentId, e.getMessage());
+                    return null;
+                });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fetch.run();
+                }
+            });
+        } else {
+            fetch.run();
         }
     }
 
@@ -265,28 +444,14 @@ public class PaymentService {
     }
 
     /**
-     * Cleanup old pending payments (scheduled task)
+     * Cleanup old pending payments (also runs on a schedule, see {@link PendingPaymentReaper})
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void cleanupOldPendingPayments() {
         try {
-            LocalDateTime cutoffTime = LocalDateTime.now().minusHours(24); // 24 hours old
-            List<Payment> oldPayments = paymentRepository.findPendingPaymentsOlderThan(cutoffTime);
-
-            for (Payment payment : oldPayments) {
-                payment.setStatus(PaymentStatus.FAILED);
-                payment.setFailureReason("Payment timeout - automatically cancelled");
-                
-                // Cancel associated booking if it's still pending payment
-                // This will be handled by the cleanup process
-            }
-
-            if (!oldPayments.isEmpty()) {
-                paymentRepository.saveAll(oldPayments);
-                logger.info("Cleaned up {} old pending payments", oldPayments.size());
-            }
-
+            pendingPaymentReaper.reap();
         } catch (Exception e) {
             logger.error("Error cleaning up old pending payments: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.PaymentStatus;
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Expires payments left in CREATED/PENDING past the timeout and releases their bookings.
+ *
+ * Works in chunks: select a page of stale payment IDs, then in one short transaction fail
+ * those payments and cancel the pending bookings behind them with two bulk UPDATEs. Expired
+ * payments no longer match the query, so the next page always starts from the front, and a
+ * run is capped so it can be scheduled often without ever turning into a long job.
+ */
+@Service
+public class PendingPaymentReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingPaymentReaper.class);
+
+    private static final String TIMEOUT_REASON = "Payment timeout - automatically cancelled";
+    private static final Set<PaymentStatus> LIVE_STATUSES =
+            EnumSet.of(PaymentStatus.CREATED, PaymentStatus.PENDING, PaymentStatus.SUCCESS);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payment.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${payment.reaper.max-age-minutes:1440}")
+    private long maxAgeMinutes;
+
+    @Value("${payment.reaper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${payment.reaper.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    private volatile ReapResult lastResult;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    // Totals since startup
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLong totalBookingsReleased = new AtomicLong();
+    private final AtomicLong totalBatches = new AtomicLong();
+    private final AtomicLong totalDurationMs = new AtomicLong();
+
+    public PendingPaymentReaper(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Runs every five minutes by default; an idle pass is a single indexed query
+     */
+    @Scheduled(fixedDelayString = "${payment.reaper.interval-ms:300000}",
+               initialDelayString = "${payment.reaper.initial-delay-ms:120000}")
+    public void scheduledReap() {
+        try {
+            reap();
+        } catch (Exception e) {
+            logger.error("Error expiring stale pending payments: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run one reaper pass
+     * @return how many payments were expired and bookings released
+     */
+    public ReapResult reap() {
+        // Not synchronized: a virtual thread blocked on JDBC while holding a monitor pins its
+        // carrier thread, a ReentrantLock does not
+        runLock.lock();
+        try {
+            return reapStalePayments();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private ReapResult reapStalePayments() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(maxAgeMinutes);
+
+        if (!enabled) {
+            return new ReapResult(cutoff, 0, 0, 0, 0);
+        }
+
+        long expired = 0;
+        long released = 0;
+        int batches = 0;
+
+        while (batches < maxBatchesPerRun) {
+            List<Long> paymentIds = paymentRepository.findStalePendingPaymentIds(cutoff, PageRequest.of(0, batchSize));
+            if (paymentIds.isEmpty()) {
+                break;
+            }
+
+            int[] counts = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                int expiredInBatch = paymentRepository.expirePendingPayments(
+                        paymentIds, PaymentStatus.FAILED, TIMEOUT_REASON, now);
+                int releasedInBatch = bookingRepository.releasePendingBookingsForPayments(
+                        paymentIds, BookingStatus.PENDING, BookingStatus.CANCELLED, LIVE_STATUSES, now);
+                return new int[] {expiredInBatch, releasedInBatch};
+            });
+            expired += counts[0];
+            released += counts[1];
+            batches++;
+            logger.debug("Expired {} payments and released {} bookings in chunk", counts[0], counts[1]);
+
+            if (paymentIds.size() < batchSize) {
+                break;
+            }
+        }
+
+        ReapResult result = new ReapResult(cutoff, expired, released, batches, System.currentTimeMillis() - startedAt);
+        lastResult = result;
+        runs.incrementAndGet();
+        totalExpired.addAndGet(expired);
+        totalBookingsReleased.addAndGet(released);
+        totalBatches.addAndGet(batches);
+        totalDurationMs.addAndGet(result.getDurationMs());
+
+        if (expired > 0) {
+            logger.info("CLEANUP: Expired {} pending payments older than {} and released {} bookings ({} batches, {} ms)",
+                    expired, cutoff, released, batches, result.getDurationMs());
+        }
+        if (batches >= maxBatchesPerRun) {
+            logger.warn("Payment reaper hit its limit of {} batches; the rest is left for the next run", maxBatchesPerRun);
+        }
+        return result;
+    }
+
+    public ReapResult getLastResult() {
+        return lastResult;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long durationMs = totalDurationMs.get();
+        stats.put("enabled", enabled);
+        stats.put("runs", runs.get());
+        stats.put("expired", totalExpired.get());
+        stats.put("bookingsReleased", totalBookingsReleased.get());
+        stats.put("batches", totalBatches.get());
+        stats.put("expiredPerSecond", durationMs > 0 ? totalExpired.get() * 1000.0 / durationMs : 0.0);
+        stats.put("lastRun", lastResult);
+        return stats;
+    }
+
+    // Result of a reaper pass
+    public static class ReapResult {
+        private final LocalDateTime cutoff;
+        private final long expired;
+        private final long bookingsReleased;
+        private final int batches;
+        private final long durationMs;
+        private final LocalDateTime completedAt = LocalDateTime.now();
+
+        public ReapResult(LocalDateTime cutoff, long expired, long bookingsReleased, int batches, long durationMs) {
+            this.cutoff = cutoff;
+            this.expired = expired;
+            this.bookingsReleased = bookingsReleased;
+            this.batches = batches;
+            this.durationMs = durationMs;
+        }
+
+        // Getters
+        public LocalDateTime getCutoff() { return cutoff; }
+        public long getExpired() { return expired; }
+        public long getBookingsReleased() { return bookingsReleased; }
+        public int getBatches() { return batches; }
+        public long getDurationMs() { return durationMs; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+    }
+}
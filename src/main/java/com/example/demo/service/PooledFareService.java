@@ -0,0 +1,302 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Booking;
+import com.example.demo.entity.Ride;
+import com.example.demo.enums.BookingStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Pooled fares: each passenger pays for the stretch of the driver's route they actually ride.
+ *
+ * Every stop is placed on the route by its road distance from the ride's source. A booking's
+ * share is the ride's per-seat fare scaled by the fraction of the route between its pickup and
+ * drop, so a full-route booking pays exactly the posted fare. Stop positions are looked up once
+ * per ride and kept, so later bookings and re-splits at the same places cost no distance lookups.
+ */
+@Service
+public class PooledFareService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledFareService.class);
+
+    @Value("${fare.pooled.cached-rides:1000}")
+    private int cachedRides = 1000;
+
+    private final Map<Long, RouteStops> routes = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, RouteStops> eldest) {
+                    return size() > cachedRides;
+                }
+            });
+
+    private final AtomicLong distanceLookups = new AtomicLong();
+    private final AtomicLong cachedPositions = new AtomicLong();
+
+    /**
+     * Fare for a new booking between two stops of a ride
+     * @param distances road distance in km between two places
+     */
+    public Share quote(Ride ride, String pickup, String drop, int seats, ToDoubleBiFunction<String, String> distances) {
+        RouteStops stops = stopsFor(ride, distances);
+        return share(ride, stops, null, pickup, drop, seats, distances);
+    }
+
+    /**
+     * Shares of every booking of a ride worked out together, with the seats taken on each
+     * leg of the route between consecutive stops. Cancelled bookings are left out.
+     */
+    public RideSplit split(Ride ride, List<Booking> bookings, ToDoubleBiFunction<String, String> distances) {
+        RouteStops stops = stopsFor(ride, distances);
+        List<Share> shares = new ArrayList<>();
+        TreeSet<Double> cuts = new TreeSet<>(List.of(0.0, round(stops.routeKm)));
+        for (Booking booking : bookings) {
+            if (booking.getStatus() == BookingStatus.CANCELLED) {
+                continue;
+            }
+            String pickup = booking.getPickupLocation() != null ? booking.getPickupLocation() : ride.getSource();
+            String drop = booking.getDropLocation() != null ? booking.getDropLocation() : ride.getDestination();
+            int seats = booking.getSeatsBooked() != null ? booking.getSeatsBooked() : 1;
+            Share share = share(ride, stops, booking.getId(), pickup, drop, seats, distances);
+            shares.add(share);
+            cuts.add(share.fromKm);
+            cuts.add(share.toKm);
+        }
+
+        // Seats boarding and leaving at each cut, then one sweep along the route
+        double[] points = cuts.stream().mapToDouble(Double::doubleValue).toArray();
+        int[] change = new int[points.length];
+        for (Share share : shares) {
+            change[Arrays.binarySearch(points, share.fromKm)] += share.seats;
+            change[Arrays.binarySearch(points, share.toKm)] -= share.seats;
+        }
+        double farePerSeatKm = farePerSeatKm(ride, stops);
+        List<Leg> legs = new ArrayList<>(points.length - 1);
+        int seatsTaken = 0;
+        for (int i = 0; i + 1 < points.length; i++) {
+            seatsTaken += change[i];
+            double length = points[i + 1] - points[i];
+            legs.add(new Leg(round(points[i]), round(points[i + 1]), seatsTaken,
+                    round(farePerSeatKm * length * seatsTaken)));
+        }
+        logger.debug("Split ride {} between {} bookings over {} legs", ride.getId(), shares.size(), legs.size());
+        return new RideSplit(ride.getId(), round(stops.routeKm), shares, legs);
+    }
+
+    /**
+     * Forget a ride's cached stops
+     */
+    public void evict(Long rideId) {
+        routes.remove(rideId);
+    }
+
+    private Share share(Ride ride, RouteStops stops, Long bookingId, String pickup, String drop, int seats,
+                        ToDoubleBiFunction<String, String> distances) {
+        double a = stops.position(pickup, distances);
+        double b = stops.position(drop, distances);
+        double from = Math.min(a, b);
+        double to = Math.max(a, b);
+        if (to - from < 0.01 && !FareCalculationService.normalizeLocation(pickup)
+                .equals(FareCalculationService.normalizeLocation(drop))) {
+            // Both stops project to the same point (off the route, or unknown to the geocoder):
+            // charge for the trip's own length instead
+            double trip = Math.min(stops.routeKm, lookup(distances, pickup, drop));
+            to = Math.min(stops.routeKm, from + trip);
+            from = to - trip;
+        }
+        double fare = farePerSeatKm(ride, stops) * (to - from) * seats;
+        return new Share(bookingId, pickup, drop, seats, round(from), round(to), round(fare));
+    }
+
+    // A ride's per-seat fare spread evenly over its route
+    private static double farePerSeatKm(Ride ride, RouteStops stops) {
+        double farePerSeat = ride.getFare() != null ? ride.getFare() : 0.0;
+        return stops.routeKm > 0 ? farePerSeat / stops.routeKm : 0.0;
+    }
+
+    private RouteStops stopsFor(Ride ride, ToDoubleBiFunction<String, String> distances) {
+        String source = FareCalculationService.normalizeLocation(ride.getSource());
+        String destination = FareCalculationService.normalizeLocation(ride.getDestination());
+        RouteStops stops = ride.getId() != null ? routes.get(ride.getId()) : null;
+        if (stops != null && stops.source.equals(source) && stops.destination.equals(destination)) {
+            return stops;
+        }
+        double routeKm = ride.getDistanceKm() != null && ride.getDistanceKm() > 0
+                ? ride.getDistanceKm()
+                : lookup(distances, ride.getSource(), ride.getDestination());
+        stops = new RouteStops(ride.getSource(), source, destination, routeKm);
+        if (ride.getId() != null) {
+            routes.put(ride.getId(), stops);
+        }
+        return stops;
+    }
+
+    private double lookup(ToDoubleBiFunction<String, String> distances, String from, String to) {
+        distanceLookups.incrementAndGet();
+        return distances.applyAsDouble(from, to);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cachedRides", routes.size());
+        stats.put("capacity", cachedRides);
+        stats.put("distanceLookups", distanceLookups.get());
+        stats.put("cachedPositions", cachedPositions.get());
+        return stats;
+    }
+
+    // Where each stop sits along one ride's route, in km from its source
+    private final class RouteStops {
+        private final String sourcePlace;
+        private final String source;
+        private final String destination;
+        private final double routeKm;
+        private final Map<String, Double> positions = new ConcurrentHashMap<>();
+
+        private RouteStops(String sourcePlace, String source, String destination, double routeKm) {
+            this.sourcePlace = sourcePlace;
+            this.source = source;
+            this.destination = destination;
+            this.routeKm = routeKm;
+        }
+
+        private double position(String place, ToDoubleBiFunction<String, String> distances) {
+            String stop = FareCalculationService.normalizeLocation(place);
+            if (stop.isEmpty() || stop.equals(source)) {
+                return 0.0;
+            }
+            if (stop.equals(destination)) {
+                return routeKm;
+            }
+            Double known = positions.get(stop);
+            if (known != null) {
+                cachedPositions.incrementAndGet();
+                return known;
+            }
+            // Looked up outside the map so a slow lookup doesn't block other stops
+            double position = Math.max(0.0, Math.min(routeKm, lookup(distances, sourcePlace, place)));
+            Double raced = positions.putIfAbsent(stop, position);
+            return raced != null ? raced : position;
+        }
+    }
+
+    /**
+     * One passenger's share of a ride
+     */
+    public static class Share {
+        private final Long bookingId;
+        private final String pickup;
+        private final String drop;
+        private final int seats;
+        private final double fromKm;
+        private final double toKm;
+        private final double fare;
+
+        public Share(Long bookingId, String pickup, String drop, int seats, double fromKm, double toKm, double fare) {
+            this.bookingId = bookingId;
+            this.pickup = pickup;
+            this.drop = drop;
+            this.seats = seats;
+            this.fromKm = fromKm;
+            this.toKm = toKm;
+            this.fare = fare;
+        }
+
+        // Getters
+        public Long getBookingId() { return bookingId; }
+        public String getPickup() { return pickup; }
+        public String getDrop() { return drop; }
+        public int getSeats() { return seats; }
+        public double getFromKm() { return fromKm; }
+        public double getToKm() { return toKm; }
+        public double getDistanceKm() { return round(toKm - fromKm); }
+        public double getFare() { return fare; }
+
+        /**
+         * The same share with its fare scaled, e.g. by the demand surge at the pickup
+         */
+        public Share withFareMultiplier(double multiplier) {
+            if (multiplier == 1.0) {
+                return this;
+            }
+            return new Share(bookingId, pickup, drop, seats, fromKm, toKm, round(fare * multiplier));
+        }
+    }
+
+    /**
+     * Stretch of the route between two consecutive stops
+     */
+    public static class Leg {
+        private final double fromKm;
+        private final double toKm;
+        private final int seatsTaken;
+        private final double fare;
+
+        public Leg(double fromKm, double toKm, int seatsTaken, double fare) {
+            this.fromKm = fromKm;
+            this.toKm = toKm;
+            this.seatsTaken = seatsTaken;
+            this.fare = fare;
+        }
+
+        // Getters
+        public double getFromKm() { return fromKm; }
+        public double getToKm() { return toKm; }
+        public int getSeatsTaken() { return seatsTaken; }
+        public double getFare() { return fare; }
+    }
+
+    /**
+     * All shares of a ride and the legs between its stops
+     */
+    public static class RideSplit {
+        private final Long rideId;
+        private final double routeKm;
+        private final List<Share> shares;
+        private final List<Leg> legs;
+
+        public RideSplit(Long rideId, double routeKm, List<Share> shares, List<Leg> legs) {
+            this.rideId = rideId;
+            this.routeKm = routeKm;
+            this.shares = shares;
+            this.legs = legs;
+        }
+
+        // Getters
+        public Long getRideId() { return rideId; }
+        public double getRouteKm() { return routeKm; }
+        public List<Share> getShares() { return shares; }
+        public List<Leg> getLegs() { return legs; }
+        public double getTotalFare() { return round(shares.stream().mapToDouble(Share::getFare).sum()); }
+
+        /**
+         * Only the shares of the given bookings, for a passenger who may not see where the
+         * others get on and off; the legs would give that away, so they are left out
+         */
+        public RideSplit forBookings(Collection<Long> bookingIds) {
+            List<Share> own = shares.stream()
+                    .filter(share -> bookingIds.contains(share.getBookingId()))
+                    .toList();
+            return new RideSplit(rideId, routeKm, own, List.of());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.demo.service;
+
+import com.example.demo.util.PricingTable;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the pricing rules every fare path evaluates.
+ *
+ * Rules come from the fare.* properties, optionally overridden by an external rules file
+ * (fare.rules-file) that is re-read when it changes. Each load compiles a new immutable
+ * {@link PricingTable} and swaps it in with a single volatile write, so callers grab
+ * {@link #current()} once per calculation and never see half-applied rules or read config.
+ */
+@Service
+public class PricingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricingEngine.class);
+
+    @Value("${fare.base-fare:50.0}")
+    private double baseFare = 50.0;
+
+    @Value("${fare.price-per-km:12.0}")
+    private double pricePerKm = 12.0;
+
+    @Value("${fare.minimum-fare:0.0}")
+    private double minimumFare = 0.0;
+
+    @Value("${fare.commission-rate:0.10}")
+    private double commissionRate = 0.10;
+
+    @Value("${fare.distance-tiers:0:1.0}")
+    private String distanceTiers = "0:1.0";
+
+    @Value("${fare.time-bands:}")
+    private String timeBands = "";
+
+    @Value("${fare.rules-file:}")
+    private String rulesFile = "";
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile PricingTable table = PricingTable.builder().build(0);
+    private volatile long rulesFileModified;
+    // Reloads read a file; a lock rather than a monitor keeps virtual threads unpinned
+    private final ReentrantLock rulesLock = new ReentrantLock();
+
+    @PostConstruct
+    public void start() {
+        reload();
+    }
+
+    /**
+     * Rules in effect; read it once per calculation
+     */
+    public PricingTable current() {
+        return table;
+    }
+
+    public long getVersion() {
+        return table.getVersion();
+    }
+
+    /**
+     * Rebuild the table from the properties and the rules file. On a bad rule the current
+     * table stays in place and the error is thrown to the caller.
+     */
+    public PricingTable reload() {
+        rulesLock.lock();
+        try {
+            return loadRules();
+        } finally {
+            rulesLock.unlock();
+        }
+    }
+
+    private PricingTable loadRules() {
+        Properties rules = new Properties();
+        if (rulesFile != null && !rulesFile.isBlank()) {
+            Path path = Paths.get(rulesFile);
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                rules.load(reader);
+                rulesFileModified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read pricing rules file " + rulesFile + ": " + e.getMessage(), e);
+            }
+        }
+
+        PricingTable next = PricingTable.builder()
+                .baseFare(number(rules, "fare.base-fare", baseFare))
+                .defaultPricePerKm(number(rules, "fare.price-per-km", pricePerKm))
+                .minimumFare(number(rules, "fare.minimum-fare", minimumFare))
+                .commissionRate(number(rules, "fare.commission-rate", commissionRate))
+                .distanceTiers(rules.getProperty("fare.distance-tiers", distanceTiers))
+                .timeBands(rules.getProperty("fare.time-bands", timeBands))
+                .build(versions.incrementAndGet());
+        table = next;
+        logger.info("Pricing rules loaded (version {}): {}", next.getVersion(), next.describe());
+        return next;
+    }
+
+    /**
+     * Change the base fare and/or default price per km on top of the current rules; null
+     * leaves a value as it is. Not persisted: the next reload goes back to the configured rules.
+     */
+    public PricingTable update(Double newBaseFare, Double newPricePerKm) {
+        rulesLock.lock();
+        try {
+            PricingTable.Builder builder = table.toBuilder();
+            if (newBaseFare != null) {
+                builder.baseFare(newBaseFare);
+            }
+            if (newPricePerKm != null) {
+                builder.defaultPricePerKm(newPricePerKm);
+            }
+            PricingTable next = builder.build(versions.incrementAndGet());
+            table = next;
+            logger.info("Pricing rules updated (version {}): {}", next.getVersion(), next.describe());
+            return next;
+        } finally {
+            rulesLock.unlock();
+        }
+    }
+
+    /**
+     * Pick up edits to the rules file without a restart
+     */
+    @Scheduled(fixedDelayString = "${fare.rules-file.check-interval-ms:30000}")
+    public void reloadIfRulesFileChanged() {
+        if (rulesFile == null || rulesFile.isBlank()) {
+            return;
+        }
+        try {
+            long modified = Files.getLastModifiedTime(Paths.get(rulesFile)).toMillis();
+            if (modified != rulesFileModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            logger.error("Error reloading pricing rules from {}: {}", rulesFile, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> rules = table.describe();
+        rules.put("rulesFile", rulesFile);
+        return rules;
+    }
+
+    private static double number(Properties rules, String key, double fallback) {
+        String value = rules.getProperty(key);
+        return value == null || value.isBlank() ? fallback : Double.parseDouble(value.trim());
+    }
+}
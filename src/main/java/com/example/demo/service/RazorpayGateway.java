@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import com.razorpay.Order;
+import com.razorpay.Payment;
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+import com.razorpay.Refund;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link PaymentGateway} backed by the Razorpay SDK
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway.mode", havingValue = "razorpay", matchIfMissing = true)
+public class RazorpayGateway implements PaymentGateway {
+
+    @Value("${razorpay.key.id}")
+    private String razorpayKeyId;
+
+    @Value("${razorpay.key.secret}")
+    private String razorpayKeySecret;
+
+    private volatile RazorpayClient razorpayClient;
+
+    private RazorpayClient getRazorpayClient() throws RazorpayException {
+        RazorpayClient client = razorpayClient;
+        if (client == null) {
+            synchronized (this) {
+                if (razorpayClient == null) {
+                    razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+                }
+                client = razorpayClient;
+            }
+        }
+        return client;
+    }
+
+    @Override
+    public String createOrder(long amountPaise, String currency, String receipt) throws RazorpayException {
+        JSONObject orderRequest = new JSONObject();
+        orderRequest.put("amount", amountPaise);
+        orderRequest.put("currency", currency);
+        orderRequest.put("receipt", receipt);
+
+        Order order = getRazorpayClient().orders.create(orderRequest);
+        return order.get("id");
+    }
+
+    @Override
+    public String fetchPaymentMethod(String paymentId) throws RazorpayException {
+        Payment payment = getRazorpayClient().payments.fetch(paymentId);
+        return payment.get("method");
+    }
+
+    @Override
+    public String createRefund(String paymentId, long amountPaise, String reason, String receipt) throws RazorpayException {
+        JSONObject refundRequest = new JSONObject();
+        refundRequest.put("amount", amountPaise);
+        refundRequest.put("receipt", receipt);
+        if (reason != null && !reason.isEmpty()) {
+            refundRequest.put("notes", new JSONObject().put("reason", reason));
+        }
+
+        Refund refund = getRazorpayClient().payments.refund(paymentId, refundRequest);
+        return refund.get("id");
+    }
+
+    @Override
+    public String findRefund(String paymentId, String receipt) throws RazorpayException {
+        for (Refund refund : getRazorpayClient().payments.fetchAllRefunds(paymentId)) {
+            if (refund.has("receipt") && receipt.equals(refund.get("receipt"))) {
+                return refund.get("id");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String name() {
+        return "razorpay";
+    }
+}
@@ -1,12 +1,8 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.PaymentMethod;
-import com.razorpay.Order;
-import com.razorpay.Payment;
-import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
-import com.razorpay.Utils;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
@@ -14,9 +10,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.util.Formatter;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class RazorpayService {
@@ -35,21 +32,14 @@ public class RazorpayService {
     @Value("${payment.test.mode:false}")
     private boolean testMode;
 
-    private RazorpayClient razorpayClient;
+    @Autowired
+    private PaymentGatewayClient gatewayClient;
 
-    /**
-     * Initialize Razorpay client
-     */
-    private RazorpayClient getRazorpayClient() throws RazorpayException {
-        if (razorpayClient == null) {
-            if (isConfigured()) {
-                razorpayClient = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-            } else {
-                throw new RazorpayException("Razorpay credentials not configured");
-            }
-        }
-        return razorpayClient;
-    }
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Mac is not thread-safe but costly to look up and key, so each thread keeps one per secret
+    private final ThreadLocal<Mac> paymentMac = ThreadLocal.withInitial(() -> newMac(razorpayKeySecret));
+    private final ThreadLocal<Mac> webhookMac = ThreadLocal.withInitial(() -> newMac(webhookSecret));
 
     /**
      * Check if Razorpay is configured
@@ -75,27 +65,18 @@ public class RazorpayService {
                 return mockOrderId;
             }
 
-            if (!isConfigured()) {
+            if (!isConfigured() && "razorpay".equals(gatewayClient.getGatewayName())) {
                 throw new RazorpayException("Razorpay not configured. Please add valid API keys.");
             }
 
-            RazorpayClient client = getRazorpayClient();
-
-            // Convert amount to paise (Razorpay expects amount in smallest currency unit)
-            int amountInPaise = (int) (amount * 100);
-
-            JSONObject orderRequest = new JSONObject();
-            orderRequest.put("amount", amountInPaise);
-            orderRequest.put("currency", currency);
-            orderRequest.put("receipt", receipt);
-
-            Order order = client.orders.create(orderRequest);
-            String orderId = order.get("id");
+            // Bounded by the gateway client's timeout; fails fast while the gateway is down
+            String orderId = PaymentGatewayClient.await(
+                gatewayClient.createOrder(toPaise(amount), currency, receipt));
 
             logger.info("Razorpay order created successfully: {}", orderId);
             return orderId;
 
-        } catch (RazorpayException e) {
+        } catch (RazorpayException | PaymentGatewayClient.GatewayUnavailableException e) {
             logger.error("Error creating Razorpay order: {}", e.getMessage(), e);
             throw e;
         } catch (Exception e) {
@@ -126,9 +107,9 @@ public class RazorpayService {
             String payload = razorpayOrderId + "|" + razorpayPaymentId;
             
             // Generate expected signature
-            String expectedSignature = generateSignature(payload, razorpayKeySecret);
+            String expectedSignature = generateSignature(payload, paymentMac.get());
 
-            boolean isValid = expectedSignature.equals(razorpaySignature);
+            boolean isValid = signaturesMatch(expectedSignature, razorpaySignature);
             
             if (isValid) {
                 logger.info("Payment signature verified successfully");
@@ -144,41 +125,30 @@ public class RazorpayService {
         }
     }
 
-    /**
-     * Get payment details from Razorpay
-     */
-    public Payment getPaymentDetails(String razorpayPaymentId) throws RazorpayException {
-        try {
-            logger.info("Fetching payment details for: {}", razorpayPaymentId);
-
-            RazorpayClient client = getRazorpayClient();
-            Payment payment = client.payments.fetch(razorpayPaymentId);
-
-            logger.info("Payment details fetched successfully");
-            return payment;
-
-        } catch (RazorpayException e) {
-            logger.error("Error fetching payment details: {}", e.getMessage(), e);
-            throw e;
-        }
-    }
-
     /**
      * Get payment method from Razorpay payment
      */
     public PaymentMethod getPaymentMethod(String razorpayPaymentId) throws RazorpayException {
         try {
-            Payment payment = getPaymentDetails(razorpayPaymentId);
-            String method = payment.get("method");
-
-            return mapRazorpayMethodToPaymentMethod(method);
-
+            return PaymentGatewayClient.await(getPaymentMethodAsync(razorpayPaymentId));
         } catch (Exception e) {
             logger.error("Error getting payment method: {}", e.getMessage(), e);
             throw new RazorpayException("Failed to get payment method: " + e.getMessage());
         }
     }
 
+    /**
+     * Fetch the payment method without blocking the caller; completes with null in test mode
+     */
+    public CompletableFuture<PaymentMethod> getPaymentMethodAsync(String razorpayPaymentId) {
+        if (testMode) {
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.info("Fetching payment method for: {}", razorpayPaymentId);
+        return gatewayClient.fetchPaymentMethod(razorpayPaymentId)
+                .thenApply(this::mapRazorpayMethodToPaymentMethod);
+    }
+
     /**
      * Map Razorpay payment method to our PaymentMethod enum
      */
@@ -216,8 +186,8 @@ public class RazorpayService {
                 return false;
             }
 
-            String expectedSignature = generateSignature(payload, webhookSecret);
-            return expectedSignature.equals(signature);
+            String expectedSignature = generateSignature(payload, webhookMac.get());
+            return signaturesMatch(expectedSignature, signature);
 
         } catch (Exception e) {
             logger.error("Error verifying webhook signature: {}", e.getMessage(), e);
@@ -226,55 +196,70 @@ public class RazorpayService {
     }
 
     /**
-     * Generate HMAC SHA256 signature
+     * Generate HMAC SHA256 signature as lowercase hex
      */
-    private String generateSignature(String payload, String secret) throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-        mac.init(secretKeySpec);
-        
-        byte[] hash = mac.doFinal(payload.getBytes());
-        
-        // Convert to hex string
-        Formatter formatter = new Formatter();
-        for (byte b : hash) {
-            formatter.format("%02x", b);
+    private String generateSignature(String payload, Mac mac) {
+        // doFinal resets the Mac, so the per-thread instance is ready for the next call
+        byte[] hash = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static Mac newMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
         }
-        String signature = formatter.toString();
-        formatter.close();
-        
-        return signature;
+    }
+
+    /**
+     * Constant-time comparison so response timing doesn't leak how much of a signature matched
+     */
+    private static boolean signaturesMatch(String expected, String actual) {
+        return actual != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
      * Create refund for a payment
+     * @param receipt this refund's own key (e.g. the cancelled booking), the same on every retry,
+     *                so a retry after an unconfirmed attempt never refunds twice
      */
-    public String createRefund(String razorpayPaymentId, Double amount, String reason) throws RazorpayException {
+    public String createRefund(String razorpayPaymentId, Double amount, String reason, String receipt)
+            throws RazorpayException {
         try {
-            logger.info("Creating refund for payment: {} amount: ₹{}", razorpayPaymentId, amount);
+            logger.info("Creating refund {} for payment: {} amount: ₹{}", receipt, razorpayPaymentId, amount);
 
-            RazorpayClient client = getRazorpayClient();
-
-            JSONObject refundRequest = new JSONObject();
-            refundRequest.put("amount", (int) (amount * 100)); // Convert to paise
-            if (reason != null && !reason.isEmpty()) {
-                refundRequest.put("notes", new JSONObject().put("reason", reason));
-            }
-
-            Payment payment = client.payments.fetch(razorpayPaymentId);
-            com.razorpay.Refund refund = client.payments.refund(razorpayPaymentId, refundRequest);
-            
-            String refundId = refund.get("id");
+            String refundId = PaymentGatewayClient.await(
+                gatewayClient.createRefund(razorpayPaymentId, toPaise(amount), reason, receipt));
             logger.info("Refund created successfully: {}", refundId);
-            
+
             return refundId;
 
-        } catch (RazorpayException e) {
+        } catch (RazorpayException | PaymentGatewayClient.GatewayUnavailableException e) {
             logger.error("Error creating refund: {}", e.getMessage(), e);
             throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error creating refund: {}", e.getMessage(), e);
+            throw new RazorpayException("Failed to create refund: " + e.getMessage());
         }
     }
 
+    /**
+     * Rupees to paise (Razorpay expects amount in smallest currency unit), rounded rather than truncated
+     */
+    private static long toPaise(Double amount) {
+        return Math.round(amount * 100);
+    }
+
     /**
      * Get Razorpay key ID for frontend
      */
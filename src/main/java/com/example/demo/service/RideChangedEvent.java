@@ -0,0 +1,60 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Ride;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Published whenever a ride is written in a way that can change what searches and listings
+ * show. Listeners see it once the writing transaction commits (at once if there is none).
+ */
+public class RideChangedEvent {
+
+    /**
+     * What happened to a ride, as far as readers are concerned
+     */
+    public enum Change {
+        POSTED(true), UPDATED(true), SEATS_RELEASED(true),
+        SEATS_TAKEN(false), FILLED(false), CANCELLED(false), COMPLETED(false), DELETED(false);
+
+        private final boolean widens;
+
+        Change(boolean widens) {
+            this.widens = widens;
+        }
+
+        /**
+         * True if the ride may now match searches it did not match before
+         */
+        public boolean widens() {
+            return widens;
+        }
+    }
+
+    private final Ride ride;
+    private final Set<Long> rideIds;
+    private final Change change;
+
+    public RideChangedEvent(Ride ride, Change change) {
+        this.ride = ride;
+        this.rideIds = Set.of(ride.getId());
+        this.change = change;
+    }
+
+    /**
+     * Change applied to many rides at once, where only their ids are at hand
+     */
+    public RideChangedEvent(Collection<Long> rideIds, Change change) {
+        this.ride = null;
+        this.rideIds = Set.copyOf(rideIds);
+        this.change = change;
+    }
+
+    // Getters
+    public Ride getRide() { return ride; }
+    public Set<Long> getRideIds() { return rideIds; }
+    public Change getChange() { return change; }
+    public LocalDate getDate() { return ride != null ? ride.getDate() : null; }
+}
@@ -0,0 +1,371 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Ride;
+import com.example.demo.repository.RideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory read model of the bookable (ACTIVE) rides for the next {@code ride.index.days-ahead}
+ * days.
+ *
+ * Rides are kept by id and partitioned by date; each partition publishes an array sorted by
+ * departure time, so a search for a date is one array scan on the seat count with no locking.
+ * The index is loaded when the application is ready, follows {@link RideChangedEvent}s as they
+ * commit, and is rebuilt from the database on a timer to repair anything an event missed.
+ * Readers get an empty Optional whenever the index can't answer exactly (not loaded yet, date
+ * outside the window) and then go to the database as before.
+ */
+@Service
+public class RideIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RideIndex.class);
+
+    private static final Comparator<IndexedRide> BY_DEPARTURE =
+            Comparator.comparingInt((IndexedRide ride) -> ride.minuteOfDay).thenComparingLong(ride -> ride.id);
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Value("${ride.index.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ride.index.days-ahead:30}")
+    private int daysAhead = 30;
+
+    private final Object writeLock = new Object();
+    private final Map<Long, IndexedRide> ridesById = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Partition> partitions = new ConcurrentHashMap<>();
+    private List<RideChangedEvent> changesDuringReload; // guarded by writeLock
+
+    private volatile boolean loaded;
+    private volatile LocalDate windowStart;
+    private volatile LocalDate windowEnd;
+    private volatile boolean availableBeyondWindow;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong reconciliations = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Could not load ride index, searches will use the database: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ride.index.reconcile-interval-ms:300000}",
+               initialDelayString = "${ride.index.reconcile-interval-ms:300000}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.error("Error reconciling ride index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuild the index from the database, moving the window to start today. Changes that
+     * commit while the rides are being read are applied again on top.
+     * @return number of rides that were missing, extra or different in the index
+     */
+    public int reconcile() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(Math.max(1, daysAhead) - 1L);
+        synchronized (writeLock) {
+            changesDuringReload = new ArrayList<>();
+        }
+        try {
+            List<Ride> rides = rideRepository.findActiveRidesBetween(from, to);
+            boolean beyond = rideRepository.countAvailableRidesAfter(to) > 0;
+
+            synchronized (writeLock) {
+                Map<Long, IndexedRide> fresh = new HashMap<>();
+                for (Ride ride : rides) {
+                    fresh.put(ride.getId(), new IndexedRide(ride));
+                }
+                int drift = loaded ? countDrift(fresh) : 0;
+
+                ridesById.clear();
+                ridesById.putAll(fresh);
+                partitions.clear();
+                Map<LocalDate, List<IndexedRide>> byDate = new HashMap<>();
+                for (IndexedRide ride : fresh.values()) {
+                    byDate.computeIfAbsent(ride.date, date -> new ArrayList<>()).add(ride);
+                }
+                byDate.forEach((date, dateRides) -> partitions.put(date, new Partition(dateRides)));
+                windowStart = from;
+                windowEnd = to;
+                availableBeyondWindow = beyond;
+
+                for (RideChangedEvent change : changesDuringReload) {
+                    apply(change);
+                }
+                changesDuringReload = null;
+                loaded = true;
+
+                reconciliations.incrementAndGet();
+                repaired.addAndGet(drift);
+                if (drift > 0) {
+                    logger.warn("Ride index reconciled {} to {}: {} rides corrected", from, to, drift);
+                } else {
+                    logger.info("Ride index loaded {} rides for {} to {}", fresh.size(), from, to);
+                }
+                return drift;
+            }
+        } finally {
+            synchronized (writeLock) {
+                changesDuringReload = null;
+            }
+        }
+    }
+
+    /**
+     * Take a committed ride change. Runs before the search cache drops its entries, so a search
+     * that misses the cache already finds the change here.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRideChanged(RideChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (changesDuringReload != null) {
+                changesDuringReload.add(event);
+            }
+            if (loaded || changesDuringReload != null) {
+                apply(event);
+            }
+        }
+    }
+
+    /**
+     * Bookable rides on a date with at least {@code seats} seats free, by departure time
+     * @return empty if the index can't answer for that date
+     */
+    public Optional<List<Ride>> findAvailable(LocalDate date, int seats) {
+        if (!canServe(date)) {
+            fallbacks.incrementAndGet();
+            return Optional.empty();
+        }
+        served.incrementAndGet();
+        Partition partition = partitions.get(date);
+        if (partition == null) {
+            return Optional.of(List.of());
+        }
+        List<Ride> rides = new ArrayList<>();
+        for (IndexedRide ride : partition.byDeparture) {
+            if (ride.availableSeats >= seats) {
+                rides.add(ride.ride);
+            }
+        }
+        return Optional.of(rides);
+    }
+
+    /**
+     * Every bookable ride with a free seat from today on, by date and departure time
+     * @return empty if some of those rides lie beyond the indexed window
+     */
+    public Optional<List<Ride>> listAvailable() {
+        LocalDate today = LocalDate.now();
+        if (!canServe(today) || availableBeyondWindow) {
+            fallbacks.incrementAndGet();
+            return Optional.empty();
+        }
+        served.incrementAndGet();
+        List<LocalDate> dates = new ArrayList<>(partitions.keySet());
+        dates.sort(null);
+        List<Ride> rides = new ArrayList<>();
+        for (LocalDate date : dates) {
+            if (date.isBefore(today)) {
+                continue;
+            }
+            Partition partition = partitions.get(date);
+            if (partition == null) {
+                continue;
+            }
+            for (IndexedRide ride : partition.byDeparture) {
+                if (ride.availableSeats > 0) {
+                    rides.add(ride.ride);
+                }
+            }
+        }
+        return Optional.of(rides);
+    }
+
+    private boolean canServe(LocalDate date) {
+        LocalDate start = windowStart;
+        LocalDate end = windowEnd;
+        return enabled && loaded && date != null && start != null
+                && !date.isBefore(start) && !date.isAfter(end);
+    }
+
+    // Caller holds writeLock
+    private void apply(RideChangedEvent event) {
+        changesApplied.incrementAndGet();
+        Ride ride = event.getRide();
+        if (ride == null) {
+            event.getRideIds().forEach(this::remove);
+            return;
+        }
+        if (event.getChange() == RideChangedEvent.Change.DELETED || !"ACTIVE".equals(ride.getStatus())) {
+            remove(ride.getId());
+            return;
+        }
+        LocalDate date = ride.getDate();
+        if (date == null || windowEnd == null || date.isBefore(windowStart) || date.isAfter(windowEnd)) {
+            // Edits can move a ride out of the window
+            remove(ride.getId());
+            if (date != null && windowEnd != null && date.isAfter(windowEnd)
+                    && ride.getAvailableSeats() != null && ride.getAvailableSeats() > 0) {
+                availableBeyondWindow = true;
+            }
+            return;
+        }
+
+        IndexedRide current = ridesById.get(ride.getId());
+        if (current != null && current.updatedAt != null && ride.getUpdatedAt() != null
+                && ride.getUpdatedAt().isBefore(current.updatedAt)) {
+            return; // an older write reported late
+        }
+        IndexedRide next = new IndexedRide(ride);
+        ridesById.put(next.id, next);
+        if (current != null && !current.date.equals(next.date)) {
+            rebuild(current.date);
+        }
+        rebuild(next.date);
+    }
+
+    // Caller holds writeLock
+    private void remove(Long rideId) {
+        IndexedRide current = ridesById.remove(rideId);
+        if (current != null) {
+            rebuild(current.date);
+        }
+    }
+
+    // Re-sort one date's partition from the rides by id; caller holds writeLock
+    private void rebuild(LocalDate date) {
+        List<IndexedRide> dateRides = new ArrayList<>();
+        Partition partition = partitions.get(date);
+        if (partition != null) {
+            for (IndexedRide ride : partition.byDeparture) {
+                IndexedRide latest = ridesById.get(ride.id);
+                if (latest != null && latest.date.equals(date)) {
+                    dateRides.add(latest);
+                }
+            }
+        }
+        for (IndexedRide ride : ridesById.values()) {
+            if (ride.date.equals(date) && (partition == null || !partition.contains(ride.id))) {
+                dateRides.add(ride);
+            }
+        }
+        if (dateRides.isEmpty()) {
+            partitions.remove(date);
+        } else {
+            partitions.put(date, new Partition(dateRides));
+        }
+    }
+
+    private int countDrift(Map<Long, IndexedRide> fresh) {
+        int drift = 0;
+        for (IndexedRide ride : fresh.values()) {
+            IndexedRide indexed = ridesById.get(ride.id);
+            if (indexed == null || indexed.availableSeats != ride.availableSeats || !indexed.date.equals(ride.date)
+                    || indexed.minuteOfDay != ride.minuteOfDay) {
+                drift++;
+            }
+        }
+        for (IndexedRide indexed : ridesById.values()) {
+            if (!fresh.containsKey(indexed.id) && !indexed.date.isBefore(windowStart)) {
+                drift++;
+            }
+        }
+        return drift;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("loaded", loaded);
+        stats.put("rides", ridesById.size());
+        stats.put("dates", partitions.size());
+        stats.put("windowStart", windowStart);
+        stats.put("windowEnd", windowEnd);
+        stats.put("availableBeyondWindow", availableBeyondWindow);
+        stats.put("served", served.get());
+        stats.put("fallbacks", fallbacks.get());
+        stats.put("changesApplied", changesApplied.get());
+        stats.put("reconciliations", reconciliations.get());
+        stats.put("repaired", repaired.get());
+        return stats;
+    }
+
+    // One date's rides, sorted by departure; replaced whole on every change
+    private static final class Partition {
+        private final IndexedRide[] byDeparture;
+
+        private Partition(List<IndexedRide> rides) {
+            this.byDeparture = rides.toArray(new IndexedRide[0]);
+            Arrays.sort(byDeparture, BY_DEPARTURE);
+        }
+
+        private boolean contains(long rideId) {
+            for (IndexedRide ride : byDeparture) {
+                if (ride.id == rideId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // What searches filter and sort on, flattened, plus the ride they return
+    private static final class IndexedRide {
+        private final long id;
+        private final LocalDate date;
+        private final int minuteOfDay;
+        private final int availableSeats;
+        private final LocalDateTime updatedAt;
+        private final Ride ride;
+
+        private IndexedRide(Ride ride) {
+            this.id = ride.getId();
+            this.date = ride.getDate();
+            this.minuteOfDay = ride.getTime() != null ? ride.getTime().getHour() * 60 + ride.getTime().getMinute() : 0;
+            this.availableSeats = ride.getAvailableSeats() != null ? ride.getAvailableSeats() : 0;
+            this.updatedAt = ride.getUpdatedAt();
+            this.ride = ride;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory cache of ride search matches.
+ *
+ * Entries are keyed by the normalized query (source, destination, seats) and the travel date,
+ * and remember which rides they returned. {@link RideChangedEvent}s arrive once the change has
+ * committed and drop exactly the entries it can affect:
+ * <ul>
+ *   <li>a ride that can now match more searches (posted, edited, seats released) drops every
+ *       entry for its date, since route matching is fuzzy and any query that day might match;</li>
+ *   <li>a ride that can only match fewer (seats taken, full, cancelled, completed, deleted)
+ *       drops just the entries that returned it.</li>
+ * </ul>
+ * A per-date generation stops a search that overlapped a change from caching what it read
+ * before the change. Entries also expire after a TTL as a safety net.
+ */
+@Service
+public class RideSearchCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RideSearchCache.class);
+
+    @Value("${search.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${search.cache.capacity:2000}")
+    private int capacity = 2000;
+
+    @Value("${search.cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    private final Map<SearchKey, CachedMatches> entries = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SearchKey, CachedMatches> eldest) {
+                    return size() > capacity;
+                }
+            });
+
+    private final Map<LocalDate, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    /**
+     * Matches for a search, from memory if nothing relevant changed since they were found
+     * @param search runs the search on a miss
+     */
+    public List<RouteMatchingService.RouteMatch> getMatches(String source, String destination, LocalDate date,
+                                                           int seats, Supplier<List<RouteMatchingService.RouteMatch>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        SearchKey key = new SearchKey(FareCalculationService.normalizeLocation(source),
+                FareCalculationService.normalizeLocation(destination), date, seats);
+        long now = System.currentTimeMillis();
+
+        CachedMatches cached = entries.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            hits.incrementAndGet();
+            return cached.matches;
+        }
+
+        misses.incrementAndGet();
+        long generation = generation(date).get();
+        List<RouteMatchingService.RouteMatch> matches = List.copyOf(search.get());
+        synchronized (entries) {
+            // A ride on this date changed while searching: the result may already be stale
+            if (generation(date).get() == generation) {
+                entries.put(key, new CachedMatches(matches, now + ttlSeconds * 1000));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Drop what a committed ride change may have made stale. Runs after the ride index has
+     * taken the change, so a search that misses here reads the new state.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onRideChanged(RideChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        LocalDate date = event.getDate();
+        if (date != null) {
+            generation(date).incrementAndGet();
+        } else {
+            // Only ids known: any date may hold them
+            generations.values().forEach(AtomicLong::incrementAndGet);
+        }
+        Set<Long> rideIds = event.getRideIds();
+        int removed;
+        if (event.getChange().widens()) {
+            // Edits may have moved the ride off another date, so its old entries go too
+            removed = removeIf(entry -> Objects.equals(entry.getKey().date, date)
+                    || entry.getValue().rideIds.stream().anyMatch(rideIds::contains));
+        } else {
+            removed = removeIf(entry -> entry.getValue().rideIds.stream().anyMatch(rideIds::contains));
+        }
+        logger.debug("Rides {} {} on {}: dropped {} cached searches", rideIds, event.getChange(), date, removed);
+    }
+
+    /**
+     * Drop every cached search
+     */
+    public void clear() {
+        synchronized (entries) {
+            generations.values().forEach(AtomicLong::incrementAndGet);
+            entries.clear();
+        }
+    }
+
+    private int removeIf(Predicate<Map.Entry<SearchKey, CachedMatches>> stale) {
+        int removed;
+        synchronized (entries) {
+            int before = entries.size();
+            entries.entrySet().removeIf(stale);
+            removed = before - entries.size();
+        }
+        invalidated.addAndGet(removed);
+        return removed;
+    }
+
+    private AtomicLong generation(LocalDate date) {
+        AtomicLong generation = generations.get(date);
+        if (generation == null) {
+            if (generations.size() > 1000) {
+                // Past dates are never searched again
+                LocalDate today = LocalDate.now();
+                generations.keySet().removeIf(day -> day.isBefore(today));
+            }
+            generation = generations.computeIfAbsent(date, day -> new AtomicLong());
+        }
+        return generation;
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        stats.put("invalidated", invalidated.get());
+        stats.put("ttlSeconds", ttlSeconds);
+        return stats;
+    }
+
+    private static final class SearchKey {
+        private final String source;
+        private final String destination;
+        private final LocalDate date;
+        private final int seats;
+
+        private SearchKey(String source, String destination, LocalDate date, int seats) {
+            this.source = source;
+            this.destination = destination;
+            this.date = date;
+            this.seats = seats;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SearchKey other)) return false;
+            return seats == other.seats
+                    && source.equals(other.source)
+                    && destination.equals(other.destination)
+                    && date.equals(other.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, destination, date, seats);
+        }
+    }
+
+    private static final class CachedMatches {
+        private final List<RouteMatchingService.RouteMatch> matches;
+        private final Set<Long> rideIds;
+        private final long expiresAt;
+
+        private CachedMatches(List<RouteMatchingService.RouteMatch> matches, long expiresAt) {
+            this.matches = matches;
+            this.rideIds = matches.stream().map(match -> match.getRide().getId()).collect(Collectors.toSet());
+            this.expiresAt = expiresAt;
+        }
+    }
+}
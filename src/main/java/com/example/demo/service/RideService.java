@@ -11,20 +11,25 @@ import com.example.demo.enums.BookingStatus;
 import com.example.demo.repository.RideRepository;
 import com.example.demo.repository.BookingRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.util.DistanceResponseParser;
+import com.example.demo.util.PricingTable;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.*;
-import org.json.JSONObject;
-import org.json.JSONArray;
 
 import java.util.ArrayList;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -59,20 +64,42 @@ public class RideService {
     @Autowired
     private NotificationService notificationService;
 
-    private static final double BASE_FARE = 50.0;
+    @Autowired
+    private UserIdentityResolver identityResolver;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    @Autowired
+    private SurgePricingService surgePricingService;
+
+    @Autowired
+    private PooledFareService pooledFareService;
+
+    @Autowired
+    private RideSearchCache rideSearchCache;
+
+    @Autowired
+    private RideIndex rideIndex;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private static final String OPENROUTESERVICE_KEY = "eyJvcmciOiI1YjNjZTM1OTc4NTExMTAwMDFjZjYyNDgiLCJpZCI6IjQ5OTQ1MTk5ZDBlNDRiNjFhOTRmZDNjMjFjMjM5ZGUwIiwiaCI6Im11cm11cjY0In0=";
     private static final String OPENROUTESERVICE_URL = "https://api.openrouteservice.org/v2/directions/driving-car";
+    private static final HttpHeaders OPENROUTESERVICE_HEADERS = openRouteServiceHeaders();
 
-    private RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private RestTemplate restTemplate;
 
     // ---------------- POST RIDE ----------------
     @Transactional
     public Ride postRide(RideRequest request, String driverIdentifier) {
         logger.info("🔍 Creating ride for driver: {}", driverIdentifier);
         
-        User driver = userRepository.findByEmail(driverIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(driverIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Driver not found")));
+        Long driverId = identityResolver.requireUserId(driverIdentifier, "Driver not found");
+        User driver = userRepository.findById(driverId)
+                .orElseThrow(() -> new RuntimeException("Driver not found"));
 
         logger.info("👤 Driver found: ID={}, Email={}, Username={}, Role={}", 
                    driver.getId(), driver.getEmail(), driver.getUsername(), driver.getRole());
@@ -99,7 +126,8 @@ public class RideService {
         // -------- Dynamic Fare Calculation --------
         double distanceKm = getDistanceKm(request.getSource(), request.getDestination());
         ride.setDistanceKm(Math.round(distanceKm * 100.0) / 100.0); // Store distance in ride
-        double totalRideFare = BASE_FARE + ride.getPricePerKm() * distanceKm;
+        double totalRideFare = pricingEngine.current().totalFare(distanceKm, ride.getPricePerKm(),
+            PricingTable.minuteOfDay(ride.getTime()));
         // Store FARE PER SEAT (not total ride fare)
         double farePerSeat = totalRideFare / ride.getTotalSeats();
         ride.setFare(Math.round(farePerSeat * 100.0) / 100.0);
@@ -108,6 +136,7 @@ public class RideService {
             distanceKm, Math.round(totalRideFare * 100.0) / 100.0, ride.getFare());
 
         Ride savedRide = rideRepository.save(ride);
+        eventPublisher.publishEvent(new RideChangedEvent(savedRide, RideChangedEvent.Change.POSTED));
         
         logger.info("✅ Ride saved successfully: ID={}, Driver ID={}, {} → {}", 
                    savedRide.getId(), savedRide.getDriver().getId(), 
@@ -126,9 +155,9 @@ public class RideService {
     // ---------------- BOOK RIDE ----------------
     @Transactional
     public Booking bookRide(Long rideId, BookingRequest request, String passengerIdentifier) {
-        User passenger = userRepository.findByEmail(passengerIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(passengerIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Passenger not found")));
+        Long passengerId = identityResolver.requireUserId(passengerIdentifier, "Passenger not found");
+        User passenger = userRepository.findById(passengerId)
+                .orElseThrow(() -> new RuntimeException("Passenger not found"));
 
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
@@ -149,38 +178,20 @@ public class RideService {
         booking.setDropLocation(request.getDropLocation() != null ? request.getDropLocation() : ride.getDestination());
         booking.setStatus(BookingStatus.PENDING); // Changed to pending payment
 
-        // -------- DYNAMIC FARE CALCULATION BASED ON DISTANCE --------
-        // Use the ride's pre-calculated fare per seat
-        // Fare per seat is already stored in ride.getFare()
-        double farePerSeat = ride.getFare();
-        double bookingDistance = ride.getDistanceKm(); // Default to ride distance
-        
-        // If pickup/drop differ from ride source/destination, recalculate
-        String pickupLoc = booking.getPickupLocation();
-        String dropLoc = booking.getDropLocation();
-        
-        if (!pickupLoc.equalsIgnoreCase(ride.getSource()) || !dropLoc.equalsIgnoreCase(ride.getDestination())) {
-            // Recalculate for custom route
-            double actualDistanceKm = getDistanceKm(pickupLoc, dropLoc);
-            bookingDistance = actualDistanceKm;
-            double actualTotalFare = BASE_FARE + (ride.getPricePerKm() * actualDistanceKm);
-            farePerSeat = actualTotalFare / ride.getTotalSeats();
-            logger.info("📊 Custom route: {} -> {} = {} km, Fare per seat: ₹{}", 
-                pickupLoc, dropLoc, actualDistanceKm, Math.round(farePerSeat * 100.0) / 100.0);
-        }
-        
-        // Store distance in booking
-        booking.setDistance(Math.round(bookingDistance * 100.0) / 100.0);
-        
-        // Calculate total fare for the number of seats booked
-        double passengerFare = farePerSeat * request.getSeatsBooked();
-        
-        // Round to 2 decimal places
-        passengerFare = Math.round(passengerFare * 100.0) / 100.0;
-        booking.setFare(passengerFare);
-        
-        logger.info("📊 Booking fare: ₹{} per seat × {} seat(s) = ₹{}", 
-            Math.round(farePerSeat * 100.0) / 100.0, request.getSeatsBooked(), passengerFare);
+        // -------- POOLED FARE FOR THE STRETCH OF THE ROUTE RIDDEN --------
+        // The ride's per-seat fare is scaled by how much of the driver's route lies between
+        // pickup and drop; a full-route booking pays exactly the posted fare per seat. The demand
+        // surge at the pickup applies on top, as it does in the fare quote
+        double surge = surgePricingService.getMultiplier(booking.getPickupLocation());
+        PooledFareService.Share share = pooledFareService.quote(ride, booking.getPickupLocation(),
+            booking.getDropLocation(), request.getSeatsBooked(), this::getDistanceKm)
+            .withFareMultiplier(surge);
+        booking.setDistance(share.getDistanceKm());
+        booking.setFare(share.getFare());
+
+        logger.info("📊 Booking fare: {} -> {} ({} of {} km) × {} seat(s) × surge {} = ₹{}",
+            share.getPickup(), share.getDrop(), share.getDistanceKm(), ride.getDistanceKm(),
+            request.getSeatsBooked(), surge, share.getFare());
 
         // Don't reduce available seats yet - wait for payment confirmation
         return bookingRepository.save(booking);
@@ -190,20 +201,18 @@ public class RideService {
     public List<Ride> getDriverRides(String driverIdentifier) {
         logger.info("🔍 Getting rides for driver: {}", driverIdentifier);
         
-        User driver = userRepository.findByEmail(driverIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(driverIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Driver not found")));
+        Long driverId = identityResolver.requireUserId(driverIdentifier, "Driver not found");
         
-        logger.info("👤 Found driver: ID={}, Email={}, Username={}", driver.getId(), driver.getEmail(), driver.getUsername());
+        logger.info("👤 Found driver: ID={}", driverId);
         
-        List<Ride> rides = rideRepository.findByDriverId(driver.getId());
-        logger.info("🚗 Found {} rides for driver ID {}", rides.size(), driver.getId());
+        List<Ride> rides = rideRepository.findByDriverId(driverId);
+        logger.info("🚗 Found {} rides for driver ID {}", rides.size(), driverId);
         
         if (rides.isEmpty()) {
             logger.warn("⚠️ No rides found for driver {}. This could mean:", driverIdentifier);
             logger.warn("   - The driver hasn't created any rides yet");
             logger.warn("   - The driver ID might not match the rides in the database");
-            logger.warn("   - Check the rides table for driver_id = {}", driver.getId());
+            logger.warn("   - Check the rides table for driver_id = {}", driverId);
         }
         
         return rides;
@@ -258,15 +267,31 @@ public class RideService {
         }
 
         rideRepository.save(ride);
-        return bookingRepository.save(booking);
+        eventPublisher.publishEvent(new RideChangedEvent(ride, ride.getAvailableSeats() == 0
+                ? RideChangedEvent.Change.FILLED : RideChangedEvent.Change.SEATS_TAKEN));
+        Booking confirmed = bookingRepository.save(booking);
+        recordBookingAfterCommit(confirmed.getPickupLocation() != null ? confirmed.getPickupLocation() : ride.getSource());
+        return confirmed;
+    }
+
+    // Only a committed booking counts as demand met
+    private void recordBookingAfterCommit(String pickup) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    surgePricingService.recordBooking(pickup);
+                }
+            });
+        } else {
+            surgePricingService.recordBooking(pickup);
+        }
     }
 
     // ---------------- PASSENGER BOOKINGS ----------------
     public List<Booking> getPassengerBookings(String passengerIdentifier) {
-        User passenger = userRepository.findByEmail(passengerIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(passengerIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Passenger not found")));
-        return bookingRepository.findByPassengerId(passenger.getId());
+        Long passengerId = identityResolver.requireUserId(passengerIdentifier, "Passenger not found");
+        return bookingRepository.findByPassengerId(passengerId);
     }
 
     // ---------------- GET BOOKING BY ID ----------------
@@ -281,11 +306,9 @@ public class RideService {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
 
-        User user = userRepository.findByEmail(userIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(userIdentifier)
-                        .orElseThrow(() -> new RuntimeException("User not found")));
+        Long userId = identityResolver.requireUserId(userIdentifier, "User not found");
 
-        if (!booking.getPassenger().getId().equals(user.getId())) {
+        if (!booking.getPassenger().getId().equals(userId)) {
             throw new RuntimeException("Unauthorized to cancel this booking");
         }
 
@@ -295,6 +318,7 @@ public class RideService {
             ride.setAvailableSeats(ride.getAvailableSeats() + booking.getSeatsBooked());
             ride.setStatus("ACTIVE");
             rideRepository.save(ride);
+            eventPublisher.publishEvent(new RideChangedEvent(ride, RideChangedEvent.Change.SEATS_RELEASED));
         }
 
         booking.setStatus(BookingStatus.CANCELLED);
@@ -305,14 +329,12 @@ public class RideService {
     // ---------------- CANCEL RIDE (DRIVER) ----------------
     @Transactional
     public void cancelRide(Long rideId, String driverIdentifier) {
-        User driver = userRepository.findByEmail(driverIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(driverIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Driver not found")));
+        Long driverId = identityResolver.requireUserId(driverIdentifier, "Driver not found");
         
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
         
-        if (!ride.getDriver().getId().equals(driver.getId())) {
+        if (!ride.getDriver().getId().equals(driverId)) {
             throw new RuntimeException("Unauthorized to cancel this ride");
         }
         
@@ -332,6 +354,7 @@ public class RideService {
         
         ride.setStatus("CANCELLED");
         rideRepository.save(ride);
+        eventPublisher.publishEvent(new RideChangedEvent(ride, RideChangedEvent.Change.CANCELLED));
 
         // Broadcast ride status update when ride is cancelled
         try {
@@ -360,14 +383,12 @@ public class RideService {
     // ---------------- DELETE RIDE ----------------
     @Transactional
     public void deleteRide(Long rideId, String driverIdentifier) {
-        User driver = userRepository.findByEmail(driverIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(driverIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Driver not found")));
+        Long driverId = identityResolver.requireUserId(driverIdentifier, "Driver not found");
         
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
         
-        if (!ride.getDriver().getId().equals(driver.getId())) {
+        if (!ride.getDriver().getId().equals(driverId)) {
             throw new RuntimeException("Unauthorized to delete this ride");
         }
         
@@ -381,6 +402,8 @@ public class RideService {
         }
         
         rideRepository.delete(ride);
+        pooledFareService.evict(rideId);
+        eventPublisher.publishEvent(new RideChangedEvent(ride, RideChangedEvent.Change.DELETED));
     }
 
     // ---------------- GET RIDE BOOKINGS ----------------
@@ -391,6 +414,38 @@ public class RideService {
         return bookingRepository.findByRideId(rideId);
     }
 
+    // ---------------- POOLED FARES ----------------
+    public PooledFareService.Share quotePooledFare(Long rideId, String pickup, String drop, int seats) {
+        Ride ride = rideRepository.findById(rideId)
+                .orElseThrow(() -> new RuntimeException("Ride not found"));
+        String from = pickup != null ? pickup : ride.getSource();
+        return pooledFareService.quote(ride, from, drop != null ? drop : ride.getDestination(), seats, this::getDistanceKm)
+                .withFareMultiplier(surgePricingService.getMultiplier(from));
+    }
+
+    /**
+     * The whole split for the ride's driver or an admin; a passenger gets only the shares of
+     * their own bookings, and anyone else is refused
+     */
+    public PooledFareService.RideSplit getPooledFareSplit(Long rideId, Long viewerId, boolean admin) {
+        Ride ride = rideRepository.findById(rideId)
+                .orElseThrow(() -> new RuntimeException("Ride not found"));
+        List<Booking> bookings = bookingRepository.findByRideId(rideId);
+        PooledFareService.RideSplit split = pooledFareService.split(ride, bookings, this::getDistanceKm);
+        if (admin || ride.getDriver().getId().equals(viewerId)) {
+            return split;
+        }
+
+        List<Long> ownBookings = bookings.stream()
+                .filter(booking -> booking.getPassenger().getId().equals(viewerId))
+                .map(Booking::getId)
+                .collect(Collectors.toList());
+        if (ownBookings.isEmpty()) {
+            throw new AccessDeniedException("Only the driver and passengers of this ride can see its fare split");
+        }
+        return split.forBookings(ownBookings);
+    }
+
     // ---------------- CALCULATE FARE ----------------
     public Map<String, Object> calculateFare(Long rideId, Double distance, Integer seats) {
         Ride ride = rideRepository.findById(rideId)
@@ -403,13 +458,14 @@ public class RideService {
             distanceKm = getDistanceKm(ride.getSource(), ride.getDestination());
         }
         
-        double totalFare = BASE_FARE + (ride.getPricePerKm() * distanceKm);
+        PricingTable pricing = pricingEngine.current();
+        double totalFare = pricing.totalFare(distanceKm, ride.getPricePerKm(), PricingTable.minuteOfDay(ride.getTime()));
         double farePerSeat = totalFare / ride.getTotalSeats();
         double fareForBooking = farePerSeat * seats;
         
         Map<String, Object> fareDetails = new HashMap<>();
         fareDetails.put("distanceKm", distanceKm);
-        fareDetails.put("baseFare", BASE_FARE);
+        fareDetails.put("baseFare", pricing.getBaseFare());
         fareDetails.put("pricePerKm", ride.getPricePerKm());
         fareDetails.put("totalRideFare", totalFare);
         fareDetails.put("farePerSeat", farePerSeat);
@@ -420,47 +476,32 @@ public class RideService {
     }
 
     // ---------------- OPENROUTESERVICE API ----------------
+    private static HttpHeaders openRouteServiceHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", OPENROUTESERVICE_KEY);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
     private double getDistanceKm(String source, String destination) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", OPENROUTESERVICE_KEY);
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
             double[] srcCoords = geocode(source);
             double[] destCoords = geocode(destination);
 
-            Map<String, Object> body = new HashMap<>();
-            body.put("coordinates", new double[][] { srcCoords, destCoords });
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(OPENROUTESERVICE_URL, entity, String.class);
-
-            logger.info("OpenRouteService response: {}", response.getBody());
-            
-            JSONObject json = new JSONObject(response.getBody());
-            
-            // Check if response has the expected structure
-            if (json.has("features")) {
-                JSONArray features = json.getJSONArray("features");
-                if (features.length() > 0) {
-                    JSONObject props = features.getJSONObject(0).getJSONObject("properties");
-                    double distanceMeters = props.getJSONObject("summary").getDouble("distance");
-                    logger.info("✅ Distance calculated via API: {} km", distanceMeters / 1000.0);
-                    return distanceMeters / 1000.0; // convert to km
-                }
-            }
-            
-            // If no features, try alternative structure
-            if (json.has("routes")) {
-                JSONArray routes = json.getJSONArray("routes");
-                if (routes.length() > 0) {
-                    JSONObject route = routes.getJSONObject(0);
-                    if (route.has("summary")) {
-                        double distanceMeters = route.getJSONObject("summary").getDouble("distance");
-                        logger.info("✅ Distance calculated via API (routes): {} km", distanceMeters / 1000.0);
-                        return distanceMeters / 1000.0;
-                    }
-                }
+            String body = "{\"coordinates\":[[" + srcCoords[0] + "," + srcCoords[1] + "],["
+                    + destCoords[0] + "," + destCoords[1] + "]]}";
+            // Only the route summary is read off the response stream; the geometry is skipped
+            DistanceResponseParser.Result response = restTemplate.execute(OPENROUTESERVICE_URL, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().putAll(OPENROUTESERVICE_HEADERS);
+                        request.getBody().write(body.getBytes(StandardCharsets.UTF_8));
+                    },
+                    clientResponse -> DistanceResponseParser.parseDirections(clientResponse.getBody()));
+
+            if (response != null && "OK".equals(response.getStatus()) && response.hasDistance()) {
+                logger.debug("OpenRouteService summary: {} m, {} s", response.getDistanceMeters(), response.getDurationSeconds());
+                logger.info("✅ Distance calculated via API: {} km", response.getDistanceMeters() / 1000.0);
+                return response.getDistanceMeters() / 1000.0; // convert to km
             }
             
             logger.warn("⚠️ OpenRouteService API returned unexpected format. Using fallback calculation.");
@@ -547,16 +588,14 @@ public class RideService {
     }
 
     // ---------------- SEARCH RIDES WITH SMART ROUTE MATCHING ----------------
-    public List<Ride> searchRides(String source, String destination, LocalDate date, Integer seats) {
+    public List<Ride> searchRides(String source, String destination, LocalDate date, Integer seats, String searcher) {
         List<Ride> allMatches = new ArrayList<>();
+        surgePricingService.recordSearch(source, searcher);
         
         if (source != null && destination != null && date != null && seats != null) {
-            // Get all available rides for the date with sufficient seats
-            List<Ride> availableRides = rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(date, seats);
-            
-            // Use smart route matching to find all matches
-            List<RouteMatchingService.RouteMatch> routeMatches = 
-                routeMatchingService.findAllMatches(source, destination, availableRides);
+            // Available rides for the date run through smart route matching, unless an identical
+            // search is cached and no ride it depends on has changed since
+            List<RouteMatchingService.RouteMatch> routeMatches = findRouteMatches(source, destination, date, seats);
             
             // Convert route matches back to rides and sort by match quality
             allMatches = routeMatches.stream()
@@ -592,13 +631,13 @@ public class RideService {
     /**
      * Enhanced search with route match details for frontend display
      */
-    public List<Map<String, Object>> searchRidesWithMatchDetails(String source, String destination, LocalDate date, Integer seats) {
+    public List<Map<String, Object>> searchRidesWithMatchDetails(String source, String destination, LocalDate date, Integer seats,
+                                                                 String searcher) {
         List<Map<String, Object>> results = new ArrayList<>();
+        surgePricingService.recordSearch(source, searcher);
         
         if (source != null && destination != null && date != null && seats != null) {
-            List<Ride> availableRides = rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(date, seats);
-            List<RouteMatchingService.RouteMatch> routeMatches = 
-                routeMatchingService.findAllMatches(source, destination, availableRides);
+            List<RouteMatchingService.RouteMatch> routeMatches = findRouteMatches(source, destination, date, seats);
             
             for (RouteMatchingService.RouteMatch match : routeMatches) {
                 Map<String, Object> rideWithMatch = new HashMap<>();
@@ -618,6 +657,14 @@ public class RideService {
         return results;
     }
 
+    private List<RouteMatchingService.RouteMatch> findRouteMatches(String source, String destination, LocalDate date, int seats) {
+        return rideSearchCache.getMatches(source, destination, date, seats, () -> {
+            List<Ride> availableRides = rideIndex.findAvailable(date, seats)
+                    .orElseGet(() -> rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(date, seats));
+            return routeMatchingService.findAllMatches(source, destination, availableRides);
+        });
+    }
+
     private String getMatchQualityBadge(double quality) {
         if (quality >= 95.0) return "PERFECT";
         if (quality >= 85.0) return "EXCELLENT";
@@ -631,7 +678,8 @@ public class RideService {
      */
     private List<Ride> findPartialRouteMatches(String source, String destination, LocalDate date, Integer seats) {
         try {
-            List<Ride> allRides = rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(date, seats);
+            List<Ride> allRides = rideIndex.findAvailable(date, seats)
+                    .orElseGet(() -> rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(date, seats));
             List<Ride> partialMatches = new ArrayList<>();
             
             for (Ride ride : allRides) {
@@ -749,7 +797,8 @@ public class RideService {
     public List<Ride> getAllAvailableRides() {
         try {
             LocalDate currentDate = LocalDate.now();
-            return rideRepository.findAllAvailableRides(currentDate);
+            return rideIndex.listAvailable()
+                    .orElseGet(() -> rideRepository.findAllAvailableRides(currentDate));
         } catch (Exception e) {
             logger.error("Error getting all available rides: {}", e.getMessage(), e);
             return new ArrayList<>();
@@ -781,13 +830,11 @@ public class RideService {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
 
-        User user = userRepository.findByEmail(userIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(userIdentifier)
-                        .orElseThrow(() -> new RuntimeException("User not found")));
+        Long userId = identityResolver.requireUserId(userIdentifier, "User not found");
 
         // Check authorization - both passenger and driver can mark booking as completed
-        boolean isPassenger = booking.getPassenger().getId().equals(user.getId());
-        boolean isDriver = booking.getRide().getDriver().getId().equals(user.getId());
+        boolean isPassenger = booking.getPassenger().getId().equals(userId);
+        boolean isDriver = booking.getRide().getDriver().getId().equals(userId);
         
         if (!isPassenger && !isDriver) {
             throw new RuntimeException("Only the passenger or driver can mark this booking as completed");
@@ -825,12 +872,10 @@ public class RideService {
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
 
-        User driver = userRepository.findByEmail(driverIdentifier)
-                .orElseGet(() -> userRepository.findByUsername(driverIdentifier)
-                        .orElseThrow(() -> new RuntimeException("Driver not found")));
+        Long driverId = identityResolver.requireUserId(driverIdentifier, "Driver not found");
 
         // Check authorization - only the driver can mark their ride as completed
-        if (!ride.getDriver().getId().equals(driver.getId())) {
+        if (!ride.getDriver().getId().equals(driverId)) {
             throw new RuntimeException("Only the driver can mark this ride as completed");
         }
 
@@ -842,6 +887,7 @@ public class RideService {
         // Mark ride as completed
         ride.setStatus("COMPLETED");
         Ride savedRide = rideRepository.save(ride);
+        eventPublisher.publishEvent(new RideChangedEvent(savedRide, RideChangedEvent.Change.COMPLETED));
 
         // Mark all confirmed bookings as completed
         List<Booking> rideBookings = bookingRepository.findByRideIdOrderByBookedAtDesc(rideId);
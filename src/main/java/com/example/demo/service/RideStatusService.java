@@ -1,19 +1,20 @@
 package com.example.demo.service;
 
-import com.example.demo.entity.Ride;
-import com.example.demo.enums.RideStatus;
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
 import com.example.demo.repository.RideRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,49 +24,35 @@ public class RideStatusService {
 
     private static final Logger log = LoggerFactory.getLogger(RideStatusService.class);
 
+    private static final int COMPLETION_BUFFER_HOURS = 2;
+
     @Autowired
     private RideRepository rideRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private WebSocketDispatchService dispatchService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${ride.status.sweep.chunk-size:500}")
+    private int sweepChunkSize;
 
     /**
      * Automatically update ride statuses based on current time
-     * Runs every 6 hours with 15 minute initial delay
+     * Runs every minute by default; each pass is a few set-based statements
      */
-    @Scheduled(fixedRate = 21600000, initialDelay = 900000) // 6 hours = 21600000ms, 15 min delay
-    @Transactional
+    @Scheduled(fixedDelayString = "${ride.status.sweep.interval-ms:60000}",
+               initialDelayString = "${ride.status.sweep.initial-delay-ms:60000}")
     public void updateRideStatuses() {
         try {
-            LocalDate currentDate = LocalDate.now();
-            LocalTime currentTime = LocalTime.now();
-            
-            // Find rides that should be marked as COMPLETED (past rides that are still ACTIVE)
-            List<Ride> pastActiveRides = rideRepository.findPastActiveRides(currentDate, currentTime);
-            
-            int updatedCount = 0;
-            for (Ride ride : pastActiveRides) {
-                // Check if ride date is in the past, or if it's today but time has passed
-                LocalDateTime rideDateTime = LocalDateTime.of(ride.getDate(), ride.getTime());
-                LocalDateTime currentDateTime = LocalDateTime.now();
-                
-                // Add 2 hours buffer after ride time to mark as completed
-                if (rideDateTime.plusHours(2).isBefore(currentDateTime)) {
-                    String oldStatus = ride.getStatus();
-                    ride.setStatus("COMPLETED");
-                    rideRepository.save(ride);
-                    updatedCount++;
-                    log.info("Updated ride {} to COMPLETED status", ride.getId());
-
-                    // Broadcast ride status update
-                    broadcastRideStatusUpdate(ride, oldStatus, "COMPLETED");
-                }
-            }
-            
+            int updatedCount = completePastRides();
             if (updatedCount > 0) {
                 log.info("Updated {} rides to COMPLETED status", updatedCount);
             }
-            
         } catch (Exception e) {
             log.error("Error updating ride statuses: {}", e.getMessage(), e);
         }
@@ -74,35 +61,49 @@ public class RideStatusService {
     /**
      * Manually update ride statuses (can be called from API)
      */
-    @Transactional
     public int updateRideStatusesManually() {
         try {
-            LocalDate currentDate = LocalDate.now();
-            LocalTime currentTime = LocalTime.now();
-            
-            List<Ride> pastActiveRides = rideRepository.findPastActiveRides(currentDate, currentTime);
-            
-            int updatedCount = 0;
-            for (Ride ride : pastActiveRides) {
-                LocalDateTime rideDateTime = LocalDateTime.of(ride.getDate(), ride.getTime());
-                LocalDateTime currentDateTime = LocalDateTime.now();
-                
-                if (rideDateTime.plusHours(2).isBefore(currentDateTime)) {
-                    ride.setStatus("COMPLETED");
-                    rideRepository.save(ride);
-                    updatedCount++;
-                }
-            }
-            
+            int updatedCount = completePastRides();
             log.info("Manually updated {} rides to COMPLETED status", updatedCount);
             return updatedCount;
-            
         } catch (Exception e) {
             log.error("Error manually updating ride statuses: {}", e.getMessage(), e);
             return 0;
         }
     }
 
+    /**
+     * Mark ACTIVE rides whose departure was more than two hours ago as COMPLETED.
+     * Works in chunks: select a page of IDs, complete them with one bulk UPDATE in its
+     * own short transaction, then broadcast the whole chunk. Completed rides no longer
+     * match the query, so the next page always starts from the front.
+     */
+    private int completePastRides() {
+        // Add 2 hours buffer after ride time to mark as completed
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(COMPLETION_BUFFER_HOURS);
+        int updatedCount = 0;
+
+        while (true) {
+            List<Long> rideIds = rideRepository.findPastActiveRideIds(
+                    cutoff.toLocalDate(), cutoff.toLocalTime(), PageRequest.of(0, sweepChunkSize));
+            if (rideIds.isEmpty()) {
+                break;
+            }
+
+            int updated = rideRepository.completeActiveRides(rideIds, LocalDateTime.now());
+            eventPublisher.publishEvent(new RideChangedEvent(rideIds, RideChangedEvent.Change.COMPLETED));
+            updatedCount += updated;
+            log.debug("Completed {} of {} past rides in chunk", updated, rideIds.size());
+
+            broadcastRideStatusUpdates(rideIds, "ACTIVE", "COMPLETED");
+
+            if (rideIds.size() < sweepChunkSize) {
+                break;
+            }
+        }
+        return updatedCount;
+    }
+
     /**
      * Get ride statistics
      */
@@ -142,41 +143,41 @@ public class RideStatusService {
     }
 
     /**
-     * Broadcast ride status update to relevant users
+     * Broadcast a status change for a batch of rides with two queries: one for ride and
+     * driver details, one for the confirmed passengers of every ride in the batch
      */
-    private void broadcastRideStatusUpdate(Ride ride, String oldStatus, String newStatus) {
+    private void broadcastRideStatusUpdates(List<Long> rideIds, String oldStatus, String newStatus) {
         try {
-            Map<String, Object> update = new HashMap<>();
-            update.put("rideId", ride.getId());
-            update.put("oldStatus", oldStatus);
-            update.put("newStatus", newStatus);
-            update.put("timestamp", LocalDateTime.now());
-            update.put("source", ride.getSource());
-            update.put("destination", ride.getDestination());
-            update.put("driverName", ride.getDriver().getName());
-
-            // Send to driver
-            messagingTemplate.convertAndSendToUser(
-                ride.getDriver().getUsername(),
-                "/queue/ride-status-updates",
-                update
-            );
-
-            // Send to passengers (from bookings)
-            List<com.example.demo.entity.Booking> bookings = ride.getBookings();
-            if (bookings != null) {
-                for (com.example.demo.entity.Booking booking : bookings) {
-                    if (booking.getStatus() == com.example.demo.enums.BookingStatus.CONFIRMED) {
-                        messagingTemplate.convertAndSendToUser(
-                            booking.getPassenger().getUsername(),
-                            "/queue/ride-status-updates",
-                            update
-                        );
-                    }
+            Map<Long, List<String>> passengersByRide = new HashMap<>();
+            for (Object[] row : bookingRepository.findPassengerUsernamesByRideIds(rideIds, BookingStatus.CONFIRMED)) {
+                passengersByRide.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+            }
+
+            LocalDateTime timestamp = LocalDateTime.now();
+            for (Object[] row : rideRepository.findBroadcastDetails(rideIds, newStatus)) {
+                Long rideId = (Long) row[0];
+                Map<String, Object> update = new HashMap<>();
+                update.put("rideId", rideId);
+                update.put("oldStatus", oldStatus);
+                update.put("newStatus", newStatus);
+                update.put("timestamp", timestamp);
+                update.put("source", row[1]);
+                update.put("destination", row[2]);
+                update.put("driverName", row[3]);
+
+                // Coalesced per ride so repeated transitions only deliver the latest status
+                String coalesceKey = "/queue/ride-status-updates:" + rideId;
+
+                // Send to driver
+                dispatchService.sendToUser((String) row[4], "/queue/ride-status-updates", update, coalesceKey);
+
+                // Send to confirmed passengers
+                for (String passenger : passengersByRide.getOrDefault(rideId, Collections.emptyList())) {
+                    dispatchService.sendToUser(passenger, "/queue/ride-status-updates", update, coalesceKey);
                 }
             }
 
-            log.info("Broadcasted ride status update for ride {}: {} -> {}", ride.getId(), oldStatus, newStatus);
+            log.info("Broadcasted ride status update for {} rides: {} -> {}", rideIds.size(), oldStatus, newStatus);
 
         } catch (Exception e) {
             log.error("Error broadcasting ride status update: {}", e.getMessage(), e);
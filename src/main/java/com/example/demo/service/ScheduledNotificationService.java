@@ -31,6 +31,12 @@ public class ScheduledNotificationService {
     @Autowired
     private RideRepository rideRepository;
 
+    @Autowired
+    private RideIndex rideIndex;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
     /**
      * Send ride reminders ~5 minutes before ride time
      * TEST MODE: Runs every 1 minute with 10s initial delay for quick verification
@@ -49,7 +55,8 @@ public class ScheduledNotificationService {
             LocalDate todayDate = LocalDate.now();
             
             // Find rides happening today
-            List<Ride> todayRides = rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(todayDate, 0);
+            List<Ride> todayRides = rideIndex.findAvailable(todayDate, 0)
+                    .orElseGet(() -> rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(todayDate, 0));
             
             for (Ride ride : todayRides) {
                 try {
@@ -84,17 +91,17 @@ public class ScheduledNotificationService {
     }
 
     /**
-     * Clean up old notifications (older than 30 days)
+     * Clean up old read notifications (older than notification.retention.max-age-days)
      * Runs daily at 2 AM
      */
-    @Scheduled(cron = "0 0 2 * * *")
+    @Scheduled(cron = "${notification.retention.cron:0 0 2 * * *}")
     public void cleanupOldNotifications() {
         try {
             logger.info("CLEANUP: Cleaning up old notifications...");
-            
-            // This would require a method in NotificationRepository to delete old notifications
-            // For now, we'll just log the intent
-            logger.info("NOTE: Implement notification cleanup in NotificationRepository");
+
+            NotificationRetentionService.RetentionResult result = notificationRetentionService.purgeReadNotifications();
+            logger.info("CLEANUP: Deleted {} and archived {} notifications in {} batches",
+                result.getDeleted(), result.getArchived(), result.getBatches());
             
         } catch (Exception e) {
             logger.error("Error cleaning up old notifications: {}", e.getMessage(), e);
@@ -115,7 +122,8 @@ public class ScheduledNotificationService {
             
             // Find rides that completed approximately 1 hour ago
             LocalDate todayDate = LocalDate.now();
-            List<Ride> todayRides = rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(todayDate, 0);
+            List<Ride> todayRides = rideIndex.findAvailable(todayDate, 0)
+                    .orElseGet(() -> rideRepository.findByDateAndAvailableSeatsGreaterThanEqual(todayDate, 0));
             
             for (Ride ride : todayRides) {
                 try {
@@ -0,0 +1,203 @@
+package com.example.demo.service;
+
+import com.example.demo.util.SlidingWindowCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Demand-aware surge multiplier.
+ *
+ * Ride searches and confirmed bookings are counted per pickup cell over a sliding window.
+ * A cell is the pickup place as normalized for matching: the geocoders in this app only know
+ * a fixed list of cities and put every other place in Bangalore, which would lump unrelated
+ * places into one cell. Searches that outnumber bookings by more than the target ratio raise
+ * the cell's multiplier, linearly and up to a cap. Each searcher counts once per cell per
+ * window, so one client searching over and over can't push the price up on its own.
+ *
+ * Multipliers are recomputed in the background and published in a map, so a fare quote reads
+ * one with a single lookup and never touches the database or the counters.
+ */
+@Service
+public class SurgePricingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SurgePricingService.class);
+
+    @Value("${fare.surge.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${fare.surge.window-buckets:15}")
+    private int windowBuckets = 15;
+
+    @Value("${fare.surge.bucket-ms:60000}")
+    private long bucketMs = 60000;
+
+    @Value("${fare.surge.min-searches:20}")
+    private long minSearches = 20;
+
+    @Value("${fare.surge.target-ratio:4.0}")
+    private double targetRatio = 4.0;
+
+    @Value("${fare.surge.sensitivity:0.1}")
+    private double sensitivity = 0.1;
+
+    @Value("${fare.surge.max-multiplier:2.0}")
+    private double maxMultiplier = 2.0;
+
+    @Value("${fare.surge.max-cells:10000}")
+    private int maxCells = 10000;
+
+    private final Map<String, Demand> cells = new ConcurrentHashMap<>();
+    private volatile Map<String, Double> multipliers = Map.of();
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong repeatSearches = new AtomicLong();
+    private final AtomicLong bookings = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /**
+     * Count a search from a pickup place by a searcher (a user, or a client address for
+     * anonymous searches); further searches by the same searcher in the same cell are ignored
+     * until the window has passed. A null searcher is always counted.
+     */
+    public void recordSearch(String pickup, String searcher) {
+        Demand demand = demandFor(pickup);
+        if (demand == null) {
+            return;
+        }
+        if (searcher != null && !demand.firstSearchInWindow(searcher, System.currentTimeMillis(), windowMs())) {
+            repeatSearches.incrementAndGet();
+            return;
+        }
+        demand.searches.increment();
+        searches.incrementAndGet();
+    }
+
+    public void recordBooking(String pickup) {
+        Demand demand = demandFor(pickup);
+        if (demand != null) {
+            demand.bookings.increment();
+            bookings.incrementAndGet();
+        }
+    }
+
+    /**
+     * Surge multiplier for a pickup place, 1.0 when there is no surge
+     */
+    public double getMultiplier(String pickup) {
+        if (!enabled || pickup == null) {
+            return 1.0;
+        }
+        return multipliers.getOrDefault(FareCalculationService.normalizeLocation(pickup), 1.0);
+    }
+
+    /**
+     * Recompute every cell's multiplier from its counters and publish them; cells that have
+     * gone quiet are forgotten
+     */
+    @Scheduled(fixedDelayString = "${fare.surge.refresh-ms:10000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Double> next = new HashMap<>();
+        long now = System.currentTimeMillis();
+        long windowMs = windowMs();
+        cells.entrySet().removeIf(cell -> {
+            cell.getValue().searchers.values().removeIf(counted -> now - counted >= windowMs);
+            long cellSearches = cell.getValue().searches.sum();
+            long cellBookings = cell.getValue().bookings.sum();
+            if (cellSearches == 0 && cellBookings == 0) {
+                return true;
+            }
+            double multiplier = multiplierFor(cellSearches, cellBookings);
+            if (multiplier > 1.0) {
+                next.put(cell.getKey(), multiplier);
+            }
+            return false;
+        });
+        if (!next.equals(multipliers)) {
+            logger.info("Surge multipliers updated for {} of {} active cells", next.size(), cells.size());
+        }
+        multipliers = Map.copyOf(next);
+    }
+
+    /**
+     * Searches per booking above the target ratio raise the price by {@code sensitivity} per
+     * extra search, rounded to 0.05 so quotes don't move on every event
+     */
+    double multiplierFor(long cellSearches, long cellBookings) {
+        if (cellSearches < minSearches) {
+            return 1.0;
+        }
+        double ratio = (double) cellSearches / (cellBookings + 1);
+        double multiplier = 1.0 + Math.max(0.0, ratio - targetRatio) * sensitivity;
+        multiplier = Math.round(multiplier * 20.0) / 20.0;
+        return Math.min(maxMultiplier, multiplier);
+    }
+
+    private long windowMs() {
+        return windowBuckets * bucketMs;
+    }
+
+    private Demand demandFor(String pickup) {
+        if (!enabled || pickup == null || pickup.isBlank()) {
+            return null;
+        }
+        String cell = FareCalculationService.normalizeLocation(pickup);
+        Demand demand = cells.get(cell);
+        if (demand == null) {
+            if (cells.size() >= maxCells) {
+                droppedEvents.incrementAndGet();
+                return null;
+            }
+            demand = cells.computeIfAbsent(cell, key -> new Demand(windowBuckets, bucketMs));
+        }
+        return demand;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("activeCells", cells.size());
+        stats.put("surgingCells", multipliers);
+        stats.put("searches", searches.get());
+        stats.put("repeatSearches", repeatSearches.get());
+        stats.put("bookings", bookings.get());
+        stats.put("droppedEvents", droppedEvents.get());
+        stats.put("windowMs", windowMs());
+        stats.put("maxMultiplier", maxMultiplier);
+        return stats;
+    }
+
+    private static final class Demand {
+        private final SlidingWindowCounter searches;
+        private final SlidingWindowCounter bookings;
+        // When each searcher's search was last counted in this cell
+        private final Map<String, Long> searchers = new ConcurrentHashMap<>();
+
+        private Demand(int buckets, long bucketMs) {
+            this.searches = new SlidingWindowCounter(buckets, bucketMs);
+            this.bookings = new SlidingWindowCounter(buckets, bucketMs);
+        }
+
+        private boolean firstSearchInWindow(String searcher, long now, long windowMs) {
+            boolean[] first = {false};
+            searchers.compute(searcher, (key, counted) -> {
+                if (counted == null || now - counted >= windowMs) {
+                    first[0] = true;
+                    return now;
+                }
+                return counted;
+            });
+            return first[0];
+        }
+    }
+}
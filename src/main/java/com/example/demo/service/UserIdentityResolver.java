@@ -0,0 +1,202 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserSnapshot;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the caller's identity without a user query per request.
+ *
+ * The JWT filter already puts the user ID on the authenticated principal, so the current
+ * user's ID is read from there. Other identifiers (email or username) go through a small
+ * identifier -> user ID cache, and read-mostly user fields are served from cached
+ * {@link UserSnapshot}s. Callers that change a user's profile must call {@link #invalidate(Long)}.
+ */
+@Service
+public class UserIdentityResolver {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${identity.cache.enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${identity.cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    @Value("${identity.cache.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    private final Map<String, CachedValue<Long>> userIds = new ConcurrentHashMap<>();
+    private final Map<Long, CachedValue<UserSnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    private final AtomicLong principalHits = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    /**
+     * Resolve the user ID of an authenticated request
+     * @return the user ID, or null if the user does not exist
+     */
+    public Long resolveUserId(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof User user && user.getId() != null) {
+            principalHits.incrementAndGet();
+            return user.getId();
+        }
+        return resolveUserId(authentication.getName());
+    }
+
+    /**
+     * Resolve a user ID from an email or username (email takes precedence)
+     * @return the user ID, or null if no user matches
+     */
+    public Long resolveUserId(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+
+        // Usually the identifier is the caller's own, which the JWT principal already carries
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        if (current != null && current.getPrincipal() instanceof User user && user.getId() != null
+                && (identifier.equals(user.getUsername()) || identifier.equals(user.getEmail()))) {
+            principalHits.incrementAndGet();
+            return user.getId();
+        }
+
+        long now = System.currentTimeMillis();
+        if (cacheEnabled) {
+            CachedValue<Long> cached = userIds.get(identifier);
+            if (cached != null && now < cached.validUntilMillis) {
+                cacheHits.incrementAndGet();
+                return cached.value;
+            }
+        }
+
+        lookups.incrementAndGet();
+        Long userId = userRepository.findIdByEmail(identifier)
+                .orElseGet(() -> userRepository.findIdByUsername(identifier).orElse(null));
+        if (userId != null && cacheEnabled) {
+            put(userIds, identifier, userId, now);
+        }
+        return userId;
+    }
+
+    /**
+     * Resolve a user ID or fail with the given message, matching the services' "not found" errors
+     */
+    public Long requireUserId(String identifier, String notFoundMessage) {
+        Long userId = resolveUserId(identifier);
+        if (userId == null) {
+            throw new RuntimeException(notFoundMessage);
+        }
+        return userId;
+    }
+
+    /**
+     * Cached read-only view of a user
+     * @return the snapshot, or null if the user does not exist
+     */
+    public UserSnapshot getSnapshot(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (cacheEnabled) {
+            CachedValue<UserSnapshot> cached = snapshots.get(userId);
+            if (cached != null && now < cached.validUntilMillis) {
+                cacheHits.incrementAndGet();
+                return cached.value;
+            }
+        }
+
+        lookups.incrementAndGet();
+        UserSnapshot snapshot = userRepository.findById(userId).map(UserSnapshot::new).orElse(null);
+        if (snapshot != null && cacheEnabled) {
+            put(snapshots, userId, snapshot, now);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Uninitialized entity reference for associations and query parameters. The user is
+     * checked to exist and be active against the cached snapshot, so no SELECT is issued
+     * while the snapshot is cached.
+     * @throws RuntimeException if the user does not exist or is disabled, locked or blocked
+     */
+    public User getReference(Long userId) {
+        UserSnapshot snapshot = getSnapshot(userId);
+        if (snapshot == null) {
+            throw new RuntimeException("User not found");
+        }
+        if (!snapshot.isActive()) {
+            throw new RuntimeException("User account is disabled");
+        }
+        return userRepository.getReferenceById(userId);
+    }
+
+    /**
+     * Drop everything cached for a user after their profile, role, identifiers or account
+     * status change, or the user is deleted
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        snapshots.remove(userId);
+        userIds.values().removeIf(cached -> userId.equals(cached.value));
+    }
+
+    public void clear() {
+        userIds.clear();
+        snapshots.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("cacheEnabled", cacheEnabled);
+        stats.put("identifierEntries", userIds.size());
+        stats.put("snapshotEntries", snapshots.size());
+        stats.put("principalHits", principalHits.get());
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("lookups", lookups.get());
+        return stats;
+    }
+
+    private <K, V> void put(Map<K, CachedValue<V>> cache, K key, V value, long now) {
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(entry -> now >= entry.validUntilMillis);
+            int target = maxEntries * 3 / 4;
+            Iterator<K> it = cache.keySet().iterator();
+            while (cache.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(key, new CachedValue<>(value, now + ttlSeconds * 1000L));
+    }
+
+    private static class CachedValue<V> {
+        private final V value;
+        private final long validUntilMillis;
+
+        private CachedValue(V value, long validUntilMillis) {
+            this.value = value;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+}
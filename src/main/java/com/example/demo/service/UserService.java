@@ -21,6 +21,9 @@ public class UserService {
     @Autowired
     private AdminWebSocketController adminWebSocketController;
 
+    @Autowired
+    private UserIdentityResolver identityResolver;
+
     /**
      * Find user by username
      */
@@ -79,6 +82,8 @@ public class UserService {
      * Update user profile
      */
     public User updateProfile(User user) {
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        identityResolver.invalidate(savedUser.getId());
+        return savedUser;
     }
 }
\ No newline at end of file
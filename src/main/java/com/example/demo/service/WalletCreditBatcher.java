@@ -0,0 +1,332 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.TransactionType;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit for wallet credits.
+ *
+ * Credits are queued and a single flusher thread drains them, waiting a few milliseconds after
+ * the first one for more to arrive. Each wallet's share of a drain is applied in one transaction:
+ * one balance UPDATE for the sum and one JDBC batch inserting a ledger entry per credit, with the
+ * running balances worked out from the balance read back under the row lock. A credit whose
+ * reference ID already has a ledger entry is skipped, so replaying one is harmless. A caller's
+ * future completes only after that transaction commits, so an acknowledged credit is exactly as
+ * durable as one written synchronously; credits still queued when the process dies are found
+ * again by {@link WalletReconciliationService#recoverDriverCredits()}.
+ */
+@Service
+public class WalletCreditBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletCreditBatcher.class);
+
+    private static final String INSERT_ENTRY_SQL = "INSERT INTO wallet_transactions " +
+            "(wallet_id, transaction_type, amount_paise, balance_before_paise, balance_after_paise, " +
+            "amount, balance_before, balance_after, description, reference_id, status, created_at, processed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wallet.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${wallet.group-commit.max-wait-ms:5}")
+    private long maxWaitMs = 5;
+
+    @Value("${wallet.group-commit.max-batch:200}")
+    private int maxBatch = 200;
+
+    @Value("${wallet.group-commit.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    private BlockingQueue<PendingCredit> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final AtomicLong credits = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong failedCredits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong largestGroup = new AtomicLong();
+
+    public WalletCreditBatcher(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        flusher = new Thread(this::flushLoop, "wallet-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Wallet group commit started: waits up to {} ms for up to {} credits", maxWaitMs, maxBatch);
+    }
+
+    /**
+     * Stop taking credits and apply everything already queued before returning
+     */
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        // The flusher notices within one poll interval; it isn't interrupted mid-transaction
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that slipped in after the flusher's last look was never applied
+        List<PendingCredit> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(credit -> credit.future.completeExceptionally(
+                new RejectedExecutionException("Wallet group commit stopped")));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a credit to a wallet
+     * @return completes with the ledger entry once it is committed, or with null if the
+     *         reference ID already had one
+     * @throws RejectedExecutionException if group commit is off or the queue is full
+     */
+    public CompletableFuture<WalletTransaction> submit(Long walletId, long amountPaise,
+                                                      String description, String referenceId) {
+        if (!running) {
+            throw new RejectedExecutionException("Wallet group commit is not running");
+        }
+        PendingCredit credit = new PendingCredit(walletId, amountPaise, description, referenceId);
+        if (!queue.offer(credit)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Wallet credit queue is full");
+        }
+        return credit.future;
+    }
+
+    private void flushLoop() {
+        List<PendingCredit> drained = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingCredit first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                // Linger briefly so a burst lands in one group
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (drained.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingCredit next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    drained.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Treated as a stop: what is already queued is still applied
+                running = false;
+            }
+            if (!drained.isEmpty()) {
+                flush(drained);
+                drained.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingCredit> drained) {
+        Map<Long, List<PendingCredit>> byWallet = new LinkedHashMap<>();
+        for (PendingCredit credit : drained) {
+            byWallet.computeIfAbsent(credit.walletId, id -> new ArrayList<>()).add(credit);
+        }
+
+        for (Map.Entry<Long, List<PendingCredit>> group : byWallet.entrySet()) {
+            List<PendingCredit> walletCredits = group.getValue();
+            List<WalletTransaction> entries;
+            try {
+                entries = transactionTemplate.execute(status -> applyGroup(group.getKey(), walletCredits));
+            } catch (Exception e) {
+                logger.error("Error applying {} credits to wallet {}: {}",
+                        walletCredits.size(), group.getKey(), e.getMessage(), e);
+                failedCredits.addAndGet(walletCredits.size());
+                RuntimeException failure = new RuntimeException("Failed to add money to wallet: " + e.getMessage());
+                walletCredits.forEach(credit -> credit.future.completeExceptionally(failure));
+                continue;
+            }
+
+            // Committed: now the callers may be told
+            for (int i = 0; i < walletCredits.size(); i++) {
+                walletCredits.get(i).future.complete(entries.get(i));
+            }
+            credits.addAndGet(walletCredits.size());
+            groups.incrementAndGet();
+            largestGroup.accumulateAndGet(walletCredits.size(), Math::max);
+        }
+    }
+
+    // Entries line up with the credits; null for a credit whose reference already has an entry
+    private List<WalletTransaction> applyGroup(Long walletId, List<PendingCredit> walletCredits) {
+        // Lock the wallet before looking for duplicates: a credit for the same reference applied
+        // elsewhere (a retry, or reconciliation recovering a lost credit) takes this lock too
+        Wallet wallet = walletRepository.findByIdForUpdate(walletId)
+                .orElseThrow(() -> new RuntimeException("Wallet not found: " + walletId));
+        Set<String> referenceIds = walletCredits.stream()
+                .map(credit -> credit.referenceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> seen = referenceIds.isEmpty() ? new HashSet<>()
+                : new HashSet<>(walletTransactionRepository.findExistingReferenceIds(referenceIds));
+
+        List<PendingCredit> toApply = new ArrayList<>(walletCredits.size());
+        for (PendingCredit credit : walletCredits) {
+            if (credit.referenceId == null || seen.add(credit.referenceId)) {
+                toApply.add(credit);
+            } else {
+                logger.warn("Credit {} to wallet {} already applied, skipping it", credit.referenceId, walletId);
+                duplicates.incrementAndGet();
+            }
+        }
+        Map<PendingCredit, WalletTransaction> applied = new HashMap<>();
+        if (toApply.isEmpty()) {
+            return walletCredits.stream().map(applied::get).collect(Collectors.toList());
+        }
+
+        long total = toApply.stream().mapToLong(credit -> credit.amountPaise).sum();
+        walletRepository.credit(walletId, total, LocalDateTime.now());
+
+        // The row lock is held, so the balance read back is the one this update produced
+        long balance = walletRepository.findBalancePaise(walletId) - total;
+        List<WalletTransaction> entries = new ArrayList<>(toApply.size());
+        for (PendingCredit credit : toApply) {
+            WalletTransaction entry = new WalletTransaction(wallet, TransactionType.CREDIT, credit.amountPaise,
+                    credit.description, credit.referenceId, balance, balance + credit.amountPaise);
+            entries.add(entry);
+            applied.put(credit, entry);
+            balance += credit.amountPaise;
+        }
+        insertEntries(walletId, entries);
+        return walletCredits.stream().map(applied::get).collect(Collectors.toList());
+    }
+
+    // One JDBC batch, with each entry given the ID the database generated for it
+    private void insertEntries(Long walletId, List<WalletTransaction> entries) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_ENTRY_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (WalletTransaction entry : entries) {
+                    ps.setLong(1, walletId);
+                    ps.setString(2, entry.getTransactionType().name());
+                    ps.setLong(3, entry.getAmountPaise());
+                    ps.setLong(4, entry.getBalanceBeforePaise());
+                    ps.setLong(5, entry.getBalanceAfterPaise());
+                    ps.setDouble(6, entry.getAmount());
+                    ps.setDouble(7, entry.getBalanceBefore());
+                    ps.setDouble(8, entry.getBalanceAfter());
+                    ps.setString(9, entry.getDescription());
+                    ps.setString(10, entry.getReferenceId());
+                    ps.setString(11, entry.getStatus().name());
+                    ps.setTimestamp(12, Timestamp.valueOf(entry.getCreatedAt()));
+                    ps.setTimestamp(13, Timestamp.valueOf(entry.getProcessedAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (WalletTransaction entry : entries) {
+                        if (!keys.next()) {
+                            throw new SQLException("No generated ID returned for ledger entry " + entry.getReferenceId());
+                        }
+                        entry.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long applied = credits.get();
+        long walletGroups = groups.get();
+        stats.put("enabled", enabled);
+        stats.put("credits", applied);
+        stats.put("groups", walletGroups);
+        stats.put("avgGroupSize", walletGroups > 0 ? (double) applied / walletGroups : 0.0);
+        stats.put("largestGroup", largestGroup.get());
+        // On its own each credit is a balance update plus an insert; a group is one update plus one batch
+        stats.put("writesSaved", 2 * (applied - walletGroups));
+        stats.put("failedCredits", failedCredits.get());
+        stats.put("rejected", rejected.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("queued", queue != null ? queue.size() : 0);
+        stats.put("maxWaitMs", maxWaitMs);
+        stats.put("maxBatch", maxBatch);
+        return stats;
+    }
+
+    private static class PendingCredit {
+        private final Long walletId;
+        private final long amountPaise;
+        private final String description;
+        private final String referenceId;
+        private final CompletableFuture<WalletTransaction> future = new CompletableFuture<>();
+
+        private PendingCredit(Long walletId, long amountPaise, String description, String referenceId) {
+            this.walletId = walletId;
+            this.amountPaise = amountPaise;
+            this.description = description;
+            this.referenceId = referenceId;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Payment;
+import com.example.demo.entity.Ride;
+import com.example.demo.entity.TransactionType;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletSnapshot;
+import com.example.demo.repository.PaymentRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletSnapshotRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Checks wallet balances against the ledger and checkpoints them.
+ *
+ * A wallet's balance must equal its latest {@link WalletSnapshot} plus the completed ledger
+ * entries recorded after it. Each wallet is checked in its own short transaction holding the
+ * wallet row lock (every balance update takes that lock before appending its entry, so no
+ * entry can be in flight), and a new snapshot is written when the balance agrees. A wallet's
+ * first snapshot is its opening balance: history written before the ledger existed is
+ * accepted as-is and any difference from it is only logged.
+ *
+ * Driver credits for successful payments are checked too: a payment whose credit has no ledger
+ * entry (its queued credit was lost to a crash, a full queue or a failed flush) is credited again.
+ */
+@Service
+public class WalletReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WalletReconciliationService.class);
+
+    static final Set<TransactionType> CREDIT_TYPES = Arrays.stream(TransactionType.values())
+            .filter(TransactionType::isCredit)
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(TransactionType.class)));
+
+    private static final int MAX_REPORTED_DRIFTS = 100;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Autowired
+    private WalletSnapshotRepository walletSnapshotRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private WalletService walletService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${wallet.reconcile.batch-size:200}")
+    private int batchSize;
+
+    @Value("${wallet.reconcile.driver-credits.lookback-hours:24}")
+    private int driverCreditLookbackHours = 24;
+
+    @Value("${wallet.reconcile.driver-credits.grace-seconds:120}")
+    private int driverCreditGraceSeconds = 120;
+
+    private volatile ReconcileResult lastResult;
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final ReentrantLock creditLock = new ReentrantLock();
+    private final AtomicLong recoveredCredits = new AtomicLong();
+
+    public WalletReconciliationService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${wallet.reconcile.cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        try {
+            reconcileAll();
+        } catch (Exception e) {
+            logger.error("Error reconciling wallets: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.reconcile.driver-credits.interval-ms:60000}",
+               initialDelayString = "${wallet.reconcile.driver-credits.interval-ms:60000}")
+    public void scheduledDriverCreditRecovery() {
+        try {
+            recoverDriverCredits();
+        } catch (Exception e) {
+            logger.error("Error recovering driver credits: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Credit drivers for recent successful payments that have no ledger entry. Payments younger
+     * than the grace period are left alone, as their credit may still be queued; one that lands
+     * meanwhile is still applied only once, since both paths check for the entry under the
+     * wallet lock.
+     * @return number of credits applied
+     */
+    public int recoverDriverCredits() {
+        creditLock.lock();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime since = now.minusHours(driverCreditLookbackHours);
+            LocalDateTime settledBefore = now.minusSeconds(driverCreditGraceSeconds);
+            int recovered = 0;
+            Long afterId = 0L;
+
+            while (true) {
+                List<Payment> payments = paymentRepository.findPaymentsMissingDriverCredit(
+                        afterId, since, settledBefore, PageRequest.of(0, batchSize));
+                if (payments.isEmpty()) {
+                    break;
+                }
+                for (Payment payment : payments) {
+                    Ride ride = payment.getBooking().getRide();
+                    try {
+                        walletService.processDriverPayment(ride.getDriver(), payment.getAmount(),
+                                ride.getSource() + " → " + ride.getDestination(), payment.getRazorpayPaymentId());
+                        logger.warn("Recovered missing driver credit for payment {}", payment.getId());
+                        recovered++;
+                    } catch (Exception e) {
+                        logger.error("Error recovering driver credit for payment {}: {}", payment.getId(), e.getMessage());
+                    }
+                }
+                afterId = payments.get(payments.size() - 1).getId();
+            }
+
+            recoveredCredits.addAndGet(recovered);
+            return recovered;
+        } finally {
+            creditLock.unlock();
+        }
+    }
+
+    /**
+     * Driver credits recovered since startup
+     */
+    public long getRecoveredCredits() {
+        return recoveredCredits.get();
+    }
+
+    /**
+     * Balance in paise as derived from the latest snapshot and the ledger after it
+     */
+    public long derivedBalancePaise(Long walletId) {
+        Optional<WalletSnapshot> snapshot = walletSnapshotRepository.findFirstByWalletIdOrderByIdDesc(walletId);
+        long base = snapshot.map(WalletSnapshot::getBalancePaise).orElse(0L);
+        long afterId = snapshot.map(WalletSnapshot::getLastTransactionId).orElse(0L);
+        return base + walletTransactionRepository.sumLedgerPaise(walletId, afterId, CREDIT_TYPES);
+    }
+
+    /**
+     * Check one wallet against its ledger and snapshot it if it agrees
+     * @return balance minus derived balance, in paise (0 when consistent)
+     */
+    public long reconcileWallet(Long walletId) {
+        Long drift = transactionTemplate.execute(status -> {
+            Optional<Wallet> walletOpt = walletRepository.findByIdForUpdate(walletId);
+            if (walletOpt.isEmpty()) {
+                return 0L;
+            }
+            long balance = walletOpt.get().getBalancePaise();
+            long lastTransactionId = walletTransactionRepository.findLastTransactionId(walletId);
+            Optional<WalletSnapshot> previous = walletSnapshotRepository.findFirstByWalletIdOrderByIdDesc(walletId);
+            long difference = balance - derivedBalancePaise(walletId);
+
+            if (previous.isEmpty()) {
+                if (difference != 0) {
+                    logger.warn("Wallet {} opening balance differs from its pre-ledger history by {} paise",
+                            walletId, difference);
+                }
+                walletSnapshotRepository.save(new WalletSnapshot(walletId, lastTransactionId, balance));
+                return 0L;
+            }
+            if (difference != 0) {
+                logger.error("Wallet {} balance {} paise drifted {} paise from its ledger",
+                        walletId, balance, difference);
+                return difference;
+            }
+            if (lastTransactionId > previous.get().getLastTransactionId()) {
+                walletSnapshotRepository.save(new WalletSnapshot(walletId, lastTransactionId, balance));
+            }
+            return 0L;
+        });
+        return drift != null ? drift : 0L;
+    }
+
+    /**
+     * Reconcile every wallet, a page of IDs at a time
+     */
+    public ReconcileResult reconcileAll() {
+        runLock.lock();
+        try {
+            return reconcileWallets();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private ReconcileResult reconcileWallets() {
+        long startedAt = System.currentTimeMillis();
+        long checked = 0;
+        List<Long> drifted = new ArrayList<>();
+        long driftedCount = 0;
+        Long afterId = 0L;
+
+        while (true) {
+            List<Long> walletIds = walletRepository.findIdsAfter(afterId, PageRequest.of(0, batchSize));
+            if (walletIds.isEmpty()) {
+                break;
+            }
+            for (Long walletId : walletIds) {
+                if (reconcileWallet(walletId) != 0) {
+                    driftedCount++;
+                    if (drifted.size() < MAX_REPORTED_DRIFTS) {
+                        drifted.add(walletId);
+                    }
+                }
+                checked++;
+            }
+            afterId = walletIds.get(walletIds.size() - 1);
+        }
+
+        ReconcileResult result = new ReconcileResult(checked, driftedCount, drifted,
+                System.currentTimeMillis() - startedAt);
+        lastResult = result;
+        if (driftedCount > 0) {
+            logger.error("Wallet reconciliation found {} of {} wallets out of balance", driftedCount, checked);
+        } else {
+            logger.info("Wallet reconciliation checked {} wallets in {} ms", checked, result.getDurationMs());
+        }
+        return result;
+    }
+
+    public ReconcileResult getLastResult() {
+        return lastResult;
+    }
+
+    // Result of a reconciliation pass
+    public static class ReconcileResult {
+        private final long checked;
+        private final long drifted;
+        private final List<Long> driftedWalletIds;
+        private final long durationMs;
+        private final LocalDateTime completedAt = LocalDateTime.now();
+
+        public ReconcileResult(long checked, long drifted, List<Long> driftedWalletIds, long durationMs) {
+            this.checked = checked;
+            this.drifted = drifted;
+            this.driftedWalletIds = driftedWalletIds;
+            this.durationMs = durationMs;
+        }
+
+        // Getters
+        public long getChecked() { return checked; }
+        public long getDrifted() { return drifted; }
+        public List<Long> getDriftedWalletIds() { return driftedWalletIds; }
+        public long getDurationMs() { return durationMs; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+    }
+}
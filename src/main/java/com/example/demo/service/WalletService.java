@@ -3,15 +3,23 @@ package com.example.demo.service;
 import com.example.demo.entity.*;
 import com.example.demo.repository.WalletRepository;
 import com.example.demo.repository.WalletTransactionRepository;
+import com.example.demo.util.PricingTable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Transactional
@@ -25,28 +33,40 @@ public class WalletService {
     @Autowired
     private WalletTransactionRepository walletTransactionRepository;
 
+    @Autowired
+    private WalletCreditBatcher walletCreditBatcher;
+
+    @Autowired
+    private PricingEngine pricingEngine;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public WalletService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     /**
      * Create wallet for new user (drivers)
      */
     public Wallet createWallet(User user) {
         try {
-            logger.info("Creating wallet for user: {}", user.getUsername());
+            logger.info("Creating wallet for user: {}", user.getId());
 
             // Check if wallet already exists
             Optional<Wallet> existingWallet = walletRepository.findByUser(user);
             if (existingWallet.isPresent()) {
-                logger.info("Wallet already exists for user: {}", user.getUsername());
+                logger.info("Wallet already exists for user: {}", user.getId());
                 return existingWallet.get();
             }
 
             Wallet wallet = new Wallet(user);
             Wallet savedWallet = walletRepository.save(wallet);
 
-            logger.info("Wallet created successfully for user: {} with ID: {}", user.getUsername(), savedWallet.getId());
+            logger.info("Wallet created successfully for user: {} with ID: {}", user.getId(), savedWallet.getId());
             return savedWallet;
 
         } catch (Exception e) {
-            logger.error("Error creating wallet for user {}: {}", user.getUsername(), e.getMessage(), e);
+            logger.error("Error creating wallet for user {}: {}", user.getId(), e.getMessage(), e);
             throw new RuntimeException("Failed to create wallet: " + e.getMessage());
         }
     }
@@ -79,78 +99,138 @@ public class WalletService {
      */
     public WalletTransaction addMoney(User user, Double amount, String description, String referenceId) {
         try {
-            logger.info("Adding ₹{} to wallet for user: {}", amount, user.getUsername());
+            logger.info("Adding ₹{} to wallet for user: {}", amount, user.getId());
 
-            if (amount <= 0) {
+            long amountPaise = toPaise(amount);
+            if (amountPaise <= 0) {
                 throw new RuntimeException("Amount must be greater than 0");
             }
 
-            Wallet wallet = getOrCreateWallet(user);
-            Double balanceBefore = wallet.getBalance();
-
-            // Add earnings to wallet
-            wallet.addEarnings(amount);
-            walletRepository.save(wallet);
-
-            // Create transaction record
-            WalletTransaction transaction = new WalletTransaction(
-                wallet, TransactionType.CREDIT, amount, description, referenceId,
-                balanceBefore, wallet.getBalance()
-            );
-
-            WalletTransaction savedTransaction = walletTransactionRepository.save(transaction);
-
-            logger.info("Successfully added ₹{} to wallet. New balance: ₹{}", amount, wallet.getBalance());
-            return savedTransaction;
+            return credit(user, amountPaise, description, referenceId);
 
         } catch (Exception e) {
-            logger.error("Error adding money to wallet for user {}: {}", user.getUsername(), e.getMessage(), e);
+            logger.error("Error adding money to wallet for user {}: {}", user.getId(), e.getMessage(), e);
             throw new RuntimeException("Failed to add money to wallet: " + e.getMessage());
         }
     }
 
+    /**
+     * Add money through group commit when it is enabled; the future completes once the credit
+     * is committed. Runs outside any caller transaction, since the credit commits on its own.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<WalletTransaction> addMoneyAsync(User user, Double amount, String description,
+                                                              String referenceId) {
+        long amountPaise = toPaise(amount);
+        if (amountPaise <= 0) {
+            throw new RuntimeException("Amount must be greater than 0");
+        }
+        return creditAsync(user, amountPaise, description, referenceId);
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return walletCreditBatcher.isEnabled();
+    }
+
     /**
      * Withdraw money from wallet
      */
     public WalletTransaction withdrawMoney(User user, Double amount, String description) {
         try {
-            logger.info("Withdrawing ₹{} from wallet for user: {}", amount, user.getUsername());
+            logger.info("Withdrawing ₹{} from wallet for user: {}", amount, user.getId());
 
-            if (amount <= 0) {
+            long amountPaise = toPaise(amount);
+            if (amountPaise <= 0) {
                 throw new RuntimeException("Amount must be greater than 0");
             }
 
-            Optional<Wallet> walletOpt = walletRepository.findByUser(user);
-            if (walletOpt.isEmpty()) {
-                throw new RuntimeException("Wallet not found for user");
+            Long walletId = walletRepository.findIdByUserId(user.getId())
+                    .orElseThrow(() -> new RuntimeException("Wallet not found for user"));
+
+            // Conditional update: checks and deducts in one statement, so two withdrawals can't both pass the check
+            if (walletRepository.debit(walletId, amountPaise, LocalDateTime.now()) == 0) {
+                Double available = walletRepository.findById(walletId).map(Wallet::getAvailableBalance).orElse(0.0);
+                throw new RuntimeException("Insufficient balance. Available: ₹" + available);
             }
 
-            Wallet wallet = walletOpt.get();
+            WalletTransaction savedTransaction = appendEntry(walletId, TransactionType.WITHDRAWAL, amountPaise,
+                -amountPaise, description, null);
 
-            if (wallet.getAvailableBalance() < amount) {
-                throw new RuntimeException("Insufficient balance. Available: ₹" + wallet.getAvailableBalance());
-            }
+            logger.info("Successfully withdrew ₹{} from wallet. New balance: ₹{}", amount, savedTransaction.getBalanceAfter());
+            return savedTransaction;
 
-            Double balanceBefore = wallet.getBalance();
+        } catch (Exception e) {
+            logger.error("Error withdrawing money from wallet for user {}: {}", user.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to withdraw money: " + e.getMessage());
+        }
+    }
 
-            // Deduct amount from wallet
-            wallet.deductAmount(amount);
-            walletRepository.save(wallet);
+    private WalletTransaction credit(User user, long amountPaise, String description, String referenceId) {
+        Long walletId = walletRepository.findIdByUserId(user.getId())
+                .orElseGet(() -> createWallet(user).getId());
 
-            // Create transaction record
-            WalletTransaction transaction = new WalletTransaction(
-                wallet, TransactionType.WITHDRAWAL, amount, description, null,
-                balanceBefore, wallet.getBalance()
-            );
+        walletRepository.credit(walletId, amountPaise, LocalDateTime.now());
 
-            WalletTransaction savedTransaction = walletTransactionRepository.save(transaction);
+        WalletTransaction savedTransaction = appendEntry(walletId, TransactionType.CREDIT, amountPaise,
+            amountPaise, description, referenceId);
 
-            logger.info("Successfully withdrew ₹{} from wallet. New balance: ₹{}", amount, wallet.getBalance());
-            return savedTransaction;
+        logger.info("Successfully added ₹{} to wallet. New balance: ₹{}",
+            amountPaise / 100.0, savedTransaction.getBalanceAfter());
+        return savedTransaction;
+    }
 
+    private CompletableFuture<WalletTransaction> creditAsync(User user, long amountPaise, String description,
+                                                             String referenceId) {
+        if (walletCreditBatcher.isEnabled()) {
+            Long walletId = walletRepository.findIdByUserId(user.getId())
+                    .orElseGet(() -> createWallet(user).getId());
+            try {
+                return walletCreditBatcher.submit(walletId, amountPaise, description, referenceId);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Wallet credit not queued ({}), applying it directly", e.getMessage());
+            }
+        }
+        try {
+            return CompletableFuture.completedFuture(
+                transactionTemplate.execute(status -> credit(user, amountPaise, description, referenceId)));
         } catch (Exception e) {
-            logger.error("Error withdrawing money from wallet for user {}: {}", user.getUsername(), e.getMessage(), e);
-            throw new RuntimeException("Failed to withdraw money: " + e.getMessage());
+            return CompletableFuture.failedFuture(new RuntimeException("Failed to add money to wallet: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Record a ledger entry for a balance change just applied in this transaction. The row lock
+     * taken by the update is still held, so the balance read back is exactly the one it produced.
+     */
+    private WalletTransaction appendEntry(Long walletId, TransactionType type, long amountPaise, long deltaPaise,
+                                         String description, String referenceId) {
+        long balanceAfter = walletRepository.findBalancePaise(walletId);
+        WalletTransaction transaction = new WalletTransaction(
+            walletRepository.getReferenceById(walletId), type, amountPaise, description, referenceId,
+            balanceAfter - deltaPaise, balanceAfter
+        );
+        return walletTransactionRepository.save(transaction);
+    }
+
+    /**
+     * Rupees to paise, rounded to the nearest paisa
+     */
+    static long toPaise(Double amount) {
+        if (amount == null || amount.isNaN() || amount.isInfinite()) {
+            throw new RuntimeException("Invalid amount");
+        }
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Fill the paise columns for wallets and ledger entries written before they existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMinorUnits() {
+        int wallets = walletRepository.backfillPaise();
+        int entries = walletTransactionRepository.backfillPaise();
+        if (wallets > 0 || entries > 0) {
+            logger.info("Backfilled paise amounts for {} wallets and {} wallet transactions", wallets, entries);
         }
     }
 
@@ -209,14 +289,14 @@ public class WalletService {
         }
 
         Wallet wallet = walletOpt.get();
-        List<WalletTransaction> transactions = walletTransactionRepository.findByWalletOrderByCreatedAtDesc(wallet);
+        long transactionCount = walletTransactionRepository.countByWallet(wallet);
 
         return new WalletStats(
             wallet.getBalance(),
             wallet.getTotalEarnings(),
             wallet.getTotalWithdrawn(),
             wallet.getPendingAmount(),
-            transactions.size()
+            (int) transactionCount
         );
     }
 
@@ -225,19 +305,16 @@ public class WalletService {
      */
     public WalletTransaction processDriverPayment(User driver, Double totalFare, String rideDescription, String paymentId) {
         try {
-            // Check if payment already processed
+            // Check if payment already processed, under the wallet lock that group commit and
+            // reconciliation take before applying the same payment
+            walletRepository.findIdByUserId(driver.getId()).ifPresent(walletRepository::findByIdForUpdate);
             if (transactionExists(paymentId)) {
                 logger.warn("Payment {} already processed for driver {}", paymentId, driver.getUsername());
                 return walletTransactionRepository.findByReferenceId(paymentId).orElse(null);
             }
 
-            // Calculate driver earnings (90% of total fare)
-            Double platformCommission = totalFare * 0.10; // 10% commission
-            Double driverEarnings = totalFare - platformCommission;
-
-            String description = "Ride earnings: " + rideDescription + " (₹" + totalFare + " - ₹" + platformCommission + " commission)";
-
-            return addMoney(driver, driverEarnings, description, paymentId);
+            DriverEarnings earnings = new DriverEarnings(pricingEngine.current(), totalFare, rideDescription);
+            return credit(driver, earnings.paise, earnings.description, paymentId);
 
         } catch (Exception e) {
             logger.error("Error processing driver payment: {}", e.getMessage(), e);
@@ -245,6 +322,37 @@ public class WalletService {
         }
     }
 
+    /**
+     * Process driver payment through group commit; call it after the payment has committed
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<WalletTransaction> processDriverPaymentAsync(User driver, Double totalFare,
+                                                                          String rideDescription, String paymentId) {
+        if (transactionExists(paymentId)) {
+            logger.warn("Payment {} already processed for driver {}", paymentId, driver.getUsername());
+            return CompletableFuture.completedFuture(walletTransactionRepository.findByReferenceId(paymentId).orElse(null));
+        }
+        DriverEarnings earnings = new DriverEarnings(pricingEngine.current(), totalFare, rideDescription);
+        return creditAsync(driver, earnings.paise, earnings.description, paymentId);
+    }
+
+    // Driver's share of a fare after the platform commission, in paise so nothing is lost to rounding
+    private static class DriverEarnings {
+        private final long paise;
+        private final String description;
+
+        private DriverEarnings(PricingTable pricing, Double totalFare, String rideDescription) {
+            long totalPaise = toPaise(totalFare);
+            long commissionPaise = pricing.commissionPaise(totalPaise);
+            this.paise = totalPaise - commissionPaise;
+            if (paise <= 0) {
+                throw new RuntimeException("Amount must be greater than 0");
+            }
+            this.description = String.format("Ride earnings: %s (₹%.2f - ₹%.2f commission)",
+                rideDescription, totalPaise / 100.0, commissionPaise / 100.0);
+        }
+    }
+
     /**
      * Get total platform earnings
      */
@@ -0,0 +1,366 @@
+package com.example.demo.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers outbound WebSocket messages per STOMP session (and per broadcast topic) so that
+ * bursts can't pile up faster than a slow client drains them.
+ *
+ * Sessions are tracked from connect and disconnect events, so each tab or device of a user
+ * has a queue of its own and a message to the user is queued once per session. A user with
+ * no session on this node is sent to directly: the user registry (or the broker relay)
+ * routes it to whichever node they are connected to, if any.
+ *
+ * Each target gets a bounded queue that is flushed on a fixed interval. Messages sent to
+ * idempotent destinations (unread counts, ride status, admin stats) are coalesced so only
+ * the latest value is delivered, in the place of the message it replaces. When a queue is
+ * full the configured overflow policy decides whether the oldest or newest message is
+ * dropped, or the backlog is discarded and replaced by a single resync frame telling the
+ * client to reload its state. A topic queue is shared by every subscriber and has no one
+ * client to resync, so under CLOSE it drops its oldest message instead.
+ */
+@Service
+public class WebSocketDispatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketDispatchService.class);
+
+    private static final String TOPIC_TARGET = "__topic__";
+
+    // Sent in place of a discarded backlog; clients reload their state when they get it
+    static final String RESYNC_DESTINATION = "/queue/resync";
+    private static final String RESYNC_KEY = "__resync__";
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        CLOSE
+    }
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Value("${websocket.dispatch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${websocket.dispatch.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${websocket.dispatch.flush-interval-ms:250}")
+    private long flushIntervalMs;
+
+    @Value("${websocket.dispatch.max-messages-per-flush:20}")
+    private int maxMessagesPerFlush;
+
+    @Value("${websocket.dispatch.overflow-policy:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${websocket.dispatch.coalesce-destinations:/queue/unread-count,/queue/ride-status-updates,/topic/admin/stats}")
+    private String[] coalesceDestinations;
+
+    // Keyed by STOMP session ID, or TOPIC_TARGET for broadcasts
+    private final Map<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+    // STOMP session IDs of each user connected to this node
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private Set<String> coalescedDestinations = new HashSet<>();
+    private ScheduledExecutorService flusher;
+
+    // Metrics
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger maxObservedDepth = new AtomicInteger();
+
+    @PostConstruct
+    public void start() {
+        coalescedDestinations = new HashSet<>(Arrays.asList(coalesceDestinations));
+        if (!enabled) {
+            log.info("WebSocket dispatch buffering disabled, messages are sent directly");
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        Principal user = event.getUser();
+        if (sessionId == null || user == null) {
+            return;
+        }
+        sessionsByUser.computeIfAbsent(user.getName(), name -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        Principal user = event.getUser();
+        if (user != null) {
+            sessionsByUser.computeIfPresent(user.getName(), (name, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+        // Nothing left in it can be delivered
+        queues.remove(sessionId);
+    }
+
+    /**
+     * Queue a message for every session of a user. Messages to coalesced destinations replace any
+     * pending message with the same destination.
+     */
+    public void sendToUser(String username, String destination, Object payload) {
+        sendToUser(username, destination, payload, null);
+    }
+
+    /**
+     * Queue a message for a single user, coalescing on the given key (for example one key
+     * per ride so status updates for different rides aren't collapsed into one).
+     */
+    public void sendToUser(String username, String destination, Object payload, String coalesceKey) {
+        if (username == null) {
+            return;
+        }
+        Set<String> sessions = sessionsByUser.get(username);
+        if (!enabled || sessions == null || sessions.isEmpty()) {
+            deliver(username, null, new Pending(destination, payload));
+            return;
+        }
+        for (String sessionId : sessions) {
+            enqueue(sessionId, username, destination, payload, coalesceKey);
+        }
+    }
+
+    /**
+     * Queue a broadcast to a topic
+     */
+    public void sendToTopic(String destination, Object payload) {
+        if (!enabled) {
+            deliver(null, null, new Pending(destination, payload));
+            return;
+        }
+        enqueue(TOPIC_TARGET, null, destination, payload, null);
+    }
+
+    private void enqueue(String target, String username, String destination, Object payload, String coalesceKey) {
+
+        String key = coalesceKey;
+        if (key == null && coalescedDestinations.contains(destination)) {
+            key = destination;
+        }
+        final String effectiveKey = key;
+
+        enqueued.incrementAndGet();
+        queues.compute(target, (t, queue) -> {
+            if (queue == null) {
+                queue = new OutboundQueue(username, username == null && overflowPolicy == OverflowPolicy.CLOSE
+                        ? OverflowPolicy.DROP_OLDEST : overflowPolicy);
+            }
+            queue.offer(new Pending(destination, payload), effectiveKey);
+            return queue;
+        });
+    }
+
+    /**
+     * Drain every queue, delivering at most maxMessagesPerFlush messages per target
+     */
+    public void flush() {
+        for (Map.Entry<String, OutboundQueue> entry : queues.entrySet()) {
+            String target = entry.getKey();
+            OutboundQueue queue = entry.getValue();
+            String sessionId = TOPIC_TARGET.equals(target) ? null : target;
+            for (Pending pending : queue.drain(maxMessagesPerFlush)) {
+                deliver(queue.username, sessionId, pending);
+            }
+            queues.computeIfPresent(target, (t, q) -> q.isEmpty() ? null : q);
+        }
+    }
+
+    // A topic broadcast without a user, every session of the user without a session ID
+    private void deliver(String username, String sessionId, Pending pending) {
+        try {
+            if (username == null) {
+                messagingTemplate.convertAndSend(pending.destination, pending.payload);
+            } else if (sessionId == null) {
+                messagingTemplate.convertAndSendToUser(username, pending.destination, pending.payload);
+            } else {
+                messagingTemplate.convertAndSendToUser(username, pending.destination, pending.payload,
+                        sessionHeaders(sessionId));
+            }
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Failed to deliver WebSocket message to {} {}: {}", username != null ? username : "topic",
+                    pending.destination, e.getMessage());
+        }
+    }
+
+    // The user destination resolver sends only to this session of the user
+    private static MessageHeaders sessionHeaders(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Queue depth and drop counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long depth = 0;
+        for (OutboundQueue queue : queues.values()) {
+            depth += queue.size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("overflowPolicy", overflowPolicy);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("connectedUsers", sessionsByUser.size());
+        stats.put("activeQueues", queues.size());
+        stats.put("queueDepth", depth);
+        stats.put("maxObservedDepth", maxObservedDepth.get());
+        stats.put("enqueued", enqueued.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("dropped", dropped.get());
+        stats.put("closed", closed.get());
+        stats.put("sent", sent.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private static class Pending {
+        private final String destination;
+        private final Object payload;
+
+        private Pending(String destination, Object payload) {
+            this.destination = destination;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Bounded per-session (or per-topic) queue kept in arrival order. A coalesced message takes the place of
+     * the pending one it replaces; every other message gets a key of its own.
+     */
+    private class OutboundQueue {
+        private final LinkedHashMap<Object, Pending> pending = new LinkedHashMap<>();
+        // Null for a topic
+        private final String username;
+        private final OverflowPolicy policy;
+
+        private OutboundQueue(String username, OverflowPolicy policy) {
+            this.username = username;
+            this.policy = policy;
+        }
+
+        synchronized void offer(Pending message, String coalesceKey) {
+            if (coalesceKey != null && pending.containsKey(coalesceKey)) {
+                pending.put(coalesceKey, message);
+                coalesced.incrementAndGet();
+                return;
+            }
+
+            if (pending.size() >= queueCapacity) {
+                switch (policy) {
+                    case DROP_NEWEST:
+                        dropped.incrementAndGet();
+                        return;
+                    case CLOSE:
+                        resync();
+                        return;
+                    case DROP_OLDEST:
+                    default:
+                        Iterator<Object> it = pending.keySet().iterator();
+                        it.next();
+                        it.remove();
+                        dropped.incrementAndGet();
+                        break;
+                }
+            }
+
+            pending.put(coalesceKey != null ? coalesceKey : new Object(), message);
+            maxObservedDepth.accumulateAndGet(pending.size(), Math::max);
+        }
+
+        // The client has fallen too far behind to catch up message by message
+        private void resync() {
+            int discarded = pending.size() + 1;
+            boolean alreadyResyncing = pending.containsKey(RESYNC_KEY);
+            dropped.addAndGet(alreadyResyncing ? discarded - 1 : discarded);
+            pending.clear();
+            pending.put(RESYNC_KEY, new Pending(RESYNC_DESTINATION,
+                    Map.of("type", "RESYNC", "reason", "Too many undelivered messages")));
+            if (!alreadyResyncing) {
+                closed.incrementAndGet();
+                log.warn("Discarded WebSocket backlog for slow client after {} queued messages, asking it to resync",
+                        queueCapacity);
+            }
+        }
+
+        synchronized Pending[] drain(int max) {
+            int count = Math.min(max, pending.size());
+            Pending[] batch = new Pending[count];
+            Iterator<Pending> it = pending.values().iterator();
+            for (int i = 0; i < count; i++) {
+                batch[i] = it.next();
+                it.remove();
+            }
+            return batch;
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+
+        synchronized boolean isEmpty() {
+            return pending.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker for calls to a remote dependency.
+ *
+ * CLOSED lets every call through. After {@code failureThreshold} failures in a row it opens
+ * and rejects calls for {@code openNanos}; the first call after that runs as a single
+ * HALF_OPEN probe, which closes the breaker on success and reopens it on failure.
+ * All transitions are CAS-based, so callers never block on each other.
+ *
+ * Every transition starts a new generation, and a permit is the generation it was granted
+ * in. An outcome only counts while its generation is current, so a slow call started before
+ * the breaker opened can neither close it nor count against the one that follows.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Returned by {@link #tryAcquirePermission()} when the call may not be made
+     */
+    public static final long NO_PERMIT = -1;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(State.CLOSED, 0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        this(failureThreshold, openDuration, unit, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit, LongSupplier clock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = unit.toNanos(openDuration);
+        this.clock = clock;
+    }
+
+    /**
+     * Ask to make a call; every permitted call must be followed by {@link #onSuccess(long)} or
+     * {@link #onFailure(long)} with the permit returned here
+     * @return the permit, or {@link #NO_PERMIT} if the breaker is open (or a half-open probe is already running)
+     */
+    public long tryAcquirePermission() {
+        Phase current = phase.get();
+        if (current.state == State.CLOSED) {
+            return current.generation;
+        }
+        if (current.state == State.OPEN && clock.getAsLong() - openedAt.get() >= openNanos) {
+            Phase probe = current.next(State.HALF_OPEN);
+            if (phase.compareAndSet(current, probe)) {
+                return probe.generation;
+            }
+        }
+        rejected.incrementAndGet();
+        return NO_PERMIT;
+    }
+
+    public void onSuccess(long permit) {
+        Phase current = phase.get();
+        if (current.generation != permit) {
+            return;
+        }
+        if (current.state == State.HALF_OPEN) {
+            if (phase.compareAndSet(current, current.next(State.CLOSED))) {
+                consecutiveFailures.set(0);
+            }
+        } else if (current.state == State.CLOSED) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public void onFailure(long permit) {
+        Phase current = phase.get();
+        if (current.generation != permit) {
+            return;
+        }
+        if (current.state == State.HALF_OPEN
+                || (current.state == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold)) {
+            open(current);
+        }
+    }
+
+    /**
+     * Give back a permission whose call never reached the dependency (e.g. it was refused locally),
+     * so an unused half-open probe doesn't leave the breaker stuck
+     */
+    public void releasePermission(long permit) {
+        Phase current = phase.get();
+        if (current.state == State.HALF_OPEN && current.generation == permit) {
+            phase.compareAndSet(current, current.next(State.OPEN));
+        }
+    }
+
+    private void open(Phase from) {
+        openedAt.set(clock.getAsLong());
+        if (phase.compareAndSet(from, from.next(State.OPEN))) {
+            timesOpened.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTimesOpened() {
+        return timesOpened.get();
+    }
+
+    // A state and the generation it started; replaced as a whole on every transition
+    private record Phase(State state, long generation) {
+        private Phase next(State to) {
+            return new Phase(to, generation + 1);
+        }
+    }
+}
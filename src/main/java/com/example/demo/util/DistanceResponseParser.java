@@ -0,0 +1,187 @@
+package com.example.demo.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pulls distance, duration and status out of distance API responses with a streaming parser.
+ *
+ * Only the first route is read, field by field, and everything else (route geometry, steps,
+ * further rows) is skipped token by token without being built into objects, so a response of
+ * tens of kilobytes costs one pass over the stream and a handful of small allocations.
+ */
+public final class DistanceResponseParser {
+
+    // Thread-safe once configured, and meant to be shared
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private DistanceResponseParser() {
+    }
+
+    /**
+     * Google Distance Matrix: top-level status, then status, distance and duration of the
+     * first element of the first row
+     */
+    public static Result parseDistanceMatrix(InputStream body) throws IOException {
+        Result result = new Result();
+        try (JsonParser parser = JSON.createParser(body)) {
+            readObject(parser, (p, field) -> {
+                switch (field) {
+                    case "status" -> result.status = p.getValueAsString();
+                    case "rows" -> readFirst(p, row -> readObject(row, (r, rowField) -> {
+                        if ("elements".equals(rowField)) {
+                            readFirst(r, element -> readObject(element, (e, elementField) -> {
+                                switch (elementField) {
+                                    case "status" -> result.routeStatus = e.getValueAsString();
+                                    case "distance" -> result.distanceMeters = readValue(e, "value");
+                                    case "duration" -> result.durationSeconds = readValue(e, "value");
+                                    default -> e.skipChildren();
+                                }
+                            }));
+                        } else {
+                            r.skipChildren();
+                        }
+                    }));
+                    default -> p.skipChildren();
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * OpenRouteService directions, as JSON ({@code routes[0].summary}) or GeoJSON
+     * ({@code features[0].properties.summary}); an {@code error} member makes the status ERROR
+     */
+    public static Result parseDirections(InputStream body) throws IOException {
+        Result result = new Result();
+        try (JsonParser parser = JSON.createParser(body)) {
+            readObject(parser, (p, field) -> {
+                switch (field) {
+                    case "routes" -> readFirst(p, route -> readSummary(route, result));
+                    case "features" -> readFirst(p, feature -> readObject(feature, (f, featureField) -> {
+                        if ("properties".equals(featureField)) {
+                            readSummary(f, result);
+                        } else {
+                            f.skipChildren();
+                        }
+                    }));
+                    case "error" -> {
+                        result.status = "ERROR";
+                        p.skipChildren();
+                    }
+                    default -> p.skipChildren();
+                }
+            });
+        }
+        if (result.status == null) {
+            result.status = "OK";
+        }
+        return result;
+    }
+
+    // The object holding a "summary" member with distance and duration
+    private static void readSummary(JsonParser parser, Result result) throws IOException {
+        readObject(parser, (p, field) -> {
+            if ("summary".equals(field)) {
+                readObject(p, (s, summaryField) -> {
+                    switch (summaryField) {
+                        case "distance" -> result.distanceMeters = number(s);
+                        case "duration" -> result.durationSeconds = number(s);
+                        default -> s.skipChildren();
+                    }
+                });
+            } else {
+                p.skipChildren();
+            }
+        });
+    }
+
+    // One numeric member of an object, e.g. {"text": "346 km", "value": 346000}
+    private static double readValue(JsonParser parser, String name) throws IOException {
+        double[] value = {Double.NaN};
+        readObject(parser, (p, field) -> {
+            if (name.equals(field)) {
+                value[0] = number(p);
+            } else {
+                p.skipChildren();
+            }
+        });
+        return value[0];
+    }
+
+    private static double number(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        return token != null && token.isNumeric() ? parser.getDoubleValue() : Double.NaN;
+    }
+
+    // With the parser on (or just before) an object, hand each member's value to the reader
+    private static void readObject(JsonParser parser, MemberReader reader) throws IOException {
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            reader.read(parser, field);
+        }
+    }
+
+    // With the parser on an array, hand its first item to the reader and skip the rest
+    private static void readFirst(JsonParser parser, ItemReader reader) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        boolean first = true;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (first) {
+                reader.read(parser);
+                first = false;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface MemberReader {
+        void read(JsonParser parser, String field) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ItemReader {
+        void read(JsonParser parser) throws IOException;
+    }
+
+    /**
+     * What was found; distances and durations are NaN when missing
+     */
+    public static class Result {
+        private String status;
+        private String routeStatus;
+        private double distanceMeters = Double.NaN;
+        private double durationSeconds = Double.NaN;
+
+        /**
+         * Status of the response as a whole
+         */
+        public String getStatus() { return status; }
+
+        /**
+         * Status of the route itself (Distance Matrix element), null when the API has none
+         */
+        public String getRouteStatus() { return routeStatus; }
+
+        public double getDistanceMeters() { return distanceMeters; }
+        public double getDurationSeconds() { return durationSeconds; }
+        public boolean hasDistance() { return !Double.isNaN(distanceMeters); }
+    }
+}
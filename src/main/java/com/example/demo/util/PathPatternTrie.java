@@ -0,0 +1,100 @@
+package com.example.demo.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request-path patterns compiled into a segment trie.
+ *
+ * Patterns use the same syntax as Spring Security request matchers: literal segments,
+ * "*" for exactly one segment and a trailing "**" for any remainder (including none).
+ * Literal segments win over "*", which wins over "**", so a lookup is a single walk down
+ * the trie and its cost doesn't grow with the number of patterns.
+ *
+ * Populate it once at startup; lookups are safe from any thread once it is published.
+ */
+public final class PathPatternTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    /**
+     * Register a pattern; a later registration of the same pattern replaces the earlier value
+     */
+    public void add(String pattern, V value) {
+        if (pattern == null || !pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route pattern must start with '/': " + pattern);
+        }
+        Node<V> node = root;
+        String[] segments = pattern.substring(1).split("/");
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if ("**".equals(segment)) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("'**' is only supported at the end of a pattern: " + pattern);
+                }
+                node.remainder = value;
+                return;
+            }
+            if ("*".equals(segment)) {
+                if (node.wildcard == null) {
+                    node.wildcard = new Node<>();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.children.computeIfAbsent(segment, s -> new Node<>());
+            }
+        }
+        node.exact = value;
+    }
+
+    /**
+     * Find the value of the most specific pattern matching a path (without context path or query string)
+     * @return the value, or null if no pattern matches
+     */
+    public V match(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        return match(root, path, path.length() == 1 ? -1 : 1);
+    }
+
+    /**
+     * @param pos start of the next segment, or -1 once the whole path has been consumed
+     */
+    private static <V> V match(Node<V> node, String path, int pos) {
+        if (pos < 0) {
+            return node.exact != null ? node.exact : node.remainder;
+        }
+
+        int slash = path.indexOf('/', pos);
+        int end = slash < 0 ? path.length() : slash;
+        int next = slash < 0 ? -1 : slash + 1;
+
+        if (end > pos) {
+            Node<V> child = node.children.get(path.substring(pos, end));
+            if (child != null) {
+                V value = match(child, path, next);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (node.wildcard != null) {
+                V value = match(node.wildcard, path, next);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return node.remainder;
+    }
+
+    private static final class Node<V> {
+        private final Map<String, Node<V>> children = new HashMap<>();
+        private Node<V> wildcard;
+        private V exact;
+        private V remainder;
+    }
+}
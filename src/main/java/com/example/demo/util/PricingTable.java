@@ -0,0 +1,271 @@
+package com.example.demo.util;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, precompiled fare rules.
+ *
+ * A fare is {@code max(minimumFare, (baseFare + distanceFare) * timeMultiplier)}. The distance
+ * charge is tiered: each tier starts at a distance and scales the per-km rate for the kilometres
+ * that fall inside it. Time-of-day bands are compiled into one multiplier per minute of the day,
+ * so a lookup is a single array read. Evaluation only touches primitive arrays and allocates
+ * nothing; a new table is built and swapped in whole whenever the rules change.
+ */
+public final class PricingTable {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final long version;
+    private final double baseFare;
+    private final double defaultPricePerKm;
+    private final double minimumFare;
+    private final double commissionRate;
+    private final double[] tierStartKm;
+    private final double[] tierMultiplier;
+    private final double[] minuteMultiplier;
+    private final String distanceTiers;
+    private final String timeBands;
+
+    private PricingTable(Builder builder, long version) {
+        this.version = version;
+        this.baseFare = builder.baseFare;
+        this.defaultPricePerKm = builder.defaultPricePerKm;
+        this.minimumFare = builder.minimumFare;
+        this.commissionRate = builder.commissionRate;
+
+        int tiers = builder.tierStartKm.size();
+        this.tierStartKm = new double[tiers];
+        this.tierMultiplier = new double[tiers];
+        for (int i = 0; i < tiers; i++) {
+            tierStartKm[i] = builder.tierStartKm.get(i);
+            tierMultiplier[i] = builder.tierMultiplier.get(i);
+        }
+
+        // Later bands win where bands overlap
+        this.minuteMultiplier = new double[MINUTES_PER_DAY];
+        Arrays.fill(minuteMultiplier, 1.0);
+        for (double[] band : builder.bands) {
+            int start = (int) band[0];
+            int end = (int) band[1];
+            for (int minute = start; minute != end; minute = (minute + 1) % MINUTES_PER_DAY) {
+                minuteMultiplier[minute] = band[2];
+            }
+        }
+
+        this.distanceTiers = builder.describeTiers();
+        this.timeBands = String.join(",", builder.bandSpecs);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder starting from this table's rules
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder()
+                .baseFare(baseFare)
+                .defaultPricePerKm(defaultPricePerKm)
+                .minimumFare(minimumFare)
+                .commissionRate(commissionRate)
+                .distanceTiers(distanceTiers);
+        if (!timeBands.isEmpty()) {
+            builder.timeBands(timeBands);
+        }
+        return builder;
+    }
+
+    /**
+     * Distance charge for a trip at the given per-km rate, tier by tier
+     */
+    public double distanceFare(double distanceKm, double pricePerKm) {
+        double charge = 0.0;
+        for (int i = 0; i < tierStartKm.length; i++) {
+            double from = tierStartKm[i];
+            if (distanceKm <= from) {
+                break;
+            }
+            double to = i + 1 < tierStartKm.length ? Math.min(distanceKm, tierStartKm[i + 1]) : distanceKm;
+            charge += (to - from) * pricePerKm * tierMultiplier[i];
+        }
+        return charge;
+    }
+
+    public double timeMultiplier(int minuteOfDay) {
+        return minuteMultiplier[Math.floorMod(minuteOfDay, MINUTES_PER_DAY)];
+    }
+
+    /**
+     * Total fare for a whole ride (before splitting between seats)
+     */
+    public double totalFare(double distanceKm, double pricePerKm, int minuteOfDay) {
+        double fare = (baseFare + distanceFare(distanceKm, pricePerKm)) * timeMultiplier(minuteOfDay);
+        return Math.max(minimumFare, fare);
+    }
+
+    public double commission(double totalFare) {
+        return totalFare * commissionRate;
+    }
+
+    public long commissionPaise(long totalPaise) {
+        return Math.round(totalPaise * commissionRate);
+    }
+
+    public static int minuteOfDay(LocalTime time) {
+        return time == null ? 0 : time.getHour() * 60 + time.getMinute();
+    }
+
+    public long getVersion() { return version; }
+    public double getBaseFare() { return baseFare; }
+    public double getDefaultPricePerKm() { return defaultPricePerKm; }
+    public double getMinimumFare() { return minimumFare; }
+    public double getCommissionRate() { return commissionRate; }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> rules = new LinkedHashMap<>();
+        rules.put("version", version);
+        rules.put("baseFare", baseFare);
+        rules.put("pricePerKm", defaultPricePerKm);
+        rules.put("minimumFare", minimumFare);
+        rules.put("commissionRate", commissionRate);
+        rules.put("distanceTiers", distanceTiers);
+        rules.put("timeBands", timeBands);
+        return rules;
+    }
+
+    /**
+     * Collects and validates rules; {@link #build(long)} compiles them into a table
+     */
+    public static final class Builder {
+        private double baseFare = 50.0;
+        private double defaultPricePerKm = 12.0;
+        private double minimumFare = 0.0;
+        private double commissionRate = 0.10;
+        private final List<Double> tierStartKm = new ArrayList<>(List.of(0.0));
+        private final List<Double> tierMultiplier = new ArrayList<>(List.of(1.0));
+        private final List<double[]> bands = new ArrayList<>();
+        private final List<String> bandSpecs = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder baseFare(double baseFare) {
+            if (baseFare < 0) {
+                throw new IllegalArgumentException("Base fare cannot be negative");
+            }
+            this.baseFare = baseFare;
+            return this;
+        }
+
+        public Builder defaultPricePerKm(double pricePerKm) {
+            if (pricePerKm <= 0) {
+                throw new IllegalArgumentException("Price per km must be greater than 0");
+            }
+            this.defaultPricePerKm = pricePerKm;
+            return this;
+        }
+
+        public Builder minimumFare(double minimumFare) {
+            if (minimumFare < 0) {
+                throw new IllegalArgumentException("Minimum fare cannot be negative");
+            }
+            this.minimumFare = minimumFare;
+            return this;
+        }
+
+        public Builder commissionRate(double commissionRate) {
+            if (commissionRate < 0 || commissionRate >= 1) {
+                throw new IllegalArgumentException("Commission rate must be at least 0 and below 1");
+            }
+            this.commissionRate = commissionRate;
+            return this;
+        }
+
+        /**
+         * Distance tiers as "fromKm:multiplier" pairs, e.g. "0:1.0,100:0.9,300:0.8". The first
+         * tier must start at 0 km; an empty spec means one flat tier.
+         */
+        public Builder distanceTiers(String spec) {
+            tierStartKm.clear();
+            tierMultiplier.clear();
+            if (spec == null || spec.isBlank()) {
+                tierStartKm.add(0.0);
+                tierMultiplier.add(1.0);
+                return this;
+            }
+            for (String part : spec.split(",")) {
+                String[] fields = part.trim().split(":");
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("Invalid distance tier '" + part.trim() + "', expected fromKm:multiplier");
+                }
+                double from = Double.parseDouble(fields[0].trim());
+                double multiplier = Double.parseDouble(fields[1].trim());
+                if (multiplier < 0) {
+                    throw new IllegalArgumentException("Distance tier multiplier cannot be negative");
+                }
+                if (!tierStartKm.isEmpty() && from <= tierStartKm.get(tierStartKm.size() - 1)) {
+                    throw new IllegalArgumentException("Distance tiers must be in increasing order");
+                }
+                tierStartKm.add(from);
+                tierMultiplier.add(multiplier);
+            }
+            if (tierStartKm.get(0) != 0.0) {
+                throw new IllegalArgumentException("The first distance tier must start at 0 km");
+            }
+            return this;
+        }
+
+        /**
+         * Time-of-day bands as "HH:mm-HH:mm:multiplier", e.g. "07:00-10:00:1.25,22:00-06:00:1.2".
+         * A band covers its start minute up to (not including) its end and may wrap past midnight.
+         */
+        public Builder timeBands(String spec) {
+            bands.clear();
+            bandSpecs.clear();
+            if (spec == null || spec.isBlank()) {
+                return this;
+            }
+            for (String part : spec.split(",")) {
+                String band = part.trim();
+                int multiplierAt = band.lastIndexOf(':');
+                int rangeAt = band.indexOf('-');
+                if (multiplierAt < 0 || rangeAt < 0 || rangeAt > multiplierAt) {
+                    throw new IllegalArgumentException("Invalid time band '" + band + "', expected HH:mm-HH:mm:multiplier");
+                }
+                LocalTime start = LocalTime.parse(band.substring(0, rangeAt).trim());
+                LocalTime end = LocalTime.parse(band.substring(rangeAt + 1, multiplierAt).trim());
+                double multiplier = Double.parseDouble(band.substring(multiplierAt + 1).trim());
+                if (multiplier <= 0) {
+                    throw new IllegalArgumentException("Time band multiplier must be greater than 0");
+                }
+                if (start.equals(end)) {
+                    throw new IllegalArgumentException("Time band '" + band + "' is empty");
+                }
+                bands.add(new double[] {minuteOfDay(start), minuteOfDay(end), multiplier});
+                bandSpecs.add(band);
+            }
+            return this;
+        }
+
+        public PricingTable build(long version) {
+            return new PricingTable(this, version);
+        }
+
+        private String describeTiers() {
+            StringBuilder spec = new StringBuilder();
+            for (int i = 0; i < tierStartKm.size(); i++) {
+                if (i > 0) {
+                    spec.append(',');
+                }
+                spec.append(tierStartKm.get(i)).append(':').append(tierMultiplier.get(i));
+            }
+            return spec.toString();
+        }
+    }
+}
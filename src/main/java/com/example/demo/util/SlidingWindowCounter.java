@@ -0,0 +1,90 @@
+package com.example.demo.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free event counter over a sliding time window.
+ *
+ * The window is split into {@code buckets} slots of {@code bucketMillis} each, kept in a ring.
+ * A slot packs the time bucket it belongs to (high 32 bits) and its count (low 32 bits) into
+ * one long, so recording an event is a single compare-and-set: when the slot still holds an
+ * older bucket the same CAS resets it. Nothing is ever locked and no count is lost to a reset.
+ */
+public class SlidingWindowCounter {
+
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final long bucketMillis;
+    private final long originMillis;
+    private final AtomicLongArray slots;
+
+    public SlidingWindowCounter(int buckets, long bucketMillis) {
+        this(buckets, bucketMillis, System.currentTimeMillis());
+    }
+
+    SlidingWindowCounter(int buckets, long bucketMillis, long originMillis) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("At least one bucket is required");
+        }
+        if (bucketMillis < 1) {
+            throw new IllegalArgumentException("Bucket length must be at least 1 ms");
+        }
+        this.bucketMillis = bucketMillis;
+        // Buckets are numbered from the counter's creation so they fit in 32 bits
+        this.originMillis = originMillis;
+        this.slots = new AtomicLongArray(buckets);
+    }
+
+    public void increment() {
+        increment(System.currentTimeMillis());
+    }
+
+    void increment(long nowMillis) {
+        long bucket = bucketOf(nowMillis);
+        int index = (int) (bucket % slots.length());
+        while (true) {
+            long current = slots.get(index);
+            long next;
+            if (current >>> 32 == bucket) {
+                if ((current & COUNT_MASK) == COUNT_MASK) {
+                    return; // saturated
+                }
+                next = current + 1;
+            } else {
+                next = bucket << 32 | 1L;
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Events recorded in the last {@code buckets} time buckets, the current one included
+     */
+    public long sum() {
+        return sum(System.currentTimeMillis());
+    }
+
+    long sum(long nowMillis) {
+        long bucket = bucketOf(nowMillis);
+        long oldest = bucket - slots.length() + 1;
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long slot = slots.get(i);
+            long slotBucket = slot >>> 32;
+            if (slotBucket >= oldest && slotBucket <= bucket) {
+                total += slot & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+
+    public long getWindowMillis() {
+        return bucketMillis * slots.length();
+    }
+
+    private long bucketOf(long nowMillis) {
+        return Math.max(0L, nowMillis - originMillis) / bucketMillis;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ *
+ * Holds up to {@code capacity} tokens and refills {@code capacity} tokens evenly over
+ * {@code period}. The state is a single "theoretical arrival time" (the instant at which
+ * the bucket would be full again), updated with compare-and-set, so concurrent callers
+ * never block each other.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, Duration period) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.nanosPerToken = Math.max(1L, period.toNanos() / capacity);
+        this.burstNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take one token if available
+     * @return true if the token was granted
+     */
+    public boolean tryConsume() {
+        return tryAcquire(System.nanoTime()) == 0L;
+    }
+
+    /**
+     * Take one token if available
+     * @return 0 if the token was granted, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Take several tokens at once. Granted while at least one token is available, even if
+     * fewer than asked for are left: the bucket is overdrawn and grants nothing more until
+     * the difference has refilled, so a request costing more than the capacity still gets
+     * through, once, and the average rate holds.
+     * @return 0 if the tokens were granted, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(int tokens) {
+        return tryAcquire(System.nanoTime(), tokens);
+    }
+
+    long tryAcquire(long now) {
+        return tryAcquire(now, 1);
+    }
+
+    long tryAcquire(long now, int tokens) {
+        if (tokens < 1) {
+            throw new IllegalArgumentException("At least 1 token is required");
+        }
+        while (true) {
+            long current = fullAt.get();
+            long start = current - now > 0 ? current : now;
+            long waitNanos = start + nanosPerToken - now - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (fullAt.compareAndSet(current, start + nanosPerToken * tokens)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket has refilled completely and can be discarded
+     */
+    public boolean isFull() {
+        return fullAt.get() - System.nanoTime() <= 0;
+    }
+}
@@ -83,6 +83,11 @@ class NotificationWebSocket {
                 this.handleRideStatusUpdate(statusUpdate);
             });
 
+            // Sent when the server dropped our backlog; what is on screen may be stale
+            this.stompClient.subscribe(`/user/queue/resync`, (message) => {
+                this.handleResync(JSON.parse(message.body));
+            });
+
             // Send connection message
             if (window.StompJs && this.stompClient.publish) {
                 this.stompClient.publish({
@@ -249,6 +254,16 @@ class NotificationWebSocket {
         this.showNotificationToast(notification);
     }
 
+    // Handle a resync request: pages can listen for 'websocket-resync' and refresh their own
+    // data (calling preventDefault); otherwise the page is reloaded
+    handleResync(resync) {
+        console.warn('Missed real-time updates, reloading current state:', resync);
+        const event = new CustomEvent('websocket-resync', { detail: resync, cancelable: true });
+        if (window.dispatchEvent(event)) {
+            window.location.reload();
+        }
+    }
+
     // Update ride status in UI elements
     updateRideStatusInUI(statusUpdate) {
         // Find ride elements by rideId and update their status
@@ -0,0 +1,141 @@
+package com.example.demo.security;
+
+import com.example.demo.enums.Role;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenVerifierTest {
+
+    private static final int ITERATIONS = 20000;
+
+    private JwtUtil jwtUtil;
+    private JwtTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        verifier = new JwtTokenVerifier(jwtUtil);
+    }
+
+    @Test
+    void testVerifyReturnsAllClaimsFromOneParse() {
+        // Arrange
+        String token = jwtUtil.generateToken("driver@test.com", 42L, "DRIVER");
+
+        // Act
+        JwtPrincipal principal = verifier.verify(token);
+
+        // Assert
+        assertNotNull(principal);
+        assertEquals("driver@test.com", principal.getUsername());
+        assertEquals(42L, principal.getUserId());
+        assertEquals(Role.DRIVER, principal.getRole());
+        assertEquals("ROLE_DRIVER", principal.getAuthorities().get(0).getAuthority());
+    }
+
+    @Test
+    void testSecondVerifyIsServedFromCache() {
+        // Arrange
+        String token = jwtUtil.generateToken("passenger@test.com", 7L, "PASSENGER");
+
+        // Act
+        JwtPrincipal first = verifier.verify(token);
+        JwtPrincipal second = verifier.verify(token);
+
+        // Assert
+        assertSame(first, second);
+        Map<String, Object> stats = verifier.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void testInvalidTokensRejectedAndNotCached() {
+        // Arrange
+        String token = jwtUtil.generateToken("user@test.com", 1L, "PASSENGER");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        String foreign = Jwts.builder()
+                .setSubject("user@test.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor("another-secret-key-another-secret-key-1234".getBytes()))
+                .compact();
+
+        // Act & Assert
+        assertNull(verifier.verify(tampered));
+        assertNull(verifier.verify(foreign));
+        assertNull(verifier.verify("not-a-jwt"));
+        assertEquals(0, verifier.getStats().get("cacheSize"));
+    }
+
+    @Test
+    void testExpiredTokenRejected() {
+        // Arrange - signed with the verifier's own key, so only the expiry is wrong
+        Key signingKey = (Key) ReflectionTestUtils.getField(jwtUtil, "SECRET_KEY");
+        String expired = Jwts.builder()
+                .setSubject("user@test.com")
+                .claim("userId", 1L)
+                .claim("role", "PASSENGER")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(signingKey)
+                .compact();
+
+        // Act & Assert
+        assertNull(verifier.verify(expired));
+    }
+
+    /**
+     * Per-request auth cost: the old filter parsed and verified the token four times,
+     * the verifier parses once and then serves the cached principal. Prints the numbers
+     * only, timings vary too much between machines to assert on; run with -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkPerRequestAuthCost() {
+        // Arrange
+        String token = jwtUtil.generateToken("bench@test.com", 99L, "PASSENGER");
+        for (int i = 0; i < 2000; i++) {
+            legacyFilterPath(token);
+            jwtUtil.parsePrincipal(token);
+            verifier.verify(token);
+        }
+
+        // Act
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            legacyFilterPath(token);
+        }
+        long legacyNanos = (System.nanoTime() - legacyStart) / ITERATIONS;
+
+        long parseStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            jwtUtil.parsePrincipal(token);
+        }
+        long parseNanos = (System.nanoTime() - parseStart) / ITERATIONS;
+
+        long cachedStart = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            verifier.verify(token);
+        }
+        long cachedNanos = (System.nanoTime() - cachedStart) / ITERATIONS;
+
+        System.out.printf("JWT auth cost per request: legacy 4x parse %d ns, single parse %d ns, cached %d ns%n",
+                legacyNanos, parseNanos, cachedNanos);
+    }
+
+    private void legacyFilterPath(String token) {
+        jwtUtil.isTokenValid(token);
+        jwtUtil.extractUsername(token);
+        jwtUtil.extractUserId(token);
+        jwtUtil.extractRole(token);
+    }
+}
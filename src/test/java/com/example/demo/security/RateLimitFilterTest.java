@@ -0,0 +1,143 @@
+package com.example.demo.security;
+
+import com.example.demo.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "clientAddressResolver", new ClientAddressResolver());
+        ReflectionTestUtils.setField(filter, "otpPerMinute", 2);
+        ReflectionTestUtils.setField(filter, "searchPerMinute", 3);
+        ReflectionTestUtils.setField(filter, "farePerMinute", 3);
+        filter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.stop();
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse send(String method, String path, String ip) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void testOtpRouteLimitedPerIpWithRetryAfter() throws Exception {
+        // Act
+        assertEquals(200, send("POST", "/api/auth/send-login-otp", "10.0.0.1").getStatus());
+        assertEquals(200, send("POST", "/api/auth/send-registration-otp", "10.0.0.1").getStatus());
+        MockHttpServletResponse limited = send("POST", "/api/auth/send-login-otp", "10.0.0.1");
+
+        // Assert
+        assertEquals(429, limited.getStatus());
+        assertNotNull(limited.getHeader("Retry-After"));
+        assertTrue(Long.parseLong(limited.getHeader("Retry-After")) >= 1);
+        assertTrue(limited.getContentAsString().contains("Too many requests"));
+
+        // Other clients and unthrottled routes are unaffected
+        assertEquals(200, send("POST", "/api/auth/send-login-otp", "10.0.0.2").getStatus());
+        assertEquals(200, send("GET", "/api/rides/my-rides", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void testAuthenticatedCallersKeyedByUserId() throws Exception {
+        // Arrange - same IP, but the second caller is logged in
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, send("GET", "/api/rides/search", "10.0.0.9").getStatus());
+        }
+        assertEquals(429, send("GET", "/api/rides/search", "10.0.0.9").getStatus());
+
+        User user = new User();
+        user.setId(11L);
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken(user, null, List.of()));
+
+        // Act & Assert
+        assertEquals(200, send("GET", "/api/rides/search", "10.0.0.9").getStatus());
+    }
+
+    @Test
+    void testForwardedClientsBehindOneProxyLimitedSeparately() throws Exception {
+        // Arrange
+        ClientAddressResolver resolver = new ClientAddressResolver();
+        ReflectionTestUtils.setField(resolver, "trustForwardedFor", true);
+        ReflectionTestUtils.setField(filter, "clientAddressResolver", resolver);
+
+        // Act - both arrive from the proxy's address
+        for (int i = 0; i < 2; i++) {
+            assertEquals(200, sendForwarded("/api/auth/send-login-otp", "203.0.113.5").getStatus());
+        }
+        MockHttpServletResponse limited = sendForwarded("/api/auth/send-login-otp", "203.0.113.5");
+        MockHttpServletResponse other = sendForwarded("/api/auth/send-login-otp", "198.51.100.7, 203.0.113.5");
+
+        // Assert
+        assertEquals(429, limited.getStatus());
+        assertEquals(200, other.getStatus());
+    }
+
+    private MockHttpServletResponse sendForwarded(String path, String forwardedFor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setRemoteAddr("10.0.0.254");
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void testBatchChargedPerEntryByItsHandler() throws Exception {
+        // Arrange - the filter leaves the batch route to the handler
+        assertEquals(200, send("POST", "/api/fare/batch-estimate", "10.0.0.4").getStatus());
+        MockHttpServletRequest batch = new MockHttpServletRequest("POST", "/api/fare/batch-estimate");
+        batch.setRemoteAddr("10.0.0.4");
+
+        // Act - a batch of 10 fares against a limit of 3 per minute
+        long first = filter.tryAcquire("fare", batch, 10);
+        long second = filter.tryAcquire("fare", batch, 1);
+
+        // Assert - let through once, then the overdraft has to refill before single quotes pass
+        assertEquals(0L, first);
+        assertTrue(second > 0);
+        assertEquals(429, send("POST", "/api/fare/calculate", "10.0.0.4").getStatus());
+        assertTrue(RateLimitFilter.retryAfterSeconds(second) > 60);
+    }
+
+    @Test
+    void testPreflightNotCountedAndStatsExposed() throws Exception {
+        // Act
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send("OPTIONS", "/api/auth/send-login-otp", "10.0.0.3").getStatus());
+        }
+        send("POST", "/api/auth/send-login-otp", "10.0.0.3");
+
+        // Assert
+        Map<?, ?> policies = (Map<?, ?>) filter.getStats().get("policies");
+        Map<?, ?> otp = (Map<?, ?>) policies.get("otp");
+        assertEquals(1L, otp.get("allowed"));
+        assertEquals(0L, otp.get("rejected"));
+        assertEquals(1, otp.get("clients"));
+    }
+}
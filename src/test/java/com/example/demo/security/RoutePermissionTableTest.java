@@ -0,0 +1,63 @@
+package com.example.demo.security;
+
+import com.example.demo.security.RoutePermissionTable.Access;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutePermissionTableTest {
+
+    private final RoutePermissionTable table = SecurityConfig.routePermissionTable();
+
+    @Test
+    void testExactAndRootRoutes() {
+        assertEquals(Access.PUBLIC, table.lookup("/"));
+        assertEquals(Access.PUBLIC, table.lookup("/api/auth/login"));
+        assertEquals(Access.PUBLIC, table.lookup("/index.html"));
+        assertEquals(Access.OPTIONAL, table.lookup("/api/rides/search"));
+
+        // Other auth endpoints still require a token
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/auth/profile"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/auth/login/extra"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/auth/login/"));
+    }
+
+    @Test
+    void testSingleSegmentWildcard() {
+        assertEquals(Access.OPTIONAL, table.lookup("/api/rides/15"));
+        assertEquals(Access.OPTIONAL, table.lookup("/api/rides/15/calculate-fare"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/rides/15/book"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/rides"));
+    }
+
+    @Test
+    void testRemainderWildcard() {
+        assertEquals(Access.PUBLIC, table.lookup("/static/js/app.js"));
+        assertEquals(Access.PUBLIC, table.lookup("/h2-console"));
+        assertEquals(Access.PUBLIC, table.lookup("/h2-console/login.do"));
+        assertEquals(Access.PUBLIC, table.lookup("/v3/api-docs/swagger-config"));
+        assertEquals(Access.OPTIONAL, table.lookup("/api/admin/users/3"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/bookings/my-bookings"));
+        assertEquals(Access.AUTHENTICATED, table.lookup("/api/swagger-hack"));
+    }
+
+    @Test
+    void testRequestLookupStripsContextPath() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/app/api/auth/login");
+        request.setContextPath("/app");
+
+        // Act & Assert
+        assertEquals(Access.PUBLIC, table.lookup(request));
+        assertTrue(table.permitAllMatcher().matches(request));
+    }
+
+    @Test
+    void testInvalidPatternsRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> RoutePermissionTable.builder().add(Access.PUBLIC, "api/no-slash"));
+        assertThrows(IllegalArgumentException.class,
+            () -> RoutePermissionTable.builder().add(Access.PUBLIC, "/api/**/tail"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.RegisterRequest;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.AuthenticationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AuthServiceTest {
+
+    private AuthService authService;
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.encode(any())).thenReturn("hashed");
+        authService = new AuthService(userRepository, passwordHashingService, new JwtUtil(),
+                mock(AuthenticationManager.class), mock(OtpService.class), mock(EmailService.class));
+    }
+
+    @Test
+    void testConcurrentRegistrationWithSameEmailGetsTheUsualError() {
+        // Arrange - the email was free when checked, then taken before the insert
+        when(userRepository.existsByEmail("rider@test.com")).thenReturn(false, true);
+        when(userRepository.save(any(User.class)))
+            .thenThrow(new DataIntegrityViolationException("Duplicate entry 'rider@test.com' for key 'users.email'"));
+
+        // Act
+        RuntimeException e = assertThrows(RuntimeException.class, () -> authService.register(request()));
+
+        // Assert
+        assertEquals("Email already registered", e.getMessage());
+    }
+
+    @Test
+    void testOtherIntegrityErrorsAreNotMistakenForDuplicates() {
+        // Arrange
+        when(userRepository.save(any(User.class)))
+            .thenThrow(new DataIntegrityViolationException("Column 'phone' cannot be null"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> authService.register(request()));
+    }
+
+    private static RegisterRequest request() {
+        RegisterRequest request = new RegisterRequest();
+        request.setUsername("rider");
+        request.setEmail("rider@test.com");
+        request.setPassword("secret123");
+        request.setRole("PASSENGER");
+        return request;
+    }
+}
@@ -5,6 +5,11 @@ import com.example.demo.dto.FareResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FareCalculationServiceTest {
@@ -14,11 +19,13 @@ public class FareCalculationServiceTest {
 
     @BeforeEach
     void setUp() {
-        googleMapsService = new GoogleMapsService();
+        googleMapsService = new GoogleMapsService(new RestTemplate());
         fareCalculationService = new FareCalculationService();
         
         // Inject the GoogleMapsService using reflection
         ReflectionTestUtils.setField(fareCalculationService, "googleMapsService", googleMapsService);
+        ReflectionTestUtils.setField(fareCalculationService, "pricingEngine", new PricingEngine());
+        ReflectionTestUtils.setField(fareCalculationService, "surgePricingService", new SurgePricingService());
         
         // Set up test API configuration
         ReflectionTestUtils.setField(googleMapsService, "apiKey", "test_key");
@@ -117,4 +124,46 @@ public class FareCalculationServiceTest {
         // Assert
         assertEquals(100.0, commission); // 1000 * 0.10
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCalculateFaresMatchesSingleCalculation() {
+        // Arrange
+        List<FareRequest> requests = Arrays.asList(
+            new FareRequest("Chennai", "Bangalore", 1),
+            new FareRequest(" chennai ", "BANGALORE", 2),
+            new FareRequest("Mumbai", "Pune", 3, null, 15.0),
+            new FareRequest("Mumbai", "Pune", 1, 200.0, null));
+
+        // Act
+        List<FareResponse> responses = fareCalculationService.calculateFares(requests);
+
+        // Assert - same quotes as one at a time, in request order
+        assertEquals(requests.size(), responses.size());
+        for (int i = 0; i < requests.size(); i++) {
+            FareResponse single = fareCalculationService.calculateFare(requests.get(i));
+            assertTrue(responses.get(i).isSuccess());
+            assertEquals(single.getFareDetails().getTotalFare(), responses.get(i).getFareDetails().getTotalFare());
+            assertEquals(single.getFareDetails().getFarePerPassenger(), responses.get(i).getFareDetails().getFarePerPassenger());
+        }
+        assertEquals(responses.get(0).getFareDetails().getDistance(), responses.get(1).getFareDetails().getDistance());
+        assertEquals("PROVIDED", responses.get(3).getFareDetails().getCalculationMethod());
+    }
+
+    @Test
+    void testCalculateFaresFailsOnlyInvalidEntries() {
+        // Arrange
+        List<FareRequest> requests = Arrays.asList(
+            new FareRequest("Chennai", "Bangalore", 1),
+            new FareRequest("", "Bangalore", 1),
+            null);
+
+        // Act
+        List<FareResponse> responses = fareCalculationService.calculateFares(requests);
+
+        // Assert
+        assertTrue(responses.get(0).isSuccess());
+        assertFalse(responses.get(1).isSuccess());
+        assertEquals("Source location is required", responses.get(1).getMessage());
+        assertFalse(responses.get(2).isSuccess());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FareResponse;
+import com.example.demo.repository.RideRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FareQuoteCacheTest {
+
+    private FareQuoteCache cache;
+    private FareCalculationService fareCalculationService;
+    private PricingEngine pricingEngine;
+    private SurgePricingService surgePricingService;
+    private RideRepository rideRepository;
+
+    @BeforeEach
+    void setUp() {
+        pricingEngine = new PricingEngine();
+        surgePricingService = new SurgePricingService();
+        fareCalculationService = spy(new FareCalculationService());
+        ReflectionTestUtils.setField(fareCalculationService, "googleMapsService", new GoogleMapsService(new RestTemplate()));
+        ReflectionTestUtils.setField(fareCalculationService, "pricingEngine", pricingEngine);
+        ReflectionTestUtils.setField(fareCalculationService, "surgePricingService", surgePricingService);
+        rideRepository = mock(RideRepository.class);
+
+        cache = new FareQuoteCache();
+        ReflectionTestUtils.setField(cache, "fareCalculationService", fareCalculationService);
+        ReflectionTestUtils.setField(cache, "pricingEngine", pricingEngine);
+        ReflectionTestUtils.setField(cache, "surgePricingService", surgePricingService);
+        ReflectionTestUtils.setField(cache, "rideRepository", rideRepository);
+    }
+
+    @Test
+    void testRepeatedEstimateServedFromCache() {
+        // Act
+        FareResponse first = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+        FareResponse second = cache.getQuickEstimate("  chennai ", "BANGALORE", 1);
+
+        // Assert - normalized route hits the cached quote
+        assertTrue(first.isSuccess());
+        assertSame(first, second);
+        verify(fareCalculationService, times(1)).calculateFare(any());
+        assertEquals(1L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    void testPassengerCountIsPartOfKey() {
+        // Act
+        FareResponse one = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+        FareResponse two = cache.getQuickEstimate("Chennai", "Bangalore", 2);
+
+        // Assert
+        assertNotSame(one, two);
+        assertEquals(one.getFareDetails().getTotalFare() / 2, two.getFareDetails().getFarePerPassenger(), 0.01);
+    }
+
+    @Test
+    void testPricingChangeInvalidatesQuotes() {
+        // Arrange
+        FareResponse before = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+
+        // Act
+        pricingEngine.update(80.0, null);
+        FareResponse after = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+
+        // Assert
+        assertNotSame(before, after);
+        assertEquals(80.0, after.getFareDetails().getBaseFare());
+        assertEquals(before.getFareDetails().getTotalFare() + 30.0, after.getFareDetails().getTotalFare(), 0.01);
+    }
+
+    @Test
+    void testErrorsAreNotCached() {
+        // Act
+        cache.getQuickEstimate("Chennai", "Bangalore", 0);
+        cache.getQuickEstimate("Chennai", "Bangalore", 0);
+
+        // Assert
+        verify(fareCalculationService, times(2)).calculateFare(any());
+        assertEquals(0, cache.getStats().get("size"));
+    }
+
+    @Test
+    void testWarmQuotesMostCommonRoutes() {
+        // Arrange
+        when(rideRepository.findMostCommonRoutes(any(Pageable.class))).thenReturn(List.of(
+            new Object[] {"Chennai", "Bangalore"},
+            new Object[] {"Mumbai", "Pune"}));
+
+        // Act
+        int warmed = cache.warm();
+        cache.getQuickEstimate("mumbai", "pune", 1);
+
+        // Assert
+        assertEquals(2, warmed);
+        assertEquals(1L, cache.getStats().get("hits"));
+        verify(fareCalculationService, times(2)).calculateFare(any());
+    }
+
+    @Test
+    void testSurgeIsPartOfKey() {
+        // Arrange
+        FareResponse calm = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+
+        // Act - enough searchers from Chennai without bookings to surge
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch("Chennai", "u:" + i);
+        }
+        surgePricingService.refresh();
+        FareResponse surged = cache.getQuickEstimate("Chennai", "Bangalore", 1);
+
+        // Assert
+        assertNotSame(calm, surged);
+        assertTrue(surged.getFareDetails().getSurgeMultiplier() > 1.0);
+        assertSame(surged, cache.getQuickEstimate("Chennai", "Bangalore", 1));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JdbcAdmissionLimiterTest {
+
+    private JdbcAdmissionLimiter limiter;
+    private DataSource pool;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        limiter = new JdbcAdmissionLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(limiter, "acquireTimeoutMs", 50L);
+        pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = limiter.wrap(pool);
+    }
+
+    @Test
+    void testWaitsThenTimesOutWhenAllConnectionsAreOut() throws SQLException {
+        // Arrange
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        // Act & Assert
+        assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+        assertEquals(1L, limiter.getStats().get("timedOut"));
+        verify(pool, times(2)).getConnection();
+    }
+
+    @Test
+    void testRejectsAtOncePastMaxWaiting() throws SQLException {
+        // Arrange
+        ReflectionTestUtils.setField(limiter, "maxWaiting", 0);
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        // Act & Assert
+        assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+        assertEquals(1L, limiter.getStats().get("rejected"));
+        assertEquals(0L, limiter.getStats().get("timedOut"));
+    }
+
+    @Test
+    void testClosingConnectionLetsNextOneIn() throws SQLException {
+        // Arrange
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+
+        // Act
+        first.close();
+        first.close();
+        dataSource.getConnection();
+
+        // Assert: closed twice, released once
+        assertEquals(2, limiter.getStats().get("inUse"));
+        assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+    }
+
+    @Test
+    void testFailedConnectReleasesPermit() throws SQLException {
+        // Arrange
+        when(pool.getConnection()).thenThrow(new SQLException("down"));
+
+        // Act
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+
+        // Assert
+        assertEquals(0, limiter.getStats().get("inUse"));
+    }
+
+    @Test
+    void testCallsReachTheRealConnection() throws SQLException {
+        // Arrange
+        Connection connection = dataSource.getConnection();
+
+        // Act
+        connection.setAutoCommit(false);
+
+        // Assert
+        assertEquals(connection, connection);
+        assertNotEquals(connection, dataSource.getConnection());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationRetentionServiceTest {
+
+    @TempDir
+    Path archiveDir;
+
+    private NotificationRetentionService service;
+    private NotificationRepository notificationRepository;
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository = mock(NotificationRepository.class);
+        when(notificationRepository.findArchiveRowsByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            List<Object[]> rows = new ArrayList<>();
+            for (Long id : ids) {
+                rows.add(new Object[] {id, 7L, "Ride reminder", "Your ride leaves soon", "RIDE_REMINDER",
+                        LocalDateTime.of(2030, 1, 1, 9, 0), 3L, null});
+            }
+            return rows;
+        });
+        when(notificationRepository.deleteByIdIn(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        service = new NotificationRetentionService();
+        ReflectionTestUtils.setField(service, "notificationRepository", notificationRepository);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxAgeDays", 30);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "batchPauseMs", 0L);
+        ReflectionTestUtils.setField(service, "maxBatchesPerRun", 10);
+        ReflectionTestUtils.setField(service, "archiveEnabled", true);
+        ReflectionTestUtils.setField(service, "archiveDirectory", archiveDir.toString());
+    }
+
+    @Test
+    void testEachBatchIsReadableOnDiskBeforeItIsDeleted() throws IOException {
+        // Arrange
+        when(notificationRepository.findReadNotificationIdsOlderThan(any(), any(Pageable.class)))
+            .thenReturn(List.of(1L, 2L), List.of(3L));
+        List<Integer> archivedAtDelete = new ArrayList<>();
+        when(notificationRepository.deleteByIdIn(anyList())).thenAnswer(invocation -> {
+            // As if the process died here: only what already reached the file counts
+            archivedAtDelete.add(readArchivedLines(onlyArchiveFile()).size());
+            return ((List<?>) invocation.getArgument(0)).size();
+        });
+
+        // Act
+        NotificationRetentionService.RetentionResult result = service.purgeReadNotifications();
+
+        // Assert
+        assertEquals(List.of(2, 3), archivedAtDelete);
+        assertEquals(3, result.getDeleted());
+        assertEquals(3, result.getArchived());
+        List<String> lines = readArchivedLines(onlyArchiveFile());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"id\":1"));
+
+        InOrder order = inOrder(notificationRepository);
+        order.verify(notificationRepository).findArchiveRowsByIds(List.of(1L, 2L));
+        order.verify(notificationRepository).deleteByIdIn(List.of(1L, 2L));
+        order.verify(notificationRepository).findArchiveRowsByIds(List.of(3L));
+        order.verify(notificationRepository).deleteByIdIn(List.of(3L));
+    }
+
+    @Test
+    void testArchiveFailureDeletesNothing() throws IOException {
+        // Arrange: the archive directory can't be created
+        Path blocker = Files.createFile(archiveDir.resolve("not-a-directory"));
+        ReflectionTestUtils.setField(service, "archiveDirectory", blocker.resolve("archive").toString());
+        when(notificationRepository.findReadNotificationIdsOlderThan(any(), any(Pageable.class)))
+            .thenReturn(List.of(1L, 2L));
+
+        // Act
+        NotificationRetentionService.RetentionResult result = service.purgeReadNotifications();
+
+        // Assert
+        assertEquals(0, result.getDeleted());
+        verify(notificationRepository, never()).deleteByIdIn(anyList());
+    }
+
+    @Test
+    void testRunsInTheSameSecondKeepSeparateArchives() throws IOException {
+        // Arrange
+        when(notificationRepository.findReadNotificationIdsOlderThan(any(), any(Pageable.class)))
+            .thenReturn(List.of(1L), List.of(2L));
+
+        // Act
+        String first = service.purgeReadNotifications().getArchiveFile();
+        String second = service.purgeReadNotifications().getArchiveFile();
+
+        // Assert
+        assertNotEquals(first, second);
+        assertEquals(1, readArchivedLines(Path.of(first)).size());
+        assertEquals(1, readArchivedLines(Path.of(second)).size());
+    }
+
+    private Path onlyArchiveFile() throws IOException {
+        try (var files = Files.list(archiveDir)) {
+            List<Path> archives = files.toList();
+            assertEquals(1, archives.size());
+            return archives.get(0);
+        }
+    }
+
+    // Complete lines in a gzip file, including one that was never finished
+    private static List<String> readArchivedLines(Path file) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                content.write(buffer, 0, read);
+            }
+        } catch (EOFException e) {
+            // no gzip trailer yet: everything before it has been read
+        }
+        String text = content.toString(StandardCharsets.UTF_8);
+        return text.isEmpty() ? List.of() : List.of(text.split("\n"));
+    }
+}
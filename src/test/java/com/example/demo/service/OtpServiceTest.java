@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.OtpType;
+import com.example.demo.repository.EmailOtpRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OtpServiceTest {
+
+    private OtpService otpService;
+    private EmailService emailService;
+    private EmailOtpRepository otpRepository;
+
+    @BeforeEach
+    void setUp() {
+        emailService = mock(EmailService.class);
+        otpRepository = mock(EmailOtpRepository.class);
+        otpService = new OtpService();
+
+        ReflectionTestUtils.setField(otpService, "emailService", emailService);
+        ReflectionTestUtils.setField(otpService, "otpRepository", otpRepository);
+        ReflectionTestUtils.setField(otpService, "otpExpiryMinutes", 5);
+        ReflectionTestUtils.setField(otpService, "otpLength", 6);
+        ReflectionTestUtils.setField(otpService, "persist", false);
+        otpService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        otpService.stop();
+    }
+
+    private String sendAndCaptureOtp(String email, OtpType type) {
+        otpService.generateAndSendOtp(email, type);
+        ArgumentCaptor<String> otp = ArgumentCaptor.forClass(String.class);
+        verify(emailService, atLeastOnce()).sendOtpEmail(eq(email), otp.capture(), anyString());
+        return otp.getValue();
+    }
+
+    @Test
+    void testVerifyOtpIsSingleUse() {
+        // Arrange
+        String otp = sendAndCaptureOtp("user@test.com", OtpType.LOGIN);
+
+        // Act & Assert
+        assertEquals(6, otp.length());
+        assertTrue(otpService.hasValidOtp("user@test.com", OtpType.LOGIN));
+        assertTrue(otpService.verifyOtp("user@test.com", otp, OtpType.LOGIN));
+        assertFalse(otpService.verifyOtp("user@test.com", otp, OtpType.LOGIN));
+        assertFalse(otpService.hasValidOtp("user@test.com", OtpType.LOGIN));
+
+        // No database access without persistence
+        verifyNoInteractions(otpRepository);
+    }
+
+    @Test
+    void testWrongOtpOrTypeRejected() {
+        // Arrange
+        String otp = sendAndCaptureOtp("user@test.com", OtpType.REGISTRATION);
+        String wrong = otp.equals("000000") ? "111111" : "000000";
+
+        // Act & Assert
+        assertFalse(otpService.verifyOtp("user@test.com", wrong, OtpType.REGISTRATION));
+        assertFalse(otpService.verifyOtp("user@test.com", otp, OtpType.LOGIN));
+        assertTrue(otpService.verifyOtp("user@test.com", otp, OtpType.REGISTRATION));
+    }
+
+    @Test
+    void testNewOtpReplacesPrevious() {
+        // Arrange
+        String first = sendAndCaptureOtp("user@test.com", OtpType.LOGIN);
+        String second = sendAndCaptureOtp("user@test.com", OtpType.LOGIN);
+
+        // Act & Assert
+        if (!first.equals(second)) {
+            assertFalse(otpService.verifyOtp("user@test.com", first, OtpType.LOGIN));
+        }
+        assertTrue(otpService.verifyOtp("user@test.com", second, OtpType.LOGIN));
+    }
+
+    @Test
+    void testRateLimitPerEmail() {
+        // Act - five requests per hour are allowed
+        for (int i = 0; i < 5; i++) {
+            otpService.generateAndSendOtp("burst@test.com", OtpType.LOGIN);
+        }
+
+        // Assert
+        RuntimeException ex = assertThrows(RuntimeException.class,
+            () -> otpService.generateAndSendOtp("burst@test.com", OtpType.LOGIN));
+        assertTrue(ex.getMessage().contains("Too many OTP requests"));
+
+        // Other emails are unaffected
+        assertDoesNotThrow(() -> otpService.generateAndSendOtp("other@test.com", OtpType.LOGIN));
+    }
+
+    @Test
+    void testFailedEmailDoesNotLeaveOtpBehind() {
+        // Arrange
+        doThrow(new RuntimeException("Failed to send email")).when(emailService)
+            .sendOtpEmail(eq("fail@test.com"), anyString(), anyString());
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> otpService.generateAndSendOtp("fail@test.com", OtpType.LOGIN));
+        assertFalse(otpService.hasValidOtp("fail@test.com", OtpType.LOGIN));
+    }
+}
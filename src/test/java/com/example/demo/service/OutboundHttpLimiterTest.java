@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundHttpLimiterTest {
+
+    private OutboundHttpLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new OutboundHttpLimiter();
+        ReflectionTestUtils.setField(limiter, "maxPerHost", 1);
+        ReflectionTestUtils.setField(limiter, "acquireTimeoutMs", 10L);
+    }
+
+    @Test
+    void testOpenResponseHoldsTheHostsOnlyPermit() throws IOException {
+        // Arrange
+        ClientHttpResponse open = call("maps.example.com", respond(HttpStatus.OK));
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> call("maps.example.com", respond(HttpStatus.OK)));
+        call("routes.example.com", respond(HttpStatus.OK)).close();
+
+        open.close();
+        call("maps.example.com", respond(HttpStatus.OK)).close();
+        assertEquals(1L, host("maps.example.com").get("rejected"));
+        assertEquals(2L, host("maps.example.com").get("calls"));
+    }
+
+    @Test
+    void testErrorsAndExceptionsCountAsFailures() throws IOException {
+        // Act
+        call("maps.example.com", respond(HttpStatus.SERVICE_UNAVAILABLE)).close();
+        assertThrows(IOException.class, () -> call("maps.example.com", (request, body) -> {
+            throw new IOException("connect timed out");
+        }));
+
+        // Assert: the failed connect gave its permit back
+        call("maps.example.com", respond(HttpStatus.OK)).close();
+        assertEquals(2L, host("maps.example.com").get("failures"));
+        assertEquals(3L, host("maps.example.com").get("calls"));
+        assertEquals(0, host("maps.example.com").get("inFlight"));
+    }
+
+    @Test
+    void testClosingTwiceReleasesOnce() throws IOException {
+        // Arrange
+        ClientHttpResponse response = call("maps.example.com", respond(HttpStatus.OK));
+
+        // Act
+        response.close();
+        response.close();
+
+        // Assert
+        assertEquals(1L, host("maps.example.com").get("calls"));
+        assertEquals(0, host("maps.example.com").get("inFlight"));
+    }
+
+    private ClientHttpResponse call(String host, ClientHttpRequestExecution execution) throws IOException {
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("https://" + host + "/json"));
+        return limiter.intercept(request, new byte[0], execution);
+    }
+
+    private static ClientHttpRequestExecution respond(HttpStatus status) {
+        return (request, body) -> new MockClientHttpResponse(new byte[0], status);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> host(String host) {
+        return (Map<String, Object>) ((Map<String, Object>) limiter.getStats().get("hosts")).get(host);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService service;
+
+    private PasswordHashingService create(PasswordEncoder encoder, int threads, int queueCapacity) {
+        PasswordHashingService hashing = new PasswordHashingService();
+        ReflectionTestUtils.setField(hashing, "passwordEncoder", encoder);
+        ReflectionTestUtils.setField(hashing, "poolEnabled", true);
+        ReflectionTestUtils.setField(hashing, "threads", threads);
+        ReflectionTestUtils.setField(hashing, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(hashing, "timeoutMs", 5000L);
+        hashing.start();
+        return hashing;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void testEncodeAndMatchOnPool() {
+        // Arrange
+        service = create(new BCryptPasswordEncoder(4), 2, 8);
+
+        // Act
+        String hash = service.encode("secret123");
+
+        // Assert
+        assertTrue(service.matches("secret123", hash));
+        assertFalse(service.matches("wrong", hash));
+        Map<String, Object> stats = service.getStats();
+        assertEquals(true, stats.get("poolEnabled"));
+        assertEquals(1L, ((Map<?, ?>) stats.get("encode")).get("count"));
+        assertEquals(2L, ((Map<?, ?>) stats.get("match")).get("count"));
+    }
+
+    @Test
+    void testLowerCostHashNeedsRehash() {
+        // Arrange
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret123");
+        service = create(new BCryptPasswordEncoder(5), 1, 4);
+
+        // Act & Assert
+        assertTrue(service.needsRehash(oldHash));
+        assertTrue(service.matches("secret123", oldHash));
+        assertFalse(service.needsRehash(service.encode("secret123")));
+    }
+
+    @Test
+    void testSaturatedPoolRejectsInsteadOfQueueingUnbounded() throws Exception {
+        // Arrange - one thread, one queue slot, encoder blocks until released
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash";
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        };
+        service = create(blocking, 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        try {
+            // Act - occupy the worker and the queue slot
+            callers.submit(() -> service.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            callers.submit(() -> service.encode("b"));
+            while ((Integer) service.getStats().get("queued") < 1) {
+                Thread.sleep(5);
+            }
+
+            // Assert
+            assertThrows(PasswordHashingService.HashingBusyException.class, () -> service.encode("c"));
+            assertEquals(1L, service.getStats().get("rejected"));
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            callers.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.example.demo.util.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentGatewayClientTest {
+
+    private PaymentGatewayClient client;
+    private FakePaymentGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new FakePaymentGateway();
+        gateway.setLatencyMs(0);
+        client = new PaymentGatewayClient();
+        ReflectionTestUtils.setField(client, "gateway", gateway);
+        ReflectionTestUtils.setField(client, "threads", 2);
+        ReflectionTestUtils.setField(client, "queueCapacity", 2);
+        ReflectionTestUtils.setField(client, "fetchTimeoutMs", 200L);
+        ReflectionTestUtils.setField(client, "breakerFailureThreshold", 3);
+        client.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.stop();
+    }
+
+    @Test
+    void testCallsCompleteOnGatewayThreads() throws Exception {
+        // Act
+        String orderId = PaymentGatewayClient.await(client.createOrder(10000, "INR", "receipt_1"));
+        String method = PaymentGatewayClient.await(client.fetchPaymentMethod("pay_1"));
+
+        // Assert
+        assertTrue(orderId.startsWith("order_fake_"));
+        assertEquals("upi", method);
+    }
+
+    @Test
+    void testSlowGatewayTimesOut() {
+        // Arrange
+        gateway.setLatencyMs(1000);
+
+        // Act
+        long start = System.nanoTime();
+        PaymentGatewayClient.GatewayUnavailableException e = assertThrows(
+                PaymentGatewayClient.GatewayUnavailableException.class,
+                () -> PaymentGatewayClient.await(client.fetchPaymentMethod("pay_1")));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert - the caller is released at the timeout, not when the gateway answers
+        assertEquals(PaymentGatewayClient.GatewayUnavailableException.Reason.TIMEOUT, e.getReason());
+        assertTrue(elapsedMs < 900, "waited " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testBulkheadRejectsWhenFull() {
+        // Arrange - 2 threads and 2 queue slots
+        gateway.setLatencyMs(300);
+        List<CompletableFuture<String>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            inFlight.add(client.createOrder(10000, "INR", "receipt_" + i));
+        }
+
+        // Act
+        PaymentGatewayClient.GatewayUnavailableException e = assertThrows(
+                PaymentGatewayClient.GatewayUnavailableException.class,
+                () -> PaymentGatewayClient.await(client.createOrder(10000, "INR", "receipt_extra")));
+
+        // Assert
+        assertEquals(PaymentGatewayClient.GatewayUnavailableException.Reason.BULKHEAD_FULL, e.getReason());
+        assertEquals(1L, client.getStats().get("bulkheadRejected"));
+        inFlight.forEach(CompletableFuture::join);
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailures() {
+        // Arrange
+        gateway.setFailureRate(1.0);
+
+        // Act - orders are not retried, so each call is one failure
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IOException.class,
+                    () -> PaymentGatewayClient.await(client.createOrder(10000, "INR", "receipt")));
+        }
+        long callsBefore = gateway.getCalls();
+        PaymentGatewayClient.GatewayUnavailableException e = assertThrows(
+                PaymentGatewayClient.GatewayUnavailableException.class,
+                () -> PaymentGatewayClient.await(client.createOrder(10000, "INR", "receipt")));
+
+        // Assert - rejected without reaching the gateway
+        assertEquals(PaymentGatewayClient.GatewayUnavailableException.Reason.CIRCUIT_OPEN, e.getReason());
+        assertEquals(callsBefore, gateway.getCalls());
+        assertEquals(CircuitBreaker.State.OPEN, client.getStats().get("circuitState"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReadsRetriedWithinBudget() {
+        // Arrange
+        gateway.setFailureRate(1.0);
+
+        // Act
+        assertThrows(IOException.class, () -> PaymentGatewayClient.await(client.fetchPaymentMethod("pay_1")));
+
+        // Assert - a read gets one retry after the first failure
+        Map<String, Object> fetch = (Map<String, Object>) client.getStats().get("fetchPaymentMethod");
+        assertEquals(1L, fetch.get("calls"));
+        assertEquals(1L, fetch.get("retries"));
+        assertEquals(2L, gateway.getCalls());
+    }
+
+    @Test
+    void testRefundTimeoutIsUnknownAndRetryDoesNotRefundAgain() throws Exception {
+        // Arrange - the lookup and the refund each take 150ms, longer than the caller waits
+        gateway.setLatencyMs(150);
+        ReflectionTestUtils.setField(client, "refundTimeoutMs", 200L);
+
+        // Act
+        PaymentGatewayClient.GatewayUnavailableException e = assertThrows(
+                PaymentGatewayClient.GatewayUnavailableException.class,
+                () -> PaymentGatewayClient.await(client.createRefund("pay_1", 5000, "ride cancelled", "booking_7")));
+        ReflectionTestUtils.setField(client, "refundTimeoutMs", 5000L);
+        String retried = PaymentGatewayClient.await(client.createRefund("pay_1", 5000, "ride cancelled", "booking_7"));
+        String again = PaymentGatewayClient.await(client.createRefund("pay_1", 5000, "ride cancelled", "booking_7"));
+
+        // Assert - the retry waited for the first attempt and found its refund
+        assertEquals(PaymentGatewayClient.GatewayUnavailableException.Reason.OUTCOME_UNKNOWN, e.getReason());
+        assertEquals(1L, gateway.getRefundsMade());
+        assertEquals(retried, again);
+        assertEquals(2L, client.getStats().get("refundsAlreadyMade"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.PaymentEvent;
+import com.example.demo.repository.PaymentEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PaymentIdempotencyServiceTest {
+
+    private PaymentIdempotencyService service;
+    private PaymentEventRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PaymentEventRepository.class);
+        service = new PaymentIdempotencyService();
+        ReflectionTestUtils.setField(service, "paymentEventRepository", repository);
+    }
+
+    @Test
+    void testRecordedKeyAnsweredWithoutQuery() {
+        // Act
+        service.record("order:order_1", "payment.verified", "order_1", "pay_1");
+
+        // Assert
+        assertTrue(service.isProcessed("order:order_1"));
+        verify(repository).saveAndFlush(any(PaymentEvent.class));
+        verify(repository, never()).existsByIdempotencyKey(anyString());
+    }
+
+    @Test
+    void testStoredKeyFoundOnceThenCached() {
+        // Arrange - recorded by another node or before a restart
+        when(repository.existsByIdempotencyKey("order:order_2")).thenReturn(true);
+
+        // Act & Assert
+        assertTrue(service.isProcessed("order:order_2"));
+        assertTrue(service.isProcessed("order:order_2"));
+        verify(repository, times(1)).existsByIdempotencyKey("order:order_2");
+    }
+
+    @Test
+    void testUnknownKeyNotProcessed() {
+        assertFalse(service.isProcessed("order:order_3"));
+    }
+
+    @Test
+    void testConcurrentClaimRejectedUntilReleased() {
+        assertTrue(service.tryBegin("order:order_4"));
+        assertFalse(service.tryBegin("order:order_4"));
+
+        service.release("order:order_4");
+
+        assertTrue(service.tryBegin("order:order_4"));
+    }
+
+    @Test
+    void testRecentKeysBounded() {
+        // Arrange
+        ReflectionTestUtils.setField(service, "recentKeyCapacity", 2);
+
+        // Act
+        service.record("event:a", "payment.captured", null, null);
+        service.record("event:b", "payment.captured", null, null);
+        service.record("event:c", "payment.captured", null, null);
+
+        // Assert - the oldest key falls back to the store
+        assertEquals(2, service.getStats().get("recentKeys"));
+        assertFalse(service.isProcessed("event:a"));
+        assertTrue(service.isProcessed("event:c"));
+    }
+
+    @Test
+    void testWebhookKeyPrefersEventId() {
+        assertEquals("event:evt_1", PaymentIdempotencyService.webhookKey("evt_1", "{}"));
+
+        String fromPayload = PaymentIdempotencyService.webhookKey(null, "{\"event\":\"payment.captured\"}");
+        assertTrue(fromPayload.startsWith("webhook:"));
+        assertEquals(fromPayload, PaymentIdempotencyService.webhookKey("", "{\"event\":\"payment.captured\"}"));
+        assertNotEquals(fromPayload, PaymentIdempotencyService.webhookKey(null, "{\"event\":\"order.paid\"}"));
+    }
+}
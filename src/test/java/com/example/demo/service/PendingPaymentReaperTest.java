@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.PaymentStatus;
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PendingPaymentReaperTest {
+
+    private PendingPaymentReaper reaper;
+    private PaymentRepository paymentRepository;
+    private BookingRepository bookingRepository;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+        reaper = new PendingPaymentReaper(transactionManager);
+        ReflectionTestUtils.setField(reaper, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(reaper, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(reaper, "enabled", true);
+        ReflectionTestUtils.setField(reaper, "maxAgeMinutes", 1440L);
+        ReflectionTestUtils.setField(reaper, "batchSize", 2);
+        ReflectionTestUtils.setField(reaper, "maxBatchesPerRun", 10);
+    }
+
+    @Test
+    void testExpiresInBatchesUntilShortPage() {
+        // Arrange - two full pages, then a partial one
+        when(paymentRepository.findStalePendingPaymentIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+        when(paymentRepository.expirePendingPayments(anyList(), eq(PaymentStatus.FAILED), anyString(), any()))
+                .thenAnswer(inv -> ((List<?>) inv.getArgument(0)).size());
+        when(bookingRepository.releasePendingBookingsForPayments(anyList(), eq(BookingStatus.PENDING),
+                eq(BookingStatus.CANCELLED), anyCollection(), any())).thenReturn(1);
+
+        // Act
+        PendingPaymentReaper.ReapResult result = reaper.reap();
+
+        // Assert - one transaction per batch, no entities loaded
+        assertEquals(5, result.getExpired());
+        assertEquals(3, result.getBookingsReleased());
+        assertEquals(3, result.getBatches());
+        verify(transactionManager, times(3)).commit(any());
+        verify(paymentRepository, never()).findAll();
+        assertEquals(5L, reaper.getStats().get("expired"));
+    }
+
+    @Test
+    void testIdlePassIsSingleQuery() {
+        // Arrange
+        when(paymentRepository.findStalePendingPaymentIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // Act
+        PendingPaymentReaper.ReapResult result = reaper.reap();
+
+        // Assert
+        assertEquals(0, result.getExpired());
+        verify(paymentRepository, never()).expirePendingPayments(anyList(), any(), anyString(), any());
+        verifyNoInteractions(bookingRepository, transactionManager);
+    }
+
+    @Test
+    void testRunCappedAtMaxBatches() {
+        // Arrange - the backlog never runs out
+        ReflectionTestUtils.setField(reaper, "maxBatchesPerRun", 3);
+        when(paymentRepository.findStalePendingPaymentIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L));
+        when(paymentRepository.expirePendingPayments(anyList(), any(), anyString(), any())).thenReturn(2);
+
+        // Act
+        PendingPaymentReaper.ReapResult result = reaper.reap();
+
+        // Assert
+        assertEquals(3, result.getBatches());
+        assertEquals(6, result.getExpired());
+    }
+}
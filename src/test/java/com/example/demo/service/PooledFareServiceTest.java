@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Booking;
+import com.example.demo.entity.Ride;
+import com.example.demo.enums.BookingStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleBiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledFareServiceTest {
+
+    // Stops along a straight route: km from Chennai
+    private static final Map<String, Double> KM_FROM_CHENNAI = Map.of(
+        "Chennai", 0.0, "Sriperumbudur", 40.0, "Vellore", 140.0, "Krishnagiri", 250.0, "Bangalore", 350.0);
+
+    private PooledFareService pooledFareService;
+    private AtomicInteger lookups;
+    private ToDoubleBiFunction<String, String> distances;
+    private Ride ride;
+
+    @BeforeEach
+    void setUp() {
+        pooledFareService = new PooledFareService();
+        lookups = new AtomicInteger();
+        distances = (from, to) -> {
+            lookups.incrementAndGet();
+            return Math.abs(KM_FROM_CHENNAI.get(to) - KM_FROM_CHENNAI.get(from));
+        };
+
+        ride = new Ride();
+        ReflectionTestUtils.setField(ride, "id", 1L);
+        ride.setSource("Chennai");
+        ride.setDestination("Bangalore");
+        ride.setDistanceKm(350.0);
+        ride.setTotalSeats(4);
+        ride.setFare(350.0); // per seat, so ₹1 per seat-km
+    }
+
+    @Test
+    void testFullRoutePaysPostedFare() {
+        // Act
+        PooledFareService.Share share = pooledFareService.quote(ride, "chennai", "BANGALORE", 2, distances);
+
+        // Assert
+        assertEquals(700.0, share.getFare(), 0.001);
+        assertEquals(350.0, share.getDistanceKm(), 0.001);
+        assertEquals(0, lookups.get());
+    }
+
+    @Test
+    void testPartialSegmentPaysForOverlapOnly() {
+        // Act
+        PooledFareService.Share share = pooledFareService.quote(ride, "Vellore", "Krishnagiri", 1, distances);
+
+        // Assert
+        assertEquals(140.0, share.getFromKm(), 0.001);
+        assertEquals(250.0, share.getToKm(), 0.001);
+        assertEquals(110.0, share.getFare(), 0.001);
+    }
+
+    @Test
+    void testStopPositionsAreCachedPerRide() {
+        // Arrange
+        pooledFareService.quote(ride, "Vellore", "Bangalore", 1, distances);
+        int afterFirst = lookups.get();
+
+        // Act - same stop again, for another booking
+        pooledFareService.quote(ride, " vellore ", "Bangalore", 1, distances);
+
+        // Assert
+        assertEquals(1, afterFirst);
+        assertEquals(afterFirst, lookups.get());
+        assertEquals(1L, pooledFareService.getStats().get("cachedPositions"));
+    }
+
+    @Test
+    void testSplitCoversAllBookingsInOnePass() {
+        // Arrange
+        List<Booking> bookings = List.of(
+            booking(10L, "Chennai", "Bangalore", 1, BookingStatus.CONFIRMED),
+            booking(11L, "Sriperumbudur", "Vellore", 2, BookingStatus.CONFIRMED),
+            booking(12L, "Vellore", "Krishnagiri", 1, BookingStatus.PENDING),
+            booking(13L, "Chennai", "Vellore", 3, BookingStatus.CANCELLED));
+
+        // Act
+        PooledFareService.RideSplit split = pooledFareService.split(ride, bookings, distances);
+
+        // Assert - cancelled booking left out, each share priced by its own stretch
+        assertEquals(3, split.getShares().size());
+        assertEquals(350.0, split.getShares().get(0).getFare(), 0.001);
+        assertEquals(200.0, split.getShares().get(1).getFare(), 0.001);
+        assertEquals(110.0, split.getShares().get(2).getFare(), 0.001);
+        assertEquals(660.0, split.getTotalFare(), 0.001);
+
+        // Legs: 0-40 (1 seat), 40-140 (3), 140-250 (2), 250-350 (1)
+        List<PooledFareService.Leg> legs = split.getLegs();
+        assertEquals(4, legs.size());
+        assertEquals(1, legs.get(0).getSeatsTaken());
+        assertEquals(3, legs.get(1).getSeatsTaken());
+        assertEquals(2, legs.get(2).getSeatsTaken());
+        assertEquals(1, legs.get(3).getSeatsTaken());
+        assertEquals(split.getTotalFare(), legs.stream().mapToDouble(PooledFareService.Leg::getFare).sum(), 0.01);
+
+        // Three distinct intermediate stops, each looked up once
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    void testSplitForPassengerKeepsOnlyTheirShares() {
+        // Arrange
+        List<Booking> bookings = List.of(
+            booking(10L, "Chennai", "Bangalore", 1, BookingStatus.CONFIRMED),
+            booking(11L, "Sriperumbudur", "Vellore", 2, BookingStatus.CONFIRMED),
+            booking(12L, "Vellore", "Krishnagiri", 1, BookingStatus.PENDING));
+        PooledFareService.RideSplit split = pooledFareService.split(ride, bookings, distances);
+
+        // Act
+        PooledFareService.RideSplit own = split.forBookings(List.of(11L));
+
+        // Assert - nothing about where the others ride
+        assertEquals(1, own.getShares().size());
+        assertEquals(11L, own.getShares().get(0).getBookingId());
+        assertEquals(200.0, own.getTotalFare(), 0.001);
+        assertTrue(own.getLegs().isEmpty());
+    }
+
+    @Test
+    void testRouteChangeRebuildsStops() {
+        // Arrange
+        pooledFareService.quote(ride, "Vellore", "Bangalore", 1, distances);
+
+        // Act - same ride id now ends at Krishnagiri
+        ride.setDestination("Krishnagiri");
+        ride.setDistanceKm(250.0);
+        PooledFareService.Share share = pooledFareService.quote(ride, "Vellore", "Krishnagiri", 1, distances);
+
+        // Assert
+        assertEquals(110.0, share.getDistanceKm(), 0.001);
+        assertEquals(2, lookups.get());
+    }
+
+    private Booking booking(Long id, String pickup, String drop, int seats, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setRide(ride);
+        booking.setPickupLocation(pickup);
+        booking.setDropLocation(drop);
+        booking.setSeatsBooked(seats);
+        booking.setStatus(status);
+        return booking;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+import com.example.demo.util.PricingTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDefaultRulesMatchFlatPricing() {
+        // Arrange
+        PricingTable pricing = new PricingEngine().current();
+
+        // Act & Assert - 50 + 12/km, 10% commission
+        assertEquals(50.0 + 12.0 * 350, pricing.totalFare(350, 12.0, 9 * 60), 0.001);
+        assertEquals(100.0, pricing.commission(1000.0), 0.001);
+        assertEquals(1000L, pricing.commissionPaise(10000L));
+    }
+
+    @Test
+    void testDistanceTiersApplyToKilometresInsideThem() {
+        // Arrange
+        PricingTable pricing = PricingTable.builder()
+            .distanceTiers("0:1.0,100:0.5")
+            .build(1);
+
+        // Act & Assert - 100 km at full rate, 50 km at half rate
+        assertEquals(100 * 10.0 + 50 * 5.0, pricing.distanceFare(150, 10.0), 0.001);
+        assertEquals(80 * 10.0, pricing.distanceFare(80, 10.0), 0.001);
+    }
+
+    @Test
+    void testTimeBandsWrapPastMidnight() {
+        // Arrange
+        PricingTable pricing = PricingTable.builder()
+            .timeBands("22:00-06:00:1.5")
+            .minimumFare(100.0)
+            .build(1);
+
+        // Act & Assert
+        assertEquals(1.5, pricing.timeMultiplier(PricingTable.minuteOfDay(LocalTime.of(23, 30))));
+        assertEquals(1.5, pricing.timeMultiplier(PricingTable.minuteOfDay(LocalTime.of(5, 59))));
+        assertEquals(1.0, pricing.timeMultiplier(PricingTable.minuteOfDay(LocalTime.of(6, 0))));
+        assertEquals((50.0 + 12.0 * 10) * 1.5, pricing.totalFare(10, 12.0, 23 * 60), 0.001);
+        assertEquals(100.0, pricing.totalFare(1, 12.0, 12 * 60), 0.001); // minimum fare
+    }
+
+    @Test
+    void testInvalidRulesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PricingTable.builder().distanceTiers("10:1.0"));
+        assertThrows(IllegalArgumentException.class, () -> PricingTable.builder().distanceTiers("0:1.0,0:0.9"));
+        assertThrows(IllegalArgumentException.class, () -> PricingTable.builder().commissionRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> PricingTable.builder().timeBands("07:00-07:00:1.2"));
+    }
+
+    @Test
+    void testRulesFileLoadedAndBadEditKeepsTable() throws Exception {
+        // Arrange
+        Path rules = tempDir.resolve("pricing.properties");
+        Files.writeString(rules, "fare.base-fare=30\nfare.commission-rate=0.2\n");
+        PricingEngine engine = new PricingEngine();
+        ReflectionTestUtils.setField(engine, "rulesFile", rules.toString());
+        engine.start();
+        PricingTable before = engine.current();
+
+        // Act - a broken edit keeps the old table
+        Files.writeString(rules, "fare.distance-tiers=5:1.0\n");
+        assertThrows(IllegalArgumentException.class, engine::reload);
+
+        // Assert
+        assertSame(before, engine.current());
+        assertEquals(30.0, before.getBaseFare());
+        assertEquals(0.2, before.getCommissionRate());
+        assertEquals(12.0, before.getDefaultPricePerKm()); // not in the file, property value kept
+    }
+
+    @Test
+    void testUpdateBumpsVersion() {
+        // Arrange
+        PricingEngine engine = new PricingEngine();
+        engine.start();
+        long version = engine.getVersion();
+
+        // Act
+        engine.update(null, 15.0);
+
+        // Assert
+        assertTrue(engine.getVersion() > version);
+        assertEquals(15.0, engine.current().getDefaultPricePerKm());
+        assertEquals(50.0, engine.current().getBaseFare());
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Ride;
+import com.example.demo.repository.RideRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RideIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private RideIndex index;
+    private RideRepository rideRepository;
+
+    @BeforeEach
+    void setUp() {
+        rideRepository = mock(RideRepository.class);
+        index = new RideIndex();
+        ReflectionTestUtils.setField(index, "rideRepository", rideRepository);
+        ReflectionTestUtils.setField(index, "daysAhead", 7);
+    }
+
+    @Test
+    void testNothingServedBeforeLoad() {
+        // Assert
+        assertTrue(index.findAvailable(TODAY, 1).isEmpty());
+        assertTrue(index.listAvailable().isEmpty());
+    }
+
+    @Test
+    void testSearchFiltersBySeatsInDepartureOrder() {
+        // Arrange
+        load(ride(1L, TODAY, 18, 3), ride(2L, TODAY, 9, 1), ride(3L, TODAY, 12, 2), ride(4L, TODAY.plusDays(1), 8, 4));
+
+        // Act
+        List<Ride> rides = index.findAvailable(TODAY, 2).orElseThrow();
+
+        // Assert
+        assertEquals(List.of(3L, 1L), ids(rides));
+        assertEquals(List.of(), index.findAvailable(TODAY.plusDays(2), 1).orElseThrow());
+    }
+
+    @Test
+    void testDateOutsideWindowGoesToDatabase() {
+        // Arrange
+        load(ride(1L, TODAY, 9, 1));
+
+        // Assert
+        assertTrue(index.findAvailable(TODAY.plusDays(7), 1).isEmpty());
+        assertTrue(index.findAvailable(TODAY.minusDays(1), 1).isEmpty());
+    }
+
+    @Test
+    void testSeatChangesAndCancellationFollowEvents() {
+        // Arrange
+        Ride ride = ride(1L, TODAY, 9, 3);
+        load(ride);
+
+        // Act
+        Ride booked = ride(1L, TODAY, 9, 1);
+        booked.setUpdatedAt(ride.getUpdatedAt().plusSeconds(1));
+        index.onRideChanged(new RideChangedEvent(booked, RideChangedEvent.Change.SEATS_TAKEN));
+
+        // Assert
+        assertEquals(List.of(), index.findAvailable(TODAY, 2).orElseThrow());
+        assertEquals(List.of(1L), ids(index.findAvailable(TODAY, 1).orElseThrow()));
+
+        // Act
+        Ride cancelled = ride(1L, TODAY, 9, 1);
+        cancelled.setStatus("CANCELLED");
+        index.onRideChanged(new RideChangedEvent(cancelled, RideChangedEvent.Change.CANCELLED));
+
+        // Assert
+        assertEquals(List.of(), index.findAvailable(TODAY, 1).orElseThrow());
+    }
+
+    @Test
+    void testEditMovesRideBetweenDates() {
+        // Arrange
+        load(ride(1L, TODAY, 9, 2));
+
+        // Act
+        index.onRideChanged(new RideChangedEvent(ride(1L, TODAY.plusDays(3), 9, 2), RideChangedEvent.Change.UPDATED));
+
+        // Assert
+        assertEquals(List.of(), index.findAvailable(TODAY, 1).orElseThrow());
+        assertEquals(List.of(1L), ids(index.findAvailable(TODAY.plusDays(3), 1).orElseThrow()));
+    }
+
+    @Test
+    void testLateOlderSnapshotIsIgnored() {
+        // Arrange
+        Ride current = ride(1L, TODAY, 9, 1);
+        load(current);
+        Ride older = ride(1L, TODAY, 9, 3);
+        older.setUpdatedAt(current.getUpdatedAt().minusMinutes(1));
+
+        // Act
+        index.onRideChanged(new RideChangedEvent(older, RideChangedEvent.Change.SEATS_RELEASED));
+
+        // Assert
+        assertEquals(List.of(), index.findAvailable(TODAY, 2).orElseThrow());
+    }
+
+    @Test
+    void testBulkCompletionRemovesByIds() {
+        // Arrange
+        load(ride(1L, TODAY, 9, 2), ride(2L, TODAY, 10, 2));
+
+        // Act
+        index.onRideChanged(new RideChangedEvent(List.of(1L, 99L), RideChangedEvent.Change.COMPLETED));
+
+        // Assert
+        assertEquals(List.of(2L), ids(index.findAvailable(TODAY, 1).orElseThrow()));
+    }
+
+    @Test
+    void testListingSkipsFullRidesAndDefersBeyondWindow() {
+        // Arrange
+        load(ride(1L, TODAY.plusDays(1), 9, 2), ride(2L, TODAY, 10, 0), ride(3L, TODAY, 11, 1));
+
+        // Assert
+        assertEquals(List.of(3L, 1L), ids(index.listAvailable().orElseThrow()));
+
+        // Act: a ride is posted past the window
+        index.onRideChanged(new RideChangedEvent(ride(4L, TODAY.plusDays(30), 9, 2), RideChangedEvent.Change.POSTED));
+
+        // Assert
+        assertTrue(index.listAvailable().isEmpty());
+        assertTrue(index.findAvailable(TODAY, 1).isPresent());
+    }
+
+    @Test
+    void testChangeDuringReloadIsKept() {
+        // Arrange: a booking commits while the rides are being read
+        Ride stale = ride(1L, TODAY, 9, 3);
+        Ride booked = ride(1L, TODAY, 9, 0);
+        booked.setUpdatedAt(stale.getUpdatedAt().plusSeconds(1));
+        when(rideRepository.findActiveRidesBetween(any(), any())).thenAnswer(invocation -> {
+            index.onRideChanged(new RideChangedEvent(booked, RideChangedEvent.Change.FILLED));
+            return List.of(stale);
+        });
+
+        // Act
+        index.reconcile();
+
+        // Assert
+        assertEquals(List.of(), index.findAvailable(TODAY, 1).orElseThrow());
+    }
+
+    @Test
+    void testReconcileRepairsDrift() {
+        // Arrange
+        load(ride(1L, TODAY, 9, 2));
+        index.onRideChanged(new RideChangedEvent(ride(2L, TODAY, 10, 2), RideChangedEvent.Change.POSTED));
+
+        // Act: the database has ride 1 full and never saw ride 2 commit
+        when(rideRepository.findActiveRidesBetween(any(), any())).thenReturn(List.of(ride(1L, TODAY, 9, 1)));
+        int repaired = index.reconcile();
+
+        // Assert
+        assertEquals(2, repaired);
+        assertEquals(List.of(1L), ids(index.findAvailable(TODAY, 1).orElseThrow()));
+        assertEquals(2L, index.getStats().get("reconciliations"));
+    }
+
+    private void load(Ride... rides) {
+        when(rideRepository.findActiveRidesBetween(TODAY, TODAY.plusDays(6))).thenReturn(List.of(rides));
+        when(rideRepository.countAvailableRidesAfter(any())).thenReturn(0L);
+        index.reconcile();
+        verify(rideRepository).findActiveRidesBetween(TODAY, TODAY.plusDays(6));
+    }
+
+    private static List<Long> ids(List<Ride> rides) {
+        return rides.stream().map(Ride::getId).toList();
+    }
+
+    private static Ride ride(Long id, LocalDate date, int hour, int seats) {
+        Ride ride = new Ride();
+        ReflectionTestUtils.setField(ride, "id", id);
+        ride.setSource("Chennai");
+        ride.setDestination("Bangalore");
+        ride.setDate(date);
+        ride.setTime(LocalTime.of(hour, 0));
+        ride.setAvailableSeats(seats);
+        ride.setStatus("ACTIVE");
+        ride.setUpdatedAt(LocalDateTime.of(2030, 1, 1, 0, 0));
+        return ride;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Ride;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RideSearchCacheTest {
+
+    private static final LocalDate DATE = LocalDate.of(2030, 1, 15);
+
+    private RideSearchCache cache;
+    private AtomicInteger searches;
+    private Ride chennaiRide;
+    private Ride puneRide;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RideSearchCache();
+        searches = new AtomicInteger();
+        chennaiRide = ride(1L, "Chennai", "Bangalore", DATE);
+        puneRide = ride(2L, "Mumbai", "Pune", DATE);
+    }
+
+    @Test
+    void testIdenticalSearchServedFromCache() {
+        // Act
+        List<RouteMatchingService.RouteMatch> first = cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        List<RouteMatchingService.RouteMatch> second = cache.getMatches(" chennai", "BANGALORE ", DATE, 1, search(chennaiRide));
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(1, searches.get());
+        assertEquals(1L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    void testDateAndSeatsArePartOfKey() {
+        // Act
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        cache.getMatches("Chennai", "Bangalore", DATE, 2, search(chennaiRide));
+        cache.getMatches("Chennai", "Bangalore", DATE.plusDays(1), 1, search(chennaiRide));
+
+        // Assert
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    void testFilledRideDropsOnlySearchesThatReturnedIt() {
+        // Arrange
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        cache.getMatches("Mumbai", "Pune", DATE, 1, search(puneRide));
+
+        // Act
+        cache.onRideChanged(new RideChangedEvent(chennaiRide, RideChangedEvent.Change.FILLED));
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search());
+        cache.getMatches("Mumbai", "Pune", DATE, 1, search(puneRide));
+
+        // Assert - Chennai searched again, Pune still cached
+        assertEquals(3, searches.get());
+        assertEquals(1L, cache.getStats().get("invalidated"));
+    }
+
+    @Test
+    void testPostedRideDropsEverySearchForItsDate() {
+        // Arrange
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        cache.getMatches("Mumbai", "Pune", DATE, 1, search(puneRide));
+        cache.getMatches("Mumbai", "Pune", DATE.plusDays(1), 1, search());
+
+        // Act - a new ride could match any search that day
+        cache.onRideChanged(new RideChangedEvent(ride(3L, "Vellore", "Bangalore", DATE), RideChangedEvent.Change.POSTED));
+
+        // Assert - only the other date survives
+        assertEquals(1, cache.getStats().get("size"));
+    }
+
+    @Test
+    void testChangeDuringSearchIsNotCached() {
+        // Act - the ride fills while the search is running
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, () -> {
+            searches.incrementAndGet();
+            cache.onRideChanged(new RideChangedEvent(chennaiRide, RideChangedEvent.Change.FILLED));
+            return List.of(new RouteMatchingService.RouteMatch(chennaiRide, 100.0, 0.0, "DIRECT"));
+        });
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search());
+
+        // Assert
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testBulkCompletionDropsSearchesWithThoseRides() {
+        // Arrange
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        cache.getMatches("Mumbai", "Pune", DATE, 1, search(puneRide));
+
+        // Act
+        cache.onRideChanged(new RideChangedEvent(List.of(2L, 99L), RideChangedEvent.Change.COMPLETED));
+
+        // Assert
+        assertEquals(1, cache.getStats().get("size"));
+    }
+
+    @Test
+    void testExpiredEntryIsSearchedAgain() {
+        // Arrange
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 0L);
+
+        // Act
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+        cache.getMatches("Chennai", "Bangalore", DATE, 1, search(chennaiRide));
+
+        // Assert
+        assertEquals(2, searches.get());
+    }
+
+    private Supplier<List<RouteMatchingService.RouteMatch>> search(Ride... rides) {
+        return () -> {
+            searches.incrementAndGet();
+            return Arrays.stream(rides)
+                .map(ride -> new RouteMatchingService.RouteMatch(ride, 100.0, 0.0, "DIRECT"))
+                .toList();
+        };
+    }
+
+    private static Ride ride(Long id, String source, String destination, LocalDate date) {
+        Ride ride = new Ride();
+        ReflectionTestUtils.setField(ride, "id", id);
+        ride.setSource(source);
+        ride.setDestination(destination);
+        ride.setDate(date);
+        return ride;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.RideRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RideStatusServiceTest {
+
+    private RideStatusService rideStatusService;
+    private RideRepository rideRepository;
+    private BookingRepository bookingRepository;
+    private WebSocketDispatchService dispatchService;
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        rideRepository = mock(RideRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        dispatchService = mock(WebSocketDispatchService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        rideStatusService = new RideStatusService();
+
+        ReflectionTestUtils.setField(rideStatusService, "rideRepository", rideRepository);
+        ReflectionTestUtils.setField(rideStatusService, "bookingRepository", bookingRepository);
+        ReflectionTestUtils.setField(rideStatusService, "dispatchService", dispatchService);
+        ReflectionTestUtils.setField(rideStatusService, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(rideStatusService, "sweepChunkSize", 2);
+
+        // Every ride in a chunk completes, has one driver and one confirmed passenger
+        when(rideRepository.completeActiveRides(anyList(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        when(rideRepository.findBroadcastDetails(anyList(), eq("COMPLETED"))).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Long rideId : invocation.<List<Long>>getArgument(0)) {
+                rows.add(new Object[]{rideId, "A", "B", "Driver " + rideId, "driver" + rideId});
+            }
+            return rows;
+        });
+        when(bookingRepository.findPassengerUsernamesByRideIds(anyList(), eq(BookingStatus.CONFIRMED))).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Long rideId : invocation.<List<Long>>getArgument(0)) {
+                rows.add(new Object[]{rideId, "passenger" + rideId});
+            }
+            return rows;
+        });
+    }
+
+    @SafeVarargs
+    private void backlog(List<Long>... pages) {
+        var stub = when(rideRepository.findPastActiveRideIds(any(LocalDate.class), any(LocalTime.class), any(Pageable.class)));
+        for (List<Long> page : pages) {
+            stub = stub.thenReturn(page);
+        }
+    }
+
+    @Test
+    void testBacklogLargerThanOneChunkIsSweptUntilShortPage() {
+        // Arrange
+        backlog(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        // Act
+        int updated = rideStatusService.updateRideStatusesManually();
+
+        // Assert
+        assertEquals(5, updated);
+        ArgumentCaptor<Pageable> pages = ArgumentCaptor.forClass(Pageable.class);
+        verify(rideRepository, times(3)).findPastActiveRideIds(any(LocalDate.class), any(LocalTime.class), pages.capture());
+        pages.getAllValues().forEach(page -> {
+            assertEquals(0, page.getPageNumber());
+            assertEquals(2, page.getPageSize());
+        });
+        verify(rideRepository).completeActiveRides(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(rideRepository).completeActiveRides(eq(List.of(3L, 4L)), any(LocalDateTime.class));
+        verify(rideRepository).completeActiveRides(eq(List.of(5L)), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testFullFinalPageStopsOnEmptyPage() {
+        // Arrange
+        backlog(List.of(1L, 2L), List.of(3L, 4L), Collections.emptyList());
+
+        // Act
+        int updated = rideStatusService.updateRideStatusesManually();
+
+        // Assert
+        assertEquals(4, updated);
+        verify(rideRepository, times(3)).findPastActiveRideIds(any(LocalDate.class), any(LocalTime.class), any(Pageable.class));
+        verify(rideRepository, times(2)).completeActiveRides(anyList(), any(LocalDateTime.class));
+        verify(eventPublisher, times(2)).publishEvent(any(RideChangedEvent.class));
+    }
+
+    @Test
+    void testOneEventAndBroadcastPerChunk() {
+        // Arrange
+        backlog(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        // Act
+        rideStatusService.updateRideStatusesManually();
+
+        // Assert
+        ArgumentCaptor<RideChangedEvent> events = ArgumentCaptor.forClass(RideChangedEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        assertEquals(Set.of(1L, 2L), events.getAllValues().get(0).getRideIds());
+        assertEquals(Set.of(3L, 4L), events.getAllValues().get(1).getRideIds());
+        assertEquals(Set.of(5L), events.getAllValues().get(2).getRideIds());
+        events.getAllValues().forEach(event ->
+                assertEquals(RideChangedEvent.Change.COMPLETED, event.getChange()));
+
+        // Two lookups per chunk, not per ride
+        verify(rideRepository, times(3)).findBroadcastDetails(anyList(), eq("COMPLETED"));
+        verify(bookingRepository, times(3)).findPassengerUsernamesByRideIds(anyList(), eq(BookingStatus.CONFIRMED));
+        verify(rideRepository).findBroadcastDetails(List.of(1L, 2L), "COMPLETED");
+        verify(rideRepository).findBroadcastDetails(List.of(5L), "COMPLETED");
+
+        // Each ride still reaches its driver and passenger, coalesced per ride
+        verify(dispatchService, times(10)).sendToUser(anyString(), eq("/queue/ride-status-updates"), anyMap(), anyString());
+        verify(dispatchService).sendToUser(eq("driver3"), eq("/queue/ride-status-updates"), anyMap(),
+                eq("/queue/ride-status-updates:3"));
+        verify(dispatchService).sendToUser(eq("passenger3"), eq("/queue/ride-status-updates"), anyMap(),
+                eq("/queue/ride-status-updates:3"));
+    }
+
+    @Test
+    void testNothingToSweep() {
+        // Arrange
+        backlog(Collections.emptyList());
+
+        // Act
+        int updated = rideStatusService.updateRideStatusesManually();
+
+        // Assert
+        assertEquals(0, updated);
+        verify(rideRepository, never()).completeActiveRides(anyList(), any(LocalDateTime.class));
+        verify(eventPublisher, never()).publishEvent(any());
+        verifyNoInteractions(dispatchService);
+    }
+}
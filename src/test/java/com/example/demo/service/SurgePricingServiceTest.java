@@ -0,0 +1,200 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.FareRequest;
+import com.example.demo.dto.FareResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SurgePricingServiceTest {
+
+    private SurgePricingService surgePricingService;
+
+    @BeforeEach
+    void setUp() {
+        surgePricingService = new SurgePricingService();
+    }
+
+    @Test
+    void testNoSurgeWithoutDemand() {
+        // Act
+        surgePricingService.refresh();
+
+        // Assert
+        assertEquals(1.0, surgePricingService.getMultiplier("Chennai"));
+        assertEquals(1.0, surgePricingService.getMultiplier(null));
+    }
+
+    @Test
+    void testSearchesWithoutBookingsRaiseMultiplier() {
+        // Arrange - 40 searchers, no bookings: 40 searches per booking against a target of 4
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch(i % 2 == 0 ? "Chennai" : "  CHENNAI ", "u:" + i);
+        }
+
+        // Act
+        surgePricingService.refresh();
+
+        // Assert - capped at the maximum, other places unaffected
+        assertEquals(2.0, surgePricingService.getMultiplier("chennai"));
+        assertEquals(1.0, surgePricingService.getMultiplier("Mumbai"));
+    }
+
+    @Test
+    void testBookingsBringMultiplierDown() {
+        // Arrange - 30 searches, 7 bookings: under the target of 4 searches per booking
+        for (int i = 0; i < 30; i++) {
+            surgePricingService.recordSearch("Pune", "u:" + i);
+        }
+        for (int i = 0; i < 7; i++) {
+            surgePricingService.recordBooking("Pune");
+        }
+
+        // Act
+        surgePricingService.refresh();
+
+        // Assert
+        assertEquals(1.0, surgePricingService.getMultiplier("Pune"));
+        // 30 / (4 + 1) = 6 searches per booking, 2 above target
+        assertEquals(1.2, surgePricingService.multiplierFor(30, 4), 1e-9);
+    }
+
+    @Test
+    void testBelowMinimumSearchesNoSurge() {
+        assertEquals(1.0, surgePricingService.multiplierFor(19, 0));
+    }
+
+    @Test
+    void testMultiplierOnlyChangesOnRefresh() {
+        // Arrange
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch("Delhi", "u:" + i);
+        }
+
+        // Assert - reads see the last published value
+        assertEquals(1.0, surgePricingService.getMultiplier("Delhi"));
+        surgePricingService.refresh();
+        assertEquals(2.0, surgePricingService.getMultiplier("Delhi"));
+    }
+
+    @Test
+    void testDisabledNeverSurges() {
+        // Arrange
+        ReflectionTestUtils.setField(surgePricingService, "enabled", false);
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch("Delhi", "u:" + i);
+        }
+
+        // Act
+        surgePricingService.refresh();
+
+        // Assert
+        assertEquals(1.0, surgePricingService.getMultiplier("Delhi"));
+        assertEquals(0L, surgePricingService.getStats().get("searches"));
+    }
+
+    @Test
+    void testRepeatSearchesBySameSearcherCountOnce() {
+        // Arrange - one client refreshing the search 40 times, two others searching once
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch("Chennai", "ip:10.0.0.1");
+        }
+        surgePricingService.recordSearch(" chennai ", "u:7");
+        surgePricingService.recordSearch("Chennai", "u:8");
+
+        // Act
+        surgePricingService.refresh();
+
+        // Assert
+        assertEquals(1.0, surgePricingService.getMultiplier("Chennai"));
+        assertEquals(3L, surgePricingService.getStats().get("searches"));
+        assertEquals(39L, surgePricingService.getStats().get("repeatSearches"));
+    }
+
+    @Test
+    void testSearcherCountsAgainInTheNextWindow() throws InterruptedException {
+        // Arrange
+        ReflectionTestUtils.setField(surgePricingService, "windowBuckets", 1);
+        ReflectionTestUtils.setField(surgePricingService, "bucketMs", 50L);
+        surgePricingService.recordSearch("Delhi", "u:1");
+        surgePricingService.recordSearch("Delhi", "u:1");
+
+        // Act
+        Thread.sleep(60);
+        surgePricingService.recordSearch("Delhi", "u:1");
+
+        // Assert
+        assertEquals(2L, surgePricingService.getStats().get("searches"));
+        assertEquals(1L, surgePricingService.getStats().get("repeatSearches"));
+    }
+
+    @Test
+    void testConcurrentRecordingLosesNoEvents() throws Exception {
+        // Arrange
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    surgePricingService.recordSearch("Mumbai", "u:" + worker + "-" + i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Assert
+        assertEquals((long) threads * perThread, surgePricingService.getStats().get("searches"));
+        ReflectionTestUtils.setField(surgePricingService, "minSearches", (long) threads * perThread);
+        ReflectionTestUtils.setField(surgePricingService, "maxMultiplier", 1000000.0);
+        surgePricingService.refresh();
+        // ratio 80000 -> 1 + (80000 - 4) * 0.1, only reachable if every event was counted
+        assertEquals(8000.6, surgePricingService.getMultiplier("Mumbai"), 1e-6);
+    }
+
+    @Test
+    void testFareIncludesSurge() {
+        // Arrange
+        FareCalculationService fareCalculationService = new FareCalculationService();
+        ReflectionTestUtils.setField(fareCalculationService, "googleMapsService", new GoogleMapsService(new RestTemplate()));
+        ReflectionTestUtils.setField(fareCalculationService, "pricingEngine", new PricingEngine());
+        ReflectionTestUtils.setField(fareCalculationService, "surgePricingService", surgePricingService);
+        FareRequest request = new FareRequest("Chennai", "Bangalore", 1);
+        request.setDepartureTime(LocalTime.NOON);
+        FareResponse calm = fareCalculationService.calculateFare(request);
+
+        // Act
+        for (int i = 0; i < 40; i++) {
+            surgePricingService.recordSearch("Chennai", "u:" + i);
+        }
+        surgePricingService.refresh();
+        FareResponse surged = fareCalculationService.calculateFare(request);
+
+        // Assert
+        assertEquals(2.0, surged.getFareDetails().getSurgeMultiplier());
+        assertEquals(calm.getFareDetails().getTotalFare() * 2, surged.getFareDetails().getTotalFare(), 0.02);
+    }
+}
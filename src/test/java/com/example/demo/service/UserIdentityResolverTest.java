@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserSnapshot;
+import com.example.demo.entity.User;
+import com.example.demo.enums.Role;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserIdentityResolverTest {
+
+    private UserIdentityResolver resolver;
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        resolver = new UserIdentityResolver();
+        ReflectionTestUtils.setField(resolver, "userRepository", userRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private User user(Long id, String username, String email, Role role) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setName(username);
+        user.setRole(role);
+        return user;
+    }
+
+    @Test
+    void testJwtPrincipalResolvedWithoutQueries() {
+        // Arrange - the JWT filter builds a User principal carrying the ID
+        User principal = user(42L, "driver1", "driver1", Role.DRIVER);
+        Authentication auth = new UsernamePasswordAuthenticationToken(principal, null, List.of());
+        SecurityContextHolder.getContext().setAuthentication(auth);
+
+        // Act & Assert
+        assertEquals(42L, resolver.resolveUserId(auth));
+        assertEquals(42L, resolver.resolveUserId("driver1"));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testIdentifierLookupIsCached() {
+        // Arrange
+        when(userRepository.findIdByEmail("p@test.com")).thenReturn(Optional.of(7L));
+
+        // Act
+        Long first = resolver.resolveUserId("p@test.com");
+        Long second = resolver.resolveUserId("p@test.com");
+
+        // Assert
+        assertEquals(7L, first);
+        assertEquals(7L, second);
+        verify(userRepository, times(1)).findIdByEmail("p@test.com");
+        verify(userRepository, never()).findIdByUsername(anyString());
+    }
+
+    @Test
+    void testFallsBackToUsernameAndDoesNotCacheMisses() {
+        // Arrange
+        when(userRepository.findIdByEmail(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findIdByUsername("rider")).thenReturn(Optional.of(3L));
+        when(userRepository.findIdByUsername("ghost")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertEquals(3L, resolver.resolveUserId("rider"));
+        assertNull(resolver.resolveUserId("ghost"));
+        assertNull(resolver.resolveUserId("ghost"));
+        verify(userRepository, times(2)).findIdByUsername("ghost");
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
+            () -> resolver.requireUserId("ghost", "Driver not found"));
+        assertEquals("Driver not found", ex.getMessage());
+    }
+
+    @Test
+    void testSnapshotCachedUntilInvalidated() {
+        // Arrange
+        User stored = user(5L, "alex", "alex@test.com", Role.PASSENGER);
+        when(userRepository.findById(5L)).thenReturn(Optional.of(stored));
+        when(userRepository.findIdByEmail("alex@test.com")).thenReturn(Optional.of(5L));
+
+        // Act
+        UserSnapshot before = resolver.getSnapshot(5L);
+        resolver.getSnapshot(5L);
+        resolver.resolveUserId("alex@test.com");
+
+        // Profile update: role changes, caller invalidates
+        stored.setRole(Role.DRIVER);
+        resolver.invalidate(5L);
+        UserSnapshot after = resolver.getSnapshot(5L);
+        resolver.resolveUserId("alex@test.com");
+
+        // Assert
+        assertFalse(before.isDriver());
+        assertTrue(after.isDriver());
+        verify(userRepository, times(2)).findById(5L);
+        verify(userRepository, times(2)).findIdByEmail("alex@test.com");
+    }
+
+    @Test
+    void testReferenceRequiresAnExistingActiveUser() {
+        // Arrange
+        User stored = user(5L, "alex", "alex@test.com", Role.PASSENGER);
+        when(userRepository.findById(5L)).thenReturn(Optional.of(stored));
+        when(userRepository.findById(6L)).thenReturn(Optional.empty());
+        when(userRepository.getReferenceById(5L)).thenReturn(stored);
+
+        // Act
+        User reference = resolver.getReference(5L);
+        resolver.getReference(5L);
+
+        // Account disabled, caller invalidates
+        stored.setEnabled(false);
+        resolver.invalidate(5L);
+
+        // Assert - the check is served from the snapshot cache
+        assertSame(stored, reference);
+        RuntimeException disabled = assertThrows(RuntimeException.class, () -> resolver.getReference(5L));
+        assertEquals("User account is disabled", disabled.getMessage());
+        RuntimeException missing = assertThrows(RuntimeException.class, () -> resolver.getReference(6L));
+        assertEquals("User not found", missing.getMessage());
+        verify(userRepository, times(2)).findById(5L);
+        verify(userRepository, never()).getReferenceById(6L);
+    }
+}
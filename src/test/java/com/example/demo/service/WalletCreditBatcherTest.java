@@ -0,0 +1,203 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Booking;
+import com.example.demo.entity.Payment;
+import com.example.demo.entity.PaymentStatus;
+import com.example.demo.entity.Ride;
+import com.example.demo.entity.User;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.enums.BookingStatus;
+import com.example.demo.enums.Role;
+import com.example.demo.repository.BookingRepository;
+import com.example.demo.repository.PaymentRepository;
+import com.example.demo.repository.RideRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:wallet-group-commit;MODE=MySQL;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "wallet.group-commit.enabled=true",
+    "wallet.group-commit.max-wait-ms=20"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({WalletService.class, WalletCreditBatcher.class, PricingEngine.class, WalletReconciliationService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // credits commit on the flusher thread
+class WalletCreditBatcherTest {
+
+    private static final int THREADS = 8;
+    private static final int CREDITS_PER_THREAD = 250;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletCreditBatcher walletCreditBatcher;
+
+    @Autowired
+    private WalletReconciliationService reconciliationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Test
+    void testBurstOfCreditsIsGroupedAndLedgerStaysConsistent() throws Exception {
+        // Arrange
+        User driver = new User();
+        driver.setUsername("batch-driver");
+        driver.setName("Batch Driver");
+        driver.setEmail("batch-driver@test.com");
+        driver.setPassword("x");
+        driver.setRole(Role.DRIVER);
+        User savedDriver = userRepository.save(driver);
+        Wallet wallet = walletService.createWallet(savedDriver);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        // Act - a burst of 1 rupee credits, with a few direct withdrawals mixed in
+        List<CompletableFuture<WalletTransaction>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String thread = "ride-" + t + "-";
+            pool.submit(() -> {
+                for (int i = 0; i < CREDITS_PER_THREAD; i++) {
+                    CompletableFuture<WalletTransaction> future =
+                        walletService.addMoneyAsync(savedDriver, 1.0, "ride earnings", thread + i);
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        walletService.withdrawMoney(savedDriver, 5.0, "payout");
+
+        // Assert - every credit applied once, in fewer balance updates than credits
+        int credits = THREADS * CREDITS_PER_THREAD;
+        Wallet after = walletRepository.findById(wallet.getId()).orElseThrow();
+        assertEquals(credits * 100L - 500, after.getBalancePaise());
+        assertEquals(credits * 100L, after.getTotalEarningsPaise());
+
+        long groups = (long) walletCreditBatcher.getStats().get("groups");
+        assertEquals((long) credits, walletCreditBatcher.getStats().get("credits"));
+        assertTrue(groups < credits, "expected credits to be grouped, got " + groups + " groups");
+
+        // Ledger entries chain: each one starts where the previous ended
+        List<WalletTransaction> entries = new ArrayList<>(walletTransactionRepository.findByWalletOrderByCreatedAtDesc(after));
+        entries.sort(Comparator.comparing(WalletTransaction::getId));
+        assertEquals(credits + 1, entries.size());
+        long balance = 0;
+        for (WalletTransaction entry : entries) {
+            assertEquals(balance, entry.getBalanceBeforePaise());
+            balance = entry.getBalanceAfterPaise();
+        }
+        assertEquals(after.getBalancePaise(), balance);
+        assertEquals(0L, reconciliationService.reconcileWallet(after.getId()));
+    }
+
+    @Test
+    void testCreditForAnAppliedReferenceIsSkippedAndEntriesHaveIds() throws Exception {
+        // Arrange
+        User driver = saveDriver("dedupe-driver");
+        Wallet wallet = walletService.createWallet(driver);
+        walletService.addMoney(driver, 10.0, "ride earnings", "pay_existing");
+
+        // Act
+        CompletableFuture<WalletTransaction> replayed = walletCreditBatcher.submit(wallet.getId(), 1000, "ride earnings", "pay_existing");
+        CompletableFuture<WalletTransaction> first = walletCreditBatcher.submit(wallet.getId(), 500, "ride earnings", "pay_new");
+        CompletableFuture<WalletTransaction> repeated = walletCreditBatcher.submit(wallet.getId(), 500, "ride earnings", "pay_new");
+        CompletableFuture.allOf(replayed, first, repeated).get(10, TimeUnit.SECONDS);
+
+        // Assert - only the new reference was credited, and its entry carries its database ID
+        assertNull(replayed.get());
+        assertNull(repeated.get());
+        assertNotNull(first.get().getId());
+        assertEquals(first.get().getId(), walletTransactionRepository.findByReferenceId("pay_new").orElseThrow().getId());
+        assertEquals(1500L, walletRepository.findById(wallet.getId()).orElseThrow().getBalancePaise());
+        assertEquals(0L, reconciliationService.reconcileWallet(wallet.getId()));
+    }
+
+    @Test
+    void testPaymentWithoutDriverCreditIsCreditedOnce() {
+        // Arrange - a payment committed, but its queued credit never made it to the ledger
+        User driver = saveDriver("recovery-driver");
+        walletService.createWallet(driver);
+        User passenger = saveDriver("recovery-passenger");
+        Ride ride = new Ride();
+        ride.setDriver(driver);
+        ride.setSource("Chennai");
+        ride.setDestination("Bangalore");
+        ride = rideRepository.save(ride);
+        Booking booking = new Booking();
+        booking.setRide(ride);
+        booking.setPassenger(passenger);
+        booking.setStatus(BookingStatus.CONFIRMED);
+        booking = bookingRepository.save(booking);
+        Payment payment = new Payment(booking, passenger, 500.0, "order_lost");
+        payment.setRazorpayPaymentId("pay_lost");
+        payment.setStatus(PaymentStatus.SUCCESS);
+        payment.setPaidAt(LocalDateTime.now().minusMinutes(10));
+        paymentRepository.save(payment);
+
+        // Act
+        int recovered = reconciliationService.recoverDriverCredits();
+        int recoveredAgain = reconciliationService.recoverDriverCredits();
+
+        // Assert
+        assertEquals(1, recovered);
+        assertEquals(0, recoveredAgain);
+        WalletTransaction entry = walletTransactionRepository.findByReferenceId("pay_lost").orElseThrow();
+        assertTrue(entry.getAmountPaise() > 0 && entry.getAmountPaise() < 50000);
+        assertEquals(entry.getAmountPaise(), walletRepository.findByUser(driver).orElseThrow().getBalancePaise());
+    }
+
+    private User saveDriver(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setName(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("x");
+        user.setRole(Role.DRIVER);
+        return userRepository.save(user);
+    }
+}
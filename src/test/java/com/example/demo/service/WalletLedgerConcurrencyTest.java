@@ -0,0 +1,138 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import com.example.demo.entity.Wallet;
+import com.example.demo.entity.WalletTransaction;
+import com.example.demo.enums.Role;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.WalletRepository;
+import com.example.demo.repository.WalletTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for the wallet ledger against a real (H2) database: thousands of concurrent
+ * credits and withdrawals on one wallet must leave the balance equal to the sum of the
+ * successful operations, with one ledger entry each and no negative balance.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:wallet-ledger;MODE=MySQL;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({WalletService.class, WalletCreditBatcher.class, PricingEngine.class, WalletReconciliationService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every service call commits on its own
+class WalletLedgerConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 500;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletReconciliationService reconciliationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletTransactionRepository walletTransactionRepository;
+
+    @Test
+    void testConcurrentCreditsAndDebitsDoNotDrift() throws Exception {
+        // Arrange
+        User driver = new User();
+        driver.setUsername("ledger-driver");
+        driver.setName("Ledger Driver");
+        driver.setEmail("ledger-driver@test.com");
+        driver.setPassword("x");
+        driver.setRole(Role.DRIVER);
+        User savedDriver = userRepository.save(driver);
+        Wallet wallet = walletService.createWallet(savedDriver);
+
+        AtomicLong expectedPaise = new AtomicLong();
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+        // Act - each thread mixes credits and withdrawals of random amounts
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    long paise = random.nextLong(1, 10_001);
+                    if (random.nextBoolean()) {
+                        walletService.addMoney(savedDriver, paise / 100.0, "stress credit", null);
+                        expectedPaise.addAndGet(paise);
+                        applied.incrementAndGet();
+                    } else {
+                        try {
+                            walletService.withdrawMoney(savedDriver, paise / 100.0, "stress debit");
+                            expectedPaise.addAndGet(-paise);
+                            applied.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            assertTrue(e.getMessage().contains("Insufficient balance"), e.getMessage());
+                            insufficient.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Assert - no lost updates
+        Wallet after = walletRepository.findById(wallet.getId()).orElseThrow();
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, applied.get() + insufficient.get());
+        assertEquals(expectedPaise.get(), after.getBalancePaise());
+        assertEquals(expectedPaise.get() / 100.0, after.getBalance(), 0.001);
+
+        // One ledger entry per applied operation, and the ledger alone gives the balance
+        List<WalletTransaction> entries = walletTransactionRepository.findByWalletOrderByCreatedAtDesc(after);
+        assertEquals(applied.get(), entries.size());
+        assertEquals(expectedPaise.get(), reconciliationService.derivedBalancePaise(after.getId()));
+        for (WalletTransaction entry : entries) {
+            assertTrue(entry.getBalanceAfterPaise() >= 0, "balance went negative");
+        }
+
+        // Snapshot then keep going: the snapshot plus later entries still matches
+        assertEquals(0L, reconciliationService.reconcileWallet(after.getId()));
+        walletService.addMoney(savedDriver, 12.34, "after snapshot", null);
+        assertEquals(0L, reconciliationService.reconcileWallet(after.getId()));
+        assertEquals(expectedPaise.get() + 1234, reconciliationService.derivedBalancePaise(after.getId()));
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class WebSocketDispatchServiceTest {
+
+    private WebSocketDispatchService dispatchService;
+    private SimpMessagingTemplate messagingTemplate;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        dispatchService = new WebSocketDispatchService();
+
+        ReflectionTestUtils.setField(dispatchService, "messagingTemplate", messagingTemplate);
+        ReflectionTestUtils.setField(dispatchService, "enabled", true);
+        ReflectionTestUtils.setField(dispatchService, "queueCapacity", 3);
+        ReflectionTestUtils.setField(dispatchService, "maxMessagesPerFlush", 10);
+        ReflectionTestUtils.setField(dispatchService, "overflowPolicy", WebSocketDispatchService.OverflowPolicy.DROP_OLDEST);
+        Set<String> coalesced = new HashSet<>();
+        coalesced.add("/queue/unread-count");
+        coalesced.add("/topic/admin/stats");
+        ReflectionTestUtils.setField(dispatchService, "coalescedDestinations", coalesced);
+    }
+
+    private void connect(String username, String sessionId) {
+        Principal user = () -> username;
+        dispatchService.onSessionConnected(new SessionConnectedEvent(this, stompMessage(SimpMessageType.CONNECT_ACK, sessionId), user));
+    }
+
+    private void disconnect(String username, String sessionId) {
+        Principal user = () -> username;
+        dispatchService.onSessionDisconnect(new SessionDisconnectEvent(this,
+                stompMessage(SimpMessageType.DISCONNECT, sessionId), sessionId, CloseStatus.NORMAL, user));
+    }
+
+    private static Message<byte[]> stompMessage(SimpMessageType type, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // Headers addressing one session of the user
+    private static Map<String, Object> session(String sessionId) {
+        return argThat(headers -> sessionId.equals(SimpMessageHeaderAccessor.getSessionId(headers)));
+    }
+
+    @Test
+    void testUnreadCountIsCoalesced() {
+        // Arrange
+        connect("alice", "s-alice");
+
+        // Act
+        dispatchService.sendToUser("alice", "/queue/unread-count", 1L);
+        dispatchService.sendToUser("alice", "/queue/unread-count", 2L);
+        dispatchService.sendToUser("alice", "/queue/unread-count", 3L);
+        dispatchService.flush();
+
+        // Assert - only the latest value reaches the client
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq("alice"), eq("/queue/unread-count"), any(Object.class), session("s-alice"));
+        verify(messagingTemplate).convertAndSendToUser(eq("alice"), eq("/queue/unread-count"), eq(3L), session("s-alice"));
+        assertEquals(2L, dispatchService.getStats().get("coalesced"));
+    }
+
+    @Test
+    void testRideStatusCoalescedPerRide() {
+        // Arrange
+        connect("bob", "s-bob");
+
+        // Act
+        dispatchService.sendToUser("bob", "/queue/ride-status-updates", Map.of("rideId", 1), "ride:1");
+        dispatchService.sendToUser("bob", "/queue/ride-status-updates", Map.of("rideId", 2), "ride:2");
+        dispatchService.sendToUser("bob", "/queue/ride-status-updates", Map.of("rideId", 1, "newStatus", "FULL"), "ride:1");
+        dispatchService.flush();
+
+        // Assert - one message per ride
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("bob"), eq("/queue/ride-status-updates"), any(Object.class), session("s-bob"));
+    }
+
+    @Test
+    void testDropOldestWhenQueueFull() {
+        // Arrange
+        connect("carol", "s-carol");
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            dispatchService.sendToUser("carol", "/queue/notifications", "n" + i);
+        }
+        dispatchService.flush();
+
+        // Assert - capacity 3, the two oldest were dropped
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("carol"), eq("/queue/notifications"), eq("n0"), session("s-carol"));
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("carol"), eq("/queue/notifications"), eq("n1"), session("s-carol"));
+        verify(messagingTemplate).convertAndSendToUser(eq("carol"), eq("/queue/notifications"), eq("n4"), session("s-carol"));
+        assertEquals(2L, dispatchService.getStats().get("dropped"));
+    }
+
+    @Test
+    void testClosePolicyReplacesBacklogWithResync() {
+        // Arrange
+        ReflectionTestUtils.setField(dispatchService, "overflowPolicy", WebSocketDispatchService.OverflowPolicy.CLOSE);
+        connect("dave", "s-dave");
+
+        // Act - the fourth message overflows, then the client carries on
+        for (int i = 0; i < 6; i++) {
+            dispatchService.sendToUser("dave", "/queue/notifications", "n" + i);
+        }
+        dispatchService.flush();
+
+        // Assert - one resync frame instead of the backlog, then what came after it
+        InOrder order = inOrder(messagingTemplate);
+        order.verify(messagingTemplate).convertAndSendToUser(eq("dave"), eq(WebSocketDispatchService.RESYNC_DESTINATION), any(Object.class), session("s-dave"));
+        order.verify(messagingTemplate).convertAndSendToUser(eq("dave"), eq("/queue/notifications"), eq("n4"), session("s-dave"));
+        order.verify(messagingTemplate).convertAndSendToUser(eq("dave"), eq("/queue/notifications"), eq("n5"), session("s-dave"));
+        verify(messagingTemplate, times(3)).convertAndSendToUser(eq("dave"), anyString(), any(Object.class), session("s-dave"));
+        assertEquals(1L, dispatchService.getStats().get("closed"));
+        assertEquals(4L, dispatchService.getStats().get("dropped"));
+        assertEquals(0L, dispatchService.getStats().get("queueDepth"));
+    }
+
+    @Test
+    void testClosePolicyDropsOldestOnTopics() {
+        // Arrange
+        ReflectionTestUtils.setField(dispatchService, "overflowPolicy", WebSocketDispatchService.OverflowPolicy.CLOSE);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            dispatchService.sendToTopic("/topic/admin/notifications", "n" + i);
+        }
+        dispatchService.flush();
+
+        // Assert - no resync nobody listens for, just the latest messages
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/admin/notifications"), eq((Object) "n1"));
+        verify(messagingTemplate).convertAndSend("/topic/admin/notifications", (Object) "n2");
+        verify(messagingTemplate).convertAndSend("/topic/admin/notifications", (Object) "n4");
+        verify(messagingTemplate, times(3)).convertAndSend(anyString(), any(Object.class));
+        assertEquals(0L, dispatchService.getStats().get("closed"));
+        assertEquals(2L, dispatchService.getStats().get("dropped"));
+    }
+
+    @Test
+    void testCoalescedMessageKeepsItsPlace() {
+        // Arrange
+        ReflectionTestUtils.setField(dispatchService, "queueCapacity", 10);
+        connect("erin", "s-erin");
+
+        // Act
+        dispatchService.sendToUser("erin", "/queue/notifications", "first");
+        dispatchService.sendToUser("erin", "/queue/unread-count", 1L);
+        dispatchService.sendToUser("erin", "/queue/notifications", "second");
+        dispatchService.sendToUser("erin", "/queue/unread-count", 2L);
+        dispatchService.flush();
+
+        // Assert - delivered in arrival order, the count carrying its latest value
+        InOrder order = inOrder(messagingTemplate);
+        order.verify(messagingTemplate).convertAndSendToUser(eq("erin"), eq("/queue/notifications"), eq("first"), session("s-erin"));
+        order.verify(messagingTemplate).convertAndSendToUser(eq("erin"), eq("/queue/unread-count"), eq(2L), session("s-erin"));
+        order.verify(messagingTemplate).convertAndSendToUser(eq("erin"), eq("/queue/notifications"), eq("second"), session("s-erin"));
+        assertEquals(3, dispatchService.getStats().get("maxObservedDepth"));
+    }
+
+    @Test
+    void testEachSessionOfAUserHasItsOwnQueue() {
+        // Arrange - two tabs, the second closed before the next message
+        connect("frank", "tab-1");
+        connect("frank", "tab-2");
+
+        // Act
+        dispatchService.sendToUser("frank", "/queue/notifications", "both");
+        dispatchService.flush();
+        disconnect("frank", "tab-2");
+        dispatchService.sendToUser("frank", "/queue/notifications", "first only");
+        dispatchService.flush();
+
+        // Assert
+        verify(messagingTemplate).convertAndSendToUser(eq("frank"), eq("/queue/notifications"), eq("both"), session("tab-1"));
+        verify(messagingTemplate).convertAndSendToUser(eq("frank"), eq("/queue/notifications"), eq("both"), session("tab-2"));
+        verify(messagingTemplate).convertAndSendToUser(eq("frank"), eq("/queue/notifications"), eq("first only"), session("tab-1"));
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("frank"), eq("/queue/notifications"), eq("first only"), session("tab-2"));
+        assertEquals(0, dispatchService.getStats().get("activeQueues"));
+    }
+
+    @Test
+    void testOverflowInOneSessionLeavesTheOthersAlone() {
+        // Arrange
+        ReflectionTestUtils.setField(dispatchService, "overflowPolicy", WebSocketDispatchService.OverflowPolicy.CLOSE);
+        connect("gina", "phone");
+        for (int i = 0; i < 3; i++) {
+            dispatchService.sendToUser("gina", "/queue/notifications", "old" + i);
+        }
+        connect("gina", "laptop");
+
+        // Act - the phone's queue overflows, the laptop's has room
+        dispatchService.sendToUser("gina", "/queue/notifications", "new");
+        dispatchService.flush();
+
+        // Assert
+        verify(messagingTemplate).convertAndSendToUser(eq("gina"), eq(WebSocketDispatchService.RESYNC_DESTINATION), any(Object.class), session("phone"));
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("gina"), eq(WebSocketDispatchService.RESYNC_DESTINATION), any(Object.class), session("laptop"));
+        verify(messagingTemplate).convertAndSendToUser(eq("gina"), eq("/queue/notifications"), eq("new"), session("laptop"));
+    }
+
+    @Test
+    void testUserWithoutSessionIsSentToDirectly() {
+        // Act - connected to another node, or not at all
+        dispatchService.sendToUser("hank", "/queue/notifications", "hello");
+
+        // Assert - handed to the user registry without waiting for a flush
+        verify(messagingTemplate).convertAndSendToUser("hank", "/queue/notifications", "hello");
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class), anyMap());
+    }
+
+    @Test
+    void testTopicBroadcastAndDisabledMode() {
+        // Arrange
+        ReflectionTestUtils.setField(dispatchService, "enabled", false);
+
+        // Act
+        dispatchService.sendToTopic("/topic/admin/stats", "stats");
+
+        // Assert - sent immediately without a flush
+        verify(messagingTemplate).convertAndSend("/topic/admin/stats", (Object) "stats");
+    }
+}
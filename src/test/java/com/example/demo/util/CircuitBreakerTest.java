@@ -0,0 +1,85 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private AtomicLong now;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        breaker = new CircuitBreaker(2, 10, TimeUnit.SECONDS, now::get);
+    }
+
+    @Test
+    void testProbeSuccessCloses() {
+        // Arrange
+        openBreaker();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        // Act
+        long probe = breaker.tryAcquirePermission();
+        boolean secondProbe = breaker.tryAcquirePermission() != CircuitBreaker.NO_PERMIT;
+        breaker.onSuccess(probe);
+
+        // Assert
+        assertFalse(secondProbe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testSlowCallFromBeforeTheBreakerOpenedIsIgnored() {
+        // Arrange - a call starts, then others fail and open the breaker
+        long slow = breaker.tryAcquirePermission();
+        openBreaker();
+
+        // Act & Assert - its success doesn't close the open breaker
+        breaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        // ... nor the half-open one, whose probe is still running
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        long probe = breaker.tryAcquirePermission();
+        breaker.onSuccess(slow);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // ... and once the probe closes it, its failure doesn't count against the new run
+        breaker.onSuccess(probe);
+        breaker.onFailure(breaker.tryAcquirePermission());
+        breaker.onFailure(slow);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testReleasedProbeLetsTheNextCallProbe() {
+        // Arrange
+        openBreaker();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        long probe = breaker.tryAcquirePermission();
+
+        // Act
+        breaker.releasePermission(probe);
+        long nextProbe = breaker.tryAcquirePermission();
+
+        // Assert
+        assertNotEquals(CircuitBreaker.NO_PERMIT, nextProbe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure(nextProbe);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2L, breaker.getTimesOpened());
+    }
+
+    private void openBreaker() {
+        breaker.onFailure(breaker.tryAcquirePermission());
+        breaker.onFailure(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
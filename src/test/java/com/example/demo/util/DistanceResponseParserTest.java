@@ -0,0 +1,111 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceResponseParserTest {
+
+    @Test
+    void testDistanceMatrixReadsFirstElementWhateverTheFieldOrder() throws IOException {
+        // Arrange
+        String json = """
+            {"destination_addresses": ["Bangalore, Karnataka, India"],
+             "rows": [{"elements": [
+                 {"duration": {"text": "5 hours 50 mins", "value": 21000},
+                  "distance": {"text": "346 km", "value": 346000},
+                  "status": "OK"},
+                 {"distance": {"text": "1 km", "value": 1000}, "status": "OK"}]},
+               {"elements": [{"status": "NOT_FOUND"}]}],
+             "status": "OK"}
+            """;
+
+        // Act
+        DistanceResponseParser.Result result = DistanceResponseParser.parseDistanceMatrix(stream(json));
+
+        // Assert
+        assertEquals("OK", result.getStatus());
+        assertEquals("OK", result.getRouteStatus());
+        assertEquals(346000.0, result.getDistanceMeters());
+        assertEquals(21000.0, result.getDurationSeconds());
+    }
+
+    @Test
+    void testDistanceMatrixWithoutRoute() throws IOException {
+        // Act
+        DistanceResponseParser.Result denied = DistanceResponseParser.parseDistanceMatrix(
+                stream("{\"error_message\": \"The provided API key is invalid.\", \"rows\": [], \"status\": \"REQUEST_DENIED\"}"));
+        DistanceResponseParser.Result notFound = DistanceResponseParser.parseDistanceMatrix(
+                stream("{\"rows\": [{\"elements\": [{\"status\": \"ZERO_RESULTS\"}]}], \"status\": \"OK\"}"));
+
+        // Assert
+        assertEquals("REQUEST_DENIED", denied.getStatus());
+        assertFalse(denied.hasDistance());
+        assertEquals("ZERO_RESULTS", notFound.getRouteStatus());
+        assertFalse(notFound.hasDistance());
+    }
+
+    @Test
+    void testDirectionsSkipsGeometry() throws IOException {
+        // Arrange
+        String json = """
+            {"bbox": [77.59, 12.97, 80.27, 13.08],
+             "routes": [{"geometry": "a~l~Fjk~uOwHJy@P", "segments": [{"steps": [{"distance": 12.5}]}],
+                         "summary": {"distance": 331234.5, "duration": 20110.2}},
+                        {"summary": {"distance": 1.0}}],
+             "metadata": {"query": {"coordinates": [[80.27, 13.08], [77.59, 12.97]]}}}
+            """;
+
+        // Act
+        DistanceResponseParser.Result result = DistanceResponseParser.parseDirections(stream(json));
+
+        // Assert
+        assertEquals("OK", result.getStatus());
+        assertEquals(331234.5, result.getDistanceMeters());
+        assertEquals(20110.2, result.getDurationSeconds());
+    }
+
+    @Test
+    void testDirectionsAsGeoJson() throws IOException {
+        // Arrange
+        String json = """
+            {"type": "FeatureCollection",
+             "features": [{"geometry": {"type": "LineString", "coordinates": [[80.27, 13.08], [77.59, 12.97]]},
+                           "properties": {"segments": [], "summary": {"distance": 331234.5, "duration": 20110.2}},
+                           "type": "Feature"}]}
+            """;
+
+        // Act
+        DistanceResponseParser.Result result = DistanceResponseParser.parseDirections(stream(json));
+
+        // Assert
+        assertEquals(331234.5, result.getDistanceMeters());
+    }
+
+    @Test
+    void testDirectionsError() throws IOException {
+        // Act
+        DistanceResponseParser.Result result = DistanceResponseParser.parseDirections(
+                stream("{\"error\": {\"code\": 2010, \"message\": \"Could not find routable point\"}}"));
+
+        // Assert
+        assertEquals("ERROR", result.getStatus());
+        assertFalse(result.hasDistance());
+    }
+
+    @Test
+    void testTruncatedResponseFails() {
+        // Act & Assert
+        assertThrows(IOException.class,
+                () -> DistanceResponseParser.parseDirections(stream("{\"routes\": [{\"summary\": {\"distance\": 33")));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}